@@ -3,11 +3,38 @@
  */
 package cellularfractals;
 
-import cellularfractals.engine.GameLoop;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import cellularfractals.GUI.MainFrame;
 import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.headless.HeadlessRunner;
+import cellularfractals.io.FrameStreamClient;
+import cellularfractals.io.TrajectoryPlayer;
 
 public class App {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        // Run without a window: App --headless [HeadlessRunner options]
+        if (args.length > 0 && args[0].equals("--headless")) {
+            HeadlessRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Replay a recording: App --play FILE [--speed STEPS_PER_SECOND]
+        if (args.length > 1 && args[0].equals("--play")) {
+            double speed = args.length > 3 && args[2].equals("--speed") ? Double.parseDouble(args[3]) : 60;
+            play(TrajectoryPlayer.open(Paths.get(args[1])), speed);
+            return;
+        }
+
+        // Watch a run streamed by another process: App --view PORT
+        if (args.length > 1 && args[0].equals("--view")) {
+            view(FrameStreamClient.connect(Integer.parseInt(args[1])));
+            return;
+        }
+
         // Create single World instance
         World world = new World(100, 100, 10);
 
@@ -15,4 +42,39 @@ public class App {
         GameLoop gameLoop = new GameLoop(world);
         gameLoop.run();
     }
+
+    private static void play(TrajectoryPlayer player, double stepsPerSecond) {
+        // An empty world gives the window its dimensions; particles come from the recording
+        World world = new World(player.getWorldWidth(), player.getWorldHeight(), 10);
+        MainFrame frame = new MainFrame(world);
+        Thread playback = new Thread(() -> {
+            try (player) {
+                player.play(frame.getPanel()::showFrame, stepsPerSecond);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "trajectory-playback");
+        playback.setDaemon(true);
+        playback.start();
+    }
+
+    private static void view(FrameStreamClient client) {
+        // As with playback, the empty world only gives the window its dimensions
+        World world = new World(client.getWorldWidth(), client.getWorldHeight(), 10);
+        MainFrame frame = new MainFrame(world);
+        Thread viewer = new Thread(() -> {
+            WorldFrame received = new WorldFrame();
+            try (client) {
+                while (client.next(received)) {
+                    frame.getPanel().showFrame(received);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "frame-stream-viewer");
+        viewer.setDaemon(true);
+        viewer.start();
+    }
 }
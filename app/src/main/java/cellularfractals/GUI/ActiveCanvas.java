@@ -0,0 +1,157 @@
+package cellularfractals.GUI;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+import cellularfractals.render.FrameTimeStats;
+
+/**
+ * A canvas drawn by its own render thread through a {@link BufferStrategy},
+ * instead of by Swing's repaint manager on the event dispatch thread.
+ *
+ * The thread draws one frame per slot of the target frame rate and shows it,
+ * then parks until the next slot. A frame that runs past its slot skips the
+ * slots it missed rather than drawing several in a burst to catch up, so
+ * frames stay evenly spaced. The rate is independent of how often the world
+ * steps; the drawer is expected to show the latest published state.
+ */
+public class ActiveCanvas extends Canvas {
+    public static final int DEFAULT_FPS = 60;
+    private static final int STATS_WINDOW = 120;
+
+    /**
+     * Draws one frame of an active canvas. Called on the render thread.
+     */
+    public interface Drawer {
+        /**
+         * Draws the whole canvas.
+         * @param g Graphics of the back buffer
+         * @param width Canvas width in pixels
+         * @param height Canvas height in pixels
+         */
+        void draw(Graphics2D g, int width, int height);
+    }
+
+    private final Drawer drawer;
+    private final FrameTimeStats stats = new FrameTimeStats(STATS_WINDOW);
+    private volatile long frameNanos = 1_000_000_000L / DEFAULT_FPS;
+    private volatile boolean running = false;
+    private Thread renderThread;
+
+    /**
+     * Creates a canvas that is not yet rendering.
+     * @param drawer Draws each frame
+     */
+    public ActiveCanvas(Drawer drawer) {
+        this.drawer = drawer;
+        setBackground(Color.BLACK);
+        setIgnoreRepaint(true);
+    }
+
+    /**
+     * Sets the number of frames drawn per second.
+     * @param fps Frames per second, at least 1
+     */
+    public void setTargetFps(int fps) {
+        frameNanos = 1_000_000_000L / Math.max(1, fps);
+    }
+
+    public FrameTimeStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Starts the render thread. The canvas must be displayable.
+     */
+    public synchronized void start() {
+        if (renderThread != null) return;
+        if (getBufferStrategy() == null) {
+            createBufferStrategy(2);
+        }
+        running = true;
+        renderThread = new Thread(this::renderLoop, "active-render");
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    /**
+     * Stops the render thread and waits for it to finish its frame.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (renderThread == null) return;
+        LockSupport.unpark(renderThread);
+        try {
+            renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        renderThread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void removeNotify() {
+        // The buffer strategy goes away with the peer
+        stop();
+        super.removeNotify();
+    }
+
+    // Everything is drawn by the render thread
+    @Override
+    public void paint(Graphics g) { }
+
+    @Override
+    public void update(Graphics g) { }
+
+    private void renderLoop() {
+        long deadline = System.nanoTime();
+        while (running) {
+            long start = System.nanoTime();
+            drawFrame();
+            long end = System.nanoTime();
+            stats.record(start, end);
+
+            long interval = frameNanos;
+            deadline += interval;
+            if (end > deadline) {
+                // Late: skip the missed slots and wait for the next one
+                long missed = (end - deadline) / interval + 1;
+                stats.recordMissed(missed);
+                deadline += missed * interval;
+            }
+            long wait;
+            while (running && (wait = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    private void drawFrame() {
+        BufferStrategy strategy = getBufferStrategy();
+        int width = getWidth();
+        int height = getHeight();
+        if (strategy == null || width <= 0 || height <= 0) return;
+        try {
+            do {
+                do {
+                    Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                    try {
+                        drawer.draw(g, width, height);
+                    } finally {
+                        g.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+        } catch (IllegalStateException e) {
+            // The peer was torn down between frames; removeNotify stops the thread
+            return;
+        }
+        Toolkit.getDefaultToolkit().sync();
+    }
+}
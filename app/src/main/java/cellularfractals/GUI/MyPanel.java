@@ -3,21 +3,37 @@ package cellularfractals.GUI;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 
+import cellularfractals.engine.FramePublisher;
 import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
 import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
 import cellularfractals.particles.particles.*;
 import cellularfractals.engine.ParticleThreadPool;
 import cellularfractals.particles.effects.MouseGravityEffect;
 import cellularfractals.particles.effects.GroundGravityEffect;
+import cellularfractals.particles.CollisionLayers;
+import cellularfractals.render.Camera;
+import cellularfractals.render.FrameRasterizer;
+import cellularfractals.render.FrameTimeStats;
+import cellularfractals.render.ParticleTrails;
 
 public class MyPanel extends JPanel {
     // Existing fields
     private World world;
-    private CustomCanvas canvas;
+    private Component canvas; // The drawing surface in use, customCanvas or activeCanvas
+    private CustomCanvas customCanvas;
     private Timer updateTimer;
     private Map<String, BiFunction<Double, Double, Particle>> particleFactories = new HashMap<>();
     private BiFunction<Double, Double, Particle> selectedFactory = null;
@@ -31,7 +47,7 @@ public class MyPanel extends JPanel {
     private JButton toggleParametersButton;
 
     // Fields for visibility control
-    private Map<String, Boolean> particleTypeVisibility = new HashMap<>();
+    private final boolean[] typeVisible = new boolean[ParticleType.count()];
     private JPanel visibilityPanel;
     private boolean visibilityPanelExpanded = true;
 
@@ -50,8 +66,57 @@ public class MyPanel extends JPanel {
     // Spawn on drag field
     private boolean spawnOnDrag = false;
 
+    // Recorded frame shown instead of the live world during playback
+    private final Object playbackLock = new Object();
+    private WorldFrame playbackFrame = null;
+
+    // Particles are rasterized into an image on these threads unless shape drawing is chosen
+    private static final int RENDER_THREADS = Runtime.getRuntime().availableProcessors();
+    private boolean softwareRendering = true;
+    private final ExecutorService renderExecutor = Executors.newFixedThreadPool(RENDER_THREADS, r -> {
+        Thread thread = new Thread(r, "canvas-render");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final FrameRasterizer rasterizer = new FrameRasterizer(renderExecutor, RENDER_THREADS);
+    private final WorldFrame liveFrame = new WorldFrame();
+    // Motion trails of up to TRAIL_COUNT particles, drawn by fast rendering
+    private static final int TRAIL_COUNT = 2000;
+    private static final int TRAIL_LENGTH = 32;
+    private static final int TRAIL_INTERVAL = 2; // Steps between trail samples
+    private final ParticleTrails trails = new ParticleTrails(TRAIL_COUNT, TRAIL_LENGTH, TRAIL_INTERVAL);
+    private BufferedImage canvasImage;
+    // Grid and world outline for shape drawing, drawn once and reused until the view moves or resizes
+    private static final Color GRID_COLOR = new Color(30, 30, 30);
+    private static final Color BOUNDS_COLOR = new Color(80, 80, 80);
+    private BufferedImage staticLayer;
+    private int staticLayerSize;
+    private int staticLayerX;
+    private int staticLayerY;
+    private static final Color ATTRACT_RANGE_COLOR = new Color(175, 0, 255, 50);
+    private static final Color REPEL_RANGE_COLOR = new Color(255, 0, 175, 50);
+    private static final Color ATTRACT_CENTER_COLOR = new Color(175, 0, 255);
+    private static final Color REPEL_CENTER_COLOR = new Color(255, 0, 175);
+    // Particles grouped by type id for shape drawing; the last batch holds untyped particles
+    private static final int UNTYPED_BATCH = ParticleType.count();
+    private final List<List<Particle>> drawBatches = new ArrayList<>();
+
+    // View of the world: wheel zooms, right-drag pans, right-click follows a particle
+    private static final double CULL_MARGIN = 5; // World units drawn beyond the view, for particles overlapping its edge
+    private static final int FOLLOW_PICK_PIXELS = 10;
+    private final Camera camera;
+    private Point panStart = null;
+    private boolean panned = false;
+
+    // Active rendering: a render thread draws the latest frame published after each step
+    private static final int[] RENDER_RATES = {30, 60, 120, 144};
+    private ActiveCanvas activeCanvas;
+    private final FramePublisher framePublisher = new FramePublisher();
+    private volatile Point mousePoint = null; // Tracked for the render thread, which must not query the component tree
+
     public MyPanel(World world) {
         this.world = world;
+        this.camera = new Camera(world.getWidth(), world.getHeight());
         setLayout(new BorderLayout());
 
         // Create mouse gravity effect
@@ -65,26 +130,25 @@ public class MyPanel extends JPanel {
         world.effectModifierIndex.addGlobalEffect(groundGravityEffect);
 
         // Create custom canvas
-        canvas = new CustomCanvas();
-        canvas.setPreferredSize(new Dimension(400, 400));
-        canvas.addMouseListener(new MouseAdapter() {
-            @Override public void mousePressed(MouseEvent e) { handleMouseClick(e); }
-            @Override public void mouseReleased(MouseEvent e) { handleMouseClick(e); }
-            @Override public void mouseClicked(MouseEvent e) { handleMouseClick(e); }
-        });
-        canvas.addMouseMotionListener(new MouseMotionAdapter() {
-            @Override public void mouseDragged(MouseEvent e) {
-                if (spawnOnDrag) {
-                    handleMouseClick(e);
-                }
-            }
-            @Override public void mouseMoved(MouseEvent e) { updateMousePosition(e); }
-        });
+        customCanvas = new CustomCanvas();
+        customCanvas.setPreferredSize(new Dimension(400, 400));
+        activeCanvas = new ActiveCanvas(this::drawActive);
+        activeCanvas.setPreferredSize(new Dimension(400, 400));
+        attachInput(customCanvas);
+        attachInput(activeCanvas);
+        canvas = customCanvas;
         add(canvas, BorderLayout.CENTER);
 
         // Initialize maps
         initializeParameterMap();
-        initializeVisibilityMap();
+        Arrays.fill(typeVisible, true);
+        trails.setEnabled(false);
+        rasterizer.setTrails(trails);
+        rasterizer.setGrid(10.0, GRID_COLOR.getRGB());
+        rasterizer.setBounds(BOUNDS_COLOR.getRGB() & 0xFFFFFF);
+        for (int i = 0; i <= UNTYPED_BATCH; i++) {
+            drawBatches.add(new ArrayList<>());
+        }
 
         // Build control panel
         JPanel controlPanel = new JPanel(new GridBagLayout());
@@ -104,6 +168,66 @@ public class MyPanel extends JPanel {
         controlPanel.add(vectorArrowsToggle, gbc);
         gbc.gridy++;
 
+        // Rasterizer or Graphics2D shapes
+        JCheckBox softwareRenderingToggle = new JCheckBox("Fast Rendering", softwareRendering);
+        softwareRenderingToggle.addActionListener(e -> { softwareRendering = softwareRenderingToggle.isSelected(); canvas.repaint(); });
+        controlPanel.add(softwareRenderingToggle, gbc);
+        gbc.gridy++;
+
+        // Fading motion trails in each particle's trail color
+        JCheckBox trailsToggle = new JCheckBox("Show Trails", false);
+        trailsToggle.addActionListener(e -> {
+            trails.setEnabled(trailsToggle.isSelected());
+            if (trails.isEnabled()) {
+                world.addStepListener(trails);
+            } else {
+                world.removeStepListener(trails);
+            }
+            canvas.repaint();
+        });
+        controlPanel.add(trailsToggle, gbc);
+        gbc.gridy++;
+
+        // Render thread with its own frame rate instead of Swing repaints
+        JCheckBox activeRenderingToggle = new JCheckBox("Active Rendering", false);
+        activeRenderingToggle.addActionListener(e -> setActiveRendering(activeRenderingToggle.isSelected()));
+        controlPanel.add(activeRenderingToggle, gbc);
+        gbc.gridy++;
+
+        JPanel renderRatePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        renderRatePanel.add(new JLabel("Render Rate:"));
+        JComboBox<String> renderRateCombo = new JComboBox<>();
+        for (int rate : RENDER_RATES) {
+            renderRateCombo.addItem(rate + " fps");
+            if (rate == ActiveCanvas.DEFAULT_FPS) {
+                renderRateCombo.setSelectedIndex(renderRateCombo.getItemCount() - 1);
+            }
+        }
+        renderRateCombo.addActionListener(e ->
+            activeCanvas.setTargetFps(RENDER_RATES[renderRateCombo.getSelectedIndex()]));
+        renderRatePanel.add(renderRateCombo);
+        controlPanel.add(renderRatePanel, gbc);
+        gbc.gridy++;
+
+        // What fast rendering shows once particles outnumber pixels
+        JPanel densityPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        densityPanel.add(new JLabel("Dense View:"));
+        JComboBox<String> densityCombo = new JComboBox<>(new String[] {"Density", "Mass", "Velocity", "Particles"});
+        densityCombo.addActionListener(e -> {
+            switch (densityCombo.getSelectedIndex()) {
+                case 0: rasterizer.setDensityField(FrameRasterizer.DensityField.COUNT); break;
+                case 1: rasterizer.setDensityField(FrameRasterizer.DensityField.MASS); break;
+                case 2: rasterizer.setDensityField(FrameRasterizer.DensityField.SPEED); break;
+                default: break;
+            }
+            rasterizer.setDensityThreshold(densityCombo.getSelectedIndex() == 3
+                ? Double.POSITIVE_INFINITY : FrameRasterizer.DEFAULT_DENSITY_THRESHOLD);
+            canvas.repaint();
+        });
+        densityPanel.add(densityCombo);
+        controlPanel.add(densityPanel, gbc);
+        gbc.gridy++;
+
         // Mouse gravity options panel
         JPanel mouseGravityPanel = new JPanel();
         mouseGravityPanel.setBorder(BorderFactory.createTitledBorder("Mouse Gravity"));
@@ -244,7 +368,7 @@ public class MyPanel extends JPanel {
         registerParticleType("Basic Particle", (x, y) -> createBasicParticle(x, y));
         registerParticleType("Gravity Particle", (x, y) -> createGravityParticle(x, y, true));
         registerParticleType("Anti-Gravity Particle", (x, y) -> createGravityParticle(x, y, false));
-        registerParticleType("Demo Particle", (x, y) -> new DemoParticle(world, x, y, 0, 0));
+        registerParticleType("Demo Particle", (x, y) -> world.spawn(ParticleType.DEMO, x, y, 0, 0, 0, 0));
         registerParticleType("Ghost Particle", (x, y) -> createGhostParticle(x, y));
         registerParticleType("Exploding Particle", (x, y) -> createExplodingParticle(x, y));
         registerParticleType("Magnetic Particle (Positive)", (x, y) -> createMagneticParticle(x, y, "Positive"));
@@ -286,6 +410,14 @@ public class MyPanel extends JPanel {
         controlPanel.add(spawnOnDragToggle, gbc);
         gbc.gridy++;
 
+        // Sleep toggle: resting particles stop being simulated until disturbed
+        JCheckBox sleepToggle = new JCheckBox("Sleep Resting Particles", world.isSleepEnabled());
+        sleepToggle.addActionListener(e -> {
+            world.setSleepEnabled(sleepToggle.isSelected());
+        });
+        controlPanel.add(sleepToggle, gbc);
+        gbc.gridy++;
+
         // Reset button
         JButton resetButton = new JButton("Reset");
         resetButton.addActionListener(e -> {
@@ -297,54 +429,118 @@ public class MyPanel extends JPanel {
             canvas.repaint();
         });
         controlPanel.add(resetButton, gbc);
+        gbc.gridy++;
+
+        // Back to the whole world
+        JButton resetViewButton = new JButton("Reset View");
+        resetViewButton.addActionListener(e -> { camera.reset(); canvas.repaint(); });
+        controlPanel.add(resetViewButton, gbc);
 
         add(controlPanel, BorderLayout.EAST);
 
-        // Timer for animation
+        // Timer for animation; the active canvas draws itself
         updateTimer = new Timer(16, e -> {
             particleCountLabel.setText("Particles: " + world.getParticleCount());
-            canvas.repaint();
+            if (canvas == customCanvas) canvas.repaint();
         });
         updateTimer.start();
     }
 
+    /**
+     * Sends a drawing surface's mouse input to the panel.
+     */
+    private void attachInput(Component surface) {
+        surface.addMouseListener(new MouseAdapter() {
+            @Override public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isRightMouseButton(e)) { panStart = e.getPoint(); panned = false; }
+                else handleMouseClick(e);
+            }
+            @Override public void mouseReleased(MouseEvent e) {
+                if (SwingUtilities.isRightMouseButton(e)) { if (!panned) followParticleAt(e.getPoint()); panStart = null; }
+                else handleMouseClick(e);
+            }
+            @Override public void mouseClicked(MouseEvent e) {
+                if (!SwingUtilities.isRightMouseButton(e)) handleMouseClick(e);
+            }
+            @Override public void mouseExited(MouseEvent e) { mousePoint = null; }
+        });
+        surface.addMouseMotionListener(new MouseMotionAdapter() {
+            @Override public void mouseDragged(MouseEvent e) {
+                mousePoint = e.getPoint();
+                if (panStart != null) {
+                    camera.pan(e.getX() - panStart.x, e.getY() - panStart.y);
+                    panStart = e.getPoint();
+                    panned = true;
+                    canvas.repaint();
+                } else if (spawnOnDrag) {
+                    handleMouseClick(e);
+                }
+            }
+            @Override public void mouseMoved(MouseEvent e) {
+                mousePoint = e.getPoint();
+                updateMousePosition(e);
+            }
+        });
+        surface.addMouseWheelListener(e -> {
+            camera.setViewport(canvas.getWidth(), canvas.getHeight());
+            camera.zoomAt(e.getX(), e.getY(), Math.pow(1.1, -e.getPreciseWheelRotation()));
+            canvas.repaint();
+        });
+    }
+
+    /**
+     * Switches between Swing painting and the active canvas. While active,
+     * the world publishes a frame after each step for the render thread.
+     */
+    private void setActiveRendering(boolean active) {
+        if (active == (canvas == activeCanvas)) return;
+        if (!active) {
+            activeCanvas.stop();
+            world.removeStepListener(framePublisher);
+        }
+        remove(canvas);
+        canvas = active ? activeCanvas : customCanvas;
+        add(canvas, BorderLayout.CENTER);
+        revalidate();
+        repaint();
+        if (active) {
+            world.addStepListener(framePublisher);
+            activeCanvas.start();
+        }
+    }
+
     /**
      * Update the mouse position for the mouse gravity effect
      */
     private void updateMousePosition(MouseEvent e) {
         if (!mouseGravityEnabled) return;
 
-        // Calculate size and offsets for square aspect ratio
-        int size = Math.min(canvas.getWidth(), canvas.getHeight());
-        int xOffset = (canvas.getWidth() - size) / 2;
-        int yOffset = (canvas.getHeight() - size) / 2;
-
-        // Convert screen coordinates to world coordinates
-        double worldX = Math.max(0, Math.min(world.getWidth(),
-            ((e.getX() - xOffset) * world.getWidth()) / size));
-        double worldY = Math.max(0, Math.min(world.getHeight(),
-            ((e.getY() - yOffset) * world.getHeight()) / size));
+        camera.setViewport(canvas.getWidth(), canvas.getHeight());
+        double worldX = Math.max(0, Math.min(world.getWidth(), camera.screenToWorldX(e.getX())));
+        double worldY = Math.max(0, Math.min(world.getHeight(), camera.screenToWorldY(e.getY())));
 
         mouseGravityEffect.setPosition(worldX, worldY);
     }
 
-    // Visibility methods
-    private void initializeVisibilityMap() {
-        particleTypeVisibility.put("Basic Particle", true);
-        particleTypeVisibility.put("Gravity Particle", true);
-        particleTypeVisibility.put("Anti-Gravity Particle", true);
-        particleTypeVisibility.put("Demo Particle", true);
-        particleTypeVisibility.put("Ghost Particle", true);
-        particleTypeVisibility.put("Exploding Particle", true);
-        particleTypeVisibility.put("Magnetic Particle (Positive)", true);
-        particleTypeVisibility.put("Magnetic Particle (Negative)", true);
+    /**
+     * Follows the particle nearest a point on the canvas, or stops following
+     * if there is none close by.
+     */
+    private void followParticleAt(Point point) {
+        camera.setViewport(canvas.getWidth(), canvas.getHeight());
+        double worldX = camera.screenToWorldX(point.x);
+        double worldY = camera.screenToWorldY(point.y);
+        camera.follow(world.grid.nearest(worldX, worldY, FOLLOW_PICK_PIXELS / camera.getScaleX(),
+            CollisionLayers.ALL, null));
+        canvas.repaint();
     }
 
+    // Visibility methods
     private void updateVisibilityPanel() {
         visibilityPanel.removeAll();
-        for (String type : particleTypeVisibility.keySet()) {
-            JCheckBox cb = new JCheckBox(type, particleTypeVisibility.get(type));
-            cb.addActionListener(e -> { particleTypeVisibility.put(type, cb.isSelected()); canvas.repaint(); });
+        for (ParticleType type : ParticleType.values()) {
+            JCheckBox cb = new JCheckBox(type.getDisplayName(), typeVisible[type.getId()]);
+            cb.addActionListener(e -> { typeVisible[type.getId()] = cb.isSelected(); canvas.repaint(); });
             visibilityPanel.add(cb);
         }
         visibilityPanel.revalidate();
@@ -417,7 +613,9 @@ public class MyPanel extends JPanel {
 
     private BasicParticle createBasicParticle(double x, double y) {
         Map<String, Double> params = particleParameters.get("Basic Particle");
-        BasicParticle p = new BasicParticle(world, x, y, params.get("velocityX"), params.get("velocityY"));
+        BasicParticle p = (BasicParticle) world.spawn(ParticleType.BASIC, x, y,
+            params.get("velocityX"), params.get("velocityY"), 0, 0);
+        if (p == null) return null; // Refused by the population budget
         p.setMass(params.get("mass")); p.setRadius(params.get("radius"));
         return p;
     }
@@ -425,28 +623,35 @@ public class MyPanel extends JPanel {
     private GravityParticle createGravityParticle(double x, double y, boolean isAttractive) {
         String type = isAttractive ? "Gravity Particle" : "Anti-Gravity Particle";
         Map<String, Double> params = particleParameters.get(type);
-        GravityParticle p = new GravityParticle(world, x, y, params.get("velocityX"), params.get("velocityY"), params.get("range").floatValue(), params.get("strength").floatValue());
+        GravityParticle p = (GravityParticle) world.spawn(isAttractive ? ParticleType.GRAVITY : ParticleType.ANTI_GRAVITY,
+            x, y, params.get("velocityX"), params.get("velocityY"),
+            params.get("range").floatValue(), params.get("strength").floatValue());
+        if (p == null) return null; // Refused by the population budget
         p.setMass(params.get("mass")); p.setRadius(params.get("radius"));
         return p;
     }
 
     private GhostParticle createGhostParticle(double x, double y) {
         Map<String, Double> params = particleParameters.get("Ghost Particle");
-        GhostParticle p = new GhostParticle(world, x, y, params.get("velocityX"), params.get("velocityY"));
+        GhostParticle p = (GhostParticle) world.spawn(ParticleType.GHOST, x, y,
+            params.get("velocityX"), params.get("velocityY"), 0, 0);
+        if (p == null) return null; // Refused by the population budget
         p.setMass(params.get("mass")); p.setRadius(params.get("radius"));
         return p;
     }
 
     private ExplodingParticle createExplodingParticle(double x, double y) {
         Map<String, Double> params = particleParameters.get("Exploding Particle");
-        ExplodingParticle p = new ExplodingParticle(
-            world,
+        ExplodingParticle p = (ExplodingParticle) world.spawn(
+            ParticleType.EXPLODING,
             x,
             y,
             params.get("velocityX"),
             params.get("velocityY"),
-            params.get("explosionRadius").intValue()
+            params.get("explosionRadius").intValue(),
+            0
         );
+        if (p == null) return null; // Refused by the population budget
         p.setMass(params.get("mass"));
         p.setRadius(params.get("radius"));
         return p;
@@ -454,8 +659,10 @@ public class MyPanel extends JPanel {
 
     private MagneticParticle createMagneticParticle(double x, double y, String polarity) {
         Map<String, Double> params = particleParameters.get("Magnetic Particle (" + polarity + ")");
-        MagneticParticle p = new MagneticParticle(world, x, y, params.get("velocityX"), params.get("velocityY"),
-            params.get("range").floatValue(), params.get("strength").floatValue(), polarity);
+        ParticleType type = polarity.equals("Positive") ? ParticleType.MAGNETIC_POSITIVE : ParticleType.MAGNETIC_NEGATIVE;
+        MagneticParticle p = (MagneticParticle) world.spawn(type, x, y, params.get("velocityX"), params.get("velocityY"),
+            params.get("range").floatValue(), params.get("strength").floatValue());
+        if (p == null) return null; // Refused by the population budget
         p.setMass(params.get("mass"));
         p.setRadius(params.get("radius"));
         return p;
@@ -533,80 +740,281 @@ public class MyPanel extends JPanel {
             super.paintComponent(g);
             Graphics2D g2d = (Graphics2D) g;
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            drawView(g2d, getWidth(), getHeight(), getMousePosition(), false);
+        }
+    }
+
+    /**
+     * Draws a frame of the active canvas on its render thread, from the
+     * latest published frame, with frame time statistics on top.
+     */
+    private void drawActive(Graphics2D g2d, int width, int height) {
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        drawView(g2d, width, height, mousePoint, true);
+
+        FrameTimeStats stats = activeCanvas.getStats();
+        g2d.setColor(Color.LIGHT_GRAY);
+        g2d.drawString(String.format("%.0f fps  avg %.1f ms  p99 %.1f ms  max %.1f ms  missed %d",
+            stats.getFramesPerSecond(), stats.getAverageMillis(), stats.getPercentileMillis(0.99),
+            stats.getMaxMillis(), stats.getMissedCount()), 8, 16);
+    }
+
+    /**
+     * Draws the world as the camera sees it, then the mouse gravity indicator.
+     * @param published Whether to draw the frame published for the active
+     *        canvas instead of capturing the world
+     */
+    private void drawView(Graphics2D g2d, int width, int height, Point mouse, boolean published) {
+        // Where the world square lands on screen, from the camera
+        camera.setViewport(width, height);
+        camera.update();
+        int size = (int) Math.round(camera.getWorldSize());
+        int xOffset = (int) Math.round(camera.getOffsetX());
+        int yOffset = (int) Math.round(camera.getOffsetY());
+
+        if (softwareRendering) {
+            drawRasterized(g2d, width, height, size, xOffset, yOffset, published);
+        } else {
+            drawStaticLayer(g2d, width, height, size, xOffset, yOffset);
+
+            synchronized (playbackLock) {
+                if (playbackFrame != null) {
+                    drawFrame(g2d, playbackFrame, size, xOffset, yOffset, false);
+                    return;
+                }
+            }
+
+            if (published) {
+                // The render thread never touches the live grid the step thread is changing
+                framePublisher.setRegion(camera.getVisibleMinX() - CULL_MARGIN, camera.getVisibleMinY() - CULL_MARGIN,
+                    camera.getVisibleMaxX() + CULL_MARGIN, camera.getVisibleMaxY() + CULL_MARGIN);
+                drawFrame(g2d, framePublisher.latest(), size, xOffset, yOffset, showVectorArrows);
+                drawMouseIndicator(g2d, size, mouse);
+                return;
+            }
+
+            // Draw particles type by type
+            for (List<Particle> batch : drawBatches) {
+                batch.clear();
+            }
+            world.grid.forEachInRect(camera.getVisibleMinX() - CULL_MARGIN, camera.getVisibleMinY() - CULL_MARGIN,
+                    camera.getVisibleMaxX() + CULL_MARGIN, camera.getVisibleMaxY() + CULL_MARGIN, particle -> {
+                ParticleType type = particle.getParticleType();
+                if (type == null) {
+                    drawBatches.get(UNTYPED_BATCH).add(particle);
+                } else if (typeVisible[type.getId()]) {
+                    drawBatches.get(type.getId()).add(particle);
+                }
+            });
+            for (List<Particle> batch : drawBatches) {
+                drawBatch(g2d, batch, size, xOffset, yOffset);
+            }
+        }
 
-            // Ensure square rendering area
-            int size = Math.min(getWidth(), getHeight());
-            int xOffset = (getWidth() - size) / 2;
-            int yOffset = (getHeight() - size) / 2;
+        drawMouseIndicator(g2d, size, mouse);
+    }
 
-            // Draw grid lines
-            g2d.setColor(new Color(30,30,30));
+    /**
+     * Draws the mouse gravity indicator when enabled.
+     */
+    private void drawMouseIndicator(Graphics2D g2d, int size, Point mouse) {
+        if (mouseGravityEnabled && mouse != null) {
+            int indicatorSize = (int)(mouseGravityRange * size / world.getWidth());
+            g2d.setColor(mouseGravityAttractive ? ATTRACT_RANGE_COLOR : REPEL_RANGE_COLOR);
+            g2d.fillOval(
+                mouse.x - indicatorSize/2,
+                mouse.y - indicatorSize/2,
+                indicatorSize,
+                indicatorSize
+            );
+
+            // Draw a small center point
+            g2d.setColor(mouseGravityAttractive ? ATTRACT_CENTER_COLOR : REPEL_CENTER_COLOR);
+            g2d.fillOval(
+                mouse.x - 5,
+                mouse.y - 5,
+                10,
+                10
+            );
+        }
+    }
+
+    /**
+     * Draws the grid and world outline from a cached image, redrawing the
+     * image first if the canvas was resized or the view zoomed or panned.
+     */
+    private void drawStaticLayer(Graphics2D g2d, int width, int height, int size, int xOffset, int yOffset) {
+        if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height
+                || staticLayerSize != size || staticLayerX != xOffset || staticLayerY != yOffset) {
+            if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height) {
+                staticLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics2D layer = staticLayer.createGraphics();
+            layer.setColor(Color.BLACK);
+            layer.fillRect(0, 0, width, height);
+            layer.setColor(GRID_COLOR);
             for (double x = 0; x < world.getWidth(); x += 10.0) {
                 int xPos = (int)(x*size/world.getWidth()) + xOffset;
-                g2d.drawLine(xPos, yOffset, xPos, size + yOffset);
+                layer.drawLine(xPos, yOffset, xPos, size + yOffset);
             }
             for (double y = 0; y < world.getHeight(); y += 10.0) {
                 int yPos = (int)(y*size/world.getHeight()) + yOffset;
-                g2d.drawLine(xOffset, yPos, size + xOffset, yPos);
+                layer.drawLine(xOffset, yPos, size + xOffset, yPos);
             }
+            layer.setColor(BOUNDS_COLOR);
+            layer.drawRect(xOffset, yOffset, size, size);
+            layer.dispose();
+            staticLayerSize = size;
+            staticLayerX = xOffset;
+            staticLayerY = yOffset;
+        }
+        g2d.drawImage(staticLayer, 0, 0, null);
+    }
 
-            // Draw particles with adjusted coordinates
-            for (Particle particle : world.getParticles()) {
-                String typeForVisibility;
-                if (particle instanceof GravityParticle) {
-                    typeForVisibility = ((GravityParticle) particle).getType();
-                } else if (particle instanceof MagneticParticle) {
-                    MagneticParticle mp = (MagneticParticle)particle;
-                    typeForVisibility = "Magnetic Particle (" + mp.getType() + ")";
-                } else {
-                    typeForVisibility = particle.getClass().getSimpleName().replaceAll("([A-Z])", " $1").trim();
-                }
-                Boolean vis = particleTypeVisibility.get(typeForVisibility);
-                if (vis != null && !vis) continue;
-
-                int screenX = (int)(particle.getX()*size/world.getWidth()) + xOffset;
-                int screenY = (int)(particle.getY()*size/world.getHeight()) + yOffset;
-                int screenRadius = (int)(particle.getRadius()*size/world.getWidth());
-                g2d.setColor(particle.cosmeticSettings != null ? particle.cosmeticSettings.color : Color.WHITE);
-                g2d.fillOval(screenX - screenRadius, screenY - screenRadius, screenRadius * 2, screenRadius * 2);
-                if (showVectorArrows) {
-                    g2d.setColor(particle.cosmeticSettings != null ? particle.cosmeticSettings.trailColor : Color.CYAN);
-                    int velX = (int)(particle.getDx()*20), velY = (int)(particle.getDy()*20);
-                    g2d.drawLine(screenX, screenY, screenX+velX, screenY+velY);
-                }
+    /**
+     * Rasterizes the recorded frame being played back, or else the live
+     * world, into the canvas image and draws it in one call.
+     */
+    private void drawRasterized(Graphics2D g2d, int width, int height, int size, int xOffset, int yOffset,
+                                boolean published) {
+        if (width <= 0 || height <= 0) return;
+        if (canvasImage == null || canvasImage.getWidth() != width || canvasImage.getHeight() != height) {
+            canvasImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        int[] pixels = ((DataBufferInt) canvasImage.getRaster().getDataBuffer()).getData();
+
+        rasterizer.setVisibleTypes(typeVisible);
+
+        synchronized (playbackLock) {
+            if (playbackFrame != null) {
+                // Velocities are not recorded, so no arrows
+                rasterizer.setVelocityArrows(false, 0);
+                rasterizer.render(playbackFrame, pixels, width, height, size, xOffset, yOffset);
+                g2d.drawImage(canvasImage, 0, 0, null);
+                return;
             }
+        }
+        // Only the cells in view, widened so arrows and large particles crossing the edge are kept
+        double margin = CULL_MARGIN + (showVectorArrows ? 40 / camera.getScaleX() : 0);
+        double minX = camera.getVisibleMinX() - margin, minY = camera.getVisibleMinY() - margin;
+        double maxX = camera.getVisibleMaxX() + margin, maxY = camera.getVisibleMaxY() + margin;
+        WorldFrame frame;
+        if (published) {
+            // Captured after the next step; the frame drawn now used the previous region
+            framePublisher.setRegion(minX, minY, maxX, maxY);
+            frame = framePublisher.latest();
+        } else {
+            world.captureFrame(liveFrame, minX, minY, maxX, maxY);
+            frame = liveFrame;
+        }
+        rasterizer.setVelocityArrows(showVectorArrows, 20);
+        rasterizer.render(frame, pixels, width, height, size, xOffset, yOffset);
+        g2d.drawImage(canvasImage, 0, 0, null);
+    }
 
-            // Draw mouse gravity indicator when enabled
-            if (mouseGravityEnabled) {
-                Point mousePoint = getMousePosition();
-                if (mousePoint != null) {
-                    int indicatorSize = (int)(mouseGravityRange * size / world.getWidth());
-                    g2d.setColor(mouseGravityAttractive ?
-                        new Color(175, 0, 255, 50) : new Color(255, 0, 175, 50));
-                    g2d.fillOval(
-                        mousePoint.x - indicatorSize/2,
-                        mousePoint.y - indicatorSize/2,
-                        indicatorSize,
-                        indicatorSize
-                    );
-
-                    // Draw a small center point
-                    g2d.setColor(mouseGravityAttractive ?
-                        new Color(175, 0, 255) : new Color(255, 0, 175));
-                    g2d.fillOval(
-                        mousePoint.x - 5,
-                        mousePoint.y - 5,
-                        10,
-                        10
-                    );
+    /**
+     * Draws one type's particles, then their arrows. Particles of a type
+     * almost always share a color, so the color is only set when it changes.
+     */
+    private void drawBatch(Graphics2D g2d, List<Particle> batch, int size, int xOffset, int yOffset) {
+        if (batch.isEmpty()) return;
+        double scale = size / world.getWidth();
+        int currentColor = 0;
+        boolean colorSet = false;
+        for (Particle particle : batch) {
+            int color = particle.cosmeticSettings.color;
+            if (!colorSet || color != currentColor) {
+                g2d.setColor(new Color(color, true));
+                currentColor = color;
+                colorSet = true;
+            }
+            int screenX = (int)(particle.getX()*scale) + xOffset;
+            int screenY = (int)(particle.getY()*size/world.getHeight()) + yOffset;
+            int screenRadius = (int)(particle.getRadius()*scale);
+            g2d.fillOval(screenX - screenRadius, screenY - screenRadius, screenRadius * 2, screenRadius * 2);
+        }
+        if (!showVectorArrows) return;
+        colorSet = false;
+        for (Particle particle : batch) {
+            int color = particle.cosmeticSettings.trailColor;
+            if (!colorSet || color != currentColor) {
+                g2d.setColor(new Color(color, true));
+                currentColor = color;
+                colorSet = true;
+            }
+            int screenX = (int)(particle.getX()*scale) + xOffset;
+            int screenY = (int)(particle.getY()*size/world.getHeight()) + yOffset;
+            int velX = (int)(particle.getDx()*20), velY = (int)(particle.getDy()*20);
+            g2d.drawLine(screenX, screenY, screenX+velX, screenY+velY);
+        }
+    }
+
+    /**
+     * Draws a captured or recorded frame, with velocity arrows if asked.
+     * Recordings have no velocities, so they are drawn without.
+     */
+    private void drawFrame(Graphics2D g2d, WorldFrame frame, int size, int xOffset, int yOffset,
+                           boolean arrows) {
+        int currentColor = 0;
+        boolean colorSet = false;
+        for (int i = 0; i < frame.count; i++) {
+            if (frame.types[i] != WorldFrame.NO_TYPE && !typeVisible[frame.types[i]]) continue;
+
+            int screenX = (int)(frame.x[i]*size/frame.worldWidth) + xOffset;
+            int screenY = (int)(frame.y[i]*size/frame.worldHeight) + yOffset;
+            int screenRadius = (int)(frame.radius[i]*size/frame.worldWidth);
+            if (!colorSet || frame.color[i] != currentColor) {
+                g2d.setColor(new Color(frame.color[i], true));
+                currentColor = frame.color[i];
+                colorSet = true;
+            }
+            g2d.fillOval(screenX - screenRadius, screenY - screenRadius, screenRadius * 2, screenRadius * 2);
+        }
+        if (!arrows) return;
+        colorSet = false;
+        for (int i = 0; i < frame.count; i++) {
+            if (frame.types[i] != WorldFrame.NO_TYPE && !typeVisible[frame.types[i]]) continue;
+
+            if (!colorSet || frame.trailColor[i] != currentColor) {
+                g2d.setColor(new Color(frame.trailColor[i], true));
+                currentColor = frame.trailColor[i];
+                colorSet = true;
+            }
+            int screenX = (int)(frame.x[i]*size/frame.worldWidth) + xOffset;
+            int screenY = (int)(frame.y[i]*size/frame.worldHeight) + yOffset;
+            int velX = (int)(frame.vx[i]*20), velY = (int)(frame.vy[i]*20);
+            g2d.drawLine(screenX, screenY, screenX+velX, screenY+velY);
+        }
+    }
+
+    /**
+     * Shows a recorded frame instead of the live world. The frame is copied,
+     * so the caller may reuse it. Safe to call from any thread.
+     * @param frame The frame to show, or null to go back to the live world
+     */
+    public void showFrame(WorldFrame frame) {
+        synchronized (playbackLock) {
+            if (frame == null) {
+                playbackFrame = null;
+            } else {
+                if (playbackFrame == null) {
+                    playbackFrame = new WorldFrame();
                 }
+                frame.copyTo(playbackFrame);
             }
         }
+        canvas.repaint();
     }
 
     // Dispose resources
     public void dispose() {
         if (updateTimer != null) { updateTimer.stop(); }
+        activeCanvas.stop();
+        world.removeStepListener(framePublisher);
+        world.removeStepListener(trails);
+        renderExecutor.shutdown();
         ParticleThreadPool.shutdown();
     }
 
@@ -622,16 +1030,10 @@ public class MyPanel extends JPanel {
         if (selectedFactory != null && canvas.getBounds().contains(e.getPoint())) {
             Point canvasPoint = SwingUtilities.convertPoint(e.getComponent(), e.getPoint(), canvas);
 
-            // Calculate size and offsets for square aspect ratio
-            int size = Math.min(canvas.getWidth(), canvas.getHeight());
-            int xOffset = (canvas.getWidth() - size) / 2;
-            int yOffset = (canvas.getHeight() - size) / 2;
-
             // Convert screen coordinates to world coordinates with bounds checking
-            double worldX = Math.max(0, Math.min(world.getWidth(),
-                ((canvasPoint.x - xOffset) * world.getWidth()) / size));
-            double worldY = Math.max(0, Math.min(world.getHeight(),
-                ((canvasPoint.y - yOffset) * world.getHeight()) / size));
+            camera.setViewport(canvas.getWidth(), canvas.getHeight());
+            double worldX = Math.max(0, Math.min(world.getWidth(), camera.screenToWorldX(canvasPoint.x)));
+            double worldY = Math.max(0, Math.min(world.getHeight(), camera.screenToWorldY(canvasPoint.y)));
 
             // Create and add the particle
             selectedFactory.apply(worldX, worldY);
@@ -0,0 +1,57 @@
+package cellularfractals;
+
+import java.util.Random;
+
+import cellularfractals.GUI.MainFrame;
+import cellularfractals.engine.PopulationBudget;
+import cellularfractals.engine.World;
+import cellularfractals.particles.ParticlePool;
+import cellularfractals.scenario.Scenarios;
+
+public class GameLoop {
+    private static final int MAX_PARTICLES = 20000;
+
+    private World world;
+    private MainFrame frame;
+
+    public GameLoop(World world) {
+        this.world = world;
+        // Explosions and spawn-on-drag churn particles; reuse removed ones
+        world.setParticlePool(new ParticlePool());
+        // Keep explosion cascades from growing the step time without bound
+        PopulationBudget budget = new PopulationBudget(MAX_PARTICLES);
+        budget.setSpawnPolicy(PopulationBudget.SpawnPolicy.DEFER);
+        world.setPopulationBudget(budget);
+        initializeParticles();
+
+        // Create and show the GUI
+        javax.swing.SwingUtilities.invokeLater(() -> {
+            frame = new MainFrame(world);
+        });
+    }
+
+    private void initializeParticles() {
+        Scenarios.gravityField(world, Scenarios.DEFAULT_PARTICLE_COUNT, new Random());
+    }
+
+    public void run() {
+        // Create update thread
+        // The only thread that steps the world; the window just draws it
+        Thread updateThread = new Thread(() -> {
+            while (true) {
+                try {
+                    world.update(0.016); // ~60 FPS
+                } catch (RuntimeException e) {
+                    // Keep simulating, but never fail silently
+                    e.printStackTrace();
+                }
+                try {
+                    Thread.sleep(16);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }, "simulation");
+        updateThread.start();
+    }
+}
@@ -1,13 +0,0 @@
-package cellularfractals.particles;
-
-import java.awt.Color;
-
-public class CosmeticSettings {
-    public Color color;
-    public Color trailColor;
-    
-    public CosmeticSettings(Color color) {
-        this.color = color;
-        this.trailColor = Color.CYAN;
-    }
-}
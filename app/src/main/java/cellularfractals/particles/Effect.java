@@ -1,5 +0,0 @@
-package cellularfractals.particles;
-
-public abstract class Effect {
-  public abstract void apply(Particle p, double deltaTime);
-}
@@ -0,0 +1,271 @@
+package cellularfractals.bench;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import cellularfractals.engine.ParticleThreadPool;
+import cellularfractals.engine.World;
+import cellularfractals.scenario.Scenarios;
+
+/**
+ * Measures how {@link World#update} scales with particle count, particle mix,
+ * density and worker count.
+ *
+ * Every combination of the swept parameters gets a freshly populated world
+ * (same seed), a warmup, and a measured run bounded by a step count and a
+ * time budget. Results are written as CSV and JSON.
+ *
+ * Usage:
+ * <pre>
+ *   ScalabilityBenchmark [--counts 1000,10000,100000,1000000]
+ *                        [--mixes gravity-field,basic,gravity,magnetic,ghost]
+ *                        [--densities 0.2] [--workers 1,2,4,...]
+ *                        [--warmup 10] [--steps 100] [--max-seconds 30]
+ *                        [--dt 0.016] [--cell 10] [--seed 42] [--out bench-results]
+ * </pre>
+ * Density is particles per square world unit; the world is sized so that
+ * count / (width * height) equals it. The GUI's starting scene is 0.2.
+ */
+public class ScalabilityBenchmark {
+    private int[] counts = {1_000, 10_000, 100_000, 1_000_000};
+    private String[] mixes = {"gravity-field", "basic", "gravity", "magnetic", "ghost"};
+    private double[] densities = {0.2};
+    private int[] workers = defaultWorkerCounts();
+    private int warmupSteps = 10;
+    private int measuredSteps = 100;
+    private double maxSeconds = 30;
+    private double deltaTime = 0.016;
+    private double cellSize = 10;
+    private long seed = 42;
+    private String out = "bench-results";
+
+    /**
+     * One measured configuration.
+     */
+    static class Result {
+        String mix;
+        int particles;
+        double density;
+        int workers;
+        int steps;
+        double seconds;
+        double stepsPerSecond;
+        double particleStepsPerSecond;
+        double p50Millis;
+        double p99Millis;
+        double speedup;
+        double efficiency;
+    }
+
+    public static void main(String[] args) throws IOException {
+        ScalabilityBenchmark benchmark = new ScalabilityBenchmark();
+        try {
+            benchmark.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        try {
+            List<Result> results = benchmark.runAll();
+            benchmark.writeReports(results);
+        } finally {
+            ParticleThreadPool.shutdown();
+        }
+    }
+
+    /**
+     * Powers of two up to the number of available processors, plus the
+     * processor count itself.
+     */
+    static int[] defaultWorkerCounts() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<>();
+        for (int w = 1; w < cpus; w *= 2) {
+            counts.add(w);
+        }
+        counts.add(cpus);
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--counts": counts = parseInts(value); break;
+                case "--mixes": mixes = value.split(","); break;
+                case "--densities": densities = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray(); break;
+                case "--workers": workers = parseInts(value); break;
+                case "--warmup": warmupSteps = Integer.parseInt(value); break;
+                case "--steps": measuredSteps = Integer.parseInt(value); break;
+                case "--max-seconds": maxSeconds = Double.parseDouble(value); break;
+                case "--dt": deltaTime = Double.parseDouble(value); break;
+                case "--cell": cellSize = Double.parseDouble(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--out": out = value; break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        for (String mix : mixes) {
+            Scenarios.get(mix);
+        }
+    }
+
+    private static int[] parseInts(String value) {
+        return Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    List<Result> runAll() {
+        List<Result> results = new ArrayList<>();
+        for (String mix : mixes) {
+            for (double density : densities) {
+                for (int count : counts) {
+                    Map<Integer, Result> byWorkers = new HashMap<>();
+                    for (int w : workers) {
+                        Result result = runOne(mix, count, density, w);
+                        byWorkers.put(w, result);
+                        results.add(result);
+                        System.out.printf(Locale.ROOT,
+                            "%-14s n=%-8d density=%-5.2f workers=%-3d %8.1f steps/s  p50 %8.2f ms  p99 %8.2f ms%n",
+                            mix, result.particles, density, w, result.stepsPerSecond,
+                            result.p50Millis, result.p99Millis);
+                    }
+                    fillSpeedup(byWorkers);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Speedup is relative to the smallest worker count measured for the same
+     * workload, scaled so that a perfect linear speedup gives efficiency 1.
+     */
+    private static void fillSpeedup(Map<Integer, Result> byWorkers) {
+        int baseWorkers = byWorkers.keySet().stream().min(Integer::compare).orElse(1);
+        Result base = byWorkers.get(baseWorkers);
+        for (Result r : byWorkers.values()) {
+            r.speedup = r.stepsPerSecond / base.stepsPerSecond;
+            r.efficiency = r.speedup * baseWorkers / r.workers;
+        }
+    }
+
+    private Result runOne(String mix, int count, double density, int workerCount) {
+        double side = Math.sqrt(count / density);
+        World world = new World(side, side, cellSize);
+        ExecutorService executor = workerCount > 1 ? Executors.newFixedThreadPool(workerCount) : null;
+        try {
+            world.setExecutor(executor, workerCount);
+            Scenarios.get(mix).populate(world, count, new Random(seed));
+
+            for (int i = 0; i < warmupSteps; i++) {
+                world.update(deltaTime);
+            }
+
+            long[] stepNanos = new long[measuredSteps];
+            long particleSteps = 0;
+            long budget = (long) (maxSeconds * 1e9);
+            int steps = 0;
+            long start = System.nanoTime();
+            while (steps < measuredSteps && System.nanoTime() - start < budget) {
+                particleSteps += world.getParticleCount();
+                long stepStart = System.nanoTime();
+                world.update(deltaTime);
+                stepNanos[steps++] = System.nanoTime() - stepStart;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long[] measured = Arrays.copyOf(stepNanos, steps);
+            Arrays.sort(measured);
+
+            Result result = new Result();
+            result.mix = mix;
+            result.particles = count;
+            result.density = density;
+            result.workers = workerCount;
+            result.steps = steps;
+            result.seconds = elapsed / 1e9;
+            result.stepsPerSecond = steps / result.seconds;
+            result.particleStepsPerSecond = particleSteps / result.seconds;
+            result.p50Millis = percentile(measured, 0.50) / 1e6;
+            result.p99Millis = percentile(measured, 0.99) / 1e6;
+            return result;
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Nearest-rank percentile of a sorted array.
+     */
+    static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+
+    void writeReports(List<Result> results) throws IOException {
+        Path csv = Paths.get(out + ".csv");
+        Path json = Paths.get(out + ".json");
+
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(csv))) {
+            w.println("mix,particles,density,workers,steps,seconds,steps_per_s,particle_steps_per_s,"
+                + "p50_ms,p99_ms,speedup,efficiency");
+            for (Result r : results) {
+                w.printf(Locale.ROOT, "%s,%d,%.4f,%d,%d,%.4f,%.3f,%.1f,%.4f,%.4f,%.3f,%.3f%n",
+                    r.mix, r.particles, r.density, r.workers, r.steps, r.seconds, r.stepsPerSecond,
+                    r.particleStepsPerSecond, r.p50Millis, r.p99Millis, r.speedup, r.efficiency);
+            }
+        }
+
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(json))) {
+            w.println("{");
+            w.printf(Locale.ROOT, "  \"availableProcessors\": %d,%n", Runtime.getRuntime().availableProcessors());
+            w.printf(Locale.ROOT, "  \"warmupSteps\": %d,%n", warmupSteps);
+            w.printf(Locale.ROOT, "  \"deltaTime\": %s,%n", deltaTime);
+            w.printf(Locale.ROOT, "  \"cellSize\": %s,%n", cellSize);
+            w.printf(Locale.ROOT, "  \"seed\": %d,%n", seed);
+            w.println("  \"results\": [");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                w.printf(Locale.ROOT,
+                    "    {\"mix\": \"%s\", \"particles\": %d, \"density\": %.4f, \"workers\": %d, \"steps\": %d, "
+                        + "\"seconds\": %.4f, \"stepsPerSecond\": %.3f, \"particleStepsPerSecond\": %.1f, "
+                        + "\"p50Millis\": %.4f, \"p99Millis\": %.4f, \"speedup\": %.3f, \"efficiency\": %.3f}%s%n",
+                    r.mix, r.particles, r.density, r.workers, r.steps, r.seconds, r.stepsPerSecond,
+                    r.particleStepsPerSecond, r.p50Millis, r.p99Millis, r.speedup, r.efficiency,
+                    i == results.size() - 1 ? "" : ",");
+            }
+            w.println("  ]");
+            w.println("}");
+        }
+
+        System.out.println("Wrote " + csv + " and " + json);
+    }
+}
@@ -0,0 +1,160 @@
+package cellularfractals.engine;
+
+import java.util.Arrays;
+
+import cellularfractals.particles.Particle;
+
+/**
+ * Counting-sorts particles into a dense grid of square cells covering the
+ * world, for passes that only look at a cell and its neighbors.
+ *
+ * A caller puts the particles it wants binned into {@link #candidates}, then
+ * calls {@link #bin}. Afterwards the particles of cell c are
+ * {@link #sorted()}[cellStart[c] .. cellStart[c + 1]), with their positions at
+ * the same indices of {@link #xs()} and {@link #ys()}, so passes over a cell
+ * walk memory sequentially. Callers copy any other per-particle attributes
+ * they need into their own arrays in the same order.
+ *
+ * Cells are as wide as the caller asks, but are doubled until there are at
+ * most {@link #MAX_CELLS_PER_PARTICLE} per particle, so sparse worlds stay
+ * cheap. Arrays only grow, so rebinning every step stops allocating once
+ * the population settles.
+ */
+final class CellBinning {
+    // Never use more cells than this many per particle, so sparse worlds stay cheap
+    static final int MAX_CELLS_PER_PARTICLE = 4;
+
+    private final double width;
+    private final double height;
+
+    private double cellSize;
+    private int columns;
+    private int rows;
+    private int count;
+
+    private int[] cellStart = new int[1];
+    private int[] cursor = new int[0];
+    private int[] cellOf = new int[0];
+    private Particle[] candidates = new Particle[0];
+    private Particle[] sorted = new Particle[0];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+
+    CellBinning(double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Gets the array the caller fills with the particles to bin, from index 0.
+     * @param capacity Most particles the caller will put in
+     */
+    Particle[] candidates(int capacity) {
+        if (candidates.length < capacity) {
+            int grown = Math.max(capacity, candidates.length * 3 / 2);
+            cellOf = new int[grown];
+            candidates = new Particle[grown];
+            sorted = new Particle[grown];
+            xs = new double[grown];
+            ys = new double[grown];
+        }
+        return candidates;
+    }
+
+    /**
+     * Sorts the first count candidates into cells, clearing the candidates.
+     * @param count Number of candidates filled in
+     * @param minCellSize Narrowest cell width the caller's pass needs
+     */
+    void bin(int count, double minCellSize) {
+        this.count = count;
+        cellSize = Math.max(minCellSize, 1e-9);
+        columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        long maxCells = (long) MAX_CELLS_PER_PARTICLE * count + 64;
+        while ((long) columns * rows > maxCells) {
+            cellSize *= 2;
+            columns = Math.max(1, (int) Math.ceil(width / cellSize));
+            rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        }
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+            cursor = new int[cells];
+        } else {
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+
+        // Count particles per cell, storing each particle's cell
+        for (int i = 0; i < count; i++) {
+            Particle p = candidates[i];
+            int cell = row(p.getY()) * columns + column(p.getX());
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        // Scatter into cell order
+        System.arraycopy(cellStart, 0, cursor, 0, cells);
+        for (int i = 0; i < count; i++) {
+            int slot = cursor[cellOf[i]]++;
+            Particle p = candidates[i];
+            candidates[i] = null;
+            sorted[slot] = p;
+            xs[slot] = p.getX();
+            ys[slot] = p.getY();
+        }
+    }
+
+    /**
+     * Drops the first count candidates without binning them.
+     */
+    void clearCandidates(int count) {
+        Arrays.fill(candidates, 0, count, null);
+        this.count = 0;
+    }
+
+    double cellSize() {
+        return cellSize;
+    }
+
+    int columns() {
+        return columns;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /** Gets the number of particles binned by the last {@link #bin}. */
+    int size() {
+        return count;
+    }
+
+    /** Gets the start of each cell's particles; the array has one more entry than cells. */
+    int[] cellStart() {
+        return cellStart;
+    }
+
+    Particle[] sorted() {
+        return sorted;
+    }
+
+    double[] xs() {
+        return xs;
+    }
+
+    double[] ys() {
+        return ys;
+    }
+
+    int column(double x) {
+        return Math.min(columns - 1, Math.max(0, (int) (x / cellSize)));
+    }
+
+    int row(double y) {
+        return Math.min(rows - 1, Math.max(0, (int) (y / cellSize)));
+    }
+}
@@ -0,0 +1,170 @@
+package cellularfractals.engine;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import cellularfractals.particles.CollisionLayers;
+import cellularfractals.particles.Particle;
+
+/**
+ * Finds every pair of particles close enough to touch, each pair exactly once.
+ *
+ * Particles are counting-sorted by a {@link CellBinning} into a dense grid
+ * whose cells are as wide as the largest possible contact distance (twice
+ * the largest radius), so any touching pair lies in the same cell or in
+ * adjacent ones. Each cell is then
+ * visited once and paired with itself and with half of its eight neighbors
+ * (east, south-west, south, south-east); the other half is covered when
+ * those neighbors are visited. Positions and radii are copied into flat
+ * arrays in cell order, so the distance tests walk memory sequentially.
+ *
+ * Pairs are also filtered by collision layer: each particle's layer bit and
+ * mask are copied alongside its position, so a pair whose layers do not
+ * collide costs one mask test and never reaches the handler.
+ *
+ * The grid is rebuilt from scratch on each {@link #build} call, which is
+ * cheap (two linear passes) and avoids tracking particles between cells.
+ */
+final class CellPairBroadphase {
+    /**
+     * Receives candidate pairs that are within contact distance.
+     */
+    @FunctionalInterface
+    interface PairHandler {
+        void handle(Particle a, Particle b);
+    }
+
+    private final CellBinning binning;
+
+    // The binning's layout and arrays as of the last build
+    private double cellSize;
+    private int columns;
+    private int rows;
+    private int[] cellStart;
+    private Particle[] sorted;
+    private double[] xs;
+    private double[] ys;
+
+    private double[] radii = new double[0];
+    private int[] layerBits = new int[0];
+    private int[] masks = new int[0];
+
+    CellPairBroadphase(double width, double height) {
+        this.binning = new CellBinning(width, height);
+    }
+
+    /**
+     * Bins the particles that collide with others.
+     * @param particles Candidates; those that cannot collide are skipped
+     */
+    void build(List<Particle> particles) {
+        int n = particles.size();
+        Particle[] candidates = binning.candidates(n);
+        double maxRadius = 0;
+        int colliding = 0;
+        for (int i = 0; i < n; i++) {
+            Particle p = particles.get(i);
+            if (p.canCollideWithParticles()) {
+                maxRadius = Math.max(maxRadius, p.getRadius());
+                candidates[colliding++] = p;
+            }
+        }
+        binning.bin(colliding, 2 * maxRadius);
+
+        cellSize = binning.cellSize();
+        columns = binning.columns();
+        rows = binning.rows();
+        cellStart = binning.cellStart();
+        sorted = binning.sorted();
+        xs = binning.xs();
+        ys = binning.ys();
+        if (radii.length < colliding) {
+            int capacity = Math.max(colliding, radii.length * 3 / 2);
+            radii = new double[capacity];
+            layerBits = new int[capacity];
+            masks = new int[capacity];
+        }
+        for (int slot = 0; slot < colliding; slot++) {
+            Particle p = sorted[slot];
+            radii[slot] = p.getRadius();
+            layerBits[slot] = CollisionLayers.bit(p.getCollisionLayer());
+            masks[slot] = p.getCollisionMask();
+        }
+    }
+
+    /**
+     * Calls the handler for every pair of binned particles whose circles
+     * touch and whose layers collide. Rows of cells are split between workers; a pair may involve
+     * particles handled by two workers at once, so the handler must lock.
+     */
+    void forEachTouchingPair(ExecutorService executor, int workerCount, PairHandler handler) {
+        Parallel.forRange(executor, workerCount, rows, (firstRow, lastRow) -> {
+            for (int cy = firstRow; cy < lastRow; cy++) {
+                for (int cx = 0; cx < columns; cx++) {
+                    int cell = cy * columns + cx;
+                    int start = cellStart[cell];
+                    int end = cellStart[cell + 1];
+                    if (start == end) {
+                        continue;
+                    }
+                    // Pairs within the cell
+                    for (int i = start; i < end; i++) {
+                        for (int j = i + 1; j < end; j++) {
+                            touch(i, j, handler);
+                        }
+                    }
+                    // Half of the neighboring cells
+                    if (cx + 1 < columns) {
+                        pairCells(start, end, cell + 1, handler);
+                    }
+                    if (cy + 1 < rows) {
+                        int below = cell + columns;
+                        if (cx > 0) {
+                            pairCells(start, end, below - 1, handler);
+                        }
+                        pairCells(start, end, below, handler);
+                        if (cx + 1 < columns) {
+                            pairCells(start, end, below + 1, handler);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the largest contact distance the current binning supports.
+     */
+    double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Gets the number of particles binned by the last build.
+     */
+    int size() {
+        return binning.size();
+    }
+
+    private void pairCells(int start, int end, int other, PairHandler handler) {
+        int otherStart = cellStart[other];
+        int otherEnd = cellStart[other + 1];
+        for (int i = start; i < end; i++) {
+            for (int j = otherStart; j < otherEnd; j++) {
+                touch(i, j, handler);
+            }
+        }
+    }
+
+    private void touch(int i, int j, PairHandler handler) {
+        if ((masks[i] & layerBits[j]) == 0 || (masks[j] & layerBits[i]) == 0) {
+            return;
+        }
+        double dx = xs[j] - xs[i];
+        double dy = ys[j] - ys[i];
+        double reach = radii[i] + radii[j];
+        if (dx * dx + dy * dy <= reach * reach) {
+            handler.handle(sorted[i], sorted[j]);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package cellularfractals.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cellularfractals.particles.Particle;
+
+/**
+ * The contacts found by the collision phase during one update, in flat
+ * arrays indexed 0..count-1.
+ *
+ * Each contact is a pair of touching particles A and B with the unit normal
+ * pointing from A to B, the normal impulse the collision applied (0 for
+ * pairs that were separating or slow enough to only be pushed apart) and
+ * their relative speed. A pair that stays in contact is recorded once per
+ * substep it touches in.
+ *
+ * The world fills the buffer from its collision workers without locking:
+ * each contact reserves a slot with one atomic increment. Contacts beyond
+ * the current capacity go to a small overflow area and are folded in when
+ * the phase ends, after which the arrays are large enough for the next
+ * update. Arrays only ever grow, as in {@link WorldFrame}.
+ */
+public class ContactBuffer {
+    public long step;
+    public int count;
+    public int[] idA = new int[0];
+    public int[] idB = new int[0];
+    public double[] normalX = new double[0];
+    public double[] normalY = new double[0];
+    public double[] impulse = new double[0];
+    public double[] relativeSpeed = new double[0];
+    private Particle[] particleA = new Particle[0];
+    private Particle[] particleB = new Particle[0];
+
+    private final AtomicInteger cursor = new AtomicInteger();
+    private int capacity;
+    private ContactBuffer overflow;
+
+    /**
+     * Gets the first particle of a contact.
+     * @param index Contact index, below {@link #count}
+     */
+    public Particle getParticleA(int index) {
+        return particleA[index];
+    }
+
+    /**
+     * Gets the second particle of a contact; the normal points towards it.
+     * @param index Contact index, below {@link #count}
+     */
+    public Particle getParticleB(int index) {
+        return particleB[index];
+    }
+
+    /**
+     * Gets the particle a contact pairs with the given one.
+     * @param index Contact index, below {@link #count}
+     * @param self One of the contact's particles
+     */
+    public Particle getOther(int index, Particle self) {
+        return particleA[index] == self ? particleB[index] : particleA[index];
+    }
+
+    /**
+     * Makes sure the arrays can hold at least the given number of contacts,
+     * keeping existing contents.
+     * @param required Required capacity
+     */
+    public void ensureCapacity(int required) {
+        if (idA.length >= required) {
+            return;
+        }
+        int newCapacity = Math.max(required, idA.length + (idA.length >> 1) + 16);
+        idA = Arrays.copyOf(idA, newCapacity);
+        idB = Arrays.copyOf(idB, newCapacity);
+        normalX = Arrays.copyOf(normalX, newCapacity);
+        normalY = Arrays.copyOf(normalY, newCapacity);
+        impulse = Arrays.copyOf(impulse, newCapacity);
+        relativeSpeed = Arrays.copyOf(relativeSpeed, newCapacity);
+        particleA = Arrays.copyOf(particleA, newCapacity);
+        particleB = Arrays.copyOf(particleB, newCapacity);
+    }
+
+    /**
+     * Empties the buffer before an update's collision phase.
+     */
+    void begin(long step) {
+        Arrays.fill(particleA, 0, count, null);
+        Arrays.fill(particleB, 0, count, null);
+        this.step = step;
+        count = 0;
+        capacity = idA.length;
+        cursor.set(0);
+        if (overflow != null) {
+            overflow.count = 0;
+        }
+    }
+
+    /**
+     * Records a contact. Safe to call from several collision workers at once.
+     */
+    void add(Particle a, Particle b, double nx, double ny, double impulse, double relativeSpeed) {
+        int slot = cursor.getAndIncrement();
+        if (slot < capacity) {
+            set(slot, a, b, nx, ny, impulse, relativeSpeed);
+            return;
+        }
+        synchronized (this) {
+            if (overflow == null) {
+                overflow = new ContactBuffer();
+            }
+            overflow.ensureCapacity(overflow.count + 1);
+            overflow.set(overflow.count++, a, b, nx, ny, impulse, relativeSpeed);
+        }
+    }
+
+    /**
+     * Ends the collision phase, folding overflowed contacts into the arrays
+     * and setting {@link #count}. Called once the workers have finished.
+     */
+    void end() {
+        int direct = Math.min(cursor.get(), capacity);
+        int extra = overflow == null ? 0 : overflow.count;
+        count = direct + extra;
+        if (extra > 0) {
+            ensureCapacity(count);
+            System.arraycopy(overflow.idA, 0, idA, direct, extra);
+            System.arraycopy(overflow.idB, 0, idB, direct, extra);
+            System.arraycopy(overflow.normalX, 0, normalX, direct, extra);
+            System.arraycopy(overflow.normalY, 0, normalY, direct, extra);
+            System.arraycopy(overflow.impulse, 0, impulse, direct, extra);
+            System.arraycopy(overflow.relativeSpeed, 0, relativeSpeed, direct, extra);
+            System.arraycopy(overflow.particleA, 0, particleA, direct, extra);
+            System.arraycopy(overflow.particleB, 0, particleB, direct, extra);
+            Arrays.fill(overflow.particleA, 0, extra, null);
+            Arrays.fill(overflow.particleB, 0, extra, null);
+            overflow.count = 0;
+        }
+    }
+
+    private void set(int slot, Particle a, Particle b, double nx, double ny, double impulse, double relativeSpeed) {
+        idA[slot] = a.getId();
+        idB[slot] = b.getId();
+        normalX[slot] = nx;
+        normalY[slot] = ny;
+        this.impulse[slot] = impulse;
+        this.relativeSpeed[slot] = relativeSpeed;
+        particleA[slot] = a;
+        particleB[slot] = b;
+    }
+}
@@ -0,0 +1,16 @@
+package cellularfractals.engine;
+
+/**
+ * Notified by {@link World#update} with the contacts its collision phase
+ * found, on the thread that ran the update, before the step listeners.
+ * The buffer is reused by the next update, so copy anything kept longer.
+ */
+@FunctionalInterface
+public interface ContactListener {
+    /**
+     * Called after the collision phase of an update.
+     * @param world The world that was updated
+     * @param contacts This update's contacts
+     */
+    void onContacts(World world, ContactBuffer contacts);
+}
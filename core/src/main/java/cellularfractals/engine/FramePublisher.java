@@ -0,0 +1,128 @@
+package cellularfractals.engine;
+
+/**
+ * Hands the latest state of a world from the thread that updates it to one
+ * reader, such as a render thread, without either waiting for the other.
+ *
+ * Registered as a {@link StepListener}, the publisher captures the world
+ * into a back frame after a step and swaps it with a middle frame; the
+ * reader swaps the middle frame with its own front frame when a newer one
+ * is there. Three frames are reused forever, so publishing does not
+ * allocate once they have grown to the population.
+ *
+ * By default a step is only captured when the reader has taken the previous
+ * frame, so a renderer slower than the simulation does not cost a capture
+ * per step it never shows. The captured region can be limited to what the
+ * reader will draw, see {@link #setRegion}.
+ */
+public class FramePublisher implements StepListener {
+    private final Object captureLock = new Object();
+    private final Object swapLock = new Object();
+    private WorldFrame back = new WorldFrame();
+    private WorldFrame middle = new WorldFrame();
+    private WorldFrame front = new WorldFrame();
+    private boolean fresh = false;
+    private volatile boolean captureEveryStep = false;
+    private volatile double[] region; // minX, minY, maxX, maxY, or null for the whole world
+    private volatile long published;
+    private volatile long taken;
+
+    /**
+     * Captures every step instead of only when the previous frame was taken.
+     * @param captureEveryStep Whether to capture every step
+     */
+    public void setCaptureEveryStep(boolean captureEveryStep) {
+        this.captureEveryStep = captureEveryStep;
+    }
+
+    /**
+     * Limits capture to the particles centered in a rectangle.
+     * @param minX Left edge
+     * @param minY Top edge
+     * @param maxX Right edge
+     * @param maxY Bottom edge
+     */
+    public void setRegion(double minX, double minY, double maxX, double maxY) {
+        region = new double[] {minX, minY, maxX, maxY};
+    }
+
+    /**
+     * Captures the whole world again.
+     */
+    public void clearRegion() {
+        region = null;
+    }
+
+    @Override
+    public void onStep(World world, long step) {
+        publish(world);
+    }
+
+    /**
+     * Captures the world and makes it the latest frame. Called after each
+     * step when registered as a step listener.
+     * @param world The world to capture
+     */
+    public void publish(World world) {
+        if (!captureEveryStep) {
+            synchronized (swapLock) {
+                if (fresh) {
+                    return; // The reader has not taken the last one yet
+                }
+            }
+        }
+        synchronized (captureLock) {
+            double[] bounds = region;
+            if (bounds == null) {
+                world.captureFrame(back);
+            } else {
+                world.captureFrame(back, bounds[0], bounds[1], bounds[2], bounds[3]);
+            }
+            synchronized (swapLock) {
+                WorldFrame filled = back;
+                back = middle;
+                middle = filled;
+                fresh = true;
+            }
+        }
+        published++;
+    }
+
+    /**
+     * Gets the most recently published frame. The frame belongs to the
+     * reader until its next call; only one thread may read.
+     * @return The latest frame, the same one as last time if nothing newer
+     *         was published, or an empty frame before the first publish
+     */
+    public WorldFrame latest() {
+        synchronized (swapLock) {
+            if (fresh) {
+                WorldFrame newest = middle;
+                middle = front;
+                front = newest;
+                fresh = false;
+                taken++;
+            }
+            return front;
+        }
+    }
+
+    /**
+     * Checks whether a frame newer than the reader's is waiting.
+     */
+    public boolean hasNewFrame() {
+        synchronized (swapLock) {
+            return fresh;
+        }
+    }
+
+    /** Gets the number of frames published. */
+    public long getPublishedCount() {
+        return published;
+    }
+
+    /** Gets the number of published frames the reader took. */
+    public long getTakenCount() {
+        return taken;
+    }
+}
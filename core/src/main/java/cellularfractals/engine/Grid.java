@@ -0,0 +1,591 @@
+package cellularfractals.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import cellularfractals.particles.CollisionLayers;
+import cellularfractals.particles.Particle;
+
+/**
+ * Uniform grid of cells for finding particles near a position.
+ *
+ * Each cell keeps a separate bucket per {@link CollisionLayers collision layer},
+ * so queries restricted to some layers skip the particles of the others
+ * without testing them.
+ */
+public class Grid {
+    private final double gridSize;
+    private final double cellSize;
+    private final ConcurrentHashMap<Point, Cell> cells;
+
+    /**
+     * Creates a grid for spatial partitioning of particles.
+     * @param gridSize The total size of the simulation space
+     * @param cellSize The size of each cell in the grid
+     */
+    public Grid(double gridSize, double cellSize) {
+        this.gridSize = gridSize;
+        this.cellSize = cellSize;
+        this.cells = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds a particle to the grid.
+     * @param particle The particle to add
+     */
+    public void addParticle(Particle particle) {
+        Cell cell = cells.computeIfAbsent(getCellForPosition(particle.getX(), particle.getY()), k -> new Cell());
+        synchronized (cell) {
+            cell.add(particle);
+        }
+    }
+
+    /**
+     * Removes a particle from the grid.
+     * @param particle The particle to remove
+     */
+    public void removeParticle(Particle particle) {
+        Cell cell = cells.get(getCellForPosition(particle.getX(), particle.getY()));
+        if (cell != null) {
+            synchronized (cell) {
+                cell.remove(particle);
+            }
+        }
+    }
+
+    /**
+     * Updates a particle's position in the grid.
+     * @param particle The particle that moved
+     * @param oldX Previous X position
+     * @param oldY Previous Y position
+     */
+    public void updateParticlePosition(Particle particle, double oldX, double oldY) {
+        Point oldCell = getCellForPosition(oldX, oldY);
+        Point newCell = getCellForPosition(particle.getX(), particle.getY());
+
+        if (!oldCell.equals(newCell)) {
+            Cell from = cells.get(oldCell);
+            if (from != null) {
+                synchronized (from) {
+                    from.remove(particle);
+                }
+            }
+
+            Cell to = cells.computeIfAbsent(newCell, k -> new Cell());
+            synchronized (to) {
+                to.add(particle);
+            }
+        }
+    }
+
+    /**
+     * Gets all particles within the given radius of a position.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param radius The search radius
+     * @return List of particles within radius
+     */
+    public List<Particle> getParticlesInRange(double x, double y, double radius) {
+        return getParticlesInRange(x, y, radius, CollisionLayers.ALL);
+    }
+
+    /**
+     * Gets the particles in the given layers within the given radius of a position.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param radius The search radius
+     * @param layerMask Layers to search, as {@link CollisionLayers} bits
+     * @return List of particles within radius
+     */
+    public List<Particle> getParticlesInRange(double x, double y, double radius, int layerMask) {
+        List<Particle> result = new ArrayList<>();
+        if ((layerMask & CollisionLayers.ALL) == 0) {
+            return result;
+        }
+        double radiusSquared = radius * radius;
+
+        // Get cells that could contain particles within radius
+        int cellRadius = (int) Math.ceil(radius / cellSize);
+        Point centerCell = getCellForPosition(x, y);
+
+        for (int i = -cellRadius; i <= cellRadius; i++) {
+            for (int j = -cellRadius; j <= cellRadius; j++) {
+                Point cell = new Point(centerCell.x + i, centerCell.y + j);
+                Cell particlesInCell = cells.get(cell);
+
+                if (particlesInCell != null) {
+                    synchronized (particlesInCell) {
+                        for (int layer = 0; layer < CollisionLayers.COUNT; layer++) {
+                            List<Particle> bucket = particlesInCell.layers[layer];
+                            if (bucket == null || !CollisionLayers.contains(layerMask, layer)) {
+                                continue;
+                            }
+                            for (Particle particle : bucket) {
+                                double dx = particle.getX() - x;
+                                double dy = particle.getY() - y;
+                                if (dx * dx + dy * dy <= radiusSquared) {
+                                    result.add(particle);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks whether any particle in the given layers, other than the
+     * excluded one, is within the radius. Stops at the first one found.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param radius The search radius
+     * @param layerMask Layers to search, as {@link CollisionLayers} bits
+     * @param exclude A particle to ignore, usually the one asking, or null
+     * @return true if some particle is within radius
+     */
+    public boolean anyInRange(double x, double y, double radius, int layerMask, Particle exclude) {
+        return countInRange(x, y, radius, layerMask, exclude, 1) > 0;
+    }
+
+    /**
+     * Counts the particles in the given layers within the radius, stopping
+     * once the count reaches the limit.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param radius The search radius
+     * @param layerMask Layers to search, as {@link CollisionLayers} bits
+     * @param exclude A particle not to count, or null
+     * @param limit Count at which to stop looking
+     * @return Number of particles within radius, at most limit
+     */
+    public int countInRange(double x, double y, double radius, int layerMask, Particle exclude, int limit) {
+        if ((layerMask & CollisionLayers.ALL) == 0 || limit <= 0) {
+            return 0;
+        }
+        double radiusSquared = radius * radius;
+        int cellRadius = (int) Math.ceil(radius / cellSize);
+        Point centerCell = getCellForPosition(x, y);
+        int count = 0;
+
+        for (int i = -cellRadius; i <= cellRadius; i++) {
+            for (int j = -cellRadius; j <= cellRadius; j++) {
+                Cell cell = cells.get(new Point(centerCell.x + i, centerCell.y + j));
+                if (cell == null) {
+                    continue;
+                }
+                synchronized (cell) {
+                    for (int layer = 0; layer < CollisionLayers.COUNT; layer++) {
+                        List<Particle> bucket = cell.layers[layer];
+                        if (bucket == null || !CollisionLayers.contains(layerMask, layer)) {
+                            continue;
+                        }
+                        for (int k = 0, n = bucket.size(); k < n; k++) {
+                            Particle particle = bucket.get(k);
+                            double dx = particle.getX() - x;
+                            double dy = particle.getY() - y;
+                            if (dx * dx + dy * dy <= radiusSquared && particle != exclude && ++count >= limit) {
+                                return count;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the particle in the given layers closest to a position.
+     * Cells are searched in rings around the position, stopping as soon as
+     * no unsearched cell can hold anything closer.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param maxRadius Do not look further than this
+     * @param layerMask Layers to search, as {@link CollisionLayers} bits
+     * @param exclude A particle to ignore, or null
+     * @return The nearest particle, or null if none is within maxRadius
+     */
+    public Particle nearest(double x, double y, double maxRadius, int layerMask, Particle exclude) {
+        List<Particle> found = kNearest(x, y, 1, maxRadius, layerMask, exclude);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Finds the k particles in the given layers closest to a position,
+     * keeping only the best k seen so far in a bounded max-heap.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param k Number of particles wanted
+     * @param maxRadius Do not look further than this
+     * @param layerMask Layers to search, as {@link CollisionLayers} bits
+     * @param exclude A particle to ignore, or null
+     * @return Up to k particles, nearest first
+     */
+    public List<Particle> kNearest(double x, double y, int k, double maxRadius, int layerMask, Particle exclude) {
+        if (k <= 0 || (layerMask & CollisionLayers.ALL) == 0) {
+            return new ArrayList<>(0);
+        }
+        BoundedHeap heap = new BoundedHeap(k);
+        double maxSquared = maxRadius * maxRadius;
+        Point centerCell = getCellForPosition(x, y);
+        // Never walk further out than the radius or the grid itself
+        int maxRing = (int) Math.min(Math.ceil(maxRadius / cellSize), Math.ceil(gridSize / cellSize) + 1);
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int i = -ring; i <= ring; i++) {
+                // Only the cells on the ring's border; the inside was searched already
+                int step = (i == -ring || i == ring) ? 1 : 2 * ring;
+                for (int j = -ring; j <= ring; j += Math.max(1, step)) {
+                    Cell cell = cells.get(new Point(centerCell.x + i, centerCell.y + j));
+                    if (cell == null) {
+                        continue;
+                    }
+                    synchronized (cell) {
+                        for (int layer = 0; layer < CollisionLayers.COUNT; layer++) {
+                            List<Particle> bucket = cell.layers[layer];
+                            if (bucket == null || !CollisionLayers.contains(layerMask, layer)) {
+                                continue;
+                            }
+                            for (int b = 0, n = bucket.size(); b < n; b++) {
+                                Particle particle = bucket.get(b);
+                                double dx = particle.getX() - x;
+                                double dy = particle.getY() - y;
+                                double d2 = dx * dx + dy * dy;
+                                if (d2 <= maxSquared && particle != exclude) {
+                                    heap.offer(particle, d2);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            if (heap.isFull()) {
+                // Anything outside this ring is at least this far away
+                double reach = Math.min(
+                    Math.min(x - (centerCell.x - ring) * cellSize, (centerCell.x + ring + 1) * cellSize - x),
+                    Math.min(y - (centerCell.y - ring) * cellSize, (centerCell.y + ring + 1) * cellSize - y));
+                if (heap.worst() <= reach * reach) {
+                    break;
+                }
+            }
+        }
+        return heap.drainNearestFirst();
+    }
+
+    /**
+     * Gets the particles whose centers lie in an axis-aligned rectangle.
+     * @param minX Left edge
+     * @param minY Top edge
+     * @param maxX Right edge
+     * @param maxY Bottom edge
+     * @return List of particles in the rectangle
+     */
+    public List<Particle> getParticlesInRect(double minX, double minY, double maxX, double maxY) {
+        List<Particle> result = new ArrayList<>();
+        forEachInRect(minX, minY, maxX, maxY, result::add);
+        return result;
+    }
+
+    /**
+     * Calls the action for every particle whose center lies in an
+     * axis-aligned rectangle, visiting only the cells the rectangle overlaps
+     * (clamped to the grid). The action runs while the particle's cell is
+     * locked, so it must be quick and must not change the grid.
+     * @param minX Left edge
+     * @param minY Top edge
+     * @param maxX Right edge
+     * @param maxY Bottom edge
+     * @param action Called once per particle
+     */
+    public void forEachInRect(double minX, double minY, double maxX, double maxY, Consumer<Particle> action) {
+        int lastCell = (int) Math.ceil(gridSize / cellSize);
+        int firstColumn = Math.max(0, (int) Math.floor(minX / cellSize));
+        int firstRow = Math.max(0, (int) Math.floor(minY / cellSize));
+        int lastColumn = Math.min(lastCell, (int) Math.floor(maxX / cellSize));
+        int lastRow = Math.min(lastCell, (int) Math.floor(maxY / cellSize));
+
+        for (int cx = firstColumn; cx <= lastColumn; cx++) {
+            for (int cy = firstRow; cy <= lastRow; cy++) {
+                Cell cell = cells.get(new Point(cx, cy));
+                if (cell == null) {
+                    continue;
+                }
+                // Cells fully inside the rectangle need no per-particle test
+                boolean inside = cx > firstColumn && cx < lastColumn && cy > firstRow && cy < lastRow;
+                synchronized (cell) {
+                    for (List<Particle> bucket : cell.layers) {
+                        if (bucket == null) {
+                            continue;
+                        }
+                        for (int k = 0, n = bucket.size(); k < n; k++) {
+                            Particle particle = bucket.get(k);
+                            if (inside || (particle.getX() >= minX && particle.getX() <= maxX
+                                    && particle.getY() >= minY && particle.getY() <= maxY)) {
+                                action.accept(particle);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets how many particles are in the cell containing a position,
+     * from a count kept up to date as particles move.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return Particles in that cell
+     */
+    public int getCellOccupancy(double x, double y) {
+        Cell cell = cells.get(getCellForPosition(x, y));
+        if (cell == null) {
+            return 0;
+        }
+        synchronized (cell) {
+            return cell.count;
+        }
+    }
+
+    /**
+     * Gets the number of particles per unit area in the cell containing a position.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return Particles per square world unit
+     */
+    public double getCellDensity(double x, double y) {
+        return getCellOccupancy(x, y) / (cellSize * cellSize);
+    }
+
+    /**
+     * Gets the cell coordinates for a position.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @return Point representing cell coordinates
+     */
+    private Point getCellForPosition(double x, double y) {
+        int cellX = (int) Math.floor(x / cellSize);
+        int cellY = (int) Math.floor(y / cellSize);
+        return new Point(cellX, cellY);
+    }
+
+    /**
+     * Adds many particles at once, building the cell lists in parallel.
+     * Each worker first bins a contiguous slice of the particles into its
+     * own cell map without locking; the per-worker maps are then merged
+     * with every worker owning a disjoint subset of the cells, so each
+     * existing cell is locked once per batch instead of once per particle.
+     * @param particles The particles to add
+     * @param executor Executor to run on, may be null if workerCount is 1
+     * @param workerCount Number of workers to split the work into
+     */
+    public void addAll(List<Particle> particles, ExecutorService executor, int workerCount) {
+        ConcurrentLinkedQueue<Map<Point, Cell>> binned = new ConcurrentLinkedQueue<>();
+        Parallel.forRange(executor, workerCount, particles.size(), (start, end) -> {
+            Map<Point, Cell> local = new HashMap<>();
+            for (int i = start; i < end; i++) {
+                Particle particle = particles.get(i);
+                local.computeIfAbsent(getCellForPosition(particle.getX(), particle.getY()), k -> new Cell())
+                     .add(particle);
+            }
+            binned.add(local);
+        });
+
+        List<Map<Point, Cell>> slices = new ArrayList<>(binned);
+        int shards = slices.size() <= 1 ? 1 : workerCount;
+        Parallel.forRange(executor, shards, shards, (firstShard, lastShard) -> {
+            for (int shard = firstShard; shard < lastShard; shard++) {
+                Map<Point, Cell> merged = new HashMap<>();
+                for (Map<Point, Cell> slice : slices) {
+                    for (Map.Entry<Point, Cell> entry : slice.entrySet()) {
+                        if (Math.floorMod(entry.getKey().hashCode(), shards) != shard) {
+                            continue;
+                        }
+                        Cell cell = merged.get(entry.getKey());
+                        if (cell == null) {
+                            merged.put(entry.getKey(), entry.getValue());
+                        } else {
+                            cell.addAll(entry.getValue());
+                        }
+                    }
+                }
+                for (Map.Entry<Point, Cell> entry : merged.entrySet()) {
+                    Cell existing = cells.putIfAbsent(entry.getKey(), entry.getValue());
+                    if (existing != null) {
+                        synchronized (existing) {
+                            existing.addAll(entry.getValue());
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the size of each grid cell.
+     * @return Cell size in world units
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Clears all particles from the grid.
+     */
+    public void clear() {
+        cells.clear();
+    }
+
+    /**
+     * The particles in one cell, bucketed by collision layer. Callers
+     * synchronize on the cell while reading or changing it.
+     */
+    private static final class Cell {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final List<Particle>[] layers = new List[CollisionLayers.COUNT];
+        int count;
+
+        void add(Particle particle) {
+            count++;
+            int layer = particle.getCollisionLayer();
+            List<Particle> bucket = layers[layer];
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                layers[layer] = bucket;
+            }
+            bucket.add(particle);
+        }
+
+        void remove(Particle particle) {
+            List<Particle> bucket = layers[particle.getCollisionLayer()];
+            if (bucket != null && bucket.remove(particle)) {
+                count--;
+            }
+        }
+
+        void addAll(Cell other) {
+            count += other.count;
+            for (int layer = 0; layer < CollisionLayers.COUNT; layer++) {
+                List<Particle> bucket = other.layers[layer];
+                if (bucket == null) {
+                    continue;
+                }
+                if (layers[layer] == null) {
+                    layers[layer] = new ArrayList<>(bucket);
+                } else {
+                    layers[layer].addAll(bucket);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fixed-capacity max-heap on squared distance holding the k closest
+     * particles offered so far.
+     */
+    private static final class BoundedHeap {
+        private final Particle[] particles;
+        private final double[] distances;
+        private int size;
+
+        BoundedHeap(int capacity) {
+            particles = new Particle[capacity];
+            distances = new double[capacity];
+        }
+
+        boolean isFull() {
+            return size == particles.length;
+        }
+
+        double worst() {
+            return distances[0];
+        }
+
+        void offer(Particle particle, double distanceSquared) {
+            if (size < particles.length) {
+                int i = size++;
+                // Sift up
+                while (i > 0 && distances[(i - 1) / 2] < distanceSquared) {
+                    int parent = (i - 1) / 2;
+                    particles[i] = particles[parent];
+                    distances[i] = distances[parent];
+                    i = parent;
+                }
+                particles[i] = particle;
+                distances[i] = distanceSquared;
+            } else if (distanceSquared < distances[0]) {
+                siftDown(particle, distanceSquared, size);
+            }
+        }
+
+        private void siftDown(Particle particle, double distanceSquared, int limit) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= limit) {
+                    break;
+                }
+                if (child + 1 < limit && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distanceSquared) {
+                    break;
+                }
+                particles[i] = particles[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            particles[i] = particle;
+            distances[i] = distanceSquared;
+        }
+
+        List<Particle> drainNearestFirst() {
+            Particle[] sorted = new Particle[size];
+            // Repeatedly move the farthest to the back
+            for (int n = size; n > 0; n--) {
+                sorted[n - 1] = particles[0];
+                siftDown(particles[n - 1], distances[n - 1], n - 1);
+            }
+            size = 0;
+            List<Particle> result = new ArrayList<>(sorted.length);
+            Collections.addAll(result, sorted);
+            return result;
+        }
+    }
+
+    /**
+     * Simple point class for cell coordinates.
+     */
+    private static class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Point point = (Point) o;
+            return x == point.x && y == point.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * x + y;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package cellularfractals.engine;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import cellularfractals.particles.Particle;
+
+/**
+ * Evaluates an {@link InteractionMatrix} for all typed particles in one pass.
+ *
+ * Typed particles are counting-sorted by a {@link CellBinning} into a dense
+ * grid whose cells are at least as wide as the longest law's range, and their
+ * positions and types are copied into flat arrays in cell order. Each particle then sums the forces
+ * from the particles in its own and the eight surrounding cells, looking up
+ * the law for each pair in the flat matrix. Every particle only writes its
+ * own force, so the particles can be split between workers without locking.
+ */
+final class InteractionKernel {
+    private static final double MIN_DISTANCE_SQUARED = 0.000001;
+
+    private final CellBinning binning;
+    private int[] types = new int[0];
+
+    InteractionKernel(double width, double height) {
+        this.binning = new CellBinning(width, height);
+    }
+
+    /**
+     * Adds this step's interaction force to every typed particle.
+     * @param particles Particles to consider; those without a type in the matrix are skipped
+     * @param matrix The laws to apply
+     */
+    void apply(List<Particle> particles, InteractionMatrix matrix, ExecutorService executor, int workerCount) {
+        double maxRange = matrix.getMaxRange();
+        if (maxRange <= 0 || !build(particles, matrix.getTypeCount(), maxRange)) {
+            return;
+        }
+
+        int typeCount = matrix.getTypeCount();
+        int count = binning.size();
+        int columns = binning.columns();
+        int rows = binning.rows();
+        int[] cellStart = binning.cellStart();
+        Particle[] sorted = binning.sorted();
+        double[] xs = binning.xs();
+        double[] ys = binning.ys();
+        int[] types = this.types;
+        double[] strengths = matrix.strengths();
+        double[] ranges = matrix.ranges();
+        double[] falloffs = matrix.falloffs();
+        Parallel.forRange(executor, workerCount, count, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                double x = xs[i];
+                double y = ys[i];
+                int target = types[i];
+                int cx = binning.column(x);
+                int cy = binning.row(y);
+                double fx = 0;
+                double fy = 0;
+                for (int ny = Math.max(0, cy - 1); ny <= Math.min(rows - 1, cy + 1); ny++) {
+                    for (int nx = Math.max(0, cx - 1); nx <= Math.min(columns - 1, cx + 1); nx++) {
+                        int cell = ny * columns + nx;
+                        for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+                            int law = types[j] * typeCount + target;
+                            double strength = strengths[law];
+                            if (strength == 0 || j == i) {
+                                continue;
+                            }
+                            double dx = xs[j] - x;
+                            double dy = ys[j] - y;
+                            double distanceSquared = dx * dx + dy * dy;
+                            double range = ranges[law];
+                            if (distanceSquared > range * range || distanceSquared < MIN_DISTANCE_SQUARED) {
+                                continue;
+                            }
+                            double distance = Math.sqrt(distanceSquared);
+                            double force = strength / falloff(distance, falloffs[law]);
+                            fx += force * dx / distance;
+                            fy += force * dy / distance;
+                        }
+                    }
+                }
+                if (fx != 0 || fy != 0) {
+                    sorted[i].addForce(new Force(fx, fy));
+                }
+            }
+        });
+    }
+
+    private boolean build(List<Particle> particles, int typeCount, double maxRange) {
+        int n = particles.size();
+        Particle[] candidates = binning.candidates(n);
+        int typed = 0;
+        for (int i = 0; i < n; i++) {
+            Particle p = particles.get(i);
+            int type = p.getInteractionType();
+            if (type >= 0 && type < typeCount) {
+                candidates[typed++] = p;
+            }
+        }
+        if (typed < 2) {
+            binning.clearCandidates(typed);
+            return false;
+        }
+        binning.bin(typed, maxRange);
+
+        if (types.length < typed) {
+            types = new int[Math.max(typed, types.length * 3 / 2)];
+        }
+        Particle[] sorted = binning.sorted();
+        for (int slot = 0; slot < typed; slot++) {
+            types[slot] = sorted[slot].getInteractionType();
+        }
+        return true;
+    }
+
+    private static double falloff(double distance, double exponent) {
+        if (exponent == 1) {
+            return distance;
+        } else if (exponent == 0) {
+            return 1;
+        } else if (exponent == 2) {
+            return distance * distance;
+        }
+        return Math.pow(distance, exponent);
+    }
+}
@@ -0,0 +1,166 @@
+package cellularfractals.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import cellularfractals.particles.ParticleType;
+
+/**
+ * Table of pairwise force laws between interaction types.
+ *
+ * A particle with interaction type t (see {@link cellularfractals.particles.Particle#setInteractionType})
+ * is pushed by every other typed particle of type s within range of the law
+ * (s, t) with a force of strength / distance^falloff. Positive strengths pull
+ * the particle toward the source and negative ones push it away, the same
+ * convention as {@link cellularfractals.particles.effects.GravityEffect}.
+ *
+ * All laws are evaluated together by {@link World} in a single neighbor pass,
+ * so a scene with K types costs the same per step whether it uses one law or
+ * all K*K of them. Laws may be changed between updates.
+ */
+public class InteractionMatrix {
+    private final int typeCount;
+    private final double[] strength;
+    private final double[] range;
+    private final double[] falloff;
+
+    /**
+     * Creates a matrix in which no types interact.
+     * @param typeCount Number of interaction types, K
+     */
+    public InteractionMatrix(int typeCount) {
+        if (typeCount < 1) {
+            throw new IllegalArgumentException("typeCount must be positive");
+        }
+        this.typeCount = typeCount;
+        this.strength = new double[typeCount * typeCount];
+        this.range = new double[typeCount * typeCount];
+        this.falloff = new double[typeCount * typeCount];
+        Arrays.fill(falloff, 1);
+    }
+
+    /**
+     * Sets the force particles of one type exert on particles of another.
+     * @param source Type exerting the force
+     * @param target Type the force acts on
+     * @param strength Force at unit distance; positive attracts, negative repels
+     * @param range Distance beyond which the force is zero
+     * @param falloff Exponent of distance the force is divided by (1 matches the gravity effects)
+     */
+    public void setLaw(int source, int target, double strength, double range, double falloff) {
+        int law = index(source, target);
+        if (range < 0) {
+            throw new IllegalArgumentException("range must not be negative");
+        }
+        this.strength[law] = strength;
+        this.range[law] = range;
+        this.falloff[law] = falloff;
+    }
+
+    /**
+     * Sets the law for (a, b) and (b, a) at once.
+     */
+    public void setSymmetricLaw(int a, int b, double strength, double range, double falloff) {
+        setLaw(a, b, strength, range, falloff);
+        setLaw(b, a, strength, range, falloff);
+    }
+
+    public int getTypeCount() {
+        return typeCount;
+    }
+
+    public double getStrength(int source, int target) {
+        return strength[index(source, target)];
+    }
+
+    public double getRange(int source, int target) {
+        return range[index(source, target)];
+    }
+
+    public double getFalloff(int source, int target) {
+        return falloff[index(source, target)];
+    }
+
+    /**
+     * Gets the largest range of any law with a non-zero strength.
+     * @return Range, 0 if nothing interacts
+     */
+    public double getMaxRange() {
+        double max = 0;
+        for (int law = 0; law < strength.length; law++) {
+            if (strength[law] != 0) {
+                max = Math.max(max, range[law]);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Creates a random "particle life" matrix: every ordered pair of types
+     * gets a strength drawn uniformly from [-maxStrength, maxStrength] and the
+     * same range, with distance-independent force.
+     * @param typeCount Number of types
+     * @param maxStrength Largest absolute strength
+     * @param range Range of every law
+     * @param random Source of randomness
+     * @return The matrix
+     */
+    public static InteractionMatrix random(int typeCount, double maxStrength, double range, Random random) {
+        InteractionMatrix matrix = new InteractionMatrix(typeCount);
+        for (int source = 0; source < typeCount; source++) {
+            for (int target = 0; target < typeCount; target++) {
+                matrix.setLaw(source, target, (random.nextDouble() * 2 - 1) * maxStrength, range, 0);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Creates a matrix over {@link ParticleType} ids that reproduces the
+     * built-in effects for particles using their type id as interaction type:
+     * gravity particles attract and anti-gravity particles repel every type,
+     * and magnetic particles repel their own polarity and attract the other.
+     * Particles using it should not also carry the equivalent effects.
+     * @param gravityRange Range of gravity and anti-gravity
+     * @param gravityStrength Strength of gravity and anti-gravity
+     * @param magneticRange Range of magnetic forces
+     * @param magneticStrength Strength of magnetic forces
+     * @return The matrix
+     */
+    public static InteractionMatrix forParticleTypes(double gravityRange, double gravityStrength,
+                                                     double magneticRange, double magneticStrength) {
+        InteractionMatrix matrix = new InteractionMatrix(ParticleType.count());
+        int gravity = ParticleType.GRAVITY.getId();
+        int antiGravity = ParticleType.ANTI_GRAVITY.getId();
+        for (ParticleType target : ParticleType.values()) {
+            matrix.setLaw(gravity, target.getId(), Math.abs(gravityStrength), gravityRange, 1);
+            matrix.setLaw(antiGravity, target.getId(), -Math.abs(gravityStrength), gravityRange, 1);
+        }
+        int positive = ParticleType.MAGNETIC_POSITIVE.getId();
+        int negative = ParticleType.MAGNETIC_NEGATIVE.getId();
+        matrix.setLaw(positive, positive, -Math.abs(magneticStrength), magneticRange, 1);
+        matrix.setLaw(negative, negative, -Math.abs(magneticStrength), magneticRange, 1);
+        matrix.setSymmetricLaw(positive, negative, Math.abs(magneticStrength), magneticRange, 1);
+        return matrix;
+    }
+
+    // Flat views for the kernel, indexed by source * typeCount + target
+    double[] strengths() {
+        return strength;
+    }
+
+    double[] ranges() {
+        return range;
+    }
+
+    double[] falloffs() {
+        return falloff;
+    }
+
+    private int index(int source, int target) {
+        if (source < 0 || source >= typeCount || target < 0 || target >= typeCount) {
+            throw new IndexOutOfBoundsException("Interaction type out of range [0, " + typeCount + ")");
+        }
+        return source * typeCount + target;
+    }
+}
@@ -0,0 +1,54 @@
+package cellularfractals.engine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs index ranges on an executor and waits for them, shared by the
+ * world's update phases and the grid's bulk build.
+ */
+final class Parallel {
+    /**
+     * Work done on one contiguous range of indices.
+     */
+    @FunctionalInterface
+    interface RangeTask {
+        void run(int start, int end);
+    }
+
+    private Parallel() {
+    }
+
+    /**
+     * Splits [0, size) into one contiguous chunk per worker, runs the chunks
+     * on the executor and waits for all of them to finish. With one worker,
+     * or fewer elements than workers would need, the work runs inline.
+     */
+    static void forRange(ExecutorService executor, int workerCount, int size, RangeTask task) {
+        int chunks = Math.min(workerCount, size);
+        if (chunks <= 1) {
+            task.run(0, size);
+            return;
+        }
+
+        int chunkSize = size / chunks;
+        CountDownLatch latch = new CountDownLatch(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int start = i * chunkSize;
+            final int end = (i == chunks - 1) ? size : start + chunkSize;
+            executor.submit(() -> {
+                try {
+                    task.run(start, end);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package cellularfractals.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+import cellularfractals.particles.Particle;
+
+/**
+ * Mutual gravity between all particles, computed on a mesh instead of pair by pair.
+ *
+ * Each update the particles' masses are spread onto a regular mesh whose
+ * cells subdivide the world's {@link Grid} cells (cloud-in-cell weights),
+ * the potential is found by convolving the mass mesh with the 2D Green's
+ * function ln(r) using FFTs on a zero-padded mesh twice the size (so the
+ * world is not treated as periodic), and the potential's gradient is
+ * interpolated back to every particle with the same weights. The cost is
+ * O(N + M log M) for N particles on M mesh cells, whatever the particles'
+ * arrangement.
+ *
+ * A particle of mass m pulls every other one toward it with strength * m / r,
+ * the same law as {@link cellularfractals.particles.effects.GravityEffect}
+ * but with no range limit. The mesh smooths the force below a few mesh cells;
+ * with a P3M cutoff set, pairs closer than the cutoff are corrected to the
+ * exact softened force using the grid's neighbor queries.
+ *
+ * Row and column FFTs, the mass deposit and the force interpolation are
+ * split between the world's workers.
+ */
+public class ParticleMeshGravity {
+    // Largest unpadded mesh side; the padded mesh is twice this
+    private static final int MAX_MESH_SIZE = 1024;
+    private static final int CORRECTION_BINS = 64;
+
+    private final double strength;
+    private final int subdivisions;
+    private double softening = -1;
+    private double p3mCutoff = 0;
+
+    // Mesh layout, rebuilt when the world's size or grid changes
+    private double configuredWidth = -1;
+    private double configuredHeight = -1;
+    private double configuredCellSize = -1;
+    private double configuredCutoff = -1;
+    private double meshCell;
+    private double epsilon;
+    private int nx;
+    private int ny;
+    private int px;
+    private int py;
+    private double[] greenRe;
+    private double[] greenIm;
+    private double[] re;
+    private double[] im;
+    private double[] accelX;
+    private double[] accelY;
+    private FFT rowFft;
+    private FFT columnFft;
+    private double[] correction;
+    private final ConcurrentLinkedQueue<double[]> depositPool = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a solver.
+     * @param strength Gravitational strength; positive attracts, negative repels
+     * @param subdivisions Mesh cells along each side of a grid cell
+     */
+    public ParticleMeshGravity(double strength, int subdivisions) {
+        if (subdivisions < 1) {
+            throw new IllegalArgumentException("subdivisions must be positive");
+        }
+        this.strength = strength;
+        this.subdivisions = subdivisions;
+    }
+
+    /**
+     * Sets the softening length: forces behave as if every distance r were
+     * sqrt(r^2 + softening^2). Defaults to half a mesh cell.
+     * @param softening Softening length in world units, or a negative value for the default
+     */
+    public void setSoftening(double softening) {
+        this.softening = softening;
+        configuredWidth = -1;
+    }
+
+    /**
+     * Enables the short-range correction for pairs closer than the cutoff,
+     * making close encounters exact at the cost of a neighbor query per
+     * particle. A cutoff of two to three mesh cells is usually enough.
+     * @param cutoff Correction distance in world units, 0 to disable
+     */
+    public void setP3mCutoff(double cutoff) {
+        this.p3mCutoff = Math.max(0, cutoff);
+    }
+
+    public double getStrength() {
+        return strength;
+    }
+
+    public int getSubdivisions() {
+        return subdivisions;
+    }
+
+    public double getP3mCutoff() {
+        return p3mCutoff;
+    }
+
+    /**
+     * Gets the side length of a mesh cell for the world last solved.
+     * @return Cell size in world units, or 0 before the first solve
+     */
+    public double getMeshCellSize() {
+        return meshCell;
+    }
+
+    /**
+     * Adds this step's gravity to every particle.
+     */
+    void apply(List<Particle> particles, World world, ExecutorService executor, int workerCount) {
+        configure(world);
+        int n = particles.size();
+        if (n == 0) {
+            return;
+        }
+
+        deposit(particles, executor, workerCount);
+        solve(executor, workerCount);
+
+        Parallel.forRange(executor, workerCount, n, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                Particle p = particles.get(i);
+                double[] a = interpolate(p.getX(), p.getY());
+                double fx = a[0];
+                double fy = a[1];
+                if (p3mCutoff > 0) {
+                    for (Particle q : world.grid.getParticlesInRange(p.getX(), p.getY(), p3mCutoff)) {
+                        if (q == p) {
+                            continue;
+                        }
+                        double dx = q.getX() - p.getX();
+                        double dy = q.getY() - p.getY();
+                        double r = Math.sqrt(dx * dx + dy * dy);
+                        if (r == 0 || r >= p3mCutoff) {
+                            continue;
+                        }
+                        // Exact softened pull minus what the mesh already gave for this pair
+                        double exact = strength * q.getMass() * r / (r * r + epsilon * epsilon);
+                        double mesh = strength * q.getMass() * correctionAt(r);
+                        fx += (exact - mesh) * dx / r;
+                        fy += (exact - mesh) * dy / r;
+                    }
+                }
+                if (fx != 0 || fy != 0) {
+                    p.addForce(new Force(fx, fy));
+                }
+            }
+        });
+    }
+
+    private void configure(World world) {
+        double cellSize = world.grid.getCellSize();
+        if (world.getWidth() == configuredWidth && world.getHeight() == configuredHeight
+                && cellSize == configuredCellSize && p3mCutoff == configuredCutoff) {
+            return;
+        }
+        if (world.getWidth() != configuredWidth || world.getHeight() != configuredHeight
+                || cellSize != configuredCellSize) {
+            // Mesh cells split grid cells evenly; merge them instead if the mesh would be too large
+            meshCell = cellSize / subdivisions;
+            while (Math.max(world.getWidth(), world.getHeight()) / meshCell > MAX_MESH_SIZE) {
+                meshCell *= 2;
+            }
+            nx = nextPowerOfTwo((int) Math.ceil(world.getWidth() / meshCell));
+            ny = nextPowerOfTwo((int) Math.ceil(world.getHeight() / meshCell));
+            px = 2 * nx;
+            py = 2 * ny;
+            epsilon = softening >= 0 ? softening : meshCell / 2;
+            re = new double[px * py];
+            im = new double[px * py];
+            accelX = new double[nx * ny];
+            accelY = new double[nx * ny];
+            rowFft = new FFT(px);
+            columnFft = new FFT(py);
+            depositPool.clear();
+            buildGreen();
+            configuredWidth = world.getWidth();
+            configuredHeight = world.getHeight();
+            configuredCellSize = cellSize;
+        }
+        correction = p3mCutoff > 0 ? buildCorrection() : null;
+        configuredCutoff = p3mCutoff;
+    }
+
+    /**
+     * Fourier transform of the Green's function on the padded mesh, with
+     * offsets past the middle wrapped to negative distances.
+     */
+    private void buildGreen() {
+        greenRe = new double[px * py];
+        greenIm = new double[px * py];
+        for (int j = 0; j < py; j++) {
+            int dj = j <= ny ? j : j - py;
+            for (int i = 0; i < px; i++) {
+                int di = i <= nx ? i : i - px;
+                greenRe[j * px + i] = green(di, dj);
+            }
+        }
+        transform(greenRe, greenIm, py, false, null, 1);
+    }
+
+    private double green(int di, int dj) {
+        double r2 = (di * di + dj * dj) * meshCell * meshCell;
+        return strength * 0.5 * Math.log(r2 + epsilon * epsilon);
+    }
+
+    private void deposit(List<Particle> particles, ExecutorService executor, int workerCount) {
+        // Each worker spreads its slice onto a private mesh, which are then summed
+        ConcurrentLinkedQueue<double[]> used = new ConcurrentLinkedQueue<>();
+        Parallel.forRange(executor, workerCount, particles.size(), (start, end) -> {
+            double[] mass = depositPool.poll();
+            if (mass == null) {
+                mass = new double[nx * ny];
+            } else {
+                Arrays.fill(mass, 0);
+            }
+            for (int i = start; i < end; i++) {
+                Particle p = particles.get(i);
+                double gx = clamp(p.getX() / meshCell - 0.5, nx);
+                double gy = clamp(p.getY() / meshCell - 0.5, ny);
+                int i0 = Math.min((int) gx, nx - 2);
+                int j0 = Math.min((int) gy, ny - 2);
+                double fx = gx - i0;
+                double fy = gy - j0;
+                double m = p.getMass();
+                int cell = j0 * nx + i0;
+                mass[cell] += m * (1 - fx) * (1 - fy);
+                mass[cell + 1] += m * fx * (1 - fy);
+                mass[cell + nx] += m * (1 - fx) * fy;
+                mass[cell + nx + 1] += m * fx * fy;
+            }
+            used.add(mass);
+        });
+
+        List<double[]> slices = new ArrayList<>(used);
+        Arrays.fill(im, 0);
+        Parallel.forRange(executor, workerCount, py, (firstRow, lastRow) -> {
+            for (int j = firstRow; j < lastRow; j++) {
+                Arrays.fill(re, j * px, (j + 1) * px, 0);
+                if (j >= ny) {
+                    continue;
+                }
+                for (double[] slice : slices) {
+                    for (int i = 0; i < nx; i++) {
+                        re[j * px + i] += slice[j * nx + i];
+                    }
+                }
+            }
+        });
+        depositPool.addAll(slices);
+    }
+
+    private void solve(ExecutorService executor, int workerCount) {
+        // Only the first ny rows hold mass, and only they are needed back
+        transform(re, im, ny, false, executor, workerCount);
+        Parallel.forRange(executor, workerCount, px * py, (start, end) -> {
+            for (int k = start; k < end; k++) {
+                double a = re[k];
+                double b = im[k];
+                re[k] = a * greenRe[k] - b * greenIm[k];
+                im[k] = a * greenIm[k] + b * greenRe[k];
+            }
+        });
+        transform(re, im, ny, true, executor, workerCount);
+
+        // The acceleration is minus the potential's gradient
+        double scale = 1.0 / (px * py);
+        Parallel.forRange(executor, workerCount, ny, (firstRow, lastRow) -> {
+            for (int j = firstRow; j < lastRow; j++) {
+                for (int i = 0; i < nx; i++) {
+                    int left = Math.max(0, i - 1);
+                    int right = Math.min(nx - 1, i + 1);
+                    int down = Math.max(0, j - 1);
+                    int up = Math.min(ny - 1, j + 1);
+                    accelX[j * nx + i] = -(re[j * px + right] - re[j * px + left]) * scale
+                        / ((right - left) * meshCell);
+                    accelY[j * nx + i] = -(re[up * px + i] - re[down * px + i]) * scale
+                        / ((up - down) * meshCell);
+                }
+            }
+        });
+    }
+
+    /**
+     * 2D FFT of the padded mesh. The forward transform does rows before
+     * columns and the inverse columns before rows, so in both directions
+     * only the first activeRows rows need a row transform.
+     */
+    private void transform(double[] re, double[] im, int activeRows, boolean inverse,
+                           ExecutorService executor, int workerCount) {
+        if (!inverse) {
+            transformRows(re, im, activeRows, false, executor, workerCount);
+        }
+        Parallel.forRange(executor, workerCount, px, (firstColumn, lastColumn) -> {
+            double[] colRe = new double[py];
+            double[] colIm = new double[py];
+            for (int i = firstColumn; i < lastColumn; i++) {
+                for (int j = 0; j < py; j++) {
+                    colRe[j] = re[j * px + i];
+                    colIm[j] = im[j * px + i];
+                }
+                columnFft.transform(colRe, colIm, 0, inverse);
+                for (int j = 0; j < py; j++) {
+                    re[j * px + i] = colRe[j];
+                    im[j * px + i] = colIm[j];
+                }
+            }
+        });
+        if (inverse) {
+            transformRows(re, im, activeRows, true, executor, workerCount);
+        }
+    }
+
+    private void transformRows(double[] re, double[] im, int rows, boolean inverse,
+                               ExecutorService executor, int workerCount) {
+        Parallel.forRange(executor, workerCount, rows, (firstRow, lastRow) -> {
+            for (int j = firstRow; j < lastRow; j++) {
+                rowFft.transform(re, im, j * px, inverse);
+            }
+        });
+    }
+
+    /**
+     * Interpolates the mesh acceleration at a position.
+     * @return {ax, ay}
+     */
+    private double[] interpolate(double x, double y) {
+        double gx = clamp(x / meshCell - 0.5, nx);
+        double gy = clamp(y / meshCell - 0.5, ny);
+        int i0 = Math.min((int) gx, nx - 2);
+        int j0 = Math.min((int) gy, ny - 2);
+        double fx = gx - i0;
+        double fy = gy - j0;
+        int cell = j0 * nx + i0;
+        double w00 = (1 - fx) * (1 - fy);
+        double w10 = fx * (1 - fy);
+        double w01 = (1 - fx) * fy;
+        double w11 = fx * fy;
+        return new double[] {
+            w00 * accelX[cell] + w10 * accelX[cell + 1] + w01 * accelX[cell + nx] + w11 * accelX[cell + nx + 1],
+            w00 * accelY[cell] + w10 * accelY[cell + 1] + w01 * accelY[cell + nx] + w11 * accelY[cell + nx + 1]
+        };
+    }
+
+    /**
+     * Tabulates the pull the mesh gives a pair at each distance below the
+     * cutoff, per unit strength and mass, averaged over where in its cell
+     * the source sits and over directions. Each sample runs the same
+     * deposit, potential, gradient and interpolation steps as a full solve,
+     * but only over the few cells one source touches.
+     */
+    private double[] buildCorrection() {
+        double[] table = new double[CORRECTION_BINS + 1];
+        int offsets = 4;
+        int angles = 8;
+        for (int bin = 0; bin <= CORRECTION_BINS; bin++) {
+            double r = p3mCutoff * bin / CORRECTION_BINS;
+            double sum = 0;
+            for (int a = 0; a < offsets; a++) {
+                double sx = (a + 0.5) / offsets;
+                double sy = ((a * 3) % offsets + 0.5) / offsets;
+                for (int b = 0; b < angles; b++) {
+                    double angle = 2 * Math.PI * (b + 0.5 * a / offsets) / angles;
+                    double tx = sx + r / meshCell * Math.cos(angle);
+                    double ty = sy + r / meshCell * Math.sin(angle);
+                    double[] pull = singleSourceAcceleration(sx, sy, tx, ty);
+                    // Radial component toward the source
+                    sum += -(pull[0] * Math.cos(angle) + pull[1] * Math.sin(angle));
+                }
+            }
+            table[bin] = sum / (offsets * angles * strength);
+        }
+        return table;
+    }
+
+    /**
+     * Mesh acceleration at (tx, ty) due to a unit mass at (sx, sy), with
+     * both positions in mesh cells relative to an unbounded mesh.
+     */
+    private double[] singleSourceAcceleration(double sx, double sy, double tx, double ty) {
+        int si = (int) Math.floor(sx - 0.5);
+        int sj = (int) Math.floor(sy - 0.5);
+        double sfx = sx - 0.5 - si;
+        double sfy = sy - 0.5 - sj;
+        double[] sourceWeights = {(1 - sfx) * (1 - sfy), sfx * (1 - sfy), (1 - sfx) * sfy, sfx * sfy};
+
+        int ti = (int) Math.floor(tx - 0.5);
+        int tj = (int) Math.floor(ty - 0.5);
+        double tfx = tx - 0.5 - ti;
+        double tfy = ty - 0.5 - tj;
+        double[] targetWeights = {(1 - tfx) * (1 - tfy), tfx * (1 - tfy), (1 - tfx) * tfy, tfx * tfy};
+
+        double ax = 0;
+        double ay = 0;
+        for (int t = 0; t < 4; t++) {
+            int ci = ti + (t & 1);
+            int cj = tj + (t >> 1);
+            double gradX = (potential(ci + 1, cj, si, sj, sourceWeights)
+                - potential(ci - 1, cj, si, sj, sourceWeights)) / (2 * meshCell);
+            double gradY = (potential(ci, cj + 1, si, sj, sourceWeights)
+                - potential(ci, cj - 1, si, sj, sourceWeights)) / (2 * meshCell);
+            ax -= targetWeights[t] * gradX;
+            ay -= targetWeights[t] * gradY;
+        }
+        return new double[] {ax, ay};
+    }
+
+    private double potential(int i, int j, int si, int sj, double[] sourceWeights) {
+        double phi = 0;
+        for (int s = 0; s < 4; s++) {
+            phi += sourceWeights[s] * green(i - si - (s & 1), j - sj - (s >> 1));
+        }
+        return phi;
+    }
+
+    private double correctionAt(double r) {
+        double position = r / p3mCutoff * CORRECTION_BINS;
+        int bin = Math.min((int) position, CORRECTION_BINS - 1);
+        double t = position - bin;
+        return correction[bin] * (1 - t) + correction[bin + 1] * t;
+    }
+
+    private static double clamp(double g, int size) {
+        return Math.max(0, Math.min(size - 1, g));
+    }
+
+    private static int nextPowerOfTwo(int n) {
+        int size = 2;
+        while (size < n) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * In-place iterative radix-2 FFT of one power-of-two length.
+     */
+    private static final class FFT {
+        private final int n;
+        private final int[] reversed;
+        private final double[] cos;
+        private final double[] sin;
+
+        FFT(int n) {
+            this.n = n;
+            int bits = Integer.numberOfTrailingZeros(n);
+            reversed = new int[n];
+            for (int i = 0; i < n; i++) {
+                reversed[i] = Integer.reverse(i) >>> (32 - bits);
+            }
+            cos = new double[n / 2];
+            sin = new double[n / 2];
+            for (int i = 0; i < n / 2; i++) {
+                cos[i] = Math.cos(2 * Math.PI * i / n);
+                sin[i] = Math.sin(2 * Math.PI * i / n);
+            }
+        }
+
+        /**
+         * Transforms re/im[offset, offset + n). The inverse is not scaled.
+         */
+        void transform(double[] re, double[] im, int offset, boolean inverse) {
+            for (int i = 0; i < n; i++) {
+                int j = reversed[i];
+                if (j > i) {
+                    double t = re[offset + i];
+                    re[offset + i] = re[offset + j];
+                    re[offset + j] = t;
+                    t = im[offset + i];
+                    im[offset + i] = im[offset + j];
+                    im[offset + j] = t;
+                }
+            }
+            double sign = inverse ? 1 : -1;
+            for (int size = 2; size <= n; size <<= 1) {
+                int half = size >> 1;
+                int step = n / size;
+                for (int start = 0; start < n; start += size) {
+                    for (int k = 0; k < half; k++) {
+                        double wr = cos[k * step];
+                        double wi = sign * sin[k * step];
+                        int a = offset + start + k;
+                        int b = a + half;
+                        double br = re[b] * wr - im[b] * wi;
+                        double bi = re[b] * wi + im[b] * wr;
+                        re[b] = re[a] - br;
+                        im[b] = im[a] - bi;
+                        re[a] += br;
+                        im[a] += bi;
+                    }
+                }
+            }
+        }
+    }
+}
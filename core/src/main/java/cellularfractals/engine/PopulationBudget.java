@@ -0,0 +1,234 @@
+package cellularfractals.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cellularfractals.particles.Particle;
+
+/**
+ * Keeps a world's particle count near a fixed budget so step time stays bounded.
+ *
+ * At the end of each update in which the world holds more particles than
+ * the budget, the lightest particles are merged with their nearest neighbor
+ * of the same class until the count is back within budget. A merge keeps the
+ * heavier particle, moves it to the pair's center of mass, gives it the summed
+ * mass and momentum and the combined area, and removes the other. Only
+ * particles whose effects act on nothing but themselves are merged (see
+ * {@link Particle#affectsNeighbors()}), since combining two gravity sources
+ * or explosives would change what they do to others.
+ *
+ * Separately, {@link World#spawn} consults the {@link SpawnPolicy} while the
+ * world is at or over budget: spawns can go ahead and be merged later,
+ * be refused, or be held back and added once the population has room.
+ */
+public class PopulationBudget {
+    /**
+     * What {@link World#spawn} does while the world is at or over budget.
+     */
+    public enum SpawnPolicy {
+        /** Spawn anyway; merging brings the count back down. */
+        ALLOW,
+        /** Do not spawn; spawn returns null. */
+        REFUSE,
+        /** Hold the particle back and add it at the end of an update with room for it. */
+        DEFER
+    }
+
+    // Merge passes per update; each one doubles the distance searched
+    private static final int MERGE_PASSES = 3;
+
+    private final int maxParticles;
+    private volatile SpawnPolicy spawnPolicy = SpawnPolicy.ALLOW;
+    private volatile double mergeDistance = 1.0;
+    private volatile int maxDeferred;
+    private final ArrayDeque<Particle> deferred = new ArrayDeque<>();
+    private final AtomicLong merges = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+
+    /**
+     * Creates a budget.
+     * @param maxParticles Particle count to stay within
+     */
+    public PopulationBudget(int maxParticles) {
+        if (maxParticles < 1) {
+            throw new IllegalArgumentException("maxParticles must be positive");
+        }
+        this.maxParticles = maxParticles;
+        this.maxDeferred = Math.max(1, maxParticles / 10);
+    }
+
+    public int getMaxParticles() {
+        return maxParticles;
+    }
+
+    public SpawnPolicy getSpawnPolicy() {
+        return spawnPolicy;
+    }
+
+    public void setSpawnPolicy(SpawnPolicy spawnPolicy) {
+        this.spawnPolicy = spawnPolicy;
+    }
+
+    public double getMergeDistance() {
+        return mergeDistance;
+    }
+
+    /**
+     * Sets how far apart two particles' centers may be for them to merge.
+     * If a pass cannot merge enough particles, later passes in the same
+     * update search up to four times this far.
+     * @param mergeDistance Distance in world units
+     */
+    public void setMergeDistance(double mergeDistance) {
+        if (mergeDistance <= 0) {
+            throw new IllegalArgumentException("mergeDistance must be positive");
+        }
+        this.mergeDistance = mergeDistance;
+    }
+
+    /**
+     * Sets how many particles may wait under {@link SpawnPolicy#DEFER}.
+     * Spawns past this are refused. Defaults to a tenth of the budget.
+     */
+    public void setMaxDeferred(int maxDeferred) {
+        this.maxDeferred = Math.max(0, maxDeferred);
+    }
+
+    /** Gets the number of merges performed. */
+    public long getMergeCount() {
+        return merges.get();
+    }
+
+    /** Gets the number of spawns refused. */
+    public long getRefusedCount() {
+        return refused.get();
+    }
+
+    /** Gets the number of deferred particles added to the world so far. */
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    /** Gets the number of particles waiting to be added. */
+    public int getDeferredCount() {
+        synchronized (deferred) {
+            return deferred.size();
+        }
+    }
+
+    void countRefused() {
+        refused.incrementAndGet();
+    }
+
+    /**
+     * Queues a spawned particle that has not been added to the world.
+     * @return false if the queue is full
+     */
+    boolean defer(Particle particle) {
+        synchronized (deferred) {
+            if (deferred.size() >= maxDeferred) {
+                return false;
+            }
+            deferred.addLast(particle);
+            return true;
+        }
+    }
+
+    /**
+     * Merges particles down to the budget, then admits deferred particles
+     * while there is room. Called by the world at the end of an update.
+     */
+    void enforce(World world) {
+        int excess = world.getParticleCount() - maxParticles;
+        if (excess > 0) {
+            merge(world, excess);
+        }
+
+        synchronized (deferred) {
+            while (!deferred.isEmpty() && world.getParticleCount() < maxParticles) {
+                world.addParticle(deferred.pollFirst());
+                admitted.incrementAndGet();
+            }
+        }
+    }
+
+    private void merge(World world, int excess) {
+        List<Particle> candidates = new ArrayList<>();
+        for (Particle particle : world.getParticles()) {
+            if (!particle.affectsNeighbors()) {
+                candidates.add(particle);
+            }
+        }
+        // Lightest first, so fragments are folded together before anything large
+        candidates.sort(Comparator.comparingDouble(Particle::getMass));
+
+        // Each particle takes part in at most one merge per pass
+        Set<Particle> merged = Collections.newSetFromMap(new IdentityHashMap<>());
+        double distance = mergeDistance;
+        for (int pass = 0; pass < MERGE_PASSES && excess > 0; pass++) {
+            merged.clear();
+            for (Particle p : candidates) {
+                if (excess == 0) {
+                    break;
+                }
+                if (merged.contains(p) || !world.containsParticle(p)) {
+                    continue;
+                }
+                Particle nearest = null;
+                double nearestSquared = Double.MAX_VALUE;
+                for (Particle q : world.grid.getParticlesInRange(p.getX(), p.getY(), distance)) {
+                    if (q == p || q.getClass() != p.getClass() || merged.contains(q) || q.affectsNeighbors()) {
+                        continue;
+                    }
+                    double dx = q.getX() - p.getX();
+                    double dy = q.getY() - p.getY();
+                    double d2 = dx * dx + dy * dy;
+                    if (d2 < nearestSquared) {
+                        nearest = q;
+                        nearestSquared = d2;
+                    }
+                }
+                if (nearest == null) {
+                    continue;
+                }
+                Particle survivor = p.getMass() >= nearest.getMass() ? p : nearest;
+                Particle absorbed = survivor == p ? nearest : p;
+                absorb(world, survivor, absorbed);
+                merged.add(survivor);
+                merged.add(absorbed);
+                merges.incrementAndGet();
+                excess--;
+            }
+            distance *= 2;
+        }
+    }
+
+    private static void absorb(World world, Particle survivor, Particle absorbed) {
+        double m1 = survivor.getMass();
+        double m2 = absorbed.getMass();
+        double total = m1 + m2;
+        double oldX = survivor.getX();
+        double oldY = survivor.getY();
+        double x = (oldX * m1 + absorbed.getX() * m2) / total;
+        double y = (oldY * m1 + absorbed.getY() * m2) / total;
+        double dx = (survivor.getBaseDx() * m1 + absorbed.getBaseDx() * m2) / total;
+        double dy = (survivor.getBaseDy() * m1 + absorbed.getBaseDy() * m2) / total;
+        double r1 = survivor.getRadius();
+        double r2 = absorbed.getRadius();
+
+        world.removeParticle(absorbed);
+        survivor.setMass(total);
+        survivor.setRadius(Math.sqrt(r1 * r1 + r2 * r2));
+        survivor.setVelocity(dx, dy);
+        survivor.setPos(x, y);
+        world.grid.updateParticlePosition(survivor, oldX, oldY);
+        survivor.wake();
+    }
+}
@@ -0,0 +1,16 @@
+package cellularfractals.engine;
+
+/**
+ * Notified by {@link World#update} after each completed step, on the thread
+ * that ran the update. Listeners should return quickly; anything slow
+ * belongs on another thread.
+ */
+@FunctionalInterface
+public interface StepListener {
+    /**
+     * Called after a step completes.
+     * @param world The world that was updated
+     * @param step Number of completed steps, starting at 1
+     */
+    void onStep(World world, long step);
+}
@@ -0,0 +1,87 @@
+package cellularfractals.engine;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates wall-clock time spent in each phase of {@link World#update}.
+ * Timings are recorded on the thread that calls update, so a profiler
+ * must only be attached to one world at a time.
+ */
+public class StepProfiler {
+    public enum Phase {
+        CLEAR_FORCES("clear forces"),
+        GLOBAL_EFFECTS("global effects"),
+        EFFECTS("effects"),
+        COLLISION("collision"),
+        MOVEMENT("movement");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final long[] nanos = new long[Phase.values().length];
+    private long steps;
+
+    /**
+     * Adds the time elapsed since startNanos to a phase.
+     * @param phase The phase that just finished
+     * @param startNanos Value of System.nanoTime() when the phase started
+     * @return The current time, so consecutive phases can be chained
+     */
+    public long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - startNanos;
+        return now;
+    }
+
+    /**
+     * Marks the end of one world update.
+     */
+    public void stepCompleted() {
+        steps++;
+    }
+
+    /**
+     * Gets the total time spent in a phase.
+     * @param phase The phase
+     * @return Accumulated nanoseconds
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Gets the total time spent in all phases.
+     * @return Accumulated nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long n : nanos) {
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of completed updates.
+     * @return Step count
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Resets all counters, e.g. after a warmup period.
+     */
+    public void reset() {
+        Arrays.fill(nanos, 0);
+        steps = 0;
+    }
+}
@@ -0,0 +1,961 @@
+package cellularfractals.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticlePool;
+import cellularfractals.particles.ParticleType;
+
+public class World {
+    public final double width;
+    public final double height;
+    public final Grid grid;
+    public final EffectModifierIndex effectModifierIndex;
+    public final Set<Particle> particles; // Changed to Set
+    private int PHYSICS_SUBSTEPS = 4; // Adjust based on needed precision
+    private double BOUNDARY_RESTITUTION = 1; // Default boundary restitution
+    private static final double LOW_SPEED_THRESHOLD = 1; // Threshold for low speed
+    private static final double LOW_SPEED_REPULSION = .07; // Strength of repulsion at low speeds
+    private StepProfiler profiler; // Optional, records phase timings when set
+    private ExecutorService executor = ParticleThreadPool.getExecutor();
+    private int workerCount = ParticleThreadPool.THREAD_COUNT;
+    private volatile boolean bulkLoading = false; // Insertion deferred until endBulkLoad
+    private final List<Particle> pendingParticles = new ArrayList<>(); // Queued while bulk loading
+    private final AtomicInteger nextParticleId = new AtomicInteger();
+    private final List<StepListener> stepListeners = new CopyOnWriteArrayList<>();
+    private final List<ContactListener> contactListeners = new CopyOnWriteArrayList<>();
+    private final ContactBuffer contacts = new ContactBuffer();
+    private volatile boolean recordingContacts = false; // Set for the collision phase of updates that need contacts
+    private long stepCount = 0;
+    private boolean sleepEnabled = false; // Resting particles are skipped when set
+    private double sleepDistance = 0.25; // How far a resting particle may jitter
+    private double sleepSpeed = 0.5; // Relative speed below which touching a sleeper does not wake it
+    private double wakeForce = 0.01; // Change in applied force that wakes a sleeping particle
+    private int sleepSteps = 60; // Consecutive resting updates before a particle sleeps
+    private volatile int awakeCount = 0;
+    private final CellPairBroadphase broadphase;
+    private final InteractionKernel interactionKernel;
+    private volatile InteractionMatrix interactions;
+    private volatile ParticleMeshGravity meshGravity;
+    private volatile ParticlePool pool;
+    private volatile PopulationBudget budget;
+    private final AtomicLong removals = new AtomicLong();
+
+    /**
+     * Creates a new simulation world with the specified dimensions.
+     * @param width Width of the world
+     * @param height Height of the world
+     * @param cellSize Size of each grid cell for spatial partitioning
+     * @param effectRange Default range for particle effects
+     */
+    public World(double width, double height, double cellSize) {
+        this.width = width;
+        this.height = height;
+        this.grid = new Grid(Math.max(width, height), cellSize);
+        this.effectModifierIndex = new EffectModifierIndex(this);
+        this.broadphase = new CellPairBroadphase(width, height);
+        this.interactionKernel = new InteractionKernel(width, height);
+        // Using ConcurrentHashMap.newKeySet() for thread-safe Set
+        this.particles = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Adds a particle to the world. While a bulk load is in progress the
+     * particle is only queued, see {@link #beginBulkLoad()}.
+     * @param particle The particle to add
+     * @return true if the particle was added, false if it was already in the world
+     */
+    public boolean addParticle(Particle particle) {
+        if (bulkLoading) {
+            synchronized (pendingParticles) {
+                pendingParticles.add(particle);
+            }
+            return true;
+        }
+        boolean added = particles.add(particle);
+        if (added) {
+            grid.addParticle(particle);
+        }
+        return added;
+    }
+
+    /**
+     * Adds a batch of particles, inserting them into the particle set and the
+     * grid in parallel on the world's executor. Much faster than adding them
+     * one at a time for large batches. The particles must have been created
+     * for this world.
+     * @param batch The particles to add
+     * @return Number of particles added, excluding those already in the world
+     */
+    public int addParticles(Collection<? extends Particle> batch) {
+        if (bulkLoading) {
+            synchronized (pendingParticles) {
+                pendingParticles.addAll(batch);
+            }
+            return batch.size();
+        }
+        List<Particle> candidates = new ArrayList<>(batch);
+        List<Particle> added = Collections.synchronizedList(new ArrayList<>(candidates.size()));
+        parallelFor(candidates.size(), (start, end) -> {
+            List<Particle> chunkAdded = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                Particle particle = candidates.get(i);
+                if (particles.add(particle)) {
+                    chunkAdded.add(particle);
+                }
+            }
+            added.addAll(chunkAdded);
+        });
+        grid.addAll(added, executor, workerCount);
+        return added.size();
+    }
+
+    /**
+     * Starts adding many particles at once. Until {@link #endBulkLoad()} is
+     * called, particles created for this world are queued instead of being
+     * stored, so they are not counted, returned or visible to neighbor
+     * queries. Do not call {@link #update} in between.
+     */
+    public void beginBulkLoad() {
+        bulkLoading = true;
+    }
+
+    /**
+     * Finishes a bulk load by adding all queued particles as one batch,
+     * see {@link #addParticles(Collection)}.
+     */
+    public void endBulkLoad() {
+        List<Particle> queued;
+        synchronized (pendingParticles) {
+            bulkLoading = false;
+            queued = new ArrayList<>(pendingParticles);
+            pendingParticles.clear();
+        }
+        addParticles(queued);
+    }
+
+    /**
+     * Hands out a new particle id. Called by the particle constructor.
+     * @return An id not used by any other particle of this world
+     */
+    public int allocateParticleId() {
+        return nextParticleId.getAndIncrement();
+    }
+
+    /**
+     * Removes a particle from the world.
+     * @param particle The particle to remove
+     * @return true if the particle was removed, false if it wasn't in the world
+     */
+    public boolean removeParticle(Particle particle) {
+        boolean removed = particles.remove(particle);
+        if (removed) {
+            grid.removeParticle(particle);
+            if (sleepEnabled) {
+                // Whatever rested on or against this particle may now fall
+                for (Particle neighbor : grid.getParticlesInRange(particle.getX(), particle.getY(),
+                        particle.getRadius() * 4, particle.getCollisionMask())) {
+                    neighbor.requestWake();
+                }
+            }
+            // Also clean up from effect modifier index
+            effectModifierIndex.removeParticle(particle);
+            removals.incrementAndGet();
+            ParticlePool pool = this.pool;
+            if (pool != null) {
+                pool.release(particle);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Adds a particle of the given type, reusing a removed one from the
+     * world's pool when there is one. Arguments are as for {@link ParticleType#create}.
+     * While the world is at its population budget the budget's spawn policy
+     * applies: the particle may be refused, or created but only added to
+     * the world once there is room.
+     * @return The particle, or null if the population budget refused it
+     */
+    public Particle spawn(ParticleType type, double x, double y, double dx, double dy,
+                          float effectRange, float effectStrength) {
+        PopulationBudget budget = this.budget;
+        if (budget != null && particles.size() >= budget.getMaxParticles()) {
+            switch (budget.getSpawnPolicy()) {
+                case REFUSE:
+                    budget.countRefused();
+                    return null;
+                case DEFER:
+                    // Built without joining the world; the budget adds it once there is room
+                    Particle held = createDetached(type, x, y, dx, dy, effectRange, effectStrength);
+                    if (!budget.defer(held)) {
+                        budget.countRefused();
+                        return null;
+                    }
+                    return held;
+                default:
+                    break;
+            }
+        }
+        return create(type, x, y, dx, dy, effectRange, effectStrength);
+    }
+
+    private Particle create(ParticleType type, double x, double y, double dx, double dy,
+                            float effectRange, float effectStrength) {
+        ParticlePool pool = this.pool;
+        if (pool == null) {
+            return type.create(this, x, y, dx, dy, effectRange, effectStrength);
+        }
+        return pool.obtain(this, type, x, y, dx, dy, effectRange, effectStrength);
+    }
+
+    private Particle createDetached(ParticleType type, double x, double y, double dx, double dy,
+                                    float effectRange, float effectStrength) {
+        ParticlePool pool = this.pool;
+        if (pool == null) {
+            return type.createDetached(this, x, y, dx, dy, effectRange, effectStrength);
+        }
+        return pool.obtainDetached(this, type, x, y, dx, dy, effectRange, effectStrength);
+    }
+
+    /**
+     * Sets the pool removed particles are kept in for {@link #spawn} to reuse.
+     * A pool must only serve one world. Particles removed while a pool is
+     * set are reused, so do not keep using a particle after removing it.
+     * @param pool The pool, or null to let removed particles be collected
+     */
+    public void setParticlePool(ParticlePool pool) {
+        this.pool = pool;
+    }
+
+    public ParticlePool getParticlePool() {
+        return pool;
+    }
+
+    /**
+     * Sets the particle budget enforced at the end of every update, see
+     * {@link PopulationBudget}.
+     * @param budget The budget, or null for no limit
+     */
+    public void setPopulationBudget(PopulationBudget budget) {
+        this.budget = budget;
+    }
+
+    public PopulationBudget getPopulationBudget() {
+        return budget;
+    }
+
+    /**
+     * Checks if a particle is in the world.
+     * @param particle The particle to check
+     * @return true if the particle is in the world, false otherwise
+     */
+    public boolean containsParticle(Particle particle) {
+        return particles.contains(particle);
+    }
+
+    /**
+     * Attaches a profiler that records how long each update phase takes.
+     * @param profiler The profiler, or null to stop profiling
+     */
+    public void setProfiler(StepProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Gets the attached profiler.
+     * @return The profiler, or null if none is attached
+     */
+    public StepProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Runs the physics on a different executor instead of the shared
+     * {@link ParticleThreadPool}. Work is split into workerCount chunks;
+     * with a worker count of 1 the update runs entirely on the calling thread.
+     * @param executor Executor for parallel phases, may be null if workerCount is 1
+     * @param workerCount Number of chunks to split each parallel phase into
+     */
+    public void setExecutor(ExecutorService executor, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be at least 1");
+        }
+        if (executor == null && workerCount > 1) {
+            throw new IllegalArgumentException("An executor is required for more than one worker");
+        }
+        this.executor = executor;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Sets how many movement and collision substeps each update is split into.
+     * More substeps cost time but let fast particles collide accurately.
+     * @param substeps Substep count, at least 1
+     */
+    public void setPhysicsSubsteps(int substeps) {
+        if (substeps < 1) {
+            throw new IllegalArgumentException("substeps must be at least 1");
+        }
+        PHYSICS_SUBSTEPS = substeps;
+    }
+
+    public int getPhysicsSubsteps() {
+        return PHYSICS_SUBSTEPS;
+    }
+
+    /**
+     * Sets the fraction of speed a particle keeps when bouncing off the
+     * world's edges; 1 is a perfectly elastic bounce.
+     * @param restitution Boundary restitution
+     */
+    public void setBoundaryRestitution(double restitution) {
+        BOUNDARY_RESTITUTION = restitution;
+    }
+
+    public double getBoundaryRestitution() {
+        return BOUNDARY_RESTITUTION;
+    }
+
+    /**
+     * Turns particle sleeping on or off. When on, a particle without effects
+     * of its own that barely moves for a number of consecutive updates is put
+     * to sleep and skipped by the collision and movement phases until
+     * something disturbs it: a change in the forces applied to it (an
+     * emitter coming into range, a global effect such as mouse gravity), a
+     * collision with an awake particle, or the removal of a neighbor.
+     * Turning sleeping off wakes every particle.
+     * @param enabled Whether resting particles may sleep
+     */
+    public void setSleepEnabled(boolean enabled) {
+        sleepEnabled = enabled;
+        if (!enabled) {
+            for (Particle p : particles) {
+                p.wake();
+            }
+        }
+    }
+
+    public boolean isSleepEnabled() {
+        return sleepEnabled;
+    }
+
+    /**
+     * Tunes when particles fall asleep and wake up. Particles touching each
+     * other jitter slightly even when settled, so resting is judged by
+     * staying within a small distance over many updates rather than by speed.
+     * @param distance How far a particle may wander from where it came to rest
+     * @param speed Relative speed above which an awake particle hitting a sleeping one wakes it
+     * @param force Change in total applied force that wakes a sleeping particle
+     * @param steps Consecutive resting updates before a particle sleeps
+     */
+    public void setSleepThresholds(double distance, double speed, double force, int steps) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("steps must be at least 1");
+        }
+        sleepDistance = distance;
+        sleepSpeed = speed;
+        wakeForce = force;
+        sleepSteps = steps;
+    }
+
+    /**
+     * Gets the number of particles that were simulated in the last update.
+     * Equal to the particle count unless sleeping is enabled.
+     * @return Awake particle count
+     */
+    public int getAwakeParticleCount() {
+        return awakeCount;
+    }
+
+    /**
+     * Gets the number of chunks parallel phases are split into.
+     * @return Worker count
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Updates the state of all particles in the world. Updates are
+     * exclusive: the broadphase, contact buffer and force solvers keep
+     * per-world scratch state, so a second caller waits for the first.
+     * @param deltaTime Time elapsed since last update
+     */
+    public synchronized void update(double deltaTime) {
+        StepProfiler profiler = this.profiler;
+        long phaseStart = System.nanoTime();
+        List<Particle> particleList = new ArrayList<>(particles);
+
+        // Clear forces and reset effect flags first
+        boolean contactEffects = false;
+        for (Particle particle : particleList) {
+            particle.clearForces();
+            contactEffects |= particle.hasContactEffects();
+        }
+        if (profiler != null) phaseStart = profiler.record(StepProfiler.Phase.CLEAR_FORCES, phaseStart);
+
+        // Apply global effects first
+        effectModifierIndex.applyGlobalEffects(deltaTime);
+        if (profiler != null) phaseStart = profiler.record(StepProfiler.Phase.GLOBAL_EFFECTS, phaseStart);
+
+        // Apply effects in parallel
+        long removalsBefore = removals.get();
+        parallelFor(particleList.size(), (start, end) -> {
+            for (int j = start; j < end; j++) {
+                // Sleepers only carry effects on themselves, cheap and needed to notice changes
+                particleList.get(j).applyEffects(deltaTime);
+            }
+        });
+        InteractionMatrix interactions = this.interactions;
+        if (interactions != null) {
+            interactionKernel.apply(particleList, interactions, executor, workerCount);
+        }
+        ParticleMeshGravity meshGravity = this.meshGravity;
+        if (meshGravity != null) {
+            meshGravity.apply(particleList, this, executor, workerCount);
+        }
+        if (removals.get() != removalsBefore) {
+            // Effects removed particles; moving them would put them back in the grid
+            particleList.removeIf(particle -> !particles.contains(particle));
+        }
+        List<Particle> awake = sleepEnabled ? wakeDisturbed(particleList) : particleList;
+        awakeCount = awake.size();
+        if (profiler != null) profiler.record(StepProfiler.Phase.EFFECTS, phaseStart);
+
+        // Physics movement substeps, recording contacts only if someone listens
+        boolean recording = contactEffects || !contactListeners.isEmpty();
+        if (recording) {
+            contacts.begin(stepCount + 1);
+        } else {
+            contacts.count = 0;
+        }
+        recordingContacts = recording;
+        double subDelta = deltaTime / PHYSICS_SUBSTEPS;
+        for (int i = 0; i < PHYSICS_SUBSTEPS; i++) {
+            this.movementStep(awake, subDelta);
+        }
+        recordingContacts = false;
+        if (recording) {
+            contacts.end();
+            dispatchContacts(contactEffects);
+        }
+        if (sleepEnabled) {
+            sleepResting(awake);
+        }
+        PopulationBudget budget = this.budget;
+        if (budget != null) {
+            budget.enforce(this);
+        }
+        ParticlePool pool = this.pool;
+        if (pool != null) {
+            pool.recycleReleased();
+        }
+        if (profiler != null) profiler.stepCompleted();
+
+        stepCount++;
+        for (StepListener listener : stepListeners) {
+            listener.onStep(this, stepCount);
+        }
+    }
+
+    /**
+     * Sets the force laws applied between particles by interaction type,
+     * evaluated once per update alongside the effects.
+     * @param interactions The matrix, or null to disable interactions
+     */
+    public void setInteractionMatrix(InteractionMatrix interactions) {
+        this.interactions = interactions;
+        for (Particle particle : particles) {
+            if (particle.getInteractionType() >= 0) {
+                particle.requestWake();
+            }
+        }
+    }
+
+    /**
+     * Gets the force laws applied between particles by interaction type.
+     * @return The matrix, or null if interactions are disabled
+     */
+    public InteractionMatrix getInteractionMatrix() {
+        return interactions;
+    }
+
+    /**
+     * Sets a solver for long-range gravity between all particles, run once
+     * per update alongside the effects.
+     * @param meshGravity The solver, or null to disable it
+     */
+    public void setParticleMeshGravity(ParticleMeshGravity meshGravity) {
+        this.meshGravity = meshGravity;
+        for (Particle particle : particles) {
+            particle.requestWake();
+        }
+    }
+
+    /**
+     * Gets the long-range gravity solver.
+     * @return The solver, or null if none is set
+     */
+    public ParticleMeshGravity getParticleMeshGravity() {
+        return meshGravity;
+    }
+
+    /**
+     * Registers a listener to be called after every update.
+     * @param listener The listener
+     */
+    public void addStepListener(StepListener listener) {
+        stepListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a step listener.
+     * @param listener The listener
+     */
+    public void removeStepListener(StepListener listener) {
+        stepListeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener to be given each update's contacts. While any
+     * listener is registered every update records its contacts.
+     * @param listener The listener
+     */
+    public void addContactListener(ContactListener listener) {
+        contactListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a contact listener.
+     * @param listener The listener
+     */
+    public void removeContactListener(ContactListener listener) {
+        contactListeners.remove(listener);
+    }
+
+    /**
+     * Gets the contacts recorded by the last update. Empty unless that
+     * update had contact listeners or particles with contact effects.
+     * Overwritten by the next update.
+     * @return The contact buffer
+     */
+    public ContactBuffer getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Gets the number of completed updates.
+     * @return Step count
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Copies the drawable state of every particle into a frame.
+     * Safe to call while another thread updates the world; the frame may
+     * then mix positions from consecutive substeps.
+     * @param frame The frame to overwrite, reused to avoid allocation
+     * @return The same frame
+     */
+    public WorldFrame captureFrame(WorldFrame frame) {
+        beginCapture(frame, particles.size());
+        for (Particle p : particles) {
+            capture(frame, p);
+        }
+        return frame;
+    }
+
+    /**
+     * Copies the drawable state of the particles whose centers lie in a
+     * rectangle into a frame, looking only at the grid cells it overlaps.
+     * Cheap for a small view of a large world.
+     * @param frame The frame to overwrite, reused to avoid allocation
+     * @param minX Left edge
+     * @param minY Top edge
+     * @param maxX Right edge
+     * @param maxY Bottom edge
+     * @return The same frame
+     */
+    public WorldFrame captureFrame(WorldFrame frame, double minX, double minY, double maxX, double maxY) {
+        if (minX <= 0 && minY <= 0 && maxX >= width && maxY >= height) {
+            // Everything is in view; walking the set beats visiting every cell
+            return captureFrame(frame);
+        }
+        beginCapture(frame, 0);
+        grid.forEachInRect(minX, minY, maxX, maxY, p -> capture(frame, p));
+        return frame;
+    }
+
+    private void beginCapture(WorldFrame frame, int expected) {
+        frame.step = stepCount;
+        frame.worldWidth = width;
+        frame.worldHeight = height;
+        frame.ensureCapacity(expected);
+        frame.count = 0;
+    }
+
+    private void capture(WorldFrame frame, Particle p) {
+        int n = frame.count;
+        if (n == frame.ids.length) {
+            frame.ensureCapacity(n + 1);
+        }
+        ParticleType type = p.getParticleType();
+        frame.ids[n] = p.getId();
+        frame.types[n] = type == null ? WorldFrame.NO_TYPE : (byte) type.getId();
+        frame.x[n] = (float) p.getX();
+        frame.y[n] = (float) p.getY();
+        frame.vx[n] = (float) p.getDx();
+        frame.vy[n] = (float) p.getDy();
+        frame.radius[n] = (float) p.getRadius();
+        frame.mass[n] = (float) p.getMass();
+        frame.color[n] = p.cosmeticSettings.color;
+        frame.trailColor[n] = p.cosmeticSettings.trailColor;
+        frame.count = n + 1;
+    }
+
+    /**
+     * Hands the recorded contacts to the effects of the particles involved,
+     * then to the contact listeners. Particles removed by an earlier contact's
+     * effect are skipped.
+     */
+    private void dispatchContacts(boolean contactEffects) {
+        if (contactEffects) {
+            for (int i = 0; i < contacts.count; i++) {
+                Particle a = contacts.getParticleA(i);
+                Particle b = contacts.getParticleB(i);
+                if (a.hasContactEffects() && particles.contains(a)) {
+                    a.handleContact(b, contacts, i);
+                }
+                if (b.hasContactEffects() && particles.contains(b)) {
+                    b.handleContact(a, contacts, i);
+                }
+            }
+        }
+        for (ContactListener listener : contactListeners) {
+            listener.onContacts(this, contacts);
+        }
+    }
+
+    private void parallelFor(int size, Parallel.RangeTask task) {
+        Parallel.forRange(executor, workerCount, size, task);
+    }
+
+    /**
+     * Handles collision between two particles by updating their velocities.
+     * Implements simple elastic collision. Records the contact while the
+     * update is recording contacts.
+     */
+    private void handleCollision(Particle p1, Particle p2) {
+        double dx = p2.getX() - p1.getX();
+        double dy = p2.getY() - p1.getY();
+        double dist = Math.sqrt(dx * dx + dy * dy);
+
+        if (dist == 0) return;
+
+        // Normalize collision vector
+        double nx = dx / dist;
+        double ny = dy / dist;
+
+        // Get current velocities
+        double v1x = p1.getDx();
+        double v1y = p1.getDy();
+        double v2x = p2.getDx();
+        double v2y = p2.getDy();
+
+        // Relative velocity
+        double rvx = v2x - v1x;
+        double rvy = v2y - v1y;
+        double relativeSpeed = Math.sqrt(rvx * rvx + rvy * rvy);
+        double velAlongNormal = rvx * nx + rvy * ny;
+
+        if (velAlongNormal > 0) { // Objects separating
+            recordContact(p1, p2, nx, ny, 0, relativeSpeed);
+            return;
+        }
+
+        // Add low-speed repulsion
+        if (relativeSpeed < LOW_SPEED_THRESHOLD) {
+            recordContact(p1, p2, nx, ny, 0, relativeSpeed);
+            double repulsionStrength = (1.0 - relativeSpeed / LOW_SPEED_THRESHOLD) * LOW_SPEED_REPULSION;
+            Force f1 = new Force(-nx * repulsionStrength, -ny * repulsionStrength);
+            Force f2 = new Force(nx * repulsionStrength, ny * repulsionStrength);
+            p1.addForce(f1);
+            p2.addForce(f2);
+            return;
+        }
+
+        // Calculate impulse
+        double restitution = Math.min(p1.getRestitution(), p2.getRestitution());
+        double j = -(1 + restitution) * velAlongNormal;
+        double impulse = j / (1/p1.getMass() + 1/p2.getMass());
+        recordContact(p1, p2, nx, ny, impulse, relativeSpeed);
+
+        // Apply impulse along normal
+        double impulsex = impulse * nx;
+        double impulsey = impulse * ny;
+
+        // Calculate new velocities
+        double newV1x = v1x - (impulsex / p1.getMass());
+        double newV1y = v1y - (impulsey / p1.getMass());
+        double newV2x = v2x + (impulsex / p2.getMass());
+        double newV2y = v2y + (impulsey / p2.getMass());
+
+        // Set new velocities
+        p1.setVelocity(newV1x, newV1y);
+        p2.setVelocity(newV2x, newV2y);
+
+        // Apply friction (tangential impulse)
+        double friction = Math.min(p1.getFriction(), p2.getFriction());
+        double tx = -ny;
+        double ty = nx;
+        double velAlongTangent = rvx * tx + rvy * ty;
+        double jt = -friction * velAlongTangent / (1/p1.getMass() + 1/p2.getMass());
+
+        // Apply tangential forces
+        Force f1 = new Force(-jt * tx / p1.getMass(), -jt * ty / p1.getMass());
+        Force f2 = new Force(jt * tx / p2.getMass(), jt * ty / p2.getMass());
+
+        p1.addForce(f1);
+        p2.addForce(f2);
+    }
+
+    private void recordContact(Particle p1, Particle p2, double nx, double ny, double impulse,
+                               double relativeSpeed) {
+        if (recordingContacts) {
+            contacts.add(p1, p2, nx, ny, impulse, relativeSpeed);
+        }
+    }
+
+    /**
+     * Wakes sleeping particles that were asked to wake or whose applied
+     * forces changed since they fell asleep.
+     * @return The particles that are awake for this update
+     */
+    private List<Particle> wakeDisturbed(List<Particle> particleList) {
+        List<Particle> awake = Collections.synchronizedList(new ArrayList<>(particleList.size()));
+        parallelFor(particleList.size(), (start, end) -> {
+            List<Particle> chunkAwake = new ArrayList<>(end - start);
+            for (int j = start; j < end; j++) {
+                Particle particle = particleList.get(j);
+                if (particle.isAsleep()
+                        && (particle.isWakeRequested() || particle.getRestForceChange() > wakeForce)) {
+                    particle.wake();
+                }
+                if (!particle.isAsleep()) {
+                    particle.recordAppliedForce();
+                    chunkAwake.add(particle);
+                }
+            }
+            awake.addAll(chunkAwake);
+        });
+        return awake;
+    }
+
+    /**
+     * Counts resting updates for the particles that were simulated and puts
+     * those that have rested long enough to sleep.
+     */
+    private void sleepResting(List<Particle> awake) {
+        parallelFor(awake.size(), (start, end) -> {
+            for (int j = start; j < end; j++) {
+                Particle particle = awake.get(j);
+                if (particle.countStillStep(sleepDistance) >= sleepSteps && !particle.affectsNeighbors()
+                        && !particle.isWakeRequested()) {
+                    particle.sleep();
+                }
+            }
+        });
+    }
+
+    /**
+     * Performs a movement step for all particles, handling collisions.
+     */
+    public void movementStep(double deltaTime) {
+        movementStep(new ArrayList<>(particles), deltaTime);
+    }
+
+    /**
+     * Performs a movement step for the given particles. Sleeping particles
+     * among their neighbors take part in collisions but do not move.
+     */
+    private void movementStep(List<Particle> particleList, double deltaTime) {
+        StepProfiler profiler = this.profiler;
+        long phaseStart = System.nanoTime();
+
+        // Find each touching pair once by walking cells against their half-stencil; the
+        // broadphase has already distance-tested every pair it hands over
+        broadphase.build(particleList);
+        broadphase.forEachTouchingPair(executor, workerCount, this::handleTouchingPair);
+
+        // Sleeping particles are not binned; the awake side looks them up
+        if (sleepEnabled && particleList.size() < particles.size()) {
+            // Any sleeper touching p1 is within p1's radius plus the largest sleeper's radius
+            double maxSleeperRadius = 0;
+            for (Particle p : particles) {
+                if (p.isAsleep() && p.canCollideWithParticles()) {
+                    maxSleeperRadius = Math.max(maxSleeperRadius, p.getRadius());
+                }
+            }
+            double sleeperReach = maxSleeperRadius;
+            parallelFor(particleList.size(), (start, end) -> {
+                for (int j = start; j < end; j++) {
+                    Particle p1 = particleList.get(j);
+                    if (!p1.canCollideWithParticles()) {
+                        continue;
+                    }
+                    for (Particle p2 : grid.getParticlesInRange(p1.getX(), p1.getY(), p1.getRadius() + sleeperReach,
+                            p1.getCollisionMask())) {
+                        if (p2 != p1 && p2.isAsleep() && p1.collidesWith(p2)) {
+                            checkAndHandleSleeperCollision(p1, p2, deltaTime);
+                        }
+                    }
+                }
+            });
+        }
+        if (profiler != null) phaseStart = profiler.record(StepProfiler.Phase.COLLISION, phaseStart);
+
+        // Move particles in parallel
+        parallelFor(particleList.size(), (start, end) -> {
+            for (int j = start; j < end; j++) {
+                updateParticlePosition(particleList.get(j), deltaTime);
+            }
+        });
+        if (profiler != null) profiler.record(StepProfiler.Phase.MOVEMENT, phaseStart);
+    }
+
+    private void handleTouchingPair(Particle p1, Particle p2) {
+        synchronized (p1.hashCode() < p2.hashCode() ? p1 : p2) {
+            synchronized (p1.hashCode() < p2.hashCode() ? p2 : p1) {
+                handleCollision(p1, p2);
+            }
+        }
+    }
+
+    /**
+     * Handles an awake particle touching a sleeping one. The awake particle
+     * bounces as usual. A gentle touch leaves the sleeper resting in place;
+     * anything faster wakes it for the next update with the velocity the
+     * collision gave it.
+     */
+    private void checkAndHandleSleeperCollision(Particle awake, Particle sleeper, double deltaTime) {
+        double dx = sleeper.getX() - awake.getX();
+        double dy = sleeper.getY() - awake.getY();
+        double collisionDist = awake.getRadius() + sleeper.getRadius();
+        if (dx * dx + dy * dy > collisionDist * collisionDist) {
+            return;
+        }
+        boolean disturbs = Math.hypot(sleeper.getDx() - awake.getDx(), sleeper.getDy() - awake.getDy()) > sleepSpeed;
+        synchronized (awake.hashCode() < sleeper.hashCode() ? awake : sleeper) {
+            synchronized (awake.hashCode() < sleeper.hashCode() ? sleeper : awake) {
+                handleCollision(awake, sleeper);
+                if (disturbs) {
+                    sleeper.requestWake();
+                } else {
+                    sleeper.setVelocity(0, 0);
+                }
+            }
+        }
+    }
+
+    private void updateParticlePosition(Particle particle, double deltaTime) {
+        double oldX = particle.getX();
+        double oldY = particle.getY();
+
+        // Get current velocity
+        double newDx = particle.getDx();
+        double newDy = particle.getDy();
+
+        // Update position based on current velocity
+        double newX = oldX + newDx * deltaTime;
+        double newY = oldY + newDy * deltaTime;
+        double r = particle.getRadius();
+
+        // Handle wall collisions after movement
+        if (newX - r < 0) {
+            newX = r;
+            newDx = -newDx * BOUNDARY_RESTITUTION;
+        } else if (newX + r > width) {
+            newX = width - r;
+            newDx = -newDx * BOUNDARY_RESTITUTION;
+        }
+
+        if (newY - r < 0) {
+            newY = r;
+            newDy = -newDy * BOUNDARY_RESTITUTION;
+        } else if (newY + r > height) {
+            newY = height - r;
+            newDy = -newDy * BOUNDARY_RESTITUTION;
+        }
+
+        // Always update velocity and position
+        particle.setVelocity(newDx, newDy);
+        particle.setPos(newX, newY);
+        grid.updateParticlePosition(particle, oldX, oldY);
+    }
+
+    /**
+     * Clears all particles from the world.
+     */
+    public void clear() {
+        particles.clear();
+        grid.clear();
+        // Also clean up the effect modifier index
+        for (Particle p : getParticles()) {
+            effectModifierIndex.removeParticle(p);
+        }
+    }
+
+    /**
+     * Gets all particles in the world.
+     * @return List of all particles
+     */
+    public List<Particle> getParticles() {
+        return new ArrayList<>(particles);
+    }
+
+    /**
+     * Gets the count of particles in the world.
+     * @return Number of particles
+     */
+    public int getParticleCount() {
+        return particles.size();
+    }
+
+    /**
+     * Gets particles near a specific point.
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @param radius Search radius
+     * @return List of particles within the specified radius
+     */
+    public List<Particle> getParticlesNear(double x, double y, double radius) {
+        return grid.getParticlesInRange(x, y, radius);
+    }
+
+    /**
+     * Gets the width of the world.
+     * @return World width
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the world.
+     * @return World height
+     */
+    public double getHeight() {
+        return height;
+    }
+}
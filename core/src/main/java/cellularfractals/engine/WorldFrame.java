@@ -0,0 +1,75 @@
+package cellularfractals.engine;
+
+import java.util.Arrays;
+
+/**
+ * A flat, reusable copy of the drawable state of every particle at one step.
+ *
+ * Frames hold primitive arrays indexed 0..count-1 so they can be captured,
+ * recorded, streamed and drawn without touching particle objects. Arrays
+ * only ever grow, so a frame that is reused for capture stops allocating
+ * once it has seen the largest population.
+ */
+public class WorldFrame {
+    /** Type id stored for particles that have no {@link cellularfractals.particles.ParticleType}. */
+    public static final byte NO_TYPE = -1;
+
+    public long step;
+    public double worldWidth;
+    public double worldHeight;
+    public int count;
+    public int[] ids = new int[0];
+    public byte[] types = new byte[0];
+    public float[] x = new float[0];
+    public float[] y = new float[0];
+    public float[] vx = new float[0];
+    public float[] vy = new float[0];
+    public float[] radius = new float[0];
+    public float[] mass = new float[0];
+    public int[] color = new int[0];
+    public int[] trailColor = new int[0];
+
+    /**
+     * Makes sure the arrays can hold at least the given number of particles,
+     * keeping existing contents.
+     * @param capacity Required capacity
+     */
+    public void ensureCapacity(int capacity) {
+        if (ids.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1) + 16);
+        ids = Arrays.copyOf(ids, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        vx = Arrays.copyOf(vx, newCapacity);
+        vy = Arrays.copyOf(vy, newCapacity);
+        radius = Arrays.copyOf(radius, newCapacity);
+        mass = Arrays.copyOf(mass, newCapacity);
+        color = Arrays.copyOf(color, newCapacity);
+        trailColor = Arrays.copyOf(trailColor, newCapacity);
+    }
+
+    /**
+     * Copies this frame into another, growing the target if needed.
+     * @param target The frame to overwrite
+     */
+    public void copyTo(WorldFrame target) {
+        target.ensureCapacity(count);
+        target.step = step;
+        target.worldWidth = worldWidth;
+        target.worldHeight = worldHeight;
+        target.count = count;
+        System.arraycopy(ids, 0, target.ids, 0, count);
+        System.arraycopy(types, 0, target.types, 0, count);
+        System.arraycopy(x, 0, target.x, 0, count);
+        System.arraycopy(y, 0, target.y, 0, count);
+        System.arraycopy(vx, 0, target.vx, 0, count);
+        System.arraycopy(vy, 0, target.vy, 0, count);
+        System.arraycopy(radius, 0, target.radius, 0, count);
+        System.arraycopy(mass, 0, target.mass, 0, count);
+        System.arraycopy(color, 0, target.color, 0, count);
+        System.arraycopy(trailColor, 0, target.trailColor, 0, count);
+    }
+}
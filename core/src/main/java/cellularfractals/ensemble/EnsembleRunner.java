@@ -0,0 +1,388 @@
+package cellularfractals.ensemble;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cellularfractals.engine.ParticleThreadPool;
+import cellularfractals.engine.World;
+import cellularfractals.particles.Effect;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.effects.GravityEffect;
+import cellularfractals.particles.effects.NegativeGravityEffect;
+import cellularfractals.scenario.Scenarios;
+
+/**
+ * Runs many independent worlds concurrently to sweep simulation parameters,
+ * and writes one results row per world.
+ *
+ * Every combination of the swept values, times the number of replicas, is
+ * one variant. Variants are packed onto a fixed pool of world threads; by
+ * default each world runs its update inline on its thread, so small worlds
+ * fill the machine without competing for the shared
+ * {@link ParticleThreadPool}. Larger worlds can be given several workers
+ * each with --world-workers, in which case fewer run at once and their
+ * parallel phases share one pool sized to the machine.
+ *
+ * Both pools use platform threads bounded by the core count. Every world
+ * update is CPU-bound and never blocks, so virtual threads would only add
+ * scheduling on top of the same carrier threads, and unbounded ones would
+ * oversubscribe the machine.
+ *
+ * Usage:
+ * <pre>
+ *   EnsembleRunner [--scenario NAME] [--particles N] [--size SIZE] [--cell CELL]
+ *                  [--steps N] [--dt DT] [--seed SEED] [--replicas N]
+ *                  [--gravity 0.5,1,2] [--restitution 0.8] [--boundary-restitution 1]
+ *                  [--substeps 4] [--parallelism P] [--world-workers K]
+ *                  [--out ensemble-results]
+ * </pre>
+ * --gravity scales the strength of every gravity and anti-gravity effect
+ * in the scenario. Replica r of a variant uses seed SEED + r, so the same
+ * replica sees the same starting particles across variants.
+ */
+public class EnsembleRunner {
+    private String scenario = "gravity-field";
+    private int particles = 500;
+    private double size = 50;
+    private double cellSize = 10;
+    private int steps = 500;
+    private double deltaTime = 0.016;
+    private long seed = 42;
+    private int replicas = 1;
+    private double[] gravityScales = {1};
+    private double[] restitutions = {0.8};
+    private double[] boundaryRestitutions = {1};
+    private int[] substeps = {4};
+    private int worldWorkers = 1;
+    private int parallelism = -1;
+    private String out = "ensemble-results";
+
+    /**
+     * One world's parameters.
+     */
+    static class Variant {
+        int index;
+        int replica;
+        long seed;
+        double gravityScale;
+        double restitution;
+        double boundaryRestitution;
+        int substeps;
+    }
+
+    /**
+     * One world's outcome.
+     */
+    static class Result {
+        Variant variant;
+        int steps;
+        double seconds;
+        double stepsPerSecond;
+        int particles;
+        double kineticEnergyStart;
+        double kineticEnergyEnd;
+        double meanSpeed;
+        double spread;
+        String error;
+    }
+
+    public static void main(String[] args) throws IOException {
+        EnsembleRunner runner = new EnsembleRunner();
+        try {
+            runner.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        try {
+            List<Result> results = runner.runAll();
+            runner.writeReports(results);
+        } finally {
+            ParticleThreadPool.shutdown();
+        }
+    }
+
+    void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--scenario": scenario = value; break;
+                case "--particles": particles = Integer.parseInt(value); break;
+                case "--size": size = Double.parseDouble(value); break;
+                case "--cell": cellSize = Double.parseDouble(value); break;
+                case "--steps": steps = Integer.parseInt(value); break;
+                case "--dt": deltaTime = Double.parseDouble(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--replicas": replicas = Integer.parseInt(value); break;
+                case "--gravity": gravityScales = parseDoubles(value); break;
+                case "--restitution": restitutions = parseDoubles(value); break;
+                case "--boundary-restitution": boundaryRestitutions = parseDoubles(value); break;
+                case "--substeps": substeps = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "--parallelism": parallelism = Integer.parseInt(value); break;
+                case "--world-workers": worldWorkers = Integer.parseInt(value); break;
+                case "--out": out = value; break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (replicas < 1 || worldWorkers < 1) {
+            throw new IllegalArgumentException("--replicas and --world-workers must be positive");
+        }
+        if (parallelism < 1) {
+            parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / worldWorkers);
+        }
+        Scenarios.get(scenario);
+    }
+
+    private static double[] parseDoubles(String value) {
+        return Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /**
+     * Expands the swept values into one variant per combination and replica.
+     */
+    List<Variant> variants() {
+        List<Variant> variants = new ArrayList<>();
+        for (double gravity : gravityScales) {
+            for (double restitution : restitutions) {
+                for (double boundary : boundaryRestitutions) {
+                    for (int substepCount : substeps) {
+                        for (int r = 0; r < replicas; r++) {
+                            Variant v = new Variant();
+                            v.index = variants.size();
+                            v.replica = r;
+                            v.seed = seed + r;
+                            v.gravityScale = gravity;
+                            v.restitution = restitution;
+                            v.boundaryRestitution = boundary;
+                            v.substeps = substepCount;
+                            variants.add(v);
+                        }
+                    }
+                }
+            }
+        }
+        return variants;
+    }
+
+    List<Result> runAll() {
+        List<Variant> variants = variants();
+        System.out.printf("Running %d worlds, %d at a time, %d worker(s) each%n",
+            variants.size(), parallelism, worldWorkers);
+
+        ExecutorService worldPool = Executors.newFixedThreadPool(parallelism, namedThreads("ensemble-world"));
+        ExecutorService stepPool = worldWorkers > 1
+            ? Executors.newFixedThreadPool(parallelism * worldWorkers, namedThreads("ensemble-step"))
+            : null;
+        Result[] results = new Result[variants.size()];
+        try {
+            CompletionService<Result> completion = new ExecutorCompletionService<>(worldPool);
+            for (Variant variant : variants) {
+                completion.submit(() -> runVariant(variant, stepPool));
+            }
+            for (int done = 1; done <= variants.size(); done++) {
+                Result result = completion.take().get();
+                results[result.variant.index] = result;
+                printProgress(done, variants.size(), result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("World run failed", e.getCause());
+        } finally {
+            shutdown(worldPool);
+            if (stepPool != null) {
+                shutdown(stepPool);
+            }
+        }
+
+        List<Result> completed = new ArrayList<>();
+        for (Result result : results) {
+            if (result != null) {
+                completed.add(result);
+            }
+        }
+        return completed;
+    }
+
+    private Result runVariant(Variant variant, ExecutorService stepPool) {
+        Result result = new Result();
+        result.variant = variant;
+        try {
+            World world = new World(size, size, cellSize);
+            world.setExecutor(stepPool, worldWorkers);
+            world.setPhysicsSubsteps(variant.substeps);
+            world.setBoundaryRestitution(variant.boundaryRestitution);
+            Scenarios.get(scenario).populate(world, particles, new Random(variant.seed));
+            for (Particle p : world.particles) {
+                p.setRestitution(variant.restitution);
+                scaleGravity(p, variant.gravityScale);
+            }
+
+            result.kineticEnergyStart = kineticEnergy(world);
+            long start = System.nanoTime();
+            for (int i = 0; i < steps; i++) {
+                world.update(deltaTime);
+            }
+            result.seconds = (System.nanoTime() - start) / 1e9;
+            result.steps = steps;
+            result.stepsPerSecond = steps / result.seconds;
+            result.particles = world.getParticleCount();
+            result.kineticEnergyEnd = kineticEnergy(world);
+            fillShape(world, result);
+        } catch (RuntimeException e) {
+            // One diverging variant should not take down the whole sweep
+            result.error = e.toString();
+        }
+        return result;
+    }
+
+    private static void scaleGravity(Particle p, double scale) {
+        if (scale == 1) {
+            return;
+        }
+        for (Effect effect : p.listEffects()) {
+            if (effect instanceof GravityEffect) {
+                GravityEffect gravity = (GravityEffect) effect;
+                gravity.setStrength((float) (gravity.getStrength() * scale));
+            } else if (effect instanceof NegativeGravityEffect) {
+                NegativeGravityEffect gravity = (NegativeGravityEffect) effect;
+                gravity.setStrength((float) (gravity.getStrength() * scale));
+            }
+        }
+    }
+
+    private static double kineticEnergy(World world) {
+        double energy = 0;
+        for (Particle p : world.particles) {
+            double vx = p.getBaseDx();
+            double vy = p.getBaseDy();
+            energy += 0.5 * p.getMass() * (vx * vx + vy * vy);
+        }
+        return energy;
+    }
+
+    /**
+     * Mean speed, and spread as the RMS distance from the centroid.
+     */
+    private static void fillShape(World world, Result result) {
+        int n = 0;
+        double speed = 0, cx = 0, cy = 0;
+        for (Particle p : world.particles) {
+            speed += Math.hypot(p.getBaseDx(), p.getBaseDy());
+            cx += p.getX();
+            cy += p.getY();
+            n++;
+        }
+        if (n == 0) {
+            return;
+        }
+        cx /= n;
+        cy /= n;
+        double squares = 0;
+        for (Particle p : world.particles) {
+            double dx = p.getX() - cx;
+            double dy = p.getY() - cy;
+            squares += dx * dx + dy * dy;
+        }
+        result.meanSpeed = speed / n;
+        result.spread = Math.sqrt(squares / n);
+    }
+
+    private static synchronized void printProgress(int done, int total, Result r) {
+        Variant v = r.variant;
+        if (r.error != null) {
+            System.out.printf(Locale.ROOT, "[%d/%d] #%d failed: %s%n", done, total, v.index, r.error);
+            return;
+        }
+        System.out.printf(Locale.ROOT,
+            "[%d/%d] #%-4d g=%-5s e=%-5s wall=%-5s sub=%-2d rep=%-2d %8.1f steps/s  KE %.4g -> %.4g%n",
+            done, total, v.index, v.gravityScale, v.restitution, v.boundaryRestitution, v.substeps, v.replica,
+            r.stepsPerSecond, r.kineticEnergyStart, r.kineticEnergyEnd);
+    }
+
+    void writeReports(List<Result> results) throws IOException {
+        Path csv = Paths.get(out + ".csv");
+        Path json = Paths.get(out + ".json");
+
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(csv))) {
+            w.println("variant,replica,seed,gravity_scale,restitution,boundary_restitution,substeps,steps,seconds,"
+                + "steps_per_s,particles,kinetic_energy_start,kinetic_energy_end,mean_speed,spread,error");
+            for (Result r : results) {
+                Variant v = r.variant;
+                w.printf(Locale.ROOT, "%d,%d,%d,%s,%s,%s,%d,%d,%.4f,%.3f,%d,%.6g,%.6g,%.6g,%.6g,%s%n",
+                    v.index, v.replica, v.seed, v.gravityScale, v.restitution, v.boundaryRestitution, v.substeps,
+                    r.steps, r.seconds, r.stepsPerSecond, r.particles, r.kineticEnergyStart, r.kineticEnergyEnd,
+                    r.meanSpeed, r.spread, r.error == null ? "" : "\"" + r.error.replace("\"", "'") + "\"");
+            }
+        }
+
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(json))) {
+            w.println("{");
+            w.printf(Locale.ROOT, "  \"scenario\": \"%s\",%n", scenario);
+            w.printf(Locale.ROOT, "  \"particles\": %d,%n", particles);
+            w.printf(Locale.ROOT, "  \"size\": %s,%n", size);
+            w.printf(Locale.ROOT, "  \"steps\": %d,%n", steps);
+            w.printf(Locale.ROOT, "  \"deltaTime\": %s,%n", deltaTime);
+            w.printf(Locale.ROOT, "  \"parallelism\": %d,%n", parallelism);
+            w.printf(Locale.ROOT, "  \"worldWorkers\": %d,%n", worldWorkers);
+            w.println("  \"results\": [");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                Variant v = r.variant;
+                w.printf(Locale.ROOT,
+                    "    {\"variant\": %d, \"replica\": %d, \"seed\": %d, \"gravityScale\": %s, \"restitution\": %s, "
+                        + "\"boundaryRestitution\": %s, \"substeps\": %d, \"steps\": %d, \"seconds\": %.4f, "
+                        + "\"stepsPerSecond\": %.3f, \"particles\": %d, \"kineticEnergyStart\": %.6g, "
+                        + "\"kineticEnergyEnd\": %.6g, \"meanSpeed\": %.6g, \"spread\": %.6g%s}%s%n",
+                    v.index, v.replica, v.seed, v.gravityScale, v.restitution, v.boundaryRestitution, v.substeps,
+                    r.steps, r.seconds, r.stepsPerSecond, r.particles, r.kineticEnergyStart, r.kineticEnergyEnd,
+                    r.meanSpeed, r.spread,
+                    r.error == null ? "" : ", \"error\": \"" + r.error.replace("\\", "\\\\").replace("\"", "\\\"") + "\"",
+                    i == results.size() - 1 ? "" : ",");
+            }
+            w.println("  ]");
+            w.println("}");
+        }
+
+        System.out.println("Wrote " + csv + " and " + json);
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package cellularfractals.headless;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+import cellularfractals.engine.ParticleMeshGravity;
+import cellularfractals.engine.ParticleThreadPool;
+import cellularfractals.engine.PopulationBudget;
+import cellularfractals.engine.StepProfiler;
+import cellularfractals.engine.World;
+import cellularfractals.io.FrameExporter;
+import cellularfractals.io.FrameRingWriter;
+import cellularfractals.io.FrameStreamServer;
+import cellularfractals.io.ScenarioReader;
+import cellularfractals.io.ScenarioWriter;
+import cellularfractals.io.TrajectoryRecorder;
+import cellularfractals.io.WorldSnapshot;
+import cellularfractals.particles.ParticlePool;
+import cellularfractals.scenario.Scenarios;
+
+/**
+ * Runs a scenario without any GUI and reports throughput and phase timings.
+ *
+ * Usage:
+ * <pre>
+ *   HeadlessRunner [--scenario NAME] [--particles N] [--steps N] [--seconds S]
+ *                  [--dt DT] [--size SIZE] [--cell CELL] [--seed SEED] [--warmup N]
+ *                  [--restore FILE] [--checkpoint FILE]
+ *                  [--scenario-file FILE] [--export-scenario FILE]
+ *                  [--record FILE] [--record-every N] [--keyframe-interval N]
+ *                  [--sleep true|false] [--pool true|false]
+ *                  [--budget N] [--spawn-policy allow|refuse|defer]
+ *                  [--pm-gravity G] [--pm-subdivisions N] [--p3m-cutoff R]
+ *                  [--export-frames DIR] [--export-every N] [--export-width N] [--export-height N]
+ *                  [--export-queue N] [--export-encoders N]
+ *                  [--stream-port PORT] [--stream-every N] [--stream-velocities true|false]
+ *                  [--ring FILE] [--ring-slots N] [--ring-capacity N] [--ring-every N]
+ * </pre>
+ * The run stops after --steps updates or --seconds of wall-clock time,
+ * whichever comes first. With neither given it runs 1000 steps.
+ * --restore starts from a {@link WorldSnapshot} instead of a scenario and
+ * --checkpoint saves one when the run ends. --scenario-file loads a scenario
+ * file (see {@link ScenarioReader}) and --export-scenario writes the starting
+ * particles as one, text if the name ends in ".txt". --record writes a trajectory
+ * of the measured steps that the GUI can play back with --play. --pm-gravity
+ * adds mutual gravity between all particles through {@link ParticleMeshGravity}.
+ * --pool reuses removed particles through a {@link ParticlePool}. --budget
+ * caps the population with a {@link PopulationBudget}. --export-frames renders
+ * every --export-every'th measured step to a PNG sequence through a
+ * {@link FrameExporter}. --stream-port serves the measured steps to viewers on
+ * this machine through a {@link FrameStreamServer}; port 0 picks a free one.
+ * --ring publishes them into a memory-mapped {@link FrameRingWriter} file that
+ * other processes can follow, ideally under /dev/shm.
+ */
+public class HeadlessRunner {
+    private String scenario = "gravity-field";
+    private int particles = Scenarios.DEFAULT_PARTICLE_COUNT;
+    private long steps = -1;
+    private double seconds = -1;
+    private double deltaTime = 0.016;
+    private double size = 100;
+    private double cellSize = 10;
+    private long seed = 42;
+    private int warmupSteps = 0;
+    private Path restore;
+    private Path checkpoint;
+    private Path scenarioFile;
+    private Path exportScenario;
+    private Path record;
+    private int recordEvery = 1;
+    private int keyframeInterval = 60;
+    private boolean sleep = false;
+    private boolean pool = false;
+    private int budget = 0;
+    private PopulationBudget.SpawnPolicy spawnPolicy = PopulationBudget.SpawnPolicy.ALLOW;
+    private double pmGravity = 0;
+    private int pmSubdivisions = 4;
+    private double p3mCutoff = 0;
+    private Path exportFrames;
+    private int exportEvery = 1;
+    private int exportWidth = 1280;
+    private int exportHeight = 720;
+    private int exportQueue = 8;
+    private int exportEncoders = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int streamPort = -1;
+    private int streamEvery = 1;
+    private boolean streamVelocities = false;
+    private Path ring;
+    private int ringSlots = 8;
+    private int ringCapacity = 0;
+    private int ringEvery = 1;
+
+    public static void main(String[] args) throws IOException {
+        HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+        try {
+            runner.run();
+        } finally {
+            ParticleThreadPool.shutdown();
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: HeadlessRunner [--scenario NAME] [--particles N] [--steps N] [--seconds S]");
+        System.err.println("                      [--dt DT] [--size SIZE] [--cell CELL] [--seed SEED] [--warmup N]");
+        System.err.println("                      [--restore FILE] [--checkpoint FILE]");
+        System.err.println("                      [--scenario-file FILE] [--export-scenario FILE]");
+        System.err.println("                      [--record FILE] [--record-every N] [--keyframe-interval N]");
+        System.err.println("                      [--sleep true|false] [--pool true|false]");
+        System.err.println("                      [--budget N] [--spawn-policy allow|refuse|defer]");
+        System.err.println("                      [--pm-gravity G] [--pm-subdivisions N] [--p3m-cutoff R]");
+        System.err.println("                      [--export-frames DIR] [--export-every N] [--export-width N]");
+        System.err.println("                      [--export-height N] [--export-queue N] [--export-encoders N]");
+        System.err.println("                      [--stream-port PORT] [--stream-every N] [--stream-velocities true|false]");
+        System.err.println("                      [--ring FILE] [--ring-slots N] [--ring-capacity N] [--ring-every N]");
+        System.err.println("Scenarios: " + Scenarios.names());
+    }
+
+    void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--scenario": scenario = value; break;
+                case "--particles": particles = Integer.parseInt(value); break;
+                case "--steps": steps = Long.parseLong(value); break;
+                case "--seconds": seconds = Double.parseDouble(value); break;
+                case "--dt": deltaTime = Double.parseDouble(value); break;
+                case "--size": size = Double.parseDouble(value); break;
+                case "--cell": cellSize = Double.parseDouble(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--warmup": warmupSteps = Integer.parseInt(value); break;
+                case "--restore": restore = Paths.get(value); break;
+                case "--checkpoint": checkpoint = Paths.get(value); break;
+                case "--scenario-file": scenarioFile = Paths.get(value); break;
+                case "--export-scenario": exportScenario = Paths.get(value); break;
+                case "--record": record = Paths.get(value); break;
+                case "--record-every": recordEvery = Integer.parseInt(value); break;
+                case "--keyframe-interval": keyframeInterval = Integer.parseInt(value); break;
+                case "--sleep": sleep = Boolean.parseBoolean(value); break;
+                case "--pool": pool = Boolean.parseBoolean(value); break;
+                case "--budget": budget = Integer.parseInt(value); break;
+                case "--spawn-policy":
+                    spawnPolicy = PopulationBudget.SpawnPolicy.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "--pm-gravity": pmGravity = Double.parseDouble(value); break;
+                case "--pm-subdivisions": pmSubdivisions = Integer.parseInt(value); break;
+                case "--p3m-cutoff": p3mCutoff = Double.parseDouble(value); break;
+                case "--export-frames": exportFrames = Paths.get(value); break;
+                case "--export-every": exportEvery = Integer.parseInt(value); break;
+                case "--export-width": exportWidth = Integer.parseInt(value); break;
+                case "--export-height": exportHeight = Integer.parseInt(value); break;
+                case "--export-queue": exportQueue = Integer.parseInt(value); break;
+                case "--export-encoders": exportEncoders = Integer.parseInt(value); break;
+                case "--stream-port": streamPort = Integer.parseInt(value); break;
+                case "--stream-every": streamEvery = Integer.parseInt(value); break;
+                case "--stream-velocities": streamVelocities = Boolean.parseBoolean(value); break;
+                case "--ring": ring = Paths.get(value); break;
+                case "--ring-slots": ringSlots = Integer.parseInt(value); break;
+                case "--ring-capacity": ringCapacity = Integer.parseInt(value); break;
+                case "--ring-every": ringEvery = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (steps < 0 && seconds < 0) {
+            steps = 1000;
+        }
+        // Fail fast on a bad scenario name before building anything
+        Scenarios.get(scenario);
+    }
+
+    void run() throws IOException {
+        World world;
+        long setupStart = System.nanoTime();
+        if (restore != null) {
+            world = WorldSnapshot.load(restore);
+        } else if (scenarioFile != null) {
+            world = ScenarioReader.load(scenarioFile);
+        } else {
+            world = new World(size, size, cellSize);
+            Scenarios.get(scenario).populate(world, particles, new Random(seed));
+        }
+        double setupSeconds = (System.nanoTime() - setupStart) / 1e9;
+        world.setSleepEnabled(sleep);
+        if (pool) {
+            world.setParticlePool(new ParticlePool());
+        }
+        if (budget > 0) {
+            PopulationBudget populationBudget = new PopulationBudget(budget);
+            populationBudget.setSpawnPolicy(spawnPolicy);
+            world.setPopulationBudget(populationBudget);
+        }
+        if (pmGravity != 0) {
+            ParticleMeshGravity meshGravity = new ParticleMeshGravity(pmGravity, pmSubdivisions);
+            meshGravity.setP3mCutoff(p3mCutoff);
+            world.setParticleMeshGravity(meshGravity);
+        }
+
+        Object source = restore != null ? restore : scenarioFile != null ? scenarioFile : scenario;
+        System.out.printf("Scenario %s: %d particles, world %.0f x %.0f, cell %.1f, dt %.4f, %d workers%n",
+            source, world.getParticleCount(), world.getWidth(), world.getHeight(),
+            world.grid.getCellSize(), deltaTime, ParticleThreadPool.THREAD_COUNT);
+        System.out.printf("Setup: %.3f s%n", setupSeconds);
+
+        if (exportScenario != null) {
+            ScenarioWriter.write(world, exportScenario);
+            System.out.printf("Exported scenario: %s%n", exportScenario);
+        }
+
+        for (int i = 0; i < warmupSteps; i++) {
+            world.update(deltaTime);
+        }
+
+        TrajectoryRecorder recorder = null;
+        if (record != null) {
+            recorder = new TrajectoryRecorder(record, world, recordEvery, keyframeInterval, 16);
+            world.addStepListener(recorder);
+        }
+
+        FrameExporter exporter = null;
+        if (exportFrames != null) {
+            exporter = new FrameExporter(exportFrames, world, exportWidth, exportHeight, exportEvery,
+                exportQueue, exportEncoders, null);
+            world.addStepListener(exporter);
+        }
+
+        FrameStreamServer streamServer = null;
+        if (streamPort >= 0) {
+            streamServer = new FrameStreamServer(world, streamPort, streamEvery, streamVelocities);
+            world.addStepListener(streamServer);
+            System.out.printf("Streaming frames on port %d%n", streamServer.getPort());
+        }
+
+        FrameRingWriter ringWriter = null;
+        if (ring != null) {
+            // Without a capacity, leave room for the population to double
+            int capacity = ringCapacity > 0 ? ringCapacity : Math.max(1024, 2 * world.getParticleCount());
+            ringWriter = new FrameRingWriter(ring, world, ringSlots, capacity, ringEvery);
+            world.addStepListener(ringWriter);
+            System.out.printf("Frame ring: %s, %d slots of %d particles%n", ring, ringSlots, capacity);
+        }
+
+        StepProfiler profiler = new StepProfiler();
+        world.setProfiler(profiler);
+
+        long budgetNanos = seconds < 0 ? Long.MAX_VALUE : (long) (seconds * 1e9);
+        long particleSteps = 0;
+        long completed = 0;
+        long start = System.nanoTime();
+        while ((steps < 0 || completed < steps) && System.nanoTime() - start < budgetNanos) {
+            particleSteps += world.getParticleCount();
+            world.update(deltaTime);
+            completed++;
+        }
+        long elapsed = System.nanoTime() - start;
+        world.setProfiler(null);
+
+        printReport(profiler, completed, particleSteps, elapsed, world.getParticleCount());
+        if (pool) {
+            ParticlePool particlePool = world.getParticlePool();
+            System.out.printf("Pool: %d reused, %d created, %d dropped%n", particlePool.getReusedCount(),
+                particlePool.getCreatedCount(), particlePool.getDroppedCount());
+        }
+        if (budget > 0) {
+            PopulationBudget populationBudget = world.getPopulationBudget();
+            System.out.printf("Budget: %d merges, %d spawns refused, %d deferred admitted, %d waiting%n",
+                populationBudget.getMergeCount(), populationBudget.getRefusedCount(),
+                populationBudget.getAdmittedCount(), populationBudget.getDeferredCount());
+        }
+        if (sleep) {
+            System.out.printf("Awake: %d of %d particles in the last step%n",
+                world.getAwakeParticleCount(), world.getParticleCount());
+        }
+
+        if (recorder != null) {
+            world.removeStepListener(recorder);
+            recorder.close();
+            System.out.printf("Recording: %s (%d frames dropped)%n", record, recorder.getDroppedFrames());
+        }
+
+        if (streamServer != null) {
+            world.removeStepListener(streamServer);
+            streamServer.close();
+            System.out.printf("Stream: %d frames sent, %d dropped for slow clients%n",
+                streamServer.getFramesSent(), streamServer.getFramesDropped());
+        }
+
+        if (ringWriter != null) {
+            world.removeStepListener(ringWriter);
+            ringWriter.close();
+            System.out.printf("Frame ring: %d frames published%n", ringWriter.getFramesPublished());
+        }
+
+        if (exporter != null) {
+            world.removeStepListener(exporter);
+            long closeStart = System.nanoTime();
+            exporter.close();
+            System.out.printf("Frames: %d images in %s, steps waited %.3f s, %.3f s to finish%n",
+                exporter.getFramesWritten(), exportFrames, exporter.getBlockedNanos() / 1e9,
+                (System.nanoTime() - closeStart) / 1e9);
+        }
+
+        if (checkpoint != null) {
+            long saveStart = System.nanoTime();
+            WorldSnapshot.save(world, checkpoint);
+            System.out.printf("Checkpoint: %s in %.3f s%n", checkpoint, (System.nanoTime() - saveStart) / 1e9);
+        }
+    }
+
+    private static void printReport(StepProfiler profiler, long completed, long particleSteps,
+                                    long elapsedNanos, int finalParticles) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        System.out.printf("Steps: %d in %.3f s (%d particles at end)%n", completed, elapsedSeconds, finalParticles);
+        System.out.printf("Throughput: %.1f steps/s, %.4g particle-steps/s%n",
+            completed / elapsedSeconds, particleSteps / elapsedSeconds);
+
+        long total = Math.max(1, profiler.getTotalNanos());
+        System.out.println("Phase timings:");
+        for (StepProfiler.Phase phase : StepProfiler.Phase.values()) {
+            long nanos = profiler.getNanos(phase);
+            System.out.printf("  %-15s %10.1f ms total %9.3f ms/step %5.1f%%%n",
+                phase.getLabel(),
+                nanos / 1e6,
+                completed == 0 ? 0.0 : nanos / 1e6 / completed,
+                100.0 * nanos / total);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package cellularfractals.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+import cellularfractals.engine.StepListener;
+import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.render.Camera;
+import cellularfractals.render.FrameRasterizer;
+
+/**
+ * Renders every Nth step of a world to a numbered PNG sequence
+ * ({@code frame_000000.png}, {@code frame_000001.png}, ...), ready for a video
+ * encoder, without any window or AWT.
+ *
+ * The step thread only copies particle state into a pooled {@link WorldFrame}.
+ * A fixed pool of encoder threads, each with its own {@link FrameRasterizer}
+ * and {@link PngEncoder}, draws the frames as the canvas would show the whole
+ * world and writes them. Unlike {@link TrajectoryRecorder}, no frame is ever
+ * dropped: once the queue holds its configured depth of frames the step
+ * thread waits for an encoder, and the time it waited is reported by
+ * {@link #getBlockedNanos()}. Once a frame fails to render or write, no
+ * more frames are taken and {@link #close()} throws the failure.
+ *
+ * Typical use:
+ * <pre>
+ *   FrameExporter exporter = new FrameExporter(dir, world, 1280, 720, 2, 8, 4, null);
+ *   world.addStepListener(exporter);
+ *   ...
+ *   world.removeStepListener(exporter);
+ *   exporter.close();
+ * </pre>
+ */
+public class FrameExporter implements StepListener, Closeable {
+    private static final WorldFrame END = new WorldFrame();
+    // How often a waiting step checks whether the encoders have failed
+    private static final long FAILURE_CHECK_MILLIS = 50;
+
+    private final Path directory;
+    private final int width;
+    private final int height;
+    private final int size;
+    private final int xOffset;
+    private final int yOffset;
+    private final int sampleEvery;
+    private final BlockingQueue<WorldFrame> freeFrames;
+    private final BlockingQueue<WorldFrame> pendingFrames;
+    private final Thread[] encoders;
+    private final AtomicLong framesWritten = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private volatile IOException writeError;
+    private volatile boolean closed = false;
+    private long framesQueued; // Also the number of the next frame's file
+
+    /**
+     * Creates the directory if needed and starts the encoder threads.
+     * @param directory Where the images go; existing images of the same name are overwritten
+     * @param world The world being exported, for its dimensions
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param sampleEvery Export one frame every this many steps
+     * @param queueDepth Number of frames that may wait for an encoder before steps wait
+     * @param encoderCount Number of encoder threads
+     * @param setup Applied to each encoder's rasterizer before it starts, for
+     *              grid, arrows and the like, or null for the defaults
+     * @throws IOException if the directory cannot be created
+     */
+    public FrameExporter(Path directory, World world, int width, int height, int sampleEvery, int queueDepth,
+                         int encoderCount, Consumer<FrameRasterizer> setup) throws IOException {
+        if (width < 1 || height < 1 || sampleEvery < 1 || queueDepth < 1 || encoderCount < 1) {
+            throw new IllegalArgumentException(
+                "width, height, sampleEvery, queueDepth and encoderCount must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.width = width;
+        this.height = height;
+        this.sampleEvery = sampleEvery;
+        Camera camera = new Camera(world.getWidth(), world.getHeight());
+        camera.setViewport(width, height);
+        this.size = (int) Math.round(camera.getWorldSize());
+        this.xOffset = (int) Math.round(camera.getOffsetX());
+        this.yOffset = (int) Math.round(camera.getOffsetY());
+
+        // Each encoder holds one frame while it works, so they never wait on the free pool
+        this.freeFrames = new ArrayBlockingQueue<>(queueDepth + encoderCount);
+        this.pendingFrames = new ArrayBlockingQueue<>(queueDepth + encoderCount + encoderCount);
+        for (int i = 0; i < queueDepth + encoderCount; i++) {
+            freeFrames.add(new WorldFrame());
+        }
+
+        encoders = new Thread[encoderCount];
+        for (int i = 0; i < encoderCount; i++) {
+            FrameRasterizer rasterizer = new FrameRasterizer(null, 1);
+            if (setup != null) {
+                setup.accept(rasterizer);
+            }
+            encoders[i] = new Thread(() -> encodeLoop(rasterizer), "frame-encoder-" + i);
+            encoders[i].setDaemon(true);
+            encoders[i].start();
+        }
+    }
+
+    @Override
+    public void onStep(World world, long step) {
+        if (step % sampleEvery != 0 || closed || writeError != null) {
+            return;
+        }
+        WorldFrame frame = freeFrames.poll();
+        if (frame == null) {
+            // Every pooled frame is queued or being encoded: wait for one,
+            // unless an encoder has failed and may never hand it back
+            long start = System.nanoTime();
+            try {
+                while ((frame = freeFrames.poll(FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                    if (writeError != null || closed) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                blockedNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        world.captureFrame(frame);
+        // The frame's step is replaced by its place in the sequence, which names the file
+        frame.step = framesQueued++;
+        pendingFrames.offer(frame);
+    }
+
+    /**
+     * Gets the number of images written so far.
+     */
+    public long getFramesWritten() {
+        return framesWritten.get();
+    }
+
+    /**
+     * Gets the total time steps spent waiting for an encoder.
+     */
+    public long getBlockedNanos() {
+        return blockedNanos.get();
+    }
+
+    /**
+     * Gets the file a frame of the sequence is written to.
+     * @param index Position in the sequence, from 0
+     */
+    public Path getFramePath(long index) {
+        return directory.resolve(String.format("frame_%06d.png", index));
+    }
+
+    /**
+     * Waits for queued frames to be written and stops the encoders. The
+     * exporter should be removed from the world first.
+     * @throws IOException if any image could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (int i = 0; i < encoders.length; i++) {
+                pendingFrames.put(END);
+            }
+            for (Thread encoder : encoders) {
+                encoder.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while finishing frame export", e);
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private void encodeLoop(FrameRasterizer rasterizer) {
+        int[] pixels = new int[width * height];
+        try (PngEncoder png = new PngEncoder(Deflater.BEST_SPEED)) {
+            while (true) {
+                WorldFrame frame = pendingFrames.take();
+                if (frame == END) {
+                    return;
+                }
+                try {
+                    if (writeError == null) {
+                        rasterizer.render(frame, pixels, width, height, size, xOffset, yOffset);
+                        png.write(pixels, width, height, getFramePath(frame.step));
+                        framesWritten.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                } catch (RuntimeException e) {
+                    fail(new IOException("Could not export frame " + frame.step, e));
+                } finally {
+                    freeFrames.offer(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            fail(new IOException("Frame encoder failed", e));
+        }
+    }
+
+    /**
+     * Records the first failure, which stops further frames and is thrown by {@link #close()}.
+     */
+    private synchronized void fail(IOException e) {
+        if (writeError == null) {
+            writeError = e;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package cellularfractals.io;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the memory-mapped frame ring written by {@link FrameRingWriter}
+ * and read by {@link FrameRingReader}, possibly in other processes. All
+ * numbers are little endian.
+ *
+ * <pre>
+ * header (64 bytes)
+ *   int    magic 'CFSR'
+ *   int    format version
+ *   int    slot count
+ *   int    most particles per slot
+ *   long   bytes per slot
+ *   double world width, world height
+ *   long   sequence of the newest complete frame, -1 before the first
+ *   int    1 once the writer has closed
+ *   int    reserved
+ * slots, each
+ *   long   seqlock: 2 * sequence + 1 while being written, 2 * sequence + 2 once complete
+ *   long   step
+ *   int    particle count
+ *   int    flags, FLAG_TRUNCATED if the world had more particles than fit
+ *   int    particles in the world, more than the count if truncated
+ *   int    reserved
+ *   int    ids[max]
+ *   byte   types[max], padded to 8 bytes
+ *   float  x[max], y[max], vx[max], vy[max], radius[max], mass[max]
+ *   int    color[max]
+ * </pre>
+ *
+ * Frame n goes to slot n modulo the slot count. A reader copies or reads a
+ * slot between two reads of its seqlock and keeps the result only if both
+ * show the same complete sequence; otherwise the writer lapped it and the
+ * frame is gone.
+ */
+final class FrameRing {
+    static final int MAGIC = 0x43465352;         // "CFSR"
+    static final int VERSION = 1;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int HEADER_BYTES = 64;
+    static final int SLOT_COUNT_OFFSET = 8;
+    static final int MAX_PARTICLES_OFFSET = 12;
+    static final int SLOT_BYTES_OFFSET = 16;
+    static final int WORLD_WIDTH_OFFSET = 24;
+    static final int WORLD_HEIGHT_OFFSET = 32;
+    static final int LATEST_OFFSET = 40;
+    static final int CLOSED_OFFSET = 48;
+
+    static final int SEQUENCE_OFFSET = 0;
+    static final int STEP_OFFSET = 8;
+    static final int COUNT_OFFSET = 16;
+    static final int FLAGS_OFFSET = 20;
+    static final int TOTAL_OFFSET = 24;
+    static final int IDS_OFFSET = 32;
+
+    static final int FLAG_TRUNCATED = 1;
+
+    /** Atomic access to the longs shared between processes; offsets must be 8-byte aligned. */
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ORDER);
+    static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ORDER);
+
+    private FrameRing() {
+    }
+
+    /**
+     * Byte offsets of the arrays in a slot for a number of particles.
+     */
+    static final class Slot {
+        final int maxParticles;
+        final int types;
+        final int x;
+        final int y;
+        final int vx;
+        final int vy;
+        final int radius;
+        final int mass;
+        final int color;
+        final int bytes;
+
+        Slot(int maxParticles) {
+            this.maxParticles = maxParticles;
+            int four = align(maxParticles * 4);
+            types = IDS_OFFSET + four;
+            x = types + align(maxParticles);
+            y = x + four;
+            vx = y + four;
+            vy = vx + four;
+            radius = vy + four;
+            mass = radius + four;
+            color = mass + four;
+            bytes = color + four;
+        }
+
+        private static int align(int bytes) {
+            return (bytes + 7) & ~7;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package cellularfractals.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.particles.Particle;
+
+/**
+ * Reads the frames a {@link FrameRingWriter}, usually in another process,
+ * publishes into a memory-mapped ring. Readers never signal the writer, so
+ * any number of them can follow one ring at their own pace; frames a reader
+ * was too slow for are skipped rather than delaying the world.
+ *
+ * Frames can be copied into a {@link WorldFrame} with {@link #next} or
+ * {@link #read}, or read in place through a {@link FrameView}, whose values
+ * are only trustworthy if {@link FrameView#isIntact()} still holds after
+ * they were read.
+ *
+ * Typical use, checking for the end only when caught up so the last
+ * frames before the writer closed are still read:
+ * <pre>
+ *   try (FrameRingReader ring = FrameRingReader.open(path)) {
+ *       WorldFrame frame = new WorldFrame();
+ *       while (true) {
+ *           boolean closed = ring.isWriterClosed();
+ *           if (ring.next(frame) >= 0) {
+ *               ...
+ *           } else if (closed) {
+ *               break;
+ *           } else {
+ *               Thread.sleep(1);
+ *           }
+ *       }
+ *   }
+ * </pre>
+ */
+public class FrameRingReader implements Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final IntBuffer ints;
+    private final FloatBuffer floats;
+    private final FrameRing.Slot layout;
+    private final int slotCount;
+    private final double worldWidth;
+    private final double worldHeight;
+    private final FrameView view = new FrameView();
+    private long nextSequence = 0;
+    private long framesSkipped = 0;
+
+    private FrameRingReader(FileChannel channel, MappedByteBuffer buffer, FrameRing.Slot layout, int slotCount) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.ints = buffer.asIntBuffer();
+        this.floats = buffer.asFloatBuffer();
+        this.layout = layout;
+        this.slotCount = slotCount;
+        this.worldWidth = buffer.getDouble(FrameRing.WORLD_WIDTH_OFFSET);
+        this.worldHeight = buffer.getDouble(FrameRing.WORLD_HEIGHT_OFFSET);
+    }
+
+    /**
+     * Maps a ring file read-only.
+     * @param path The ring file
+     * @return The reader, positioned at the oldest frame still in the ring
+     * @throws IOException if the file cannot be mapped or is not a complete frame ring
+     */
+    public static FrameRingReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FrameRing.HEADER_BYTES) {
+                throw new IOException("Not a frame ring");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(FrameRing.ORDER);
+            if ((int) FrameRing.INTS.getAcquire(buffer, 0) != FrameRing.MAGIC) {
+                throw new IOException("Not a frame ring");
+            }
+            int version = buffer.getInt(4);
+            if (version != FrameRing.VERSION) {
+                throw new IOException("Unsupported frame ring version " + version);
+            }
+            int slotCount = buffer.getInt(FrameRing.SLOT_COUNT_OFFSET);
+            FrameRing.Slot layout = new FrameRing.Slot(buffer.getInt(FrameRing.MAX_PARTICLES_OFFSET));
+            if (slotCount < 1 || layout.bytes != buffer.getLong(FrameRing.SLOT_BYTES_OFFSET)
+                    || size < FrameRing.HEADER_BYTES + (long) slotCount * layout.bytes) {
+                throw new IOException("Frame ring header does not match its size");
+            }
+            FrameRingReader reader = new FrameRingReader(channel, buffer, layout, slotCount);
+            reader.nextSequence = Math.max(0, reader.getLatestSequence() - slotCount + 1);
+            return reader;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public double getWorldWidth() {
+        return worldWidth;
+    }
+
+    public double getWorldHeight() {
+        return worldHeight;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public int getMaxParticles() {
+        return layout.maxParticles;
+    }
+
+    /**
+     * Gets the sequence number of the newest complete frame.
+     * @return The sequence, or -1 if nothing has been published yet
+     */
+    public long getLatestSequence() {
+        return (long) FrameRing.LONGS.getAcquire(buffer, FrameRing.LATEST_OFFSET);
+    }
+
+    /** Checks whether the writer has closed the ring; no frames follow the latest. */
+    public boolean isWriterClosed() {
+        return (int) FrameRing.INTS.getAcquire(buffer, FrameRing.CLOSED_OFFSET) != 0;
+    }
+
+    /** Gets the number of frames {@link #next} passed over because the writer had overwritten them. */
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    /**
+     * Copies the frame after the one this reader last returned, or the oldest
+     * one still in the ring if the writer has overwritten that.
+     * @param frame The frame to overwrite
+     * @return The frame's sequence, or -1 if no newer frame has been published
+     */
+    public long next(WorldFrame frame) {
+        while (true) {
+            long latest = getLatestSequence();
+            if (nextSequence > latest) {
+                return -1;
+            }
+            // The oldest slot may be rewritten at any moment, so a lapped reader aims one past it
+            long oldest = latest - slotCount + 1;
+            if (nextSequence < oldest) {
+                long target = Math.min(latest, oldest + 1);
+                framesSkipped += target - nextSequence;
+                nextSequence = target;
+            }
+            long sequence = nextSequence;
+            if (read(sequence, frame)) {
+                nextSequence = sequence + 1;
+                return sequence;
+            }
+            framesSkipped++;
+            nextSequence = sequence + 1;
+        }
+    }
+
+    /**
+     * Copies the newest frame in the ring, whether or not it was read before.
+     * @param frame The frame to overwrite
+     * @return The frame's sequence, or -1 if nothing has been published yet
+     */
+    public long latest(WorldFrame frame) {
+        while (true) {
+            long sequence = getLatestSequence();
+            if (sequence < 0) {
+                return -1;
+            }
+            if (read(sequence, frame)) {
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Copies one frame out of the ring.
+     * @param sequence The frame's sequence number
+     * @param frame The frame to overwrite; left in an unspecified state on failure
+     * @return false if that frame has not been published yet or has been overwritten
+     */
+    public boolean read(long sequence, WorldFrame frame) {
+        int base = slotBase(sequence);
+        if (slotSequence(base, true) != 2 * sequence + 2) {
+            return false;
+        }
+        int count = Math.min(buffer.getInt(base + FrameRing.COUNT_OFFSET), layout.maxParticles);
+        frame.ensureCapacity(count);
+        frame.step = buffer.getLong(base + FrameRing.STEP_OFFSET);
+        frame.worldWidth = worldWidth;
+        frame.worldHeight = worldHeight;
+        ints.get((base + FrameRing.IDS_OFFSET) / 4, frame.ids, 0, count);
+        buffer.get(base + layout.types, frame.types, 0, count);
+        floats.get((base + layout.x) / 4, frame.x, 0, count);
+        floats.get((base + layout.y) / 4, frame.y, 0, count);
+        floats.get((base + layout.vx) / 4, frame.vx, 0, count);
+        floats.get((base + layout.vy) / 4, frame.vy, 0, count);
+        floats.get((base + layout.radius) / 4, frame.radius, 0, count);
+        floats.get((base + layout.mass) / 4, frame.mass, 0, count);
+        ints.get((base + layout.color) / 4, frame.color, 0, count);
+        if (slotSequence(base, false) != 2 * sequence + 2) {
+            return false;
+        }
+        Arrays.fill(frame.trailColor, 0, count, Particle.CosmeticSettings.CYAN); // Not published
+        frame.count = count;
+        return true;
+    }
+
+    /**
+     * Points this reader's view at a frame in the ring without copying it.
+     * The view is shared by calls on this reader and only valid until the next one.
+     * @param sequence The frame's sequence number
+     * @return The view, or null if that frame has not been published yet or has been overwritten
+     */
+    public FrameView view(long sequence) {
+        int base = slotBase(sequence);
+        if (slotSequence(base, true) != 2 * sequence + 2) {
+            return null;
+        }
+        view.base = base;
+        view.expected = 2 * sequence + 2;
+        view.count = Math.min(buffer.getInt(base + FrameRing.COUNT_OFFSET), layout.maxParticles);
+        return view;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int slotBase(long sequence) {
+        if (sequence < 0) {
+            throw new IllegalArgumentException("Negative sequence " + sequence);
+        }
+        return FrameRing.HEADER_BYTES + (int) (sequence % slotCount) * layout.bytes;
+    }
+
+    /**
+     * Reads a slot's seqlock. Reading before the data acquires, so the data
+     * is at least as new; reading after fences first, so the data is no newer.
+     */
+    private long slotSequence(int base, boolean before) {
+        if (before) {
+            return (long) FrameRing.LONGS.getAcquire(buffer, base + FrameRing.SEQUENCE_OFFSET);
+        }
+        VarHandle.loadLoadFence();
+        return (long) FrameRing.LONGS.getOpaque(buffer, base + FrameRing.SEQUENCE_OFFSET);
+    }
+
+    /**
+     * One frame read in place from the mapping. A writer that laps the
+     * reader can change the values underneath it, so read what is needed
+     * first and then check {@link #isIntact()}.
+     */
+    public final class FrameView {
+        private int base;
+        private long expected;
+        private int count;
+
+        private FrameView() {
+        }
+
+        /** Checks that the writer has not started overwriting this frame. */
+        public boolean isIntact() {
+            return slotSequence(base, false) == expected;
+        }
+
+        public long getStep() {
+            return buffer.getLong(base + FrameRing.STEP_OFFSET);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /** Checks whether the world had more particles than the ring's slots hold. */
+        public boolean isTruncated() {
+            return (buffer.getInt(base + FrameRing.FLAGS_OFFSET) & FrameRing.FLAG_TRUNCATED) != 0;
+        }
+
+        /** Gets the number of particles in the world, of which the first {@link #getCount()} are here. */
+        public int getTotalCount() {
+            return buffer.getInt(base + FrameRing.TOTAL_OFFSET);
+        }
+
+        public int getId(int i) {
+            return ints.get((base + FrameRing.IDS_OFFSET) / 4 + i);
+        }
+
+        /** Gets a particle's type id, or {@link WorldFrame#NO_TYPE}. */
+        public byte getType(int i) {
+            return buffer.get(base + layout.types + i);
+        }
+
+        public float getX(int i) {
+            return floats.get((base + layout.x) / 4 + i);
+        }
+
+        public float getY(int i) {
+            return floats.get((base + layout.y) / 4 + i);
+        }
+
+        public float getVx(int i) {
+            return floats.get((base + layout.vx) / 4 + i);
+        }
+
+        public float getVy(int i) {
+            return floats.get((base + layout.vy) / 4 + i);
+        }
+
+        public float getRadius(int i) {
+            return floats.get((base + layout.radius) / 4 + i);
+        }
+
+        public float getMass(int i) {
+            return floats.get((base + layout.mass) / 4 + i);
+        }
+
+        public int getColor(int i) {
+            return ints.get((base + layout.color) / 4 + i);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package cellularfractals.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import cellularfractals.engine.StepListener;
+import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+
+/**
+ * Publishes every Nth step of a world into a memory-mapped ring of frame
+ * slots, in the layout described by {@link FrameRing}, for readers in other
+ * processes on the same machine. Readers use {@link FrameRingReader}.
+ *
+ * Publishing never waits for readers: the step thread captures the world
+ * into a reused {@link WorldFrame}, bulk-copies it into the next slot between
+ * the two halves of the slot's seqlock and moves the ring's latest sequence
+ * forward. Readers that fall more than a ring behind lose the frames the
+ * writer overwrote and detect it from the seqlock. Worlds with more
+ * particles than a slot holds are published truncated, with
+ * {@link FrameRing#FLAG_TRUNCATED} set.
+ *
+ * Putting the file on a memory-backed file system such as /dev/shm keeps the
+ * kernel from writing the frames back to disk.
+ *
+ * Typical use:
+ * <pre>
+ *   FrameRingWriter ring = new FrameRingWriter(Paths.get("/dev/shm/world.ring"), world, 8, 100000, 1);
+ *   world.addStepListener(ring);
+ *   ...
+ *   world.removeStepListener(ring);
+ *   ring.close();
+ * </pre>
+ */
+public class FrameRingWriter implements StepListener, Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final IntBuffer ints;
+    private final FloatBuffer floats;
+    private final FrameRing.Slot layout;
+    private final int slotCount;
+    private final int sampleEvery;
+    private final WorldFrame frame = new WorldFrame();
+    private long sequence = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates or replaces the ring file and maps it.
+     * @param path The ring file
+     * @param world The world being published, for its dimensions
+     * @param slotCount Number of frames the ring holds
+     * @param maxParticles Most particles a frame holds
+     * @param sampleEvery Publish one frame every this many steps
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public FrameRingWriter(Path path, World world, int slotCount, int maxParticles, int sampleEvery)
+            throws IOException {
+        if (slotCount < 1 || maxParticles < 1 || sampleEvery < 1) {
+            throw new IllegalArgumentException("slotCount, maxParticles and sampleEvery must be positive");
+        }
+        layout = new FrameRing.Slot(maxParticles);
+        long bytes = FrameRing.HEADER_BYTES + (long) slotCount * layout.bytes;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Ring of " + bytes + " bytes is too large to map");
+        }
+        this.slotCount = slotCount;
+        this.sampleEvery = sampleEvery;
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.order(FrameRing.ORDER);
+        ints = buffer.asIntBuffer();
+        floats = buffer.asFloatBuffer();
+
+        buffer.putInt(FrameRing.SLOT_COUNT_OFFSET, slotCount);
+        buffer.putInt(FrameRing.MAX_PARTICLES_OFFSET, maxParticles);
+        buffer.putLong(FrameRing.SLOT_BYTES_OFFSET, layout.bytes);
+        buffer.putDouble(FrameRing.WORLD_WIDTH_OFFSET, world.getWidth());
+        buffer.putDouble(FrameRing.WORLD_HEIGHT_OFFSET, world.getHeight());
+        buffer.putLong(FrameRing.LATEST_OFFSET, -1);
+        buffer.putInt(FrameRing.CLOSED_OFFSET, 0);
+        buffer.putInt(4, FrameRing.VERSION);
+        // The magic goes in last so a reader never accepts a half-written header
+        FrameRing.INTS.setRelease(buffer, 0, FrameRing.MAGIC);
+    }
+
+    /** Gets the number of frames published so far. */
+    public synchronized long getFramesPublished() {
+        return sequence;
+    }
+
+    @Override
+    public void onStep(World world, long step) {
+        if (step % sampleEvery != 0 || closed) {
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            world.captureFrame(frame);
+            publish(frame);
+        }
+    }
+
+    /**
+     * Writes a frame into the next slot and makes it the latest.
+     */
+    private void publish(WorldFrame frame) {
+        int count = Math.min(frame.count, layout.maxParticles);
+        int base = FrameRing.HEADER_BYTES + (int) (sequence % slotCount) * layout.bytes;
+
+        // Odd while the slot is torn; the fence keeps the data stores after it
+        FrameRing.LONGS.setOpaque(buffer, base + FrameRing.SEQUENCE_OFFSET, 2 * sequence + 1);
+        VarHandle.storeStoreFence();
+
+        buffer.putLong(base + FrameRing.STEP_OFFSET, frame.step);
+        buffer.putInt(base + FrameRing.COUNT_OFFSET, count);
+        buffer.putInt(base + FrameRing.FLAGS_OFFSET, count < frame.count ? FrameRing.FLAG_TRUNCATED : 0);
+        buffer.putInt(base + FrameRing.TOTAL_OFFSET, frame.count);
+        ints.put((base + FrameRing.IDS_OFFSET) / 4, frame.ids, 0, count);
+        buffer.put(base + layout.types, frame.types, 0, count);
+        floats.put((base + layout.x) / 4, frame.x, 0, count);
+        floats.put((base + layout.y) / 4, frame.y, 0, count);
+        floats.put((base + layout.vx) / 4, frame.vx, 0, count);
+        floats.put((base + layout.vy) / 4, frame.vy, 0, count);
+        floats.put((base + layout.radius) / 4, frame.radius, 0, count);
+        floats.put((base + layout.mass) / 4, frame.mass, 0, count);
+        ints.put((base + layout.color) / 4, frame.color, 0, count);
+
+        FrameRing.LONGS.setRelease(buffer, base + FrameRing.SEQUENCE_OFFSET, 2 * sequence + 2);
+        FrameRing.LONGS.setRelease(buffer, FrameRing.LATEST_OFFSET, sequence);
+        sequence++;
+    }
+
+    /**
+     * Marks the ring closed for readers and releases the file. The mapping
+     * itself stays valid until the buffer is collected.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        FrameRing.INTS.setRelease(buffer, FrameRing.CLOSED_OFFSET, 1);
+        channel.close();
+    }
+}
@@ -0,0 +1,166 @@
+package cellularfractals.io;
+
+import java.nio.ByteBuffer;
+
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.particles.Particle;
+
+/**
+ * Wire format of the frame stream sent by {@link FrameStreamServer} and read
+ * by {@link FrameStreamClient}. All numbers are big endian.
+ *
+ * <pre>
+ * hello, once per connection (24 bytes)
+ *   int    magic 'CFST'
+ *   int    protocol version
+ *   double world width, world height
+ * frames, each
+ *   int    length in bytes of the rest of the frame
+ *   long   step
+ *   int    particle count
+ *   byte   flags, FLAG_VELOCITIES if velocities follow the positions
+ *   ushort palette size, then that many int ARGB colors
+ *   per particle:
+ *     int    id
+ *     byte   type id, or -1 for none
+ *     ushort x, y quantized to 16 bits across the world extent
+ *     ushort radius in 1/256 world units
+ *     ubyte  index of the particle's color in the palette
+ *     short  vx, vy in 1/256 world units per step (only with FLAG_VELOCITIES)
+ * </pre>
+ *
+ * A frame of n particles takes 12 bytes per particle, 16 with velocities,
+ * plus the palette. A frame has at most {@link #MAX_PALETTE} colors; any
+ * more share the palette's last entry.
+ */
+final class FrameStream {
+    static final int MAGIC = 0x43465354;         // "CFST"
+    static final int VERSION = 1;
+
+    static final int HELLO_BYTES = 24;
+    static final int FRAME_HEADER_BYTES = 4 + 8 + 4 + 1 + 2;
+    static final int PARTICLE_BYTES = 12;
+    static final int VELOCITY_BYTES = 4;
+
+    static final int FLAG_VELOCITIES = 1;
+
+    static final int MAX_PALETTE = 256;
+    static final float RADIUS_SCALE = 256;
+    static final float VELOCITY_SCALE = 256;
+
+    private FrameStream() {
+    }
+
+    /**
+     * Gets the most bytes a frame of a number of particles can take.
+     */
+    static int maxFrameBytes(int count, boolean velocities) {
+        return FRAME_HEADER_BYTES + MAX_PALETTE * 4
+            + count * (PARTICLE_BYTES + (velocities ? VELOCITY_BYTES : 0));
+    }
+
+    static void writeHello(ByteBuffer buffer, double worldWidth, double worldHeight) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putDouble(worldWidth);
+        buffer.putDouble(worldHeight);
+    }
+
+    /**
+     * Encodes a frame, length prefix included.
+     * @param buffer Buffer with room for {@link #maxFrameBytes}
+     * @param palette Scratch of at least {@link #MAX_PALETTE} entries
+     * @param paletteIndex Scratch of at least the frame's count entries
+     */
+    static void writeFrame(ByteBuffer buffer, WorldFrame frame, boolean velocities, int[] palette,
+                           int[] paletteIndex) {
+        int count = frame.count;
+        // Colors repeat across particles of a type, so the last match is almost always the one
+        int colors = 0;
+        int last = 0;
+        for (int i = 0; i < count; i++) {
+            int color = frame.color[i];
+            if (colors > 0 && palette[last] == color) {
+                paletteIndex[i] = last;
+                continue;
+            }
+            int found = -1;
+            for (int c = 0; c < colors; c++) {
+                if (palette[c] == color) {
+                    found = c;
+                    break;
+                }
+            }
+            if (found < 0) {
+                if (colors < MAX_PALETTE) {
+                    palette[colors] = color;
+                    found = colors++;
+                } else {
+                    found = MAX_PALETTE - 1;
+                }
+            }
+            paletteIndex[i] = found;
+            last = found;
+        }
+
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.putLong(frame.step);
+        buffer.putInt(count);
+        buffer.put((byte) (velocities ? FLAG_VELOCITIES : 0));
+        buffer.putShort((short) colors);
+        for (int c = 0; c < colors; c++) {
+            buffer.putInt(palette[c]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(frame.ids[i]);
+            buffer.put(frame.types[i]);
+            buffer.putShort((short) Trajectory.quantize(frame.x[i], frame.worldWidth));
+            buffer.putShort((short) Trajectory.quantize(frame.y[i], frame.worldHeight));
+            buffer.putShort((short) clamp(Math.round(frame.radius[i] * RADIUS_SCALE), 0, 0xFFFF));
+            buffer.put((byte) paletteIndex[i]);
+            if (velocities) {
+                buffer.putShort((short) clamp(Math.round(frame.vx[i] * VELOCITY_SCALE), -0x7FFF, 0x7FFF));
+                buffer.putShort((short) clamp(Math.round(frame.vy[i] * VELOCITY_SCALE), -0x7FFF, 0x7FFF));
+            }
+        }
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+
+    /**
+     * Decodes a frame, without its length prefix, into a frame whose world
+     * size is already set. Velocities are zero if the frame has none.
+     */
+    static void readFrame(ByteBuffer buffer, WorldFrame frame, int[] palette) {
+        frame.step = buffer.getLong();
+        int count = buffer.getInt();
+        boolean velocities = (buffer.get() & FLAG_VELOCITIES) != 0;
+        int colors = buffer.getShort() & 0xFFFF;
+        for (int c = 0; c < colors; c++) {
+            palette[c] = buffer.getInt();
+        }
+        frame.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            frame.ids[i] = buffer.getInt();
+            frame.types[i] = buffer.get();
+            frame.x[i] = Trajectory.dequantize(buffer.getShort() & 0xFFFF, frame.worldWidth);
+            frame.y[i] = Trajectory.dequantize(buffer.getShort() & 0xFFFF, frame.worldHeight);
+            frame.radius[i] = (buffer.getShort() & 0xFFFF) / RADIUS_SCALE;
+            frame.color[i] = palette[buffer.get() & 0xFF];
+            frame.trailColor[i] = Particle.CosmeticSettings.CYAN; // Not streamed
+            if (velocities) {
+                frame.vx[i] = buffer.getShort() / VELOCITY_SCALE;
+                frame.vy[i] = buffer.getShort() / VELOCITY_SCALE;
+            } else {
+                frame.vx[i] = 0;
+                frame.vy[i] = 0;
+            }
+            frame.mass[i] = 0;
+        }
+        frame.count = count;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,126 @@
+package cellularfractals.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import cellularfractals.engine.WorldFrame;
+
+/**
+ * Reads the frames streamed by a {@link FrameStreamServer} on this machine.
+ *
+ * Typical use:
+ * <pre>
+ *   try (FrameStreamClient client = FrameStreamClient.connect(port)) {
+ *       WorldFrame frame = new WorldFrame();
+ *       while (client.next(frame)) {
+ *           ...
+ *       }
+ *   }
+ * </pre>
+ */
+public class FrameStreamClient implements Closeable {
+    private final SocketChannel channel;
+    private final double worldWidth;
+    private final double worldHeight;
+    private final ByteBuffer length = ByteBuffer.allocate(4);
+    private final int[] palette = new int[FrameStream.MAX_PALETTE];
+    private ByteBuffer body = ByteBuffer.allocate(1 << 16);
+
+    private FrameStreamClient(SocketChannel channel, double worldWidth, double worldHeight) {
+        this.channel = channel;
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+    }
+
+    /**
+     * Connects to a server on the loopback address and reads its hello.
+     * @param port The server's port
+     * @return The connected client
+     * @throws IOException if the connection fails or the server does not speak the protocol
+     */
+    public static FrameStreamClient connect(int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        try {
+            ByteBuffer hello = ByteBuffer.allocate(FrameStream.HELLO_BYTES);
+            if (!readFully(channel, hello)) {
+                throw new EOFException("Server closed before its hello");
+            }
+            hello.flip();
+            if (hello.getInt() != FrameStream.MAGIC) {
+                throw new IOException("Not a frame stream");
+            }
+            int version = hello.getInt();
+            if (version != FrameStream.VERSION) {
+                throw new IOException("Unsupported frame stream version " + version);
+            }
+            return new FrameStreamClient(channel, hello.getDouble(), hello.getDouble());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public double getWorldWidth() {
+        return worldWidth;
+    }
+
+    public double getWorldHeight() {
+        return worldHeight;
+    }
+
+    /**
+     * Waits for the next frame and decodes it. Positions come back quantized
+     * to 16 bits across the world; masses are not streamed and read as zero,
+     * velocities are zero unless the server sends them.
+     * @param frame The frame to overwrite
+     * @return false once the server has closed the stream
+     * @throws IOException if reading fails
+     */
+    public boolean next(WorldFrame frame) throws IOException {
+        length.clear();
+        if (!readFully(channel, length)) {
+            return false;
+        }
+        int bytes = length.getInt(0);
+        if (body.capacity() < bytes) {
+            body = ByteBuffer.allocate(Math.max(bytes, body.capacity() * 3 / 2));
+        }
+        body.clear().limit(bytes);
+        if (!readFully(channel, body)) {
+            throw new EOFException("Stream ended inside a frame");
+        }
+        body.flip();
+        frame.worldWidth = worldWidth;
+        frame.worldHeight = worldHeight;
+        FrameStream.readFrame(body, frame, palette);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Fills the buffer.
+     * @return false if the stream ended before anything was read
+     */
+    private static boolean readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        boolean started = false;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (started) {
+                    throw new EOFException("Stream ended inside a message");
+                }
+                return false;
+            }
+            started = true;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,329 @@
+package cellularfractals.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cellularfractals.engine.FramePublisher;
+import cellularfractals.engine.StepListener;
+import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+
+/**
+ * Streams every Nth step of a world to any number of viewers connected over
+ * loopback TCP, in the format described by {@link FrameStream}. Viewers read
+ * it with {@link FrameStreamClient}.
+ *
+ * The step thread only captures the world through a {@link FramePublisher},
+ * and only while someone is connected and the server thread has taken the
+ * previous capture. One server thread encodes the latest frame once and
+ * writes it to every client with non-blocking sockets. A client that cannot
+ * keep up never slows the world or the other clients: while it is still
+ * receiving one frame, newer frames replace each other as its next one, and
+ * the ones replaced are counted as dropped.
+ *
+ * Typical use:
+ * <pre>
+ *   FrameStreamServer server = new FrameStreamServer(world, 0, 1, false);
+ *   world.addStepListener(server);
+ *   System.out.println("Streaming on port " + server.getPort());
+ *   ...
+ *   world.removeStepListener(server);
+ *   server.close();
+ * </pre>
+ */
+public class FrameStreamServer implements StepListener, Closeable {
+    private final double worldWidth;
+    private final double worldHeight;
+    private final int sampleEvery;
+    private final boolean velocities;
+    private final FramePublisher publisher = new FramePublisher();
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private volatile int clientCount;
+    private volatile boolean closed = false;
+
+    // Server thread state
+    private final ArrayDeque<Message> freeMessages = new ArrayDeque<>();
+    private final int[] palette = new int[FrameStream.MAX_PALETTE];
+    private int[] paletteIndex = new int[0];
+
+    /**
+     * Opens the server socket on the loopback address and starts the server thread.
+     * @param world The world being streamed, for its dimensions
+     * @param port Port to listen on, or 0 for any free port
+     * @param sampleEvery Stream one frame every this many steps
+     * @param velocities Whether frames include velocities
+     * @throws IOException if the socket cannot be opened
+     */
+    public FrameStreamServer(World world, int port, int sampleEvery, boolean velocities) throws IOException {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be positive");
+        }
+        this.worldWidth = world.getWidth();
+        this.worldHeight = world.getHeight();
+        this.sampleEvery = sampleEvery;
+        this.velocities = velocities;
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+
+        thread = new Thread(this::serveLoop, "frame-stream-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /** Gets the number of connected clients. */
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /** Gets the number of frames fully sent, summed over clients. */
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+
+    /** Gets the number of frames skipped for clients that were behind, summed over clients. */
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    @Override
+    public void onStep(World world, long step) {
+        if (step % sampleEvery != 0 || closed || clientCount == 0) {
+            return;
+        }
+        publisher.publish(world);
+        selector.wakeup();
+    }
+
+    /**
+     * Disconnects every client and stops the server thread.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serveLoop() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        disconnect(key);
+                    }
+                }
+                if (publisher.hasNewFrame()) {
+                    broadcast(publisher.latest());
+                }
+            }
+        } catch (IOException e) {
+            // The selector failed; nothing more can be served
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Client) {
+                    disconnect(key);
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Client client = new Client();
+        ByteBuffer hello = ByteBuffer.allocate(FrameStream.HELLO_BYTES);
+        FrameStream.writeHello(hello, worldWidth, worldHeight);
+        hello.flip();
+        client.sending = hello;
+        channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, client);
+        clientCount++;
+    }
+
+    /**
+     * Reads and discards anything a client sends, to notice when it hangs up.
+     */
+    private void read(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        client.inbox.clear();
+        if (((SocketChannel) key.channel()).read(client.inbox) < 0) {
+            disconnect(key);
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        while (client.sending != null) {
+            channel.write(client.sending);
+            if (client.sending.hasRemaining()) {
+                return; // The socket is full; wait until it drains
+            }
+            if (client.sendingMessage != null) {
+                release(client.sendingMessage);
+                framesSent.incrementAndGet();
+            }
+            client.sendingMessage = client.next;
+            client.sending = client.next == null ? null : client.next.buffer.duplicate();
+            client.next = null;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Encodes a frame once and queues it for every client, replacing any
+     * frame still waiting behind the one a client is receiving.
+     */
+    private void broadcast(WorldFrame frame) {
+        Message message = null;
+        for (SelectionKey key : selector.keys()) {
+            if (!key.isValid() || !(key.attachment() instanceof Client)) {
+                continue;
+            }
+            if (message == null) {
+                message = encode(frame);
+            }
+            Client client = (Client) key.attachment();
+            message.references++;
+            if (client.sending == null) {
+                client.sendingMessage = message;
+                client.sending = message.buffer.duplicate();
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } else {
+                if (client.next != null) {
+                    release(client.next);
+                    framesDropped.incrementAndGet();
+                }
+                client.next = message;
+            }
+        }
+    }
+
+    private Message encode(WorldFrame frame) {
+        Message message = freeMessages.poll();
+        int bytes = FrameStream.maxFrameBytes(frame.count, velocities);
+        if (message == null || message.buffer.capacity() < bytes) {
+            message = new Message(ByteBuffer.allocateDirect(Math.max(bytes, bytes + bytes / 2)));
+        }
+        if (paletteIndex.length < frame.count) {
+            paletteIndex = new int[Math.max(frame.count, paletteIndex.length * 3 / 2)];
+        }
+        message.buffer.clear();
+        FrameStream.writeFrame(message.buffer, frame, velocities, palette, paletteIndex);
+        message.buffer.flip();
+        message.references = 0;
+        return message;
+    }
+
+    private void release(Message message) {
+        if (--message.references == 0) {
+            freeMessages.push(message);
+        }
+    }
+
+    private void disconnect(SelectionKey key) {
+        Object attachment = key.attachment();
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Already gone
+        }
+        if (attachment instanceof Client) {
+            Client client = (Client) attachment;
+            if (client.sendingMessage != null) {
+                release(client.sendingMessage);
+            }
+            if (client.next != null) {
+                release(client.next);
+            }
+            client.sending = null;
+            client.sendingMessage = null;
+            client.next = null;
+            key.attach(null);
+            clientCount--;
+        }
+    }
+
+    /**
+     * An encoded frame shared by the clients sending it, reused once none are.
+     */
+    private static final class Message {
+        final ByteBuffer buffer; // Flipped after encoding; clients send duplicates
+        int references;
+
+        Message(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Client {
+        final ByteBuffer inbox = ByteBuffer.allocate(256);
+        ByteBuffer sending; // What is being written now: the hello or a view of sendingMessage
+        Message sendingMessage;
+        Message next;
+    }
+}
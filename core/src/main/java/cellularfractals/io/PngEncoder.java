@@ -0,0 +1,162 @@
+package cellularfractals.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes packed 0xRRGGBB pixels as 8-bit RGB PNG files, with nothing but
+ * {@link Deflater}, so images can be produced where AWT and ImageIO are not
+ * available.
+ *
+ * Each row is stored with the Sub filter, which turns the runs of flat
+ * background in a rendered frame into zeros that deflate well. Buffers, the
+ * deflater and the checksum are reused between images; an encoder is not
+ * thread safe, use one per thread and {@link #close()} it when done.
+ */
+public class PngEncoder implements AutoCloseable {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int FILTER_SUB = 1;
+    private static final int CHUNK_BYTES = 1 << 16; // Most image data per IDAT chunk
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private byte[] row = new byte[0];
+    private final byte[] chunk = new byte[8 + CHUNK_BYTES + 4];
+
+    /**
+     * Creates an encoder.
+     * @param level Deflate level, {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public PngEncoder(int level) {
+        deflater = new Deflater(level);
+    }
+
+    /**
+     * Encodes an image to a file, replacing it if it exists.
+     * @param pixels Row-major 0xRRGGBB pixels, at least width * height long
+     * @param width Image width
+     * @param height Image height
+     * @param path Destination file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(int[] pixels, int width, int height, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(pixels, width, height, out);
+        }
+    }
+
+    /**
+     * Encodes an image to a stream. The stream is not closed.
+     * @param pixels Row-major 0xRRGGBB pixels, at least width * height long
+     * @param width Image width
+     * @param height Image height
+     * @param out Destination stream
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(int[] pixels, int width, int height, OutputStream out) throws IOException {
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("image must be non-empty and fit the pixel array");
+        }
+        int rowBytes = 1 + width * 3;
+        if (row.length < rowBytes) {
+            row = new byte[rowBytes];
+        }
+        out.write(SIGNATURE);
+
+        int length = 0;
+        length = putInt(length, width);
+        length = putInt(length, height);
+        chunk[8 + length++] = 8; // Bit depth
+        chunk[8 + length++] = 2; // Truecolor
+        chunk[8 + length++] = 0; // Deflate
+        chunk[8 + length++] = 0; // Adaptive filtering
+        chunk[8 + length++] = 0; // No interlace
+        writeChunk(out, "IHDR", length);
+
+        deflater.reset();
+        length = 0;
+        for (int y = 0; y < height; y++) {
+            filterRow(pixels, y * width, width);
+            deflater.setInput(row, 0, rowBytes);
+            while (!deflater.needsInput()) {
+                length = deflate(out, length);
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            length = deflate(out, length);
+        }
+        if (length > 0) {
+            writeChunk(out, "IDAT", length);
+        }
+        writeChunk(out, "IEND", 0);
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    /**
+     * Fills the row buffer with one image row, each byte less the one three
+     * before it.
+     */
+    private void filterRow(int[] pixels, int start, int width) {
+        row[0] = FILTER_SUB;
+        int previous = 0;
+        for (int x = 0, k = 1; x < width; x++, k += 3) {
+            int rgb = pixels[start + x];
+            row[k] = (byte) ((rgb >> 16) - (previous >> 16));
+            row[k + 1] = (byte) ((rgb >> 8) - (previous >> 8));
+            row[k + 2] = (byte) (rgb - previous);
+            previous = rgb;
+        }
+    }
+
+    /**
+     * Deflates into the pending IDAT chunk, writing it out when full.
+     * @return The chunk's new data length
+     */
+    private int deflate(OutputStream out, int length) throws IOException {
+        length += deflater.deflate(chunk, 8 + length, CHUNK_BYTES - length);
+        if (length == CHUNK_BYTES) {
+            writeChunk(out, "IDAT", length);
+            length = 0;
+        }
+        return length;
+    }
+
+    private int putInt(int length, int value) {
+        chunk[8 + length] = (byte) (value >>> 24);
+        chunk[9 + length] = (byte) (value >>> 16);
+        chunk[10 + length] = (byte) (value >>> 8);
+        chunk[11 + length] = (byte) value;
+        return length + 4;
+    }
+
+    /**
+     * Writes the chunk buffer's data, already at offset 8, framed with its
+     * length, type and CRC.
+     */
+    private void writeChunk(OutputStream out, String type, int length) throws IOException {
+        chunk[0] = (byte) (length >>> 24);
+        chunk[1] = (byte) (length >>> 16);
+        chunk[2] = (byte) (length >>> 8);
+        chunk[3] = (byte) length;
+        for (int i = 0; i < 4; i++) {
+            chunk[4 + i] = (byte) type.charAt(i);
+        }
+        crc.reset();
+        crc.update(chunk, 4, 4 + length);
+        int sum = (int) crc.getValue();
+        chunk[8 + length] = (byte) (sum >>> 24);
+        chunk[9 + length] = (byte) (sum >>> 16);
+        chunk[10 + length] = (byte) (sum >>> 8);
+        chunk[11 + length] = (byte) sum;
+        out.write(chunk, 0, 12 + length);
+    }
+}
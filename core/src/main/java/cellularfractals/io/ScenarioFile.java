@@ -0,0 +1,70 @@
+package cellularfractals.io;
+
+import java.util.Locale;
+
+import cellularfractals.particles.ParticleType;
+
+/**
+ * Layout of scenario files read by {@link ScenarioReader} and written by
+ * {@link ScenarioWriter}. A scenario lists the particles a world starts
+ * with; unlike a {@link WorldSnapshot} it is meant to be generated by
+ * scripts or edited by hand, and is read as a stream so a file can describe
+ * millions of particles.
+ *
+ * Text form, one directive per line, '#' starts a comment:
+ * <pre>
+ *   cfscenario 1
+ *   world WIDTH HEIGHT CELL_SIZE
+ *   defaults TYPE RANGE STRENGTH
+ *   TYPE X Y [DX DY [RANGE STRENGTH]]
+ * </pre>
+ * TYPE is a type key such as "gravity" or "magnetic-negative". A defaults
+ * line sets the effect range and strength for later particles of that
+ * type that do not give their own.
+ *
+ * Binary form, big endian:
+ * <pre>
+ * header (32 bytes)
+ *   int    magic 'CFSC'
+ *   int    format version
+ *   double world width, world height, grid cell size
+ * records until end of file, each starting with a tag byte
+ *   RECORD_PARTICLE         byte type, float x, y, dx, dy
+ *   RECORD_PARTICLE_EFFECT  byte type, float x, y, dx, dy, range, strength
+ *   RECORD_DEFAULTS         byte type, float range, strength
+ * </pre>
+ */
+final class ScenarioFile {
+    static final int MAGIC = 0x43465343; // "CFSC"
+    static final int VERSION = 1;
+    static final String TEXT_MAGIC = "cfscenario";
+
+    static final int HEADER_BYTES = 32;
+
+    static final byte RECORD_PARTICLE = 1;
+    static final byte RECORD_PARTICLE_EFFECT = 2;
+    static final byte RECORD_DEFAULTS = 3;
+
+    private ScenarioFile() {
+    }
+
+    /**
+     * Gets the key a type is written as in text scenarios, e.g. "anti-gravity".
+     */
+    static String typeKey(ParticleType type) {
+        return type.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    /**
+     * Looks up a type by its text key.
+     * @return The type, or null if the key is unknown
+     */
+    static ParticleType typeForKey(String key) {
+        for (ParticleType type : ParticleType.values()) {
+            if (typeKey(type).equals(key)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
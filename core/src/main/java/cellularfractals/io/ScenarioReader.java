@@ -0,0 +1,292 @@
+package cellularfractals.io;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.ParticleType;
+
+/**
+ * Loads scenario files (see {@link ScenarioFile}) in either form, detected
+ * from the first bytes of the file.
+ *
+ * Records are read through a small fixed buffer and turned into particles
+ * as they are parsed, inside a {@link World#beginBulkLoad() bulk load}, so
+ * nothing but the particles themselves is held in memory and the grid is
+ * built once, in parallel, at the end.
+ */
+public final class ScenarioReader {
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private ScenarioReader() {
+    }
+
+    /**
+     * Loads a scenario into a new world with the dimensions it declares.
+     * @param path Scenario file
+     * @return The populated world
+     * @throws IOException if reading fails or the file is malformed
+     */
+    public static World load(Path path) throws IOException {
+        if (isBinary(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = readBinaryHeader(channel);
+                World world = new World(buffer.getDouble(8), buffer.getDouble(16), buffer.getDouble(24));
+                readBinaryRecords(channel, buffer, world);
+                return world;
+            }
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return readText(reader, path, null);
+        }
+    }
+
+    /**
+     * Loads a scenario into an existing world, adding to its particles. The
+     * world's dimensions are kept.
+     * @param path Scenario file
+     * @param world The world to add the particles to
+     * @return Number of particles read
+     * @throws IOException if reading fails or the file is malformed
+     */
+    public static long loadInto(Path path, World world) throws IOException {
+        int before = world.getParticleCount();
+        if (isBinary(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                readBinaryRecords(channel, readBinaryHeader(channel), world);
+            }
+        } else {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                readText(reader, path, world);
+            }
+        }
+        return world.getParticleCount() - before;
+    }
+
+    private static boolean isBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Keep reading, short files simply are not binary
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == ScenarioFile.MAGIC;
+        }
+    }
+
+    /**
+     * Reads the header into a fresh buffer, leaving the buffer positioned
+     * after it with any further bytes already read still available.
+     */
+    private static ByteBuffer readBinaryHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        buffer.limit(0);
+        ensure(channel, buffer, ScenarioFile.HEADER_BYTES);
+        int version = buffer.getInt(4);
+        if (version != ScenarioFile.VERSION) {
+            throw new IOException("Unsupported scenario version " + version + ", expected " + ScenarioFile.VERSION);
+        }
+        buffer.position(ScenarioFile.HEADER_BYTES);
+        return buffer;
+    }
+
+    private static void readBinaryRecords(FileChannel channel, ByteBuffer buffer, World world) throws IOException {
+        float[][] defaults = new float[ParticleType.count()][2];
+        world.beginBulkLoad();
+        try {
+            while (ensure(channel, buffer, 1)) {
+                byte tag = buffer.get();
+                switch (tag) {
+                    case ScenarioFile.RECORD_PARTICLE: {
+                        requireRecord(channel, buffer, 1 + 4 * 4);
+                        ParticleType type = ParticleType.fromId(buffer.get());
+                        float[] effect = defaults[type.getId()];
+                        type.create(world, buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat(),
+                            effect[0], effect[1]);
+                        break;
+                    }
+                    case ScenarioFile.RECORD_PARTICLE_EFFECT: {
+                        requireRecord(channel, buffer, 1 + 6 * 4);
+                        ParticleType type = ParticleType.fromId(buffer.get());
+                        type.create(world, buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat(),
+                            buffer.getFloat(), buffer.getFloat());
+                        break;
+                    }
+                    case ScenarioFile.RECORD_DEFAULTS: {
+                        requireRecord(channel, buffer, 1 + 2 * 4);
+                        float[] effect = defaults[ParticleType.fromId(buffer.get()).getId()];
+                        effect[0] = buffer.getFloat();
+                        effect[1] = buffer.getFloat();
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown scenario record tag " + tag);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed scenario: " + e.getMessage(), e);
+        } finally {
+            world.endBulkLoad();
+        }
+    }
+
+    private static void requireRecord(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (!ensure(channel, buffer, bytes)) {
+            throw new EOFException("Scenario file ends in the middle of a record");
+        }
+    }
+
+    /**
+     * Makes sure at least the given number of bytes can be read from the
+     * buffer, compacting it and reading more from the channel as needed.
+     * @return false if the file ends first
+     */
+    private static boolean ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+
+    /**
+     * Parses a text scenario. With a null world, a new one is created from
+     * the world line, which must then come before any particle.
+     */
+    private static World readText(BufferedReader reader, Path path, World world) throws IOException {
+        float[][] defaults = new float[ParticleType.count()][2];
+        String[] tokens = new String[8];
+        boolean sawMagic = false;
+        boolean bulk = false;
+        int lineNumber = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int count = tokenize(line, tokens);
+                if (count == 0) {
+                    continue;
+                }
+                if (!sawMagic) {
+                    if (count != 2 || !tokens[0].equals(ScenarioFile.TEXT_MAGIC)) {
+                        throw new IOException("Not a scenario file");
+                    }
+                    if (Integer.parseInt(tokens[1]) != ScenarioFile.VERSION) {
+                        throw new IOException("Unsupported scenario version " + tokens[1]
+                            + ", expected " + ScenarioFile.VERSION);
+                    }
+                    sawMagic = true;
+                    continue;
+                }
+                if (tokens[0].equals("world")) {
+                    expectTokens(count, 4, path, lineNumber);
+                    if (world == null) {
+                        world = new World(Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]),
+                            Double.parseDouble(tokens[3]));
+                    }
+                    continue;
+                }
+                if (tokens[0].equals("defaults")) {
+                    expectTokens(count, 4, path, lineNumber);
+                    float[] effect = defaults[parseType(tokens[1], path, lineNumber).getId()];
+                    effect[0] = Float.parseFloat(tokens[2]);
+                    effect[1] = Float.parseFloat(tokens[3]);
+                    continue;
+                }
+
+                ParticleType type = parseType(tokens[0], path, lineNumber);
+                if (count != 3 && count != 5 && count != 7) {
+                    throw error(path, lineNumber, "expected TYPE X Y [DX DY [RANGE STRENGTH]]");
+                }
+                if (world == null) {
+                    throw error(path, lineNumber, "particle before the world line");
+                }
+                if (!bulk) {
+                    world.beginBulkLoad();
+                    bulk = true;
+                }
+                float[] effect = defaults[type.getId()];
+                type.create(world,
+                    Double.parseDouble(tokens[1]),
+                    Double.parseDouble(tokens[2]),
+                    count >= 5 ? Double.parseDouble(tokens[3]) : 0,
+                    count >= 5 ? Double.parseDouble(tokens[4]) : 0,
+                    count == 7 ? Float.parseFloat(tokens[5]) : effect[0],
+                    count == 7 ? Float.parseFloat(tokens[6]) : effect[1]);
+            }
+        } catch (NumberFormatException e) {
+            throw error(path, lineNumber, "bad number: " + e.getMessage());
+        } finally {
+            if (bulk) {
+                world.endBulkLoad();
+            }
+        }
+        if (!sawMagic) {
+            throw new IOException("Not a scenario file");
+        }
+        if (world == null) {
+            throw new IOException(path + ": missing world line");
+        }
+        return world;
+    }
+
+    /**
+     * Splits a line on whitespace into the token array, ignoring anything
+     * after '#'. Cheaper than a regex split for files with millions of lines.
+     * @return Number of tokens, which may exceed the array length
+     */
+    private static int tokenize(String line, String[] tokens) {
+        int count = 0;
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == '#') {
+                break;
+            }
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(line.charAt(i)) && line.charAt(i) != '#') {
+                i++;
+            }
+            if (count < tokens.length) {
+                tokens[count] = line.substring(start, i);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static ParticleType parseType(String key, Path path, int lineNumber) throws IOException {
+        ParticleType type = ScenarioFile.typeForKey(key);
+        if (type == null) {
+            throw error(path, lineNumber, "unknown particle type '" + key + "'");
+        }
+        return type;
+    }
+
+    private static void expectTokens(int count, int expected, Path path, int lineNumber) throws IOException {
+        if (count != expected) {
+            throw error(path, lineNumber, "wrong number of fields");
+        }
+    }
+
+    private static IOException error(Path path, int lineNumber, String message) {
+        return new IOException(path + ":" + lineNumber + ": " + message);
+    }
+}
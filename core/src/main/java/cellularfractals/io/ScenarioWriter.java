@@ -0,0 +1,213 @@
+package cellularfractals.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+
+/**
+ * Writes a scenario file (see {@link ScenarioFile}) one particle at a time,
+ * so generators never need to hold the whole scenario in memory.
+ *
+ * Typical use:
+ * <pre>
+ *   try (ScenarioWriter writer = ScenarioWriter.binary(path, 1000, 1000, 10)) {
+ *       writer.setDefaults(ParticleType.GRAVITY, 5f, .01f);
+ *       for (...) {
+ *           writer.addParticle(ParticleType.GRAVITY, x, y, dx, dy);
+ *       }
+ *   }
+ * </pre>
+ */
+public abstract class ScenarioWriter implements Closeable {
+    private ScenarioWriter() {
+    }
+
+    /**
+     * Creates a text scenario file.
+     * @param path Destination file, overwritten if it exists
+     * @param width World width
+     * @param height World height
+     * @param cellSize Grid cell size
+     * @return The writer
+     * @throws IOException if the file cannot be created
+     */
+    public static ScenarioWriter text(Path path, double width, double height, double cellSize) throws IOException {
+        return new Text(Files.newBufferedWriter(path, StandardCharsets.UTF_8), width, height, cellSize);
+    }
+
+    /**
+     * Creates a binary scenario file, about a third the size of the text
+     * form and much faster to read.
+     * @param path Destination file, overwritten if it exists
+     * @param width World width
+     * @param height World height
+     * @param cellSize Grid cell size
+     * @return The writer
+     * @throws IOException if the file cannot be created
+     */
+    public static ScenarioWriter binary(Path path, double width, double height, double cellSize) throws IOException {
+        return new Binary(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING), width, height, cellSize);
+    }
+
+    /**
+     * Writes every particle of a world. Files whose name ends in ".txt" are
+     * written as text, anything else as binary.
+     * @param world The world; must not be updating concurrently
+     * @param path Destination file
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if a particle has no {@link ParticleType}
+     */
+    public static void write(World world, Path path) throws IOException {
+        double width = world.getWidth();
+        double height = world.getHeight();
+        double cellSize = world.grid.getCellSize();
+        try (ScenarioWriter writer = path.toString().endsWith(".txt")
+                ? text(path, width, height, cellSize)
+                : binary(path, width, height, cellSize)) {
+            for (Particle particle : world.particles) {
+                writer.addParticle(particle);
+            }
+        }
+    }
+
+    /**
+     * Sets the effect range and strength used by later particles of a type
+     * that are added without their own.
+     */
+    public abstract void setDefaults(ParticleType type, float effectRange, float effectStrength) throws IOException;
+
+    /**
+     * Adds a particle that uses its type's default effect parameters.
+     */
+    public abstract void addParticle(ParticleType type, float x, float y, float dx, float dy) throws IOException;
+
+    /**
+     * Adds a particle with its own effect parameters.
+     */
+    public abstract void addParticle(ParticleType type, float x, float y, float dx, float dy,
+                                     float effectRange, float effectStrength) throws IOException;
+
+    /**
+     * Adds an existing particle's type, position, velocity and effect parameters.
+     * @throws IllegalArgumentException if the particle has no {@link ParticleType}
+     */
+    public void addParticle(Particle particle) throws IOException {
+        ParticleType type = particle.getParticleType();
+        if (type == null) {
+            throw new IllegalArgumentException("Cannot write particle of " + particle.getClass().getName());
+        }
+        float[] effect = new float[2];
+        WorldSnapshot.effectParameters(particle, effect);
+        addParticle(type, (float) particle.getX(), (float) particle.getY(),
+            (float) particle.getBaseDx(), (float) particle.getBaseDy(), effect[0], effect[1]);
+    }
+
+    private static final class Text extends ScenarioWriter {
+        private final BufferedWriter out;
+
+        Text(BufferedWriter out, double width, double height, double cellSize) throws IOException {
+            this.out = out;
+            out.write(ScenarioFile.TEXT_MAGIC + " " + ScenarioFile.VERSION + "\n");
+            out.write("world " + width + " " + height + " " + cellSize + "\n");
+        }
+
+        @Override
+        public void setDefaults(ParticleType type, float effectRange, float effectStrength) throws IOException {
+            out.write("defaults " + ScenarioFile.typeKey(type) + " " + effectRange + " " + effectStrength + "\n");
+        }
+
+        @Override
+        public void addParticle(ParticleType type, float x, float y, float dx, float dy) throws IOException {
+            out.write(ScenarioFile.typeKey(type) + " " + x + " " + y + " " + dx + " " + dy + "\n");
+        }
+
+        @Override
+        public void addParticle(ParticleType type, float x, float y, float dx, float dy,
+                                float effectRange, float effectStrength) throws IOException {
+            out.write(ScenarioFile.typeKey(type) + " " + x + " " + y + " " + dx + " " + dy
+                + " " + effectRange + " " + effectStrength + "\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class Binary extends ScenarioWriter {
+        private static final int RECORD_MAX_BYTES = 2 + 6 * 4;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+        Binary(FileChannel channel, double width, double height, double cellSize) throws IOException {
+            this.channel = channel;
+            buffer.putInt(ScenarioFile.MAGIC);
+            buffer.putInt(ScenarioFile.VERSION);
+            buffer.putDouble(width);
+            buffer.putDouble(height);
+            buffer.putDouble(cellSize);
+        }
+
+        @Override
+        public void setDefaults(ParticleType type, float effectRange, float effectStrength) throws IOException {
+            reserve();
+            buffer.put(ScenarioFile.RECORD_DEFAULTS);
+            buffer.put((byte) type.getId());
+            buffer.putFloat(effectRange);
+            buffer.putFloat(effectStrength);
+        }
+
+        @Override
+        public void addParticle(ParticleType type, float x, float y, float dx, float dy) throws IOException {
+            reserve();
+            buffer.put(ScenarioFile.RECORD_PARTICLE);
+            buffer.put((byte) type.getId());
+            buffer.putFloat(x).putFloat(y).putFloat(dx).putFloat(dy);
+        }
+
+        @Override
+        public void addParticle(ParticleType type, float x, float y, float dx, float dy,
+                                float effectRange, float effectStrength) throws IOException {
+            reserve();
+            buffer.put(ScenarioFile.RECORD_PARTICLE_EFFECT);
+            buffer.put((byte) type.getId());
+            buffer.putFloat(x).putFloat(y).putFloat(dx).putFloat(dy);
+            buffer.putFloat(effectRange).putFloat(effectStrength);
+        }
+
+        private void reserve() throws IOException {
+            if (buffer.remaining() < RECORD_MAX_BYTES) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package cellularfractals.io;
+
+/**
+ * Layout of trajectory files written by {@link TrajectoryRecorder} and read
+ * by {@link TrajectoryPlayer}. All numbers are big endian.
+ *
+ * <pre>
+ * file header (32 bytes)
+ *   int    magic 'CFTR'
+ *   int    format version
+ *   double world width, world height
+ *   int    keyframe interval
+ *   int    reserved
+ * frames, each
+ *   byte   kind (KEYFRAME or DELTA)
+ *   long   step
+ *   int    particle count
+ *   int    payload length in bytes
+ *   payload:
+ *     byte   flags, FLAG_MEMBERSHIP if the id list follows
+ *     varint zigzag id deltas, one per particle (only with FLAG_MEMBERSHIP)
+ *     varint number of attribute updates, then per update
+ *            varint index in frame, byte type, float radius, int color
+ *     per particle: x then y, each either an absolute varint (keyframes and
+ *            particles absent from the previous frame) or a zigzag varint
+ *            delta from the particle's previous quantized position
+ * keyframe index, written on close
+ *   int    keyframe count
+ *   per keyframe: long file offset, long step
+ *   long   total frame count
+ * trailer (12 bytes)
+ *   long   offset of the keyframe index
+ *   int    magic 'CFTI'
+ * </pre>
+ *
+ * Positions are quantized to 16 bits across the world extent. A keyframe is
+ * self-contained, so playback can start at any keyframe. A DELTA frame
+ * without FLAG_MEMBERSHIP has the same particles in the same order as the
+ * frame before it.
+ */
+final class Trajectory {
+    static final int MAGIC = 0x43465452;         // "CFTR"
+    static final int INDEX_MAGIC = 0x43465449;   // "CFTI"
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 32;
+    static final int FRAME_HEADER_BYTES = 17;
+    static final int TRAILER_BYTES = 12;
+
+    static final byte KEYFRAME = 1;
+    static final byte DELTA = 2;
+
+    static final int FLAG_MEMBERSHIP = 1;
+
+    static final int QUANT_MAX = 0xFFFF;
+
+    private Trajectory() {
+    }
+
+    static int quantize(float value, double extent) {
+        int q = (int) Math.round(value / extent * QUANT_MAX);
+        return Math.max(0, Math.min(QUANT_MAX, q));
+    }
+
+    static float dequantize(int q, double extent) {
+        return (float) (q * extent / QUANT_MAX);
+    }
+}
@@ -0,0 +1,377 @@
+package cellularfractals.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import cellularfractals.engine.WorldFrame;
+
+/**
+ * Plays back a trajectory file written by {@link TrajectoryRecorder}.
+ *
+ * The file is memory-mapped one keyframe segment at a time, so seeking to
+ * any keyframe is a table lookup and a mapping, independent of how far into
+ * the recording it is. Files that were not closed cleanly have no keyframe
+ * index; it is rebuilt by scanning frame headers when the file is opened.
+ *
+ * A player is not thread-safe; use one per consumer thread.
+ */
+public class TrajectoryPlayer implements Closeable {
+    private final FileChannel channel;
+    private final double worldWidth;
+    private final double worldHeight;
+    private final long[] keyframeOffsets;
+    private final long[] keyframeSteps;
+    private final long dataEnd;
+    private final long frameCount;
+
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+
+    // Decoder state, indexed by particle id
+    private int frameCounter = 0;
+    private int[] previousIds = new int[0];
+    private int[] lastFrame = new int[0];
+    private int[] lastQx = new int[0];
+    private int[] lastQy = new int[0];
+    private byte[] lastType = new byte[0];
+    private float[] lastRadius = new float[0];
+    private int[] lastColor = new int[0];
+
+    private TrajectoryPlayer(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size < Trajectory.HEADER_BYTES) {
+            throw new IOException("Not a trajectory file");
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Trajectory.HEADER_BYTES);
+        if (header.getInt() != Trajectory.MAGIC) {
+            throw new IOException("Not a trajectory file");
+        }
+        int version = header.getInt();
+        if (version != Trajectory.VERSION) {
+            throw new IOException("Unsupported trajectory version " + version + ", expected " + Trajectory.VERSION);
+        }
+        worldWidth = header.getDouble();
+        worldHeight = header.getDouble();
+
+        List<long[]> keyframes = new ArrayList<>();
+        long[] end = new long[2];
+        if (!readIndex(size, keyframes, end)) {
+            keyframes.clear();
+            scanFrames(size, keyframes, end);
+        }
+        dataEnd = end[0];
+        frameCount = end[1];
+        keyframeOffsets = new long[keyframes.size()];
+        keyframeSteps = new long[keyframes.size()];
+        for (int i = 0; i < keyframes.size(); i++) {
+            keyframeOffsets[i] = keyframes.get(i)[0];
+            keyframeSteps[i] = keyframes.get(i)[1];
+        }
+        if (keyframeOffsets.length > 0) {
+            seekKeyframe(0);
+        }
+    }
+
+    /**
+     * Opens a trajectory file.
+     * @param path The file
+     * @return A player positioned at the first frame
+     * @throws IOException if the file cannot be read or is not a trajectory
+     */
+    public static TrajectoryPlayer open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new TrajectoryPlayer(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public double getWorldWidth() {
+        return worldWidth;
+    }
+
+    public double getWorldHeight() {
+        return worldHeight;
+    }
+
+    /**
+     * Gets the number of recorded frames.
+     * @return Frame count
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Gets the number of keyframes, i.e. the positions seekKeyframe accepts.
+     * @return Keyframe count
+     */
+    public int getKeyframeCount() {
+        return keyframeOffsets.length;
+    }
+
+    /**
+     * Gets the simulation step a keyframe was recorded at.
+     * @param keyframe Keyframe index
+     * @return Step number
+     */
+    public long getKeyframeStep(int keyframe) {
+        return keyframeSteps[keyframe];
+    }
+
+    /**
+     * Positions the player so the next frame read is the given keyframe.
+     * @param keyframe Keyframe index in [0, getKeyframeCount())
+     */
+    public void seekKeyframe(int keyframe) {
+        if (keyframe < 0 || keyframe >= keyframeOffsets.length) {
+            throw new IndexOutOfBoundsException("Keyframe " + keyframe + " of " + keyframeOffsets.length);
+        }
+        mapSegment(keyframe);
+        // Skip a counter value so no particle looks present in the "previous" frame
+        frameCounter += 2;
+    }
+
+    /**
+     * Positions the player at the first frame recorded at or after a step,
+     * decoding forward from the nearest earlier keyframe.
+     * @param step The step to seek to
+     * @param frame Receives the frame found
+     * @return false if the recording ends before that step
+     */
+    public boolean seekStep(long step, WorldFrame frame) {
+        if (keyframeOffsets.length == 0) {
+            return false;
+        }
+        int keyframe = Arrays.binarySearch(keyframeSteps, step);
+        if (keyframe < 0) {
+            keyframe = Math.max(0, -keyframe - 2);
+        }
+        seekKeyframe(keyframe);
+        while (next(frame)) {
+            if (frame.step >= step) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes the next frame. Velocities are not recorded and are left at zero.
+     * @param frame Receives the frame, reused to avoid allocation
+     * @return false at the end of the recording
+     */
+    public boolean next(WorldFrame frame) {
+        if (segment == null) {
+            return false;
+        }
+        if (!segment.hasRemaining()) {
+            if (segmentIndex + 1 >= keyframeOffsets.length) {
+                return false;
+            }
+            mapSegment(segmentIndex + 1);
+        }
+
+        ByteBuffer in = segment;
+        byte kind = in.get();
+        long step = in.getLong();
+        int count = in.getInt();
+        in.getInt(); // Payload length, only needed when scanning
+        boolean keyframe = kind == Trajectory.KEYFRAME;
+        int frameIndex = ++frameCounter;
+
+        frame.ensureCapacity(count);
+        frame.step = step;
+        frame.worldWidth = worldWidth;
+        frame.worldHeight = worldHeight;
+        frame.count = count;
+
+        int flags = in.get();
+        if ((flags & Trajectory.FLAG_MEMBERSHIP) != 0) {
+            int id = 0;
+            int maxId = 0;
+            for (int i = 0; i < count; i++) {
+                id += VarInts.unzigzag(VarInts.read(in));
+                frame.ids[i] = id;
+                maxId = Math.max(maxId, id);
+            }
+            ensureIdCapacity(maxId + 1);
+        } else {
+            System.arraycopy(previousIds, 0, frame.ids, 0, count);
+        }
+
+        int updates = VarInts.read(in);
+        for (int u = 0; u < updates; u++) {
+            int id = frame.ids[VarInts.read(in)];
+            lastType[id] = in.get();
+            lastRadius[id] = in.getFloat();
+            lastColor[id] = in.getInt();
+        }
+
+        for (int i = 0; i < count; i++) {
+            int id = frame.ids[i];
+            int qx;
+            int qy;
+            if (keyframe || lastFrame[id] != frameIndex - 1) {
+                qx = VarInts.read(in);
+                qy = VarInts.read(in);
+            } else {
+                qx = lastQx[id] + VarInts.unzigzag(VarInts.read(in));
+                qy = lastQy[id] + VarInts.unzigzag(VarInts.read(in));
+            }
+            lastQx[id] = qx;
+            lastQy[id] = qy;
+            lastFrame[id] = frameIndex;
+
+            frame.x[i] = Trajectory.dequantize(qx, worldWidth);
+            frame.y[i] = Trajectory.dequantize(qy, worldHeight);
+            frame.vx[i] = 0;
+            frame.vy[i] = 0;
+            frame.types[i] = lastType[id];
+            frame.radius[i] = lastRadius[id];
+            frame.color[i] = lastColor[id];
+        }
+
+        if (previousIds.length < count) {
+            previousIds = new int[frame.ids.length];
+        }
+        System.arraycopy(frame.ids, 0, previousIds, 0, count);
+        return true;
+    }
+
+    /**
+     * Plays from the current position to the end, handing each frame to the
+     * consumer on the calling thread. The same frame object is reused for
+     * every call, so consumers that keep frames must copy them.
+     * @param consumer Receives frames
+     * @param stepsPerSecond Playback rate in simulation steps per second, or 0 for as fast as possible
+     * @throws InterruptedException if the thread is interrupted, which stops playback
+     */
+    public void play(Consumer<WorldFrame> consumer, double stepsPerSecond) throws InterruptedException {
+        WorldFrame frame = new WorldFrame();
+        long startNanos = System.nanoTime();
+        long firstStep = -1;
+        while (next(frame)) {
+            if (firstStep < 0) {
+                firstStep = frame.step;
+            }
+            if (stepsPerSecond > 0) {
+                long due = startNanos + (long) ((frame.step - firstStep) / stepsPerSecond * 1e9);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            consumer.accept(frame);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        channel.close();
+    }
+
+    private void mapSegment(int keyframe) {
+        long start = keyframeOffsets[keyframe];
+        long end = keyframe + 1 < keyframeOffsets.length ? keyframeOffsets[keyframe + 1] : dataEnd;
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Keyframe segment larger than 2 GB; record with a shorter keyframe interval");
+        }
+        try {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map trajectory segment", e);
+        }
+        segmentIndex = keyframe;
+    }
+
+    /**
+     * Reads the keyframe index written by a clean close.
+     * @return false if the file has no valid index
+     */
+    private boolean readIndex(long size, List<long[]> keyframes, long[] end) throws IOException {
+        if (size < Trajectory.HEADER_BYTES + Trajectory.TRAILER_BYTES) {
+            return false;
+        }
+        ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - Trajectory.TRAILER_BYTES,
+            Trajectory.TRAILER_BYTES);
+        long indexOffset = trailer.getLong();
+        if (trailer.getInt() != Trajectory.INDEX_MAGIC || indexOffset < Trajectory.HEADER_BYTES
+                || indexOffset > size - Trajectory.TRAILER_BYTES - 12) {
+            return false;
+        }
+        ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset,
+            size - Trajectory.TRAILER_BYTES - indexOffset);
+        int count = index.getInt();
+        if (index.remaining() != count * 16L + 8) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            keyframes.add(new long[] {index.getLong(), index.getLong()});
+        }
+        end[0] = indexOffset;
+        end[1] = index.getLong();
+        return true;
+    }
+
+    /**
+     * Rebuilds the keyframe index by walking frame headers, stopping at the
+     * first incomplete frame.
+     */
+    private void scanFrames(long size, List<long[]> keyframes, long[] end) throws IOException {
+        ByteBuffer frameHeader = ByteBuffer.allocate(Trajectory.FRAME_HEADER_BYTES);
+        long offset = Trajectory.HEADER_BYTES;
+        long frames = 0;
+        while (offset + Trajectory.FRAME_HEADER_BYTES <= size) {
+            frameHeader.clear();
+            channel.read(frameHeader, offset);
+            byte kind = frameHeader.get(0);
+            long step = frameHeader.getLong(1);
+            int payload = frameHeader.getInt(13);
+            long next = offset + Trajectory.FRAME_HEADER_BYTES + payload;
+            if ((kind != Trajectory.KEYFRAME && kind != Trajectory.DELTA) || payload < 0 || next > size) {
+                break;
+            }
+            if (kind == Trajectory.KEYFRAME) {
+                keyframes.add(new long[] {offset, step});
+            } else if (keyframes.isEmpty()) {
+                break;
+            }
+            offset = next;
+            frames++;
+        }
+        end[0] = offset;
+        end[1] = frames;
+    }
+
+    private void ensureIdCapacity(int ids) {
+        if (lastFrame.length >= ids) {
+            return;
+        }
+        int capacity = Math.max(ids, lastFrame.length * 2);
+        int oldLength = lastFrame.length;
+        lastFrame = Arrays.copyOf(lastFrame, capacity);
+        Arrays.fill(lastFrame, oldLength, capacity, Integer.MIN_VALUE);
+        lastQx = Arrays.copyOf(lastQx, capacity);
+        lastQy = Arrays.copyOf(lastQy, capacity);
+        lastType = Arrays.copyOf(lastType, capacity);
+        lastRadius = Arrays.copyOf(lastRadius, capacity);
+        lastColor = Arrays.copyOf(lastColor, capacity);
+    }
+}
@@ -0,0 +1,309 @@
+package cellularfractals.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cellularfractals.engine.StepListener;
+import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+
+/**
+ * Records every Nth step of a world to a trajectory file (see {@link Trajectory}).
+ *
+ * The step thread only copies particle state into a pooled {@link WorldFrame};
+ * encoding and disk writes happen on a dedicated writer thread. When the
+ * writer falls behind and every pooled frame is in use, the step's frame is
+ * dropped instead of blocking the simulation, and counted in
+ * {@link #getDroppedFrames()}.
+ *
+ * Typical use:
+ * <pre>
+ *   TrajectoryRecorder recorder = new TrajectoryRecorder(path, world, 1, 60, 8);
+ *   world.addStepListener(recorder);
+ *   ...
+ *   world.removeStepListener(recorder);
+ *   recorder.close();
+ * </pre>
+ */
+public class TrajectoryRecorder implements StepListener, Closeable {
+    private static final WorldFrame END = new WorldFrame();
+
+    private final FileChannel channel;
+    private final int sampleEvery;
+    private final int keyframeInterval;
+    private final double worldWidth;
+    private final double worldHeight;
+    private final BlockingQueue<WorldFrame> freeFrames;
+    private final BlockingQueue<WorldFrame> pendingFrames;
+    private final Thread writer;
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private volatile IOException writeError;
+    private volatile boolean closed = false;
+
+    // Writer thread state
+    private final List<long[]> keyframes = new ArrayList<>();
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private long position;
+    private long framesWritten;
+    private int[] previousIds = new int[0];
+    private int previousCount = -1;
+    private int[] lastFrame = new int[0];
+    private int[] lastQx = new int[0];
+    private int[] lastQy = new int[0];
+    private byte[] lastType = new byte[0];
+    private float[] lastRadius = new float[0];
+    private int[] lastColor = new int[0];
+
+    /**
+     * Creates the file and starts the writer thread.
+     * @param path Destination file, overwritten if it exists
+     * @param world The world being recorded, for its dimensions
+     * @param sampleEvery Record one frame every this many steps
+     * @param keyframeInterval Write a self-contained keyframe every this many recorded frames
+     * @param queueDepth Number of frames that may wait for the writer before frames are dropped
+     * @throws IOException if the file cannot be created
+     */
+    public TrajectoryRecorder(Path path, World world, int sampleEvery, int keyframeInterval, int queueDepth)
+            throws IOException {
+        if (sampleEvery < 1 || keyframeInterval < 1 || queueDepth < 1) {
+            throw new IllegalArgumentException("sampleEvery, keyframeInterval and queueDepth must be positive");
+        }
+        this.sampleEvery = sampleEvery;
+        this.keyframeInterval = keyframeInterval;
+        this.worldWidth = world.getWidth();
+        this.worldHeight = world.getHeight();
+        this.freeFrames = new ArrayBlockingQueue<>(queueDepth);
+        this.pendingFrames = new ArrayBlockingQueue<>(queueDepth + 1);
+        for (int i = 0; i < queueDepth; i++) {
+            freeFrames.add(new WorldFrame());
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(Trajectory.HEADER_BYTES);
+        header.putInt(Trajectory.MAGIC);
+        header.putInt(Trajectory.VERSION);
+        header.putDouble(worldWidth);
+        header.putDouble(worldHeight);
+        header.putInt(keyframeInterval);
+        header.putInt(0);
+        header.flip();
+        writeFully(header);
+
+        writer = new Thread(this::writeLoop, "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void onStep(World world, long step) {
+        if (step % sampleEvery != 0 || closed) {
+            return;
+        }
+        WorldFrame frame = freeFrames.poll();
+        if (frame == null) {
+            droppedFrames.incrementAndGet();
+            return;
+        }
+        world.captureFrame(frame);
+        pendingFrames.offer(frame);
+    }
+
+    /**
+     * Gets the number of frames skipped because the writer was behind.
+     * @return Dropped frame count
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Waits for queued frames to be written, appends the keyframe index and
+     * closes the file. The recorder should be removed from the world first.
+     * @throws IOException if any write failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            pendingFrames.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while finishing trajectory", e);
+        }
+        try {
+            if (writeError == null) {
+                writeIndex();
+            }
+        } finally {
+            channel.close();
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                WorldFrame frame = pendingFrames.take();
+                if (frame == END) {
+                    return;
+                }
+                if (writeError == null) {
+                    try {
+                        writeFrame(frame);
+                    } catch (IOException e) {
+                        writeError = e;
+                    }
+                }
+                freeFrames.offer(frame);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeFrame(WorldFrame frame) throws IOException {
+        int count = frame.count;
+        int frameIndex = (int) framesWritten;
+        boolean keyframe = framesWritten % keyframeInterval == 0;
+        boolean sameMembership = !keyframe && count == previousCount
+            && Arrays.equals(frame.ids, 0, count, previousIds, 0, count);
+
+        int maxId = 0;
+        for (int i = 0; i < count; i++) {
+            maxId = Math.max(maxId, frame.ids[i]);
+        }
+        ensureIdCapacity(maxId + 1);
+        // Worst case per particle: id, index, type, radius, color and two positions
+        ensureBuffer(Trajectory.FRAME_HEADER_BYTES + 1 + VarInts.MAX_BYTES
+            + count * (4 * VarInts.MAX_BYTES + 9));
+
+        buffer.clear();
+        buffer.put(keyframe ? Trajectory.KEYFRAME : Trajectory.DELTA);
+        buffer.putLong(frame.step);
+        buffer.putInt(count);
+        buffer.putInt(0); // Payload length, patched below
+
+        buffer.put((byte) (sameMembership ? 0 : Trajectory.FLAG_MEMBERSHIP));
+        if (!sameMembership) {
+            int previousId = 0;
+            for (int i = 0; i < count; i++) {
+                VarInts.write(buffer, VarInts.zigzag(frame.ids[i] - previousId));
+                previousId = frame.ids[i];
+            }
+        }
+
+        // Attributes are sent when a particle first appears or they change
+        int updates = 0;
+        for (int i = 0; i < count; i++) {
+            int id = frame.ids[i];
+            if (keyframe || lastFrame[id] != frameIndex - 1 || lastType[id] != frame.types[i]
+                    || lastRadius[id] != frame.radius[i] || lastColor[id] != frame.color[i]) {
+                updates++;
+            }
+        }
+        VarInts.write(buffer, updates);
+        for (int i = 0; i < count && updates > 0; i++) {
+            int id = frame.ids[i];
+            if (keyframe || lastFrame[id] != frameIndex - 1 || lastType[id] != frame.types[i]
+                    || lastRadius[id] != frame.radius[i] || lastColor[id] != frame.color[i]) {
+                VarInts.write(buffer, i);
+                buffer.put(frame.types[i]);
+                buffer.putFloat(frame.radius[i]);
+                buffer.putInt(frame.color[i]);
+                lastType[id] = frame.types[i];
+                lastRadius[id] = frame.radius[i];
+                lastColor[id] = frame.color[i];
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            int id = frame.ids[i];
+            int qx = Trajectory.quantize(frame.x[i], worldWidth);
+            int qy = Trajectory.quantize(frame.y[i], worldHeight);
+            if (keyframe || lastFrame[id] != frameIndex - 1) {
+                VarInts.write(buffer, qx);
+                VarInts.write(buffer, qy);
+            } else {
+                VarInts.write(buffer, VarInts.zigzag(qx - lastQx[id]));
+                VarInts.write(buffer, VarInts.zigzag(qy - lastQy[id]));
+            }
+            lastQx[id] = qx;
+            lastQy[id] = qy;
+            lastFrame[id] = frameIndex;
+        }
+
+        buffer.putInt(13, buffer.position() - Trajectory.FRAME_HEADER_BYTES);
+        buffer.flip();
+
+        if (keyframe) {
+            keyframes.add(new long[] {position, frame.step});
+        }
+        writeFully(buffer);
+
+        if (previousIds.length < count) {
+            previousIds = new int[frame.ids.length];
+        }
+        System.arraycopy(frame.ids, 0, previousIds, 0, count);
+        previousCount = count;
+        framesWritten++;
+    }
+
+    private void writeIndex() throws IOException {
+        long indexOffset = position;
+        ByteBuffer index = ByteBuffer.allocate(4 + keyframes.size() * 16 + 8 + Trajectory.TRAILER_BYTES);
+        index.putInt(keyframes.size());
+        for (long[] keyframe : keyframes) {
+            index.putLong(keyframe[0]);
+            index.putLong(keyframe[1]);
+        }
+        index.putLong(framesWritten);
+        index.putLong(indexOffset);
+        index.putInt(Trajectory.INDEX_MAGIC);
+        index.flip();
+        writeFully(index);
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data);
+        }
+    }
+
+    private void ensureBuffer(int bytes) {
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+        }
+    }
+
+    private void ensureIdCapacity(int ids) {
+        if (lastFrame.length >= ids) {
+            return;
+        }
+        int capacity = Math.max(ids, lastFrame.length * 2);
+        int oldLength = lastFrame.length;
+        lastFrame = Arrays.copyOf(lastFrame, capacity);
+        Arrays.fill(lastFrame, oldLength, capacity, Integer.MIN_VALUE);
+        lastQx = Arrays.copyOf(lastQx, capacity);
+        lastQy = Arrays.copyOf(lastQy, capacity);
+        lastType = Arrays.copyOf(lastType, capacity);
+        lastRadius = Arrays.copyOf(lastRadius, capacity);
+        lastColor = Arrays.copyOf(lastColor, capacity);
+    }
+}
@@ -0,0 +1,51 @@
+package cellularfractals.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128 variable-length integers and zigzag encoding for small signed deltas.
+ */
+final class VarInts {
+    private VarInts() {
+    }
+
+    /**
+     * Writes an unsigned varint, 7 bits per byte.
+     */
+    static void write(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint written by {@link #write}.
+     */
+    static int read(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Maps signed values to unsigned so that small magnitudes stay small.
+     */
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** Largest number of bytes one varint can take. */
+    static final int MAX_BYTES = 5;
+}
@@ -0,0 +1,376 @@
+package cellularfractals.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import cellularfractals.engine.InteractionMatrix;
+import cellularfractals.engine.World;
+import cellularfractals.particles.Effect;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.effects.ExplodeEffect;
+import cellularfractals.particles.effects.GravityEffect;
+import cellularfractals.particles.effects.MagneticEffect;
+import cellularfractals.particles.effects.NegativeGravityEffect;
+
+/**
+ * Saves and restores a {@link World} as a compact binary checkpoint.
+ *
+ * The file is columnar: a fixed header, a section table, then one section
+ * per particle attribute holding a primitive array of particleCount
+ * elements. Sections are written and read through memory-mapped buffers,
+ * so checkpointing costs a few passes over primitive arrays rather than
+ * per-object serialization.
+ *
+ * <pre>
+ * header  (64 bytes, little endian)
+ *   int    magic 'CFSN'
+ *   int    format version
+ *   int    particle count
+ *   int    section count
+ *   double world width, world height, grid cell size
+ *   int    interaction type count K of the world's interaction matrix, 0 for none
+ *   int    zero padding
+ *   long   file offset of the interaction matrix
+ *   ...    zero padding
+ * section table (16 bytes per section)
+ *   int    section id
+ *   int    element size in bytes
+ *   long   file offset of the section
+ * sections, each 8-byte aligned
+ * interaction matrix, if K &gt; 0
+ *   double strength, range, falloff for each (source, target) law, source major
+ * </pre>
+ *
+ * Readers skip sections with ids they do not know, and fall back to
+ * defaults for sections that are missing, so new attributes can be added
+ * without bumping the version.
+ */
+public final class WorldSnapshot {
+    public static final int MAGIC = 0x4346534E; // "CFSN"
+    public static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 64;
+    static final int SECTION_ENTRY_BYTES = 16;
+
+    // Section ids, never reuse a retired one
+    static final int SECTION_X = 1;
+    static final int SECTION_Y = 2;
+    static final int SECTION_VX = 3;
+    static final int SECTION_VY = 4;
+    static final int SECTION_MASS = 5;
+    static final int SECTION_RADIUS = 6;
+    static final int SECTION_RESTITUTION = 7;
+    static final int SECTION_FRICTION = 8;
+    static final int SECTION_TYPE = 9;
+    static final int SECTION_EFFECT_RANGE = 10;
+    static final int SECTION_EFFECT_STRENGTH = 11;
+    static final int SECTION_COLOR = 12;
+    static final int SECTION_TRAIL_COLOR = 13;
+    static final int SECTION_INTERACTION_TYPE = 14;
+
+    static final int INTERACTION_TYPES_OFFSET = 40;
+    static final int INTERACTION_MATRIX_OFFSET = 48;
+    static final int LAW_BYTES = 24;
+
+    private static final int[][] SECTIONS = {
+        {SECTION_X, 8}, {SECTION_Y, 8}, {SECTION_VX, 8}, {SECTION_VY, 8},
+        {SECTION_MASS, 8}, {SECTION_RADIUS, 8}, {SECTION_RESTITUTION, 8}, {SECTION_FRICTION, 8},
+        {SECTION_TYPE, 1}, {SECTION_EFFECT_RANGE, 4}, {SECTION_EFFECT_STRENGTH, 4},
+        {SECTION_COLOR, 4}, {SECTION_TRAIL_COLOR, 4}, {SECTION_INTERACTION_TYPE, 4},
+    };
+
+    private WorldSnapshot() {
+    }
+
+    /**
+     * Writes a checkpoint of every particle in the world. The file is written
+     * next to the target and moved into place once complete, so an existing
+     * checkpoint is never left half-overwritten.
+     * @param world The world to save; must not be updating concurrently
+     * @param path Destination file
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if a particle has no {@link ParticleType}
+     */
+    public static void save(World world, Path path) throws IOException {
+        List<Particle> particles = world.getParticles();
+        int count = particles.size();
+
+        long[] offsets = new long[SECTIONS.length];
+        long offset = align(HEADER_BYTES + (long) SECTIONS.length * SECTION_ENTRY_BYTES);
+        for (int s = 0; s < SECTIONS.length; s++) {
+            offsets[s] = offset;
+            long bytes = (long) count * SECTIONS[s][1];
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many particles for one snapshot: " + count);
+            }
+            offset = align(offset + bytes);
+        }
+        InteractionMatrix interactions = world.getInteractionMatrix();
+        long matrixOffset = offset;
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            List<MappedByteBuffer> written = new ArrayList<>();
+            MappedByteBuffer header = mapForWrite(channel, written, 0, offsets[0]);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(count);
+            header.putInt(SECTIONS.length);
+            header.putDouble(world.getWidth());
+            header.putDouble(world.getHeight());
+            header.putDouble(world.grid.getCellSize());
+            header.putInt(INTERACTION_TYPES_OFFSET, interactions == null ? 0 : interactions.getTypeCount());
+            header.putLong(INTERACTION_MATRIX_OFFSET, interactions == null ? 0 : matrixOffset);
+            header.position(HEADER_BYTES);
+            for (int s = 0; s < SECTIONS.length; s++) {
+                header.putInt(SECTIONS[s][0]);
+                header.putInt(SECTIONS[s][1]);
+                header.putLong(offsets[s]);
+            }
+
+            DoubleBuffer x = mapForWrite(channel, written, offsets[0], count * 8L).asDoubleBuffer();
+            DoubleBuffer y = mapForWrite(channel, written, offsets[1], count * 8L).asDoubleBuffer();
+            DoubleBuffer vx = mapForWrite(channel, written, offsets[2], count * 8L).asDoubleBuffer();
+            DoubleBuffer vy = mapForWrite(channel, written, offsets[3], count * 8L).asDoubleBuffer();
+            DoubleBuffer mass = mapForWrite(channel, written, offsets[4], count * 8L).asDoubleBuffer();
+            DoubleBuffer radius = mapForWrite(channel, written, offsets[5], count * 8L).asDoubleBuffer();
+            DoubleBuffer restitution = mapForWrite(channel, written, offsets[6], count * 8L).asDoubleBuffer();
+            DoubleBuffer friction = mapForWrite(channel, written, offsets[7], count * 8L).asDoubleBuffer();
+            MappedByteBuffer type = mapForWrite(channel, written, offsets[8], count);
+            FloatBuffer range = mapForWrite(channel, written, offsets[9], count * 4L).asFloatBuffer();
+            FloatBuffer strength = mapForWrite(channel, written, offsets[10], count * 4L).asFloatBuffer();
+            IntBuffer color = mapForWrite(channel, written, offsets[11], count * 4L).asIntBuffer();
+            IntBuffer trailColor = mapForWrite(channel, written, offsets[12], count * 4L).asIntBuffer();
+            IntBuffer interactionType = mapForWrite(channel, written, offsets[13], count * 4L).asIntBuffer();
+
+            float[] effectParams = new float[2];
+            for (int i = 0; i < count; i++) {
+                Particle p = particles.get(i);
+                ParticleType particleType = p.getParticleType();
+                if (particleType == null) {
+                    throw new IllegalArgumentException("Cannot snapshot " + p.getClass().getName()
+                        + ": it has no ParticleType");
+                }
+                x.put(i, p.getX());
+                y.put(i, p.getY());
+                vx.put(i, p.getBaseDx());
+                vy.put(i, p.getBaseDy());
+                mass.put(i, p.getMass());
+                radius.put(i, p.getRadius());
+                restitution.put(i, p.getRestitution());
+                friction.put(i, p.getFriction());
+                type.put(i, (byte) particleType.getId());
+                effectParameters(p, effectParams);
+                range.put(i, effectParams[0]);
+                strength.put(i, effectParams[1]);
+                color.put(i, p.cosmeticSettings.color);
+                trailColor.put(i, p.cosmeticSettings.trailColor);
+                interactionType.put(i, p.getInteractionType());
+            }
+            if (interactions != null) {
+                int types = interactions.getTypeCount();
+                DoubleBuffer laws = mapForWrite(channel, written, matrixOffset,
+                    (long) types * types * LAW_BYTES).asDoubleBuffer();
+                for (int source = 0; source < types; source++) {
+                    for (int target = 0; target < types; target++) {
+                        laws.put(interactions.getStrength(source, target));
+                        laws.put(interactions.getRange(source, target));
+                        laws.put(interactions.getFalloff(source, target));
+                    }
+                }
+            }
+            // Make the checkpoint durable before it replaces the previous one
+            for (MappedByteBuffer buffer : written) {
+                buffer.force();
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores a checkpoint into a new world with the saved dimensions.
+     * @param path Checkpoint file
+     * @return The restored world
+     * @throws IOException if reading fails or the file is not a valid checkpoint
+     */
+    public static World load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            readHeader(header, channel.size());
+            header.position(16);
+            World world = new World(header.getDouble(), header.getDouble(), header.getDouble());
+            readParticles(channel, header, world);
+            readInteractions(channel, header, world);
+            return world;
+        }
+    }
+
+    /**
+     * Restores a checkpoint into an existing world, adding to its particles.
+     * The world's dimensions are kept; saved particles outside them will be
+     * pushed back inside by the next update. A saved interaction matrix
+     * replaces the world's.
+     * @param path Checkpoint file
+     * @param world The world to add the particles to
+     * @throws IOException if reading fails or the file is not a valid checkpoint
+     */
+    public static void loadInto(Path path, World world) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            readHeader(header, channel.size());
+            readParticles(channel, header, world);
+            readInteractions(channel, header, world);
+        }
+    }
+
+    private static void readHeader(MappedByteBuffer header, long fileSize) throws IOException {
+        if (fileSize < HEADER_BYTES || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a world snapshot");
+        }
+        int version = header.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ", expected " + VERSION);
+        }
+    }
+
+    private static void readParticles(FileChannel channel, MappedByteBuffer header, World world) throws IOException {
+        int count = header.getInt(8);
+        int sectionCount = header.getInt(12);
+        MappedByteBuffer table = map(channel, FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+            (long) sectionCount * SECTION_ENTRY_BYTES);
+
+        DoubleBuffer x = null, y = null, vx = null, vy = null;
+        DoubleBuffer mass = null, radius = null, restitution = null, friction = null;
+        MappedByteBuffer type = null;
+        FloatBuffer range = null, strength = null;
+        IntBuffer color = null, trailColor = null, interactionType = null;
+
+        for (int s = 0; s < sectionCount; s++) {
+            int id = table.getInt();
+            int elementSize = table.getInt();
+            long offset = table.getLong();
+            long bytes = (long) count * elementSize;
+            if (offset + bytes > channel.size()) {
+                throw new IOException("Snapshot section " + id + " is truncated");
+            }
+            switch (id) {
+                case SECTION_X: x = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asDoubleBuffer(); break;
+                case SECTION_Y: y = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asDoubleBuffer(); break;
+                case SECTION_VX: vx = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asDoubleBuffer(); break;
+                case SECTION_VY: vy = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asDoubleBuffer(); break;
+                case SECTION_MASS: mass = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asDoubleBuffer(); break;
+                case SECTION_RADIUS: radius = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asDoubleBuffer(); break;
+                case SECTION_RESTITUTION: restitution = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asDoubleBuffer(); break;
+                case SECTION_FRICTION: friction = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asDoubleBuffer(); break;
+                case SECTION_TYPE: type = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes); break;
+                case SECTION_EFFECT_RANGE: range = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asFloatBuffer(); break;
+                case SECTION_EFFECT_STRENGTH: strength = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asFloatBuffer(); break;
+                case SECTION_COLOR: color = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asIntBuffer(); break;
+                case SECTION_TRAIL_COLOR: trailColor = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asIntBuffer(); break;
+                case SECTION_INTERACTION_TYPE: interactionType = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asIntBuffer(); break;
+                default: break; // Written by a newer version, not needed here
+            }
+        }
+        if (x == null || y == null || type == null) {
+            throw new IOException("Snapshot is missing a required section");
+        }
+
+        world.beginBulkLoad();
+        try {
+            for (int i = 0; i < count; i++) {
+                Particle p = ParticleType.fromId(type.get(i)).create(world, x.get(i), y.get(i),
+                    vx == null ? 0 : vx.get(i),
+                    vy == null ? 0 : vy.get(i),
+                    range == null ? 0 : range.get(i),
+                    strength == null ? 0 : strength.get(i));
+                if (mass != null) p.setMass(mass.get(i));
+                if (radius != null) p.setRadius(radius.get(i));
+                if (restitution != null) p.setRestitution(restitution.get(i));
+                if (friction != null) p.setFriction(friction.get(i));
+                if (color != null) p.cosmeticSettings.color = color.get(i);
+                if (trailColor != null) p.cosmeticSettings.trailColor = trailColor.get(i);
+                if (interactionType != null) p.setInteractionType(interactionType.get(i));
+            }
+        } finally {
+            world.endBulkLoad();
+        }
+    }
+
+    private static void readInteractions(FileChannel channel, MappedByteBuffer header, World world)
+            throws IOException {
+        int types = header.getInt(INTERACTION_TYPES_OFFSET);
+        if (types <= 0) {
+            return;
+        }
+        long offset = header.getLong(INTERACTION_MATRIX_OFFSET);
+        long bytes = (long) types * types * LAW_BYTES;
+        if (offset + bytes > channel.size()) {
+            throw new IOException("Snapshot interaction matrix is truncated");
+        }
+        DoubleBuffer laws = map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes).asDoubleBuffer();
+        InteractionMatrix interactions = new InteractionMatrix(types);
+        for (int source = 0; source < types; source++) {
+            for (int target = 0; target < types; target++) {
+                interactions.setLaw(source, target, laws.get(), laws.get(), laws.get());
+            }
+        }
+        world.setInteractionMatrix(interactions);
+    }
+
+    /**
+     * Extracts the range and strength of a particle's defining effect.
+     */
+    static void effectParameters(Particle p, float[] out) {
+        out[0] = 0;
+        out[1] = 0;
+        ParticleType type = p.getParticleType();
+        if (type == ParticleType.BASIC || type == ParticleType.DEMO || type == ParticleType.GHOST) {
+            return; // No parameterized effect, skip copying the effect set
+        }
+        for (Effect effect : p.listEffects()) {
+            if (effect instanceof GravityEffect) {
+                out[0] = ((GravityEffect) effect).getRange();
+                out[1] = ((GravityEffect) effect).getStrength();
+            } else if (effect instanceof NegativeGravityEffect) {
+                out[0] = ((NegativeGravityEffect) effect).getRange();
+                out[1] = -((NegativeGravityEffect) effect).getStrength();
+            } else if (effect instanceof MagneticEffect) {
+                out[0] = ((MagneticEffect) effect).getRange();
+                out[1] = ((MagneticEffect) effect).getStrength();
+            } else if (effect instanceof ExplodeEffect) {
+                out[0] = ((ExplodeEffect) effect).getExplosionRadius();
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset, long size)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, offset, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static MappedByteBuffer mapForWrite(FileChannel channel, List<MappedByteBuffer> written,
+                                                long offset, long size) throws IOException {
+        MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_WRITE, offset, size);
+        written.add(buffer);
+        return buffer;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
@@ -0,0 +1,47 @@
+package cellularfractals.particles;
+
+/**
+ * The layers particles are sorted into for collisions and neighbor queries.
+ *
+ * Every particle lives in exactly one layer, given by
+ * {@link Particle#getCollisionLayer()}, and collides only with particles
+ * whose layers are in its {@link Particle#getCollisionMask()}. A pair
+ * collides when each side's mask contains the other's layer. The grid keeps
+ * each layer in its own buckets, so a query for some layers never visits
+ * particles in the others.
+ */
+public final class CollisionLayers {
+    /** Ordinary particles that bounce off each other. */
+    public static final int SOLID = 0;
+    /** Particles that pass through everything. */
+    public static final int GHOST = 1;
+    /** Magnetic particles, which collide like solid ones and also attract or repel each other. */
+    public static final int MAGNETIC = 2;
+
+    /** Number of layers. */
+    public static final int COUNT = 3;
+
+    /** Mask of every layer. */
+    public static final int ALL = (1 << COUNT) - 1;
+    /** Mask of the layers that take part in collisions. */
+    public static final int COLLIDING = bit(SOLID) | bit(MAGNETIC);
+
+    private CollisionLayers() {
+    }
+
+    /**
+     * Gets the mask bit of a layer.
+     * @param layer Layer index in [0, COUNT)
+     * @return Mask with only that layer set
+     */
+    public static int bit(int layer) {
+        return 1 << layer;
+    }
+
+    /**
+     * Checks whether a mask contains a layer.
+     */
+    public static boolean contains(int mask, int layer) {
+        return (mask & bit(layer)) != 0;
+    }
+}
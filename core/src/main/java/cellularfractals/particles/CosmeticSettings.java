@@ -0,0 +1,11 @@
+package cellularfractals.particles;
+
+public class CosmeticSettings {
+    public int color;
+    public int trailColor;
+    
+    public CosmeticSettings(int color) {
+        this.color = color;
+        this.trailColor = Particle.CosmeticSettings.CYAN;
+    }
+}
@@ -0,0 +1,42 @@
+package cellularfractals.particles;
+
+import cellularfractals.engine.ContactBuffer;
+
+public abstract class Effect {
+  public abstract void apply(Particle p, double deltaTime);
+
+  /**
+   * Indicates whether applying this effect changes particles other than the
+   * one it is applied to. Particles carrying such effects are never put to
+   * sleep, since their neighbors depend on them every step.
+   *
+   * @return true unless the effect only acts on the particle it is applied to
+   */
+  public boolean affectsNeighbors() {
+    return true;
+  }
+
+  /**
+   * Indicates whether this effect reacts to its particle touching others.
+   * The world only records contacts while some particle carries such an
+   * effect or a contact listener is registered.
+   *
+   * @return true if {@link #onContact} should be called
+   */
+  public boolean wantsContacts() {
+    return false;
+  }
+
+  /**
+   * Called once per contact the particle took part in during the last
+   * update, after the collision phase and on the updating thread, so it
+   * may add and remove particles.
+   *
+   * @param p The particle this effect is applied to
+   * @param other The particle it touched
+   * @param contacts The update's contacts
+   * @param index Index of this contact in the buffer
+   */
+  public void onContact(Particle p, Particle other, ContactBuffer contacts, int index) {
+  }
+}
@@ -0,0 +1,530 @@
+package cellularfractals.particles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import cellularfractals.engine.ContactBuffer;
+import cellularfractals.engine.World;
+import cellularfractals.engine.Force;
+
+public abstract class Particle {
+  private World world;
+  private int id = -1;
+  private double x;
+  private double y;
+  private double baseVelocityX;
+  private double baseVelocityY;
+  private List<Force> forces = new CopyOnWriteArrayList<>();
+  private double mass = 1.0; // Default mass
+  public CosmeticSettings cosmeticSettings;
+  private double radius = .5; // Default radius
+  private double restitution = .8; // Default elasticity (1.0 = perfect elastic, 0.0 = perfect inelastic)
+  private double friction = 0.1; // Default friction coefficient for collisions
+  private volatile boolean effectsApplied = false;
+  private volatile boolean contactEffects = false;
+  private volatile int interactionType = -1;
+  // Sleep state, managed by the world
+  private volatile boolean asleep = false;
+  private volatile boolean wakeRequested = false;
+  private int stillSteps = 0;
+  private double anchorX;
+  private double anchorY;
+  private double restForceX;
+  private double restForceY;
+
+  public Particle(World world, double x, double y, double dx, double dy) {
+    this.x = x;
+    this.y = y;
+    this.baseVelocityX = dx;
+    this.baseVelocityY = dy;
+    this.world = world;
+    this.cosmeticSettings = new CosmeticSettings(); // Initialize with default constructor
+    if (world != null) {
+      this.id = world.allocateParticleId();
+      world.addParticle(this);
+    }
+  }
+
+  public World getWorld() {
+    return world;
+  }
+
+  /**
+   * Gets the id that identifies this particle within its world, stable
+   * for the particle's lifetime. Used to match particles across frames.
+   *
+   * @return the id, or -1 if the particle was created without a world
+   */
+  public int getId() {
+    return id;
+  }
+  public double getX() {
+    return x;
+  }
+  public double getY() {
+    return y;
+  }
+
+  public double getDx() {
+    double totalAx = 0;
+    for (Force f : forces) {
+      totalAx += f.ax;
+    }
+    return baseVelocityX + totalAx;
+  }
+
+  public double getDy() {
+    double totalAy = 0;
+    for (Force f : forces) {
+      totalAy += f.ay;
+    }
+    return baseVelocityY + totalAy;
+  }
+
+  /**
+   * Gets the x velocity without this step's forces.
+   */
+  public double getBaseDx() {
+    return baseVelocityX;
+  }
+
+  /**
+   * Gets the y velocity without this step's forces.
+   */
+  public double getBaseDy() {
+    return baseVelocityY;
+  }
+
+  public synchronized void setVelocity(double dx, double dy) {
+    this.baseVelocityX = dx;
+    this.baseVelocityY = dy;
+  }
+
+  public synchronized void setPos(double x, double y) {
+    this.x = x;
+    this.y = y;
+  }
+
+  private Set<Effect> effects = ConcurrentHashMap.newKeySet();
+
+  public List<Effect> listEffects() {
+    return new ArrayList<>(effects);
+  }
+
+  public void addEffect(Effect effect) {
+    effects.add(effect);
+    if (effect.wantsContacts()) {
+      contactEffects = true;
+    }
+    wake();
+  }
+
+  /**
+   * Checks whether any of this particle's effects act on other particles.
+   * Such particles are never put to sleep.
+   */
+  public boolean affectsNeighbors() {
+    if (interactionType >= 0) {
+      return true;
+    }
+    for (Effect effect : effects) {
+      if (effect.affectsNeighbors()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public void removeEffect(Effect effect) {
+    effects.remove(effect);
+    boolean wanted = false;
+    for (Effect remaining : effects) {
+      wanted |= remaining.wantsContacts();
+    }
+    contactEffects = wanted;
+  }
+
+  /**
+   * Checks whether any of this particle's effects react to contacts.
+   */
+  public boolean hasContactEffects() {
+    return contactEffects;
+  }
+
+  /**
+   * Passes a contact to the effects that react to contacts. Called by the
+   * world after the collision phase.
+   */
+  public void handleContact(Particle other, ContactBuffer contacts, int index) {
+    for (Effect effect : effects) {
+      if (effect.wantsContacts()) {
+        effect.onContact(this, other, contacts, index);
+      }
+    }
+  }
+
+  public synchronized void applyEffects(double deltaTime) {
+    if (effectsApplied) return;
+    for (Effect effect : effects) {
+      effect.apply(this, deltaTime); // Assuming effect.apply() method will be updated accordingly
+    }
+    effectsApplied = true;
+  }
+
+  private Set<String> effectModifiers = ConcurrentHashMap.newKeySet();
+public Object type;
+
+  public List<String> listEffectModifiers() {
+    return new ArrayList<>(effectModifiers);
+  }
+
+  public void addEffectModifier(String modifier) {
+    effectModifiers.add(modifier);
+    this.world.effectModifierIndex.addParticleEffectModifier(this, modifier);
+  }
+
+  public void removeEffectModifier(String modifier) {
+    effectModifiers.remove(modifier);
+    this.world.effectModifierIndex.removeParticleEffectModifier(this, modifier);
+  }
+
+  public boolean hasEffectModifier(String modifier) {
+    return effectModifiers.contains(modifier);
+  }
+
+  public List<Force> listForces() {
+    return new ArrayList<>(forces);
+  }
+
+  public void addForce(Force force) {
+    forces.add(force);
+  }
+
+  public void clearForces() {
+    forces.clear();
+    effectsApplied = false;
+  }
+
+  /**
+   * Gets the sum of this step's forces along x.
+   */
+  public double getForceX() {
+    double total = 0;
+    for (Force f : forces) {
+      total += f.ax;
+    }
+    return total;
+  }
+
+  /**
+   * Gets the sum of this step's forces along y.
+   */
+  public double getForceY() {
+    double total = 0;
+    for (Force f : forces) {
+      total += f.ay;
+    }
+    return total;
+  }
+
+  /**
+   * Checks whether the world has put this particle to sleep. Sleeping
+   * particles are not moved and do not look for collisions, but still
+   * receive forces and can be hit. Only particles whose effects act on
+   * themselves alone can sleep.
+   */
+  public boolean isAsleep() {
+    return asleep;
+  }
+
+  /**
+   * Remembers the forces applied by effects this step. The world calls this
+   * after the effect phase, before collisions add their own forces, so that
+   * a sleeping particle can tell when what acts on it has changed.
+   */
+  public void recordAppliedForce() {
+    restForceX = getForceX();
+    restForceY = getForceY();
+  }
+
+  /**
+   * Puts the particle to sleep. It stays asleep while the forces applied to
+   * it each step stay the same as the last ones recorded.
+   */
+  public void sleep() {
+    setVelocity(0, 0);
+    asleep = true;
+  }
+
+  /**
+   * Wakes the particle immediately. Prefer {@link #requestWake()} while the
+   * world is updating.
+   */
+  public void wake() {
+    asleep = false;
+    wakeRequested = false;
+    stillSteps = 0;
+  }
+
+  /**
+   * Asks the world to wake this particle at the start of its next update.
+   * Safe to call from any thread at any time.
+   */
+  public void requestWake() {
+    if (asleep) {
+      wakeRequested = true;
+    }
+  }
+
+  public boolean isWakeRequested() {
+    return wakeRequested;
+  }
+
+  /**
+   * Gets how far this step's forces differ from the ones recorded before
+   * the particle fell asleep.
+   */
+  public double getRestForceChange() {
+    return Math.hypot(getForceX() - restForceX, getForceY() - restForceY);
+  }
+
+  /**
+   * Counts an update during which the particle stayed near where it was
+   * when it last came to rest. Moving further than maxDistance from that
+   * spot restarts the count from the current position.
+   * @param maxDistance How far the particle may wander and still count as resting
+   * @return Number of consecutive resting updates
+   */
+  public int countStillStep(double maxDistance) {
+    double dx = x - anchorX;
+    double dy = y - anchorY;
+    if (stillSteps == 0 || dx * dx + dy * dy > maxDistance * maxDistance) {
+      anchorX = x;
+      anchorY = y;
+      stillSteps = 0;
+    }
+    return ++stillSteps;
+  }
+
+  /**
+   * Gets the row and column of the world's interaction matrix this particle
+   * uses (see {@link cellularfractals.engine.InteractionMatrix}).
+   *
+   * @return the interaction type, or -1 if the particle takes no part in interactions
+   */
+  public int getInteractionType() {
+    return interactionType;
+  }
+
+  /**
+   * Sets the interaction type; -1 removes the particle from interactions.
+   */
+  public void setInteractionType(int interactionType) {
+    this.interactionType = Math.max(-1, interactionType);
+    wake();
+  }
+
+  public double getMass() {
+    return mass;
+  }
+
+  public void setMass(double mass) {
+    this.mass = mass;
+  }
+
+  public double getRadius() {
+    return radius;
+  }
+
+  public void setRadius(double radius) {
+    this.radius = radius;
+  }
+
+  public double getRestitution() {
+    return restitution;
+  }
+
+  public void setRestitution(double restitution) {
+    this.restitution = Math.max(0.0, Math.min(1.0, restitution));
+  }
+
+  public double getFriction() {
+    return friction;
+  }
+
+  public void setFriction(double friction) {
+    this.friction = Math.max(0.0, friction);
+  }
+
+  public synchronized void moveStep(double deltaTime) {
+    double oldX = x;
+    double oldY = y;
+    x += getDx() * deltaTime;
+    y += getDy() * deltaTime;
+    this.world.grid.updateParticlePosition(this, oldX, oldY);
+  }
+
+  /**
+   * Gets the kind of this particle, used to save and recreate it.
+   * Override this in subclasses that can be created through {@link ParticleType}.
+   *
+   * @return the particle type, or null if this class has no registered type
+   */
+  public ParticleType getParticleType() {
+    return null;
+  }
+
+  /**
+   * Gets the layer this particle is indexed under (see {@link CollisionLayers}).
+   * The grid files particles by layer when they are added, so this must
+   * return the same value for the particle's whole life; override it per class.
+   *
+   * @return layer index
+   */
+  public int getCollisionLayer() {
+    return CollisionLayers.SOLID;
+  }
+
+  /**
+   * Gets the layers this particle collides with.
+   * Override this in subclasses to modify collision behavior.
+   *
+   * @return mask of {@link CollisionLayers} bits
+   */
+  public int getCollisionMask() {
+    return CollisionLayers.COLLIDING;
+  }
+
+  /**
+   * Indicates whether this particle can collide with other particles.
+   *
+   * @return true if this particle collides with any layer
+   */
+  public boolean canCollideWithParticles() {
+    return getCollisionMask() != 0;
+  }
+
+  /**
+   * Checks whether this particle and another collide, which they do when
+   * each one's mask contains the other's layer.
+   *
+   * @param other The other particle
+   * @return true if the pair collides
+   */
+  public boolean collidesWith(Particle other) {
+    return CollisionLayers.contains(getCollisionMask(), other.getCollisionLayer())
+        && CollisionLayers.contains(other.getCollisionMask(), getCollisionLayer());
+  }
+
+  // Cosmetic settings for particle display.
+  // Colors are packed 0xAARRGGBB ints so the engine has no AWT dependency;
+  // the GUI converts them when drawing.
+  public static class CosmeticSettings {
+    public static final int WHITE = 0xFFFFFFFF;
+    public static final int CYAN = 0xFF00FFFF;
+
+    public int color = WHITE;
+    public int trailColor = CYAN;
+
+    // Default constructor
+    public CosmeticSettings() {
+      // Default values already set in field declarations
+    }
+
+    // Constructor with color parameter
+    public CosmeticSettings(int color) {
+      this.color = color;
+    }
+
+    // Constructor with both color parameters
+    public CosmeticSettings(int color, int trailColor) {
+      this.color = color;
+      this.trailColor = trailColor;
+    }
+
+    /**
+     * Packs an opaque RGB color.
+     */
+    public static int rgb(int r, int g, int b) {
+      return argb(255, r, g, b);
+    }
+
+    /**
+     * Packs an RGB color with alpha.
+     */
+    public static int rgba(int r, int g, int b, int a) {
+      return argb(a, r, g, b);
+    }
+
+    private static int argb(int a, int r, int g, int b) {
+      return ((a & 0xFF) << 24) | ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
+    }
+  }
+
+  public void delete() {
+    this.world.removeParticle(this);
+  }
+
+  /**
+   * Gives a particle created without a world its world and an id without
+   * adding it, so it can be held back and added later.
+   */
+  void attach(World world) {
+    this.world = world;
+    this.id = world.allocateParticleId();
+  }
+
+  /**
+   * Returns a removed particle to the state a new particle of the same type
+   * would have, reusing its collections. The particle gets a fresh id, so
+   * anything keyed by id sees a new particle rather than the old one
+   * jumping to the spawn point. Called by {@link ParticlePool} before the
+   * particle is added back to the world.
+   *
+   * @param template A particle of the same class, created without a world,
+   *                 whose physical and cosmetic settings are copied
+   */
+  void recycle(Particle template, double x, double y, double dx, double dy,
+               float effectRange, float effectStrength) {
+    this.id = world.allocateParticleId();
+    this.x = x;
+    this.y = y;
+    this.baseVelocityX = dx;
+    this.baseVelocityY = dy;
+    this.forces.clear();
+    this.effectsApplied = false;
+    this.effectModifiers.clear();
+    this.interactionType = -1;
+    this.mass = template.mass;
+    this.radius = template.radius;
+    this.restitution = template.restitution;
+    this.friction = template.friction;
+    this.cosmeticSettings.color = template.cosmeticSettings.color;
+    this.cosmeticSettings.trailColor = template.cosmeticSettings.trailColor;
+    wake();
+    resetEffects(effectRange, effectStrength);
+  }
+
+  /**
+   * Puts the effects this particle was constructed with back into the
+   * state the constructor leaves them in, with parameters from the same
+   * values. Override this in subclasses whose effects take parameters or
+   * can be changed after construction, such as being switched on, so
+   * recycled particles match new ones.
+   *
+   * @param effectRange Range of the particle's effect, as passed to {@link ParticleType#create}
+   * @param effectStrength Strength of the particle's effect, as passed to {@link ParticleType#create}
+   */
+  protected void resetEffects(float effectRange, float effectStrength) {
+  }
+
+  /**
+   * Gets the number of effects attached to this particle.
+   */
+  public int getEffectCount() {
+    return effects.size();
+  }
+}
@@ -0,0 +1,209 @@
+package cellularfractals.particles;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cellularfractals.engine.World;
+
+/**
+ * Keeps removed particles so new particles of the same type can reuse them,
+ * along with their effect objects and collections. A reused particle gets a
+ * fresh id, as a newly created one would.
+ *
+ * A world with a pool (see {@link World#setParticlePool}) hands every removed
+ * particle of a known {@link ParticleType} to {@link #release}. Released
+ * particles only become available once the world calls
+ * {@link #recycleReleased()} at the end of its update, so a particle is
+ * never reused while that update may still be iterating over it.
+ * {@link World#spawn} then takes particles from here before creating new ones.
+ *
+ * Each type has its own free list, capped so a burst of removals does not
+ * pin memory forever; particles released beyond the cap are dropped for
+ * the garbage collector. Particles that gained effects after construction
+ * are dropped too, since a recycled particle keeps its effect objects.
+ */
+public class ParticlePool {
+    /** Free-list size per type unless changed with {@link #setCap}. */
+    public static final int DEFAULT_CAP = 1024;
+
+    private final int[] caps = new int[ParticleType.count()];
+    private final Particle[] templates = new Particle[ParticleType.count()];
+    private final List<ArrayDeque<Particle>> free = new ArrayList<>();
+    private final List<Particle> released = new ArrayList<>();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ParticlePool() {
+        for (int i = 0; i < caps.length; i++) {
+            caps[i] = DEFAULT_CAP;
+            free.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Sets how many free particles of a type are kept. Lowering the cap
+     * drops the extra ones.
+     * @param type The particle type
+     * @param cap Largest number of free particles to keep, 0 to disable pooling for the type
+     */
+    public void setCap(ParticleType type, int cap) {
+        if (cap < 0) {
+            throw new IllegalArgumentException("cap must not be negative");
+        }
+        ArrayDeque<Particle> list = free.get(type.getId());
+        synchronized (list) {
+            caps[type.getId()] = cap;
+            while (list.size() > cap) {
+                list.pollLast();
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    public int getCap(ParticleType type) {
+        return caps[type.getId()];
+    }
+
+    /**
+     * Gets the number of particles of a type ready to be reused.
+     */
+    public int getAvailable(ParticleType type) {
+        ArrayDeque<Particle> list = free.get(type.getId());
+        synchronized (list) {
+            return list.size();
+        }
+    }
+
+    /** Gets the number of particles created because no free one was available. */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /** Gets the number of particles handed out again instead of created. */
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    /** Gets the number of released particles not kept, because of the cap or extra effects. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Adds a particle of the given type to the world, reusing a free one if
+     * possible. Arguments are as for {@link ParticleType#create}.
+     * @return The particle, already in the world
+     */
+    public Particle obtain(World world, ParticleType type, double x, double y, double dx, double dy,
+                           float effectRange, float effectStrength) {
+        Particle p = poll(type);
+        if (p == null) {
+            created.incrementAndGet();
+            return type.create(world, x, y, dx, dy, effectRange, effectStrength);
+        }
+        reused.incrementAndGet();
+        p.recycle(template(type), x, y, dx, dy, effectRange, effectStrength);
+        world.addParticle(p);
+        return p;
+    }
+
+    /**
+     * Gets a particle of the given type for the world without adding it,
+     * reusing a free one if possible. Arguments are as for
+     * {@link ParticleType#createDetached}.
+     * @return The particle, to be added with {@link World#addParticle}
+     */
+    public Particle obtainDetached(World world, ParticleType type, double x, double y, double dx, double dy,
+                                   float effectRange, float effectStrength) {
+        Particle p = poll(type);
+        if (p == null) {
+            created.incrementAndGet();
+            return type.createDetached(world, x, y, dx, dy, effectRange, effectStrength);
+        }
+        reused.incrementAndGet();
+        p.recycle(template(type), x, y, dx, dy, effectRange, effectStrength);
+        return p;
+    }
+
+    private Particle poll(ParticleType type) {
+        ArrayDeque<Particle> list = free.get(type.getId());
+        synchronized (list) {
+            return list.pollFirst();
+        }
+    }
+
+    /**
+     * Queues a particle that has just been removed from its world. It is
+     * not handed out again before the next {@link #recycleReleased()}.
+     * @param particle The removed particle
+     */
+    public void release(Particle particle) {
+        ParticleType type = particle.getParticleType();
+        if (type == null || caps[type.getId()] == 0) {
+            return;
+        }
+        synchronized (released) {
+            released.add(particle);
+        }
+    }
+
+    /**
+     * Makes the particles released since the last call available for reuse.
+     * Called by the world once its update has finished with them.
+     */
+    public void recycleReleased() {
+        synchronized (released) {
+            for (Particle particle : released) {
+                ParticleType type = particle.getParticleType();
+                Particle template = template(type);
+                if (particle.getClass() != template.getClass()
+                        || particle.getEffectCount() != template.getEffectCount()) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                ArrayDeque<Particle> list = free.get(type.getId());
+                synchronized (list) {
+                    if (list.size() < caps[type.getId()]) {
+                        list.addFirst(particle);
+                    } else {
+                        dropped.incrementAndGet();
+                    }
+                }
+            }
+            released.clear();
+        }
+    }
+
+    /**
+     * Drops every free and queued particle.
+     */
+    public void clear() {
+        synchronized (released) {
+            released.clear();
+        }
+        for (ArrayDeque<Particle> list : free) {
+            synchronized (list) {
+                list.clear();
+            }
+        }
+    }
+
+    /**
+     * Gets a particle of the type as freshly constructed, created once
+     * without a world, whose settings recycled particles are reset to.
+     */
+    private Particle template(ParticleType type) {
+        synchronized (templates) {
+            Particle template = templates[type.getId()];
+            if (template == null) {
+                // Effect parameters only decide the effect's own settings, which resetEffects overwrites
+                template = type.create(null, 0, 0, 0, 0, 1, 1);
+                templates[type.getId()] = template;
+            }
+            return template;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package cellularfractals.particles;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.particles.BasicParticle;
+import cellularfractals.particles.particles.DemoParticle;
+import cellularfractals.particles.particles.ExplodingParticle;
+import cellularfractals.particles.particles.GhostParticle;
+import cellularfractals.particles.particles.GravityParticle;
+import cellularfractals.particles.particles.MagneticParticle;
+
+/**
+ * The concrete kinds of particle the simulation knows how to create.
+ *
+ * Each type has a stable numeric id for compact storage and a display name
+ * matching the one shown in the GUI. Types whose particles carry an effect
+ * are created from two effect parameters: a range and a strength (for
+ * exploding particles the range is the explosion radius).
+ */
+public enum ParticleType {
+    BASIC(0, "Basic Particle"),
+    DEMO(1, "Demo Particle"),
+    EXPLODING(2, "Exploding Particle"),
+    GHOST(3, "Ghost Particle"),
+    GRAVITY(4, "Gravity Particle"),
+    ANTI_GRAVITY(5, "Anti-Gravity Particle"),
+    MAGNETIC_POSITIVE(6, "Magnetic Particle (Positive)"),
+    MAGNETIC_NEGATIVE(7, "Magnetic Particle (Negative)");
+
+    private static final ParticleType[] BY_ID = new ParticleType[values().length];
+
+    static {
+        for (ParticleType type : values()) {
+            BY_ID[type.id] = type;
+        }
+    }
+
+    private final int id;
+    private final String displayName;
+
+    ParticleType(int id, String displayName) {
+        this.id = id;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Gets the stable numeric id used in files and frames.
+     * @return Id in [0, count())
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the human-readable name shown in the GUI.
+     * @return Display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Looks up a type by its numeric id.
+     * @param id The id
+     * @return The type
+     * @throws IllegalArgumentException if the id is unknown
+     */
+    public static ParticleType fromId(int id) {
+        if (id < 0 || id >= BY_ID.length) {
+            throw new IllegalArgumentException("Unknown particle type id " + id);
+        }
+        return BY_ID[id];
+    }
+
+    /**
+     * Gets the number of particle types.
+     * @return Type count
+     */
+    public static int count() {
+        return BY_ID.length;
+    }
+
+    /**
+     * Creates a particle of this type and adds it to the world.
+     * @param world The world to add the particle to
+     * @param x Initial x position
+     * @param y Initial y position
+     * @param dx Initial x velocity
+     * @param dy Initial y velocity
+     * @param effectRange Range of the particle's effect, ignored for types without one
+     * @param effectStrength Strength of the particle's effect, ignored for types without one
+     * @return The new particle
+     */
+    public Particle create(World world, double x, double y, double dx, double dy,
+                           float effectRange, float effectStrength) {
+        switch (this) {
+            case BASIC:
+                return new BasicParticle(world, x, y, dx, dy);
+            case DEMO:
+                return new DemoParticle(world, x, y, dx, dy);
+            case EXPLODING:
+                return new ExplodingParticle(world, x, y, dx, dy, Math.round(effectRange));
+            case GHOST:
+                return new GhostParticle(world, x, y, dx, dy);
+            case GRAVITY:
+                return new GravityParticle(world, x, y, dx, dy, effectRange, Math.abs(effectStrength));
+            case ANTI_GRAVITY:
+                return new GravityParticle(world, x, y, dx, dy, effectRange, -Math.abs(effectStrength));
+            case MAGNETIC_POSITIVE:
+                return new MagneticParticle(world, x, y, dx, dy, effectRange, effectStrength, "Positive");
+            case MAGNETIC_NEGATIVE:
+                return new MagneticParticle(world, x, y, dx, dy, effectRange, effectStrength, "Negative");
+            default:
+                throw new IllegalStateException("No factory for " + this);
+        }
+    }
+
+    /**
+     * Creates a particle of this type for the world without adding it; it
+     * joins the world once passed to {@link World#addParticle}. Arguments
+     * are as for {@link #create}.
+     * @return The new particle, with an id but not yet in the world
+     */
+    public Particle createDetached(World world, double x, double y, double dx, double dy,
+                                   float effectRange, float effectStrength) {
+        Particle particle = create(null, x, y, dx, dy, effectRange, effectStrength);
+        particle.attach(world);
+        return particle;
+    }
+}
@@ -0,0 +1,56 @@
+package cellularfractals.particles.effects;
+
+import cellularfractals.engine.ContactBuffer;
+import cellularfractals.engine.World;
+import cellularfractals.particles.Effect;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+
+/**
+ * Breaks the particle into fragments when it touches another particle.
+ * The trigger comes from the world's contact events, so the effect does no
+ * neighbor queries of its own. The explosion radius is kept as the
+ * particle's effect parameter, as saved in snapshots and scenario files.
+ */
+public class ExplodeEffect extends Effect {
+  private int explosionRadius;
+
+  public ExplodeEffect(int radius) {
+    this.explosionRadius = radius;
+  }
+
+  public int getExplosionRadius() {
+    return explosionRadius;
+  }
+
+  public void setExplosionRadius(int radius) {
+    this.explosionRadius = radius;
+  }
+
+  public void apply(Particle p, double deltaTime) {
+    // Nothing to do each step; collisions trigger the explosion
+  }
+
+  @Override
+  public boolean wantsContacts() {
+    return true;
+  }
+
+  @Override
+  public void onContact(Particle p, Particle other, ContactBuffer contacts, int index) {
+    World world = p.getWorld();
+    double x = p.getX();
+    double y = p.getY();
+    p.delete();
+    for (int i = 0; i < 10; i++) {
+      // Fragments reuse pooled particles when the world has a pool
+      Particle p2 = world.spawn(ParticleType.BASIC, x, y,
+        Math.random() * 2 - 1, Math.random() * 2 - 1, 0, 0);
+      if (p2 == null) {
+        break; // The world's population budget is full
+      }
+      p2.setRadius(p.getRadius() / 2);
+      p2.setMass(p.getMass() / 2);
+    }
+  }
+}
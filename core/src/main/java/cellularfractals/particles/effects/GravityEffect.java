@@ -17,7 +17,14 @@ public class GravityEffect extends Effect {
       }
       double dx = p.getX() - target.getX();
       double dy = p.getY() - target.getY();
-      double distance = Math.sqrt(dx * dx + dy * dy);
+      double distanceSquared = dx * dx + dy * dy;
+
+      // Avoid division by zero
+      if (distanceSquared < 0.000001) {
+        continue;
+      }
+
+      double distance = Math.sqrt(distanceSquared);
       double force = strength / distance;
       double angle = Math.atan2(dy, dx);
 
@@ -31,4 +38,20 @@ public class GravityEffect extends Effect {
     this.range = range;
     this.strength = strength;
   }
+
+  public Float getRange() {
+    return range;
+  }
+
+  public Float getStrength() {
+    return strength;
+  }
+
+  public void setStrength(Float strength) {
+    this.strength = strength;
+  }
+
+  public void setRange(Float range) {
+    this.range = range;
+  }
 }
@@ -26,6 +26,11 @@ public class GroundGravityEffect extends Effect {
     return strength;
   }
   
+  @Override
+  public boolean affectsNeighbors() {
+    return false;
+  }
+
   public void setEnabled(boolean enabled) {
     this.enabled = enabled;
   }
@@ -3,6 +3,7 @@ package cellularfractals.particles.effects;
 import java.util.List;
 
 import cellularfractals.engine.Force;
+import cellularfractals.particles.CollisionLayers;
 import cellularfractals.particles.Effect;
 import cellularfractals.particles.Particle;
 import cellularfractals.particles.particles.MagneticParticle;
@@ -14,7 +15,9 @@ public class MagneticEffect extends Effect {
     if (!(p instanceof MagneticParticle)) return;
     MagneticParticle mp = (MagneticParticle)p;
     
-    List<Particle> particlesInRange = p.getWorld().grid.getParticlesInRange(p.getX(), p.getY(), range);
+    // Only the magnetic layer can respond, so skip everything else in the grid
+    List<Particle> particlesInRange = p.getWorld().grid.getParticlesInRange(p.getX(), p.getY(), range,
+      CollisionLayers.bit(CollisionLayers.MAGNETIC));
     for (Particle target : particlesInRange) {
       if (target == p) {
         continue;
@@ -65,4 +68,20 @@ public class MagneticEffect extends Effect {
     this.range = range;
     this.strength = strength;
   }
+
+  public Float getRange() {
+    return range;
+  }
+
+  public Float getStrength() {
+    return strength;
+  }
+
+  public void setRange(Float range) {
+    this.range = range;
+  }
+
+  public void setStrength(Float strength) {
+    this.strength = strength;
+  }
 }
\ No newline at end of file
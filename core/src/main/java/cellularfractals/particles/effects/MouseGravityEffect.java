@@ -54,6 +54,11 @@ public class MouseGravityEffect extends Effect {
         this.sourceY = y;
     }
     
+    @Override
+    public boolean affectsNeighbors() {
+        return false;
+    }
+
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
     }
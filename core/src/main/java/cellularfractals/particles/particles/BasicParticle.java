@@ -0,0 +1,32 @@
+package cellularfractals.particles.particles;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.effects.GroundGravityEffect;
+
+public class BasicParticle extends Particle {
+  private static final float GROUND_GRAVITY_STRENGTH = .0007f;
+
+  private final GroundGravityEffect groundGravityEffect;
+
+  public BasicParticle(World world, double x, double y, double dx, double dy) {
+    super(world, x, y, dx, dy);
+    this.cosmeticSettings.color = CosmeticSettings.rgb(255, 255, 255);
+    groundGravityEffect = new GroundGravityEffect(GROUND_GRAVITY_STRENGTH);
+    this.addEffect(groundGravityEffect);
+    this.setRestitution(1);
+  }
+
+  @Override
+  public ParticleType getParticleType() {
+    return ParticleType.BASIC;
+  }
+
+  @Override
+  protected void resetEffects(float effectRange, float effectStrength) {
+    // Basic particles take no effect parameters, but the ground gravity may have been switched on
+    groundGravityEffect.setStrength(GROUND_GRAVITY_STRENGTH);
+    groundGravityEffect.setEnabled(false);
+  }
+}
@@ -1,13 +1,17 @@
 package cellularfractals.particles.particles;
 
-import java.awt.Color;
-
 import cellularfractals.engine.World;
 import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
 
 public class DemoParticle extends Particle {
   public DemoParticle(World world, double x, double y, double dx, double dy) {
     super(world, x, y, dx, dy);
-    this.cosmeticSettings.color = new Color(255,0,0);
+    this.cosmeticSettings.color = CosmeticSettings.rgb(255, 0, 0);
+  }
+
+  @Override
+  public ParticleType getParticleType() {
+    return ParticleType.DEMO;
   }
 }
@@ -0,0 +1,26 @@
+package cellularfractals.particles.particles;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.effects.ExplodeEffect;
+
+public class ExplodingParticle extends Particle {
+  private final ExplodeEffect explodeEffect;
+
+  public ExplodingParticle(World world, double x, double y, double dx, double dy, int explosionRadius) {
+    super(world, x, y, dx, dy);
+    explodeEffect = new ExplodeEffect(explosionRadius);
+    this.addEffect(explodeEffect);
+  }
+
+  @Override
+  public ParticleType getParticleType() {
+    return ParticleType.EXPLODING;
+  }
+
+  @Override
+  protected void resetEffects(float effectRange, float effectStrength) {
+    explodeEffect.setExplosionRadius(Math.round(effectRange));
+  }
+}
@@ -1,8 +1,8 @@
 package cellularfractals.particles.particles;
 
-import java.awt.Color;
-
 import cellularfractals.engine.World;
+import cellularfractals.particles.CollisionLayers;
+import cellularfractals.particles.ParticleType;
 
 /**
  * A particle that is affected by gravity and anti-gravity forces and bounces off walls,
@@ -24,17 +24,27 @@ public class GhostParticle extends BasicParticle {
      */
     public GhostParticle(World world, double x, double y, double dx, double dy) {
         super(world, x, y, dx, dy);
-        this.cosmeticSettings.color = new Color(200, 200, 255, 180); // Semi-transparent light blue
+        this.cosmeticSettings.color = CosmeticSettings.rgba(200, 200, 255, 180); // Semi-transparent light blue
     }
     
+    @Override
+    public ParticleType getParticleType() {
+        return ParticleType.GHOST;
+    }
+
+    @Override
+    public int getCollisionLayer() {
+        return CollisionLayers.GHOST;
+    }
+
     /**
-     * Indicates whether this particle should collide with other particles.
-     * Ghost particles pass through others without collision.
-     * 
-     * @return false since ghost particles do not collide with others
+     * Ghost particles pass through others without collision, and other
+     * particles' collision queries never visit them.
+     *
+     * @return no layers
      */
     @Override
-    public boolean canCollideWithParticles() {
-        return false;
+    public int getCollisionMask() {
+        return 0;
     }
 }
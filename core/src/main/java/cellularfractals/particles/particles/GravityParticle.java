@@ -0,0 +1,50 @@
+package cellularfractals.particles.particles;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.effects.GravityEffect;
+import cellularfractals.particles.effects.NegativeGravityEffect;
+
+public class GravityParticle extends Particle {
+    private boolean isAttractive; // true = gravity, false = anti-gravity
+    private GravityEffect gravityEffect;
+    private NegativeGravityEffect negativeGravityEffect;
+
+    public GravityParticle(World world, double x, double y, double dx, double dy, Float gravitRange, Float gravityStrength) {
+        super(world, x, y, dx, dy);
+        if (gravityStrength < 0) {
+            negativeGravityEffect = new NegativeGravityEffect(gravitRange, gravityStrength);
+            this.addEffect(negativeGravityEffect);
+            this.cosmeticSettings.color = CosmeticSettings.rgb(255, 0, 175);
+            isAttractive = false;
+        } else {
+            gravityEffect = new GravityEffect(gravitRange, gravityStrength);
+            this.addEffect(gravityEffect);
+            this.cosmeticSettings.color = CosmeticSettings.rgb(175, 0, 255);
+            isAttractive = true;
+        }
+    }
+
+    // New method to get the effective particle type
+    public String getType() {
+        return isAttractive ? "Gravity Particle" : "Anti-Gravity Particle";
+    }
+
+    @Override
+    public ParticleType getParticleType() {
+        return isAttractive ? ParticleType.GRAVITY : ParticleType.ANTI_GRAVITY;
+    }
+
+    @Override
+    protected void resetEffects(float effectRange, float effectStrength) {
+        // The particle keeps its direction; only the magnitude is taken from the new strength
+        if (isAttractive) {
+            gravityEffect.setRange(effectRange);
+            gravityEffect.setStrength(Math.abs(effectStrength));
+        } else {
+            negativeGravityEffect.setRange(effectRange);
+            negativeGravityEffect.setStrength(effectStrength);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package cellularfractals.particles.particles;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.CollisionLayers;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.effects.MagneticEffect;
+
+public class MagneticParticle  extends Particle {
+    String type;
+    private final ParticleType particleType;
+    private MagneticEffect magneticEffect;
+    public MagneticParticle(World world, double x, double y, double dx, double dy, Float magRange, Float magStrength, String type) {
+        super(world, x, y, dx, dy);
+        this.type = type;
+        this.particleType = typeForPolarity(type);
+        magneticEffect = new MagneticEffect(magRange, magStrength);
+        this.addEffect(magneticEffect);
+        if (type.equals("Positive")) {
+            this.cosmeticSettings.color = CosmeticSettings.rgb(0, 0, 255);
+        } else if (type.equals("Negative")) {
+            this.cosmeticSettings.color = CosmeticSettings.rgb(255, 0, 0);
+        } else {
+            this.cosmeticSettings.color = CosmeticSettings.rgb(255, 255, 255);
+        }
+
+    }
+    public String getType() {
+        return type; // Return the actual polarity type
+    }
+
+    @Override
+    public ParticleType getParticleType() {
+        return particleType;
+    }
+
+    private static ParticleType typeForPolarity(String type) {
+        if (type.equals("Positive")) {
+            return ParticleType.MAGNETIC_POSITIVE;
+        } else if (type.equals("Negative")) {
+            return ParticleType.MAGNETIC_NEGATIVE;
+        }
+        return null;
+    }
+
+    @Override
+    protected void resetEffects(float effectRange, float effectStrength) {
+        magneticEffect.setRange(effectRange);
+        magneticEffect.setStrength(effectStrength);
+    }
+
+    @Override
+    public int getCollisionLayer() {
+        return CollisionLayers.MAGNETIC;
+    }
+}
@@ -0,0 +1,204 @@
+package cellularfractals.render;
+
+import cellularfractals.particles.Particle;
+
+/**
+ * Maps world coordinates onto a viewport and back, with zoom, pan and an
+ * optional particle to follow.
+ *
+ * At zoom 1 the whole world fills the largest centered square that fits
+ * the viewport, as the canvas has always drawn it; higher zoom shows a
+ * smaller region around the camera's center. The world square's side and
+ * offset in pixels ({@link #getWorldSize()}, {@link #getOffsetX()},
+ * {@link #getOffsetY()}) are what {@link FrameRasterizer#render} takes, and
+ * {@link #getVisibleMinX()} and friends give the world rectangle in view for
+ * culling. Every screen-to-world conversion should go through
+ * {@link #screenToWorldX} and {@link #screenToWorldY} so input lines up with
+ * what is drawn. Methods are synchronized so input on one thread and
+ * rendering on another see a consistent view.
+ */
+public class Camera {
+    public static final double MIN_ZOOM = 1;
+    public static final double MAX_ZOOM = 1000;
+
+    private final double worldWidth;
+    private final double worldHeight;
+    private int viewportWidth = 1;
+    private int viewportHeight = 1;
+    private double centerX;
+    private double centerY;
+    private double zoom = 1;
+    private Particle followed;
+    private int followedId;
+
+    /**
+     * Creates a camera showing the whole world.
+     * @param worldWidth Width of the world
+     * @param worldHeight Height of the world
+     */
+    public Camera(double worldWidth, double worldHeight) {
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+        reset();
+    }
+
+    /**
+     * Shows the whole world again and stops following.
+     */
+    public synchronized void reset() {
+        centerX = worldWidth / 2;
+        centerY = worldHeight / 2;
+        zoom = 1;
+        followed = null;
+    }
+
+    /**
+     * Sets the size of the area drawn into.
+     * @param width Viewport width in pixels
+     * @param height Viewport height in pixels
+     */
+    public synchronized void setViewport(int width, int height) {
+        this.viewportWidth = Math.max(1, width);
+        this.viewportHeight = Math.max(1, height);
+    }
+
+    public synchronized double getZoom() {
+        return zoom;
+    }
+
+    public synchronized double getCenterX() {
+        return centerX;
+    }
+
+    public synchronized double getCenterY() {
+        return centerY;
+    }
+
+    /**
+     * Centers the view on a world position.
+     */
+    public synchronized void setCenter(double x, double y) {
+        centerX = Math.max(0, Math.min(worldWidth, x));
+        centerY = Math.max(0, Math.min(worldHeight, y));
+    }
+
+    /**
+     * Zooms by a factor, keeping the world point under a screen position
+     * where it is. Clamped to [{@link #MIN_ZOOM}, {@link #MAX_ZOOM}].
+     * @param screenX Screen x to zoom around
+     * @param screenY Screen y to zoom around
+     * @param factor Above 1 zooms in, below 1 zooms out
+     */
+    public synchronized void zoomAt(double screenX, double screenY, double factor) {
+        double worldX = screenToWorldX(screenX);
+        double worldY = screenToWorldY(screenY);
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        if (followed == null) {
+            setCenter(worldX - (screenX - viewportWidth / 2.0) / getScaleX(),
+                      worldY - (screenY - viewportHeight / 2.0) / getScaleY());
+        }
+    }
+
+    /**
+     * Moves the view by a distance in pixels and stops following.
+     * @param dx Pixels to move the world right
+     * @param dy Pixels to move the world down
+     */
+    public synchronized void pan(double dx, double dy) {
+        followed = null;
+        setCenter(centerX - dx / getScaleX(), centerY - dy / getScaleY());
+    }
+
+    /**
+     * Keeps a particle centered until it leaves its world, the view is
+     * panned or another particle is followed. A pooled particle that
+     * re-enters the world under a new id is not followed again.
+     * @param particle The particle, or null to stop following
+     */
+    public synchronized void follow(Particle particle) {
+        followed = particle;
+        followedId = particle == null ? -1 : particle.getId();
+        update();
+    }
+
+    public synchronized Particle getFollowed() {
+        return followed;
+    }
+
+    /**
+     * Moves the center to the followed particle. Call once per frame.
+     */
+    public synchronized void update() {
+        Particle particle = followed;
+        if (particle == null) {
+            return;
+        }
+        if (particle.getId() != followedId || particle.getWorld() == null
+                || !particle.getWorld().containsParticle(particle)) {
+            followed = null;
+            return;
+        }
+        setCenter(particle.getX(), particle.getY());
+    }
+
+    /** Gets pixels per world unit along x. */
+    public synchronized double getScaleX() {
+        return getWorldSize() / worldWidth;
+    }
+
+    /** Gets pixels per world unit along y. */
+    public synchronized double getScaleY() {
+        return getWorldSize() / worldHeight;
+    }
+
+    /** Gets the side in pixels of the square the whole world is drawn into. */
+    public synchronized double getWorldSize() {
+        return Math.min(viewportWidth, viewportHeight) * zoom;
+    }
+
+    /** Gets the screen x of the world's left edge. */
+    public synchronized double getOffsetX() {
+        return viewportWidth / 2.0 - centerX * getScaleX();
+    }
+
+    /** Gets the screen y of the world's top edge. */
+    public synchronized double getOffsetY() {
+        return viewportHeight / 2.0 - centerY * getScaleY();
+    }
+
+    public synchronized double worldToScreenX(double x) {
+        return x * getScaleX() + getOffsetX();
+    }
+
+    public synchronized double worldToScreenY(double y) {
+        return y * getScaleY() + getOffsetY();
+    }
+
+    public synchronized double screenToWorldX(double x) {
+        return (x - getOffsetX()) / getScaleX();
+    }
+
+    public synchronized double screenToWorldY(double y) {
+        return (y - getOffsetY()) / getScaleY();
+    }
+
+    /** Gets the world x at the viewport's left edge. */
+    public synchronized double getVisibleMinX() {
+        return screenToWorldX(0);
+    }
+
+    /** Gets the world y at the viewport's top edge. */
+    public synchronized double getVisibleMinY() {
+        return screenToWorldY(0);
+    }
+
+    /** Gets the world x at the viewport's right edge. */
+    public synchronized double getVisibleMaxX() {
+        return screenToWorldX(viewportWidth);
+    }
+
+    /** Gets the world y at the viewport's bottom edge. */
+    public synchronized double getVisibleMaxY() {
+        return screenToWorldY(viewportHeight);
+    }
+}
@@ -0,0 +1,950 @@
+package cellularfractals.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cellularfractals.engine.WorldFrame;
+
+/**
+ * Draws a {@link WorldFrame} straight into a packed RGB pixel array.
+ *
+ * Each particle is stamped from a precomputed, antialiased circle sprite
+ * chosen by its on-screen radius (in quarter pixels) and color, so drawing
+ * a particle is a short run of array writes rather than a shape fill.
+ * Particles too small to cover a pixel still light the one they are in.
+ * Circles wider than a sprite may be, as when zoomed far in, are filled row
+ * by row instead, clipped to the image, without antialiasing; the sprite
+ * cache is emptied once its sprites hold too many texels in total.
+ *
+ * The image is split into horizontal tiles rendered in parallel. Particles
+ * are first binned into every tile their sprite or velocity arrow overlaps,
+ * then each worker copies its tiles' rows from the static layer and stamps
+ * its particles clipped to those rows, so no two workers ever write the
+ * same pixel and no locking is needed. The static layer holds the
+ * background, grid and world outline; it is drawn once and only redrawn
+ * when the image size or the world's place in it changes.
+ *
+ * When there are more particles on screen than pixels to show them (above
+ * the density threshold, in particles per pixel of world), drawing them one
+ * by one is wasted work. The rasterizer then switches to level-of-detail
+ * rendering: each particle adds its count, mass or speed to the pixel under
+ * its center, tile by tile in parallel, and the resulting histogram is drawn
+ * through a color map. Its cost depends on the number of pixels, not
+ * particles. Zooming in lowers the ratio and brings back individual
+ * particles.
+ *
+ * The pixel array is opaque 0xRRGGBB, as backing a {@code TYPE_INT_RGB}
+ * image. A rasterizer is not thread safe; use one per rendering thread.
+ */
+public class FrameRasterizer {
+    /**
+     * The quantity shown per pixel in level-of-detail rendering.
+     */
+    public enum DensityField {
+        /** Number of particles, on a log scale. */
+        COUNT,
+        /** Total mass, on a log scale. Frames without masses show nothing. */
+        MASS,
+        /** Mean speed, on a linear scale. */
+        SPEED
+    }
+
+    /** Particles per pixel above which level-of-detail rendering is used, unless changed. */
+    public static final double DEFAULT_DENSITY_THRESHOLD = 1.0;
+
+    // Tiles per worker, so a tile crowded with particles does not hold everyone up
+    private static final int TILES_PER_WORKER = 4;
+    private static final int SUBSAMPLES = 4;
+    private static final int MAX_SPRITES = 4096;
+    // Larger circles are filled rather than stamped, so one sprite stays under 70 KB
+    private static final int MAX_SPRITE_REACH = 64;
+    // Texels kept in the sprite cache, 16 MB
+    private static final long MAX_SPRITE_TEXELS = 1 << 22;
+    // Marks particles of hidden types in screenX
+    private static final int HIDDEN = Integer.MIN_VALUE;
+    private static final int[] DENSITY_COLORS = colorMap(new int[] {
+        0x000004, 0x57106E, 0xBC3754, 0xF98E09, 0xFCFFA4
+    });
+    private static final int[] SPEED_COLORS = colorMap(new int[] {
+        0x440154, 0x3B528B, 0x21918C, 0x5EC962, 0xFDE725
+    });
+
+    private final ExecutorService executor;
+    private final int workerCount;
+    private final ConcurrentHashMap<Long, Sprite> sprites = new ConcurrentHashMap<>();
+    private final AtomicLong spriteTexels = new AtomicLong();
+
+    private int background = 0x000000;
+    private int gridColor = 0x1E1E1E;
+    private double gridSpacing = 10.0;
+    private int boundsColor = -1; // 0xRRGGBB of the world's outline, or -1 for none
+    private boolean[] visibleTypes;
+    private boolean velocityArrows;
+    private double arrowScale = 20;
+    private double densityThreshold = DEFAULT_DENSITY_THRESHOLD;
+    private DensityField densityField = DensityField.COUNT;
+    private boolean densityShown;
+    private ParticleTrails trails;
+    private ParticleTrails trailCopy; // Drawn from, so sampling can go on meanwhile
+
+    // Per-particle scratch, reused between frames
+    private int[] screenX = new int[0];
+    private int[] screenY = new int[0];
+    private int[] top = new int[0];
+    private int[] bottom = new int[0];
+    private Sprite[] particleSprite = new Sprite[0];
+    private int[] tileStart = new int[1];
+    private int[] tileCursor = new int[0];
+    private int[] binned = new int[0];
+    private int[] hits = new int[0];
+    private float[] field = new float[0];
+    private float[] tileMax = new float[0];
+    // Per-trail scratch, sized when the trails are set
+    private int[] trailX = new int[0]; // Screen position of each sample, laid out as in the trails
+    private int[] trailY = new int[0];
+    private int[] trailTop = new int[0];
+    private int[] trailBottom = new int[0];
+    // Background, grid and bounds, drawn once and copied into each frame until the view changes
+    private int[] staticLayer = new int[0];
+    private boolean staticLayerValid = false;
+    private int layerWidth;
+    private int layerHeight;
+    private int layerSize;
+    private int layerX;
+    private int layerY;
+    private double layerWorldWidth;
+    private double layerWorldHeight;
+
+    /**
+     * Creates a rasterizer.
+     * @param executor Executor tiles are rendered on, may be null if workerCount is 1
+     * @param workerCount Number of workers sharing the tiles
+     */
+    public FrameRasterizer(ExecutorService executor, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be at least 1");
+        }
+        if (executor == null && workerCount > 1) {
+            throw new IllegalArgumentException("An executor is required for more than one worker");
+        }
+        this.executor = executor;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Sets the color the image is cleared to.
+     * @param rgb Packed 0xRRGGBB color
+     */
+    public void setBackground(int rgb) {
+        this.background = rgb & 0xFFFFFF;
+        staticLayerValid = false;
+    }
+
+    /**
+     * Sets the background grid.
+     * @param spacing Distance between grid lines in world units, 0 for no grid
+     * @param rgb Packed 0xRRGGBB line color
+     */
+    public void setGrid(double spacing, int rgb) {
+        this.gridSpacing = spacing;
+        this.gridColor = rgb & 0xFFFFFF;
+        staticLayerValid = false;
+    }
+
+    /**
+     * Sets the outline drawn around the world.
+     * @param rgb Packed 0xRRGGBB line color, or -1 for no outline
+     */
+    public void setBounds(int rgb) {
+        this.boundsColor = rgb < 0 ? -1 : rgb & 0xFFFFFF;
+        staticLayerValid = false;
+    }
+
+    /**
+     * Redraws the static layer (background, grid and bounds) on the next
+     * frame. It is otherwise only redrawn when the image size or the
+     * world's place in it changes.
+     */
+    public void invalidateStaticLayer() {
+        staticLayerValid = false;
+    }
+
+    /**
+     * Limits drawing to some particle types.
+     * @param visibleTypes Whether each type id is drawn, or null to draw all.
+     *                     Particles without a type are always drawn.
+     */
+    public void setVisibleTypes(boolean[] visibleTypes) {
+        this.visibleTypes = visibleTypes;
+    }
+
+    /**
+     * Turns velocity arrows on or off. Arrows are drawn in each particle's
+     * trail color.
+     * @param enabled Whether to draw arrows
+     * @param scale Arrow length in pixels per unit of speed
+     */
+    public void setVelocityArrows(boolean enabled, double scale) {
+        this.velocityArrows = enabled;
+        this.arrowScale = scale;
+    }
+
+    /**
+     * Sets the trails drawn under the particles, each fading from its
+     * particle's trail color at the newest position to transparent at the
+     * oldest. Not drawn in density view.
+     * @param trails The trails, or null for none
+     */
+    public void setTrails(ParticleTrails trails) {
+        this.trails = trails;
+        if (trails == null) {
+            trailCopy = null;
+            return;
+        }
+        trailCopy = new ParticleTrails(trails.getMaxTrails(), trails.getLength(), trails.getSampleInterval());
+        trailX = new int[trails.getMaxTrails() * trails.getLength()];
+        trailY = new int[trailX.length];
+        trailTop = new int[trails.getMaxTrails()];
+        trailBottom = new int[trails.getMaxTrails()];
+    }
+
+    /**
+     * Sets the particles per pixel above which the frame is drawn as a
+     * density field instead of as particles.
+     * @param particlesPerPixel Threshold, or {@link Double#POSITIVE_INFINITY} to always draw particles
+     */
+    public void setDensityThreshold(double particlesPerPixel) {
+        if (!(particlesPerPixel > 0)) {
+            throw new IllegalArgumentException("particlesPerPixel must be positive");
+        }
+        this.densityThreshold = particlesPerPixel;
+    }
+
+    public double getDensityThreshold() {
+        return densityThreshold;
+    }
+
+    /**
+     * Sets what level-of-detail rendering shows.
+     * @param field The quantity accumulated per pixel
+     */
+    public void setDensityField(DensityField field) {
+        this.densityField = field;
+    }
+
+    public DensityField getDensityField() {
+        return densityField;
+    }
+
+    /**
+     * Checks whether the last rendered frame was drawn as a density field.
+     */
+    public boolean isDensityShown() {
+        return densityShown;
+    }
+
+    /**
+     * Renders a frame. The world is mapped onto a square of the given size
+     * at the given offset; particles outside the image are skipped.
+     * @param frame The frame to draw
+     * @param pixels Row-major 0xRRGGBB pixels, at least width * height long
+     * @param width Image width
+     * @param height Image height
+     * @param size Side of the square the world is drawn into, in pixels
+     * @param xOffset Left edge of that square
+     * @param yOffset Top edge of that square
+     */
+    public void render(WorldFrame frame, int[] pixels, int width, int height, int size, int xOffset, int yOffset) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("pixel array smaller than the image");
+        }
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (sprites.size() > MAX_SPRITES || spriteTexels.get() > MAX_SPRITE_TEXELS) {
+            // Frames with ever-changing colors or radii would grow the cache without bound
+            sprites.clear();
+            spriteTexels.set(0);
+        }
+
+        int tiles = Math.min(height, workerCount * TILES_PER_WORKER);
+        int tileHeight = (height + tiles - 1) / tiles;
+        tiles = (height + tileHeight - 1) / tileHeight;
+
+        int onScreen = locate(frame, width, height, size, xOffset, yOffset);
+        long worldPixels = (long) overlap(xOffset, size, width) * overlap(yOffset, size, height);
+        densityShown = worldPixels > 0 && onScreen > densityThreshold * worldPixels;
+        if (!densityShown) {
+            measure(frame, width, height, size);
+        }
+        bin(frame.count, tiles, tileHeight);
+
+        final int tileCount = tiles;
+        prepareStaticLayer(frame, width, height, size, xOffset, yOffset);
+        if (densityShown) {
+            renderDensity(frame, pixels, width, height, tileCount, tileHeight);
+            return;
+        }
+        final boolean arrows = velocityArrows;
+        final double scale = size / frame.worldWidth;
+        final ParticleTrails drawnTrails = projectTrails(frame, height, size, xOffset, yOffset);
+        runTiles(tileCount, tile -> {
+            int rowStart = tile * tileHeight;
+            int rowEnd = Math.min(height, rowStart + tileHeight);
+            clear(pixels, width, rowStart, rowEnd);
+            if (drawnTrails != null) {
+                drawTrails(drawnTrails, pixels, width, rowStart, rowEnd);
+            }
+            for (int k = tileStart[tile]; k < tileStart[tile + 1]; k++) {
+                int i = binned[k];
+                Sprite sprite = particleSprite[i];
+                if (sprite != null) {
+                    stamp(pixels, width, rowStart, rowEnd, sprite, screenX[i], screenY[i]);
+                } else {
+                    fillCircle(pixels, width, rowStart, rowEnd, screenX[i], screenY[i],
+                        quarterRadius(frame.radius[i], scale) / (double) SUBSAMPLES, frame.color[i]);
+                }
+                if (arrows) {
+                    int dx = (int) (frame.vx[i] * arrowScale);
+                    int dy = (int) (frame.vy[i] * arrowScale);
+                    line(pixels, width, rowStart, rowEnd, screenX[i], screenY[i],
+                        screenX[i] + dx, screenY[i] + dy, frame.trailColor[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Accumulates the binned particles into a per-pixel histogram, each tile
+     * into its own rows, then color-maps it against the largest value.
+     */
+    private void renderDensity(WorldFrame frame, int[] pixels, int width, int height, int tiles, int tileHeight) {
+        int area = width * height;
+        if (hits.length < area) {
+            hits = new int[area];
+            field = new float[area];
+        }
+        if (tileMax.length < tiles) {
+            tileMax = new float[tiles];
+        }
+        DensityField quantity = densityField;
+        runTiles(tiles, tile -> {
+            int first = tile * tileHeight * width;
+            int last = Math.min(height, (tile + 1) * tileHeight) * width;
+            Arrays.fill(hits, first, last, 0);
+            Arrays.fill(field, first, last, 0);
+            for (int k = tileStart[tile]; k < tileStart[tile + 1]; k++) {
+                int i = binned[k];
+                int index = screenY[i] * width + screenX[i];
+                hits[index]++;
+                if (quantity == DensityField.MASS) {
+                    field[index] += frame.mass[i];
+                } else if (quantity == DensityField.SPEED) {
+                    field[index] += (float) Math.sqrt(frame.vx[i] * frame.vx[i] + frame.vy[i] * frame.vy[i]);
+                }
+            }
+            float max = 0;
+            for (int index = first; index < last; index++) {
+                if (hits[index] == 0) {
+                    continue;
+                }
+                float value;
+                if (quantity == DensityField.COUNT) {
+                    value = (float) Math.log1p(hits[index]);
+                } else if (quantity == DensityField.MASS) {
+                    value = (float) Math.log1p(field[index]);
+                } else {
+                    value = field[index] / hits[index];
+                }
+                field[index] = value;
+                max = Math.max(max, value);
+            }
+            tileMax[tile] = max;
+        });
+
+        float max = 0;
+        for (int t = 0; t < tiles; t++) {
+            max = Math.max(max, tileMax[t]);
+        }
+        final float scale = max > 0 ? 255 / max : 0;
+        final int[] colors = quantity == DensityField.SPEED ? SPEED_COLORS : DENSITY_COLORS;
+        runTiles(tiles, tile -> {
+            int rowStart = tile * tileHeight;
+            int rowEnd = Math.min(height, rowStart + tileHeight);
+            clear(pixels, width, rowStart, rowEnd);
+            for (int index = rowStart * width; index < rowEnd * width; index++) {
+                if (hits[index] != 0) {
+                    // Occupied pixels never map to the map's black end
+                    pixels[index] = colors[Math.max(1, Math.min(255, (int) (field[index] * scale)))];
+                }
+            }
+        });
+    }
+
+    /**
+     * Computes each particle's pixel position and gives each visible
+     * particle whose center is on screen the single row it falls in, as
+     * level-of-detail rendering needs.
+     * @return Number of visible particles centered on screen
+     */
+    private int locate(WorldFrame frame, int width, int height, int size, int xOffset, int yOffset) {
+        int n = frame.count;
+        if (screenX.length < n) {
+            int capacity = Math.max(n, screenX.length * 3 / 2);
+            screenX = new int[capacity];
+            screenY = new int[capacity];
+            top = new int[capacity];
+            bottom = new int[capacity];
+            particleSprite = new Sprite[capacity];
+            binned = new int[capacity];
+        }
+        double scaleX = size / frame.worldWidth;
+        double scaleY = size / frame.worldHeight;
+        boolean[] visible = visibleTypes;
+        AtomicInteger onScreen = new AtomicInteger();
+        runRanges(n, (start, end) -> {
+            int counted = 0;
+            for (int i = start; i < end; i++) {
+                int type = frame.types[i];
+                if (visible != null && type >= 0 && (type >= visible.length || !visible[type])) {
+                    screenX[i] = HIDDEN;
+                    top[i] = 1;
+                    bottom[i] = 0;
+                    continue;
+                }
+                int x = (int) (frame.x[i] * scaleX) + xOffset;
+                int y = (int) (frame.y[i] * scaleY) + yOffset;
+                screenX[i] = x;
+                screenY[i] = y;
+                if (x >= 0 && x < width && y >= 0 && y < height) {
+                    top[i] = y;
+                    bottom[i] = y;
+                    counted++;
+                } else {
+                    top[i] = 1;
+                    bottom[i] = 0;
+                }
+            }
+            onScreen.addAndGet(counted);
+        });
+        return onScreen.get();
+    }
+
+    /**
+     * Picks each visible particle's sprite and widens its rows to everything
+     * its sprite and arrow cover, emptying them for particles entirely off screen.
+     * Particles too large for a sprite get none and are filled when drawn.
+     */
+    private void measure(WorldFrame frame, int width, int height, int size) {
+        double scale = size / frame.worldWidth;
+        boolean arrows = velocityArrows;
+        runRanges(frame.count, (start, end) -> {
+            long lastKey = Long.MIN_VALUE;
+            Sprite last = null;
+            int lastReach = 0;
+            for (int i = start; i < end; i++) {
+                int x = screenX[i];
+                if (x == HIDDEN) {
+                    continue;
+                }
+                int y = screenY[i];
+                int quarterRadius = quarterRadius(frame.radius[i], scale);
+                long key = ((long) quarterRadius << 32) | (frame.color[i] & 0xFFFFFFFFL);
+                if (key != lastKey) {
+                    lastReach = reach(quarterRadius);
+                    last = lastReach > MAX_SPRITE_REACH ? null : sprites.computeIfAbsent(key, k -> {
+                        Sprite sprite = new Sprite(quarterRadius, (int) k.longValue());
+                        spriteTexels.addAndGet(sprite.texels.length);
+                        return sprite;
+                    });
+                    lastKey = key;
+                }
+                int reach = lastReach;
+                int minX = x - reach;
+                int maxX = x + reach;
+                int minY = y - reach;
+                int maxY = y + reach;
+                if (arrows) {
+                    int ax = x + (int) (frame.vx[i] * arrowScale);
+                    int ay = y + (int) (frame.vy[i] * arrowScale);
+                    minX = Math.min(minX, ax);
+                    maxX = Math.max(maxX, ax);
+                    minY = Math.min(minY, ay);
+                    maxY = Math.max(maxY, ay);
+                }
+                particleSprite[i] = last;
+                if (maxX < 0 || minX >= width || maxY < 0 || minY >= height) {
+                    top[i] = 1;
+                    bottom[i] = 0;
+                } else {
+                    top[i] = Math.max(0, minY);
+                    bottom[i] = Math.min(height - 1, maxY);
+                }
+            }
+        });
+    }
+
+    /**
+     * Copies the trails and works out where their samples land on screen and
+     * which rows each trail covers.
+     * @return The copy to draw, or null if there are no trails
+     */
+    private ParticleTrails projectTrails(WorldFrame frame, int height, int size, int xOffset, int yOffset) {
+        ParticleTrails source = trails;
+        ParticleTrails copy = trailCopy;
+        if (source == null || copy == null || !source.isEnabled()) {
+            return null;
+        }
+        source.copyTo(copy);
+        double scaleX = size / frame.worldWidth;
+        double scaleY = size / frame.worldHeight;
+        boolean[] visible = visibleTypes;
+        int length = copy.getLength();
+        for (int slot = 0; slot < copy.getMaxTrails(); slot++) {
+            int count = copy.getCount(slot);
+            int type = copy.getType(slot);
+            trailTop[slot] = 1;
+            trailBottom[slot] = 0;
+            if (count < 2 || (visible != null && type >= 0 && (type >= visible.length || !visible[type]))) {
+                continue;
+            }
+            int minY = Integer.MAX_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (int age = 0; age < count; age++) {
+                int x = (int) (copy.getX(slot, age) * scaleX) + xOffset;
+                int y = (int) (copy.getY(slot, age) * scaleY) + yOffset;
+                trailX[slot * length + age] = x;
+                trailY[slot * length + age] = y;
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+            if (maxY >= 0 && minY < height) {
+                trailTop[slot] = Math.max(0, minY);
+                trailBottom[slot] = Math.min(height - 1, maxY);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Draws the trails crossing a tile's rows, newest segment first, each
+     * segment more transparent than the one before.
+     */
+    private void drawTrails(ParticleTrails copy, int[] pixels, int width, int rowStart, int rowEnd) {
+        int length = copy.getLength();
+        for (int slot = 0; slot < copy.getMaxTrails(); slot++) {
+            if (trailTop[slot] > trailBottom[slot] || trailBottom[slot] < rowStart || trailTop[slot] >= rowEnd) {
+                continue;
+            }
+            int count = copy.getCount(slot);
+            int color = copy.getColor(slot);
+            int alpha = color >>> 24;
+            int base = slot * length;
+            for (int age = 0; age < count - 1; age++) {
+                int fade = alpha * (count - 1 - age) / (count - 1);
+                line(pixels, width, rowStart, rowEnd, trailX[base + age], trailY[base + age],
+                    trailX[base + age + 1], trailY[base + age + 1], (fade << 24) | (color & 0xFFFFFF));
+            }
+        }
+    }
+
+    /**
+     * Counting-sorts particle indices into every tile their rows overlap.
+     */
+    private void bin(int n, int tiles, int tileHeight) {
+        if (tileStart.length < tiles + 1) {
+            tileStart = new int[tiles + 1];
+            tileCursor = new int[tiles];
+        } else {
+            Arrays.fill(tileStart, 0, tiles + 1, 0);
+        }
+        int entries = 0;
+        for (int i = 0; i < n; i++) {
+            if (top[i] > bottom[i]) {
+                continue;
+            }
+            int last = bottom[i] / tileHeight;
+            for (int t = top[i] / tileHeight; t <= last; t++) {
+                tileStart[t + 1]++;
+            }
+            entries += last - top[i] / tileHeight + 1;
+        }
+        for (int t = 0; t < tiles; t++) {
+            tileStart[t + 1] += tileStart[t];
+        }
+        if (binned.length < entries) {
+            binned = new int[Math.max(entries, binned.length * 3 / 2)];
+        }
+        System.arraycopy(tileStart, 0, tileCursor, 0, tiles);
+        for (int i = 0; i < n; i++) {
+            if (top[i] > bottom[i]) {
+                continue;
+            }
+            int last = bottom[i] / tileHeight;
+            for (int t = top[i] / tileHeight; t <= last; t++) {
+                binned[tileCursor[t]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Gets the grid line positions along one side of the world as fractions of it.
+     */
+    private double[] gridLines(double extent) {
+        double spacing = gridSpacing;
+        if (spacing <= 0 || extent <= 0) {
+            return new double[0];
+        }
+        double[] lines = new double[(int) Math.ceil(extent / spacing)];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = i * spacing / extent;
+        }
+        return lines;
+    }
+
+    /**
+     * Redraws the static layer if the image size, the world's place in it or
+     * the layer's settings changed since it was drawn.
+     */
+    private void prepareStaticLayer(WorldFrame frame, int width, int height, int size, int xOffset, int yOffset) {
+        if (staticLayerValid && layerWidth == width && layerHeight == height && layerSize == size
+                && layerX == xOffset && layerY == yOffset
+                && layerWorldWidth == frame.worldWidth && layerWorldHeight == frame.worldHeight) {
+            return;
+        }
+        if (staticLayer.length < width * height) {
+            staticLayer = new int[width * height];
+        }
+        Arrays.fill(staticLayer, 0, width * height, background);
+        int gridTop = Math.max(0, yOffset);
+        int gridBottom = Math.min(height - 1, yOffset + size);
+        int gridLeft = Math.max(0, xOffset);
+        int gridRight = Math.min(width - 1, xOffset + size);
+        for (double line : gridLines(frame.worldWidth)) {
+            verticalLine(width, (int) (line * size) + xOffset, gridTop, gridBottom, gridColor);
+        }
+        for (double line : gridLines(frame.worldHeight)) {
+            horizontalLine(width, height, (int) (line * size) + yOffset, gridLeft, gridRight, gridColor);
+        }
+        if (boundsColor >= 0) {
+            verticalLine(width, xOffset, gridTop, gridBottom, boundsColor);
+            verticalLine(width, xOffset + size, gridTop, gridBottom, boundsColor);
+            horizontalLine(width, height, yOffset, gridLeft, gridRight, boundsColor);
+            horizontalLine(width, height, yOffset + size, gridLeft, gridRight, boundsColor);
+        }
+        layerWidth = width;
+        layerHeight = height;
+        layerSize = size;
+        layerX = xOffset;
+        layerY = yOffset;
+        layerWorldWidth = frame.worldWidth;
+        layerWorldHeight = frame.worldHeight;
+        staticLayerValid = true;
+    }
+
+    private void verticalLine(int width, int x, int top, int bottom, int rgb) {
+        if (x >= 0 && x < width) {
+            for (int y = top; y <= bottom; y++) {
+                staticLayer[y * width + x] = rgb;
+            }
+        }
+    }
+
+    private void horizontalLine(int width, int height, int y, int left, int right, int rgb) {
+        if (y >= 0 && y < height && left <= right) {
+            Arrays.fill(staticLayer, y * width + left, y * width + right + 1, rgb);
+        }
+    }
+
+    /**
+     * Copies a tile's rows of the static layer into the image.
+     */
+    private void clear(int[] pixels, int width, int rowStart, int rowEnd) {
+        System.arraycopy(staticLayer, rowStart * width, pixels, rowStart * width, (rowEnd - rowStart) * width);
+    }
+
+    /**
+     * Gets how many pixels of a span starting at offset lie in [0, limit).
+     */
+    private static int overlap(int offset, int span, int limit) {
+        return Math.max(0, Math.min(limit, offset + span) - Math.max(0, offset));
+    }
+
+    /**
+     * Interpolates evenly spaced 0xRRGGBB stops into a 256-entry color map.
+     */
+    private static int[] colorMap(int[] stops) {
+        int[] colors = new int[256];
+        int segments = stops.length - 1;
+        for (int i = 0; i < 256; i++) {
+            double position = i / 255.0 * segments;
+            int segment = Math.min(segments - 1, (int) position);
+            double t = position - segment;
+            int from = stops[segment];
+            int to = stops[segment + 1];
+            int r = (int) Math.round(((from >> 16) & 0xFF) * (1 - t) + ((to >> 16) & 0xFF) * t);
+            int g = (int) Math.round(((from >> 8) & 0xFF) * (1 - t) + ((to >> 8) & 0xFF) * t);
+            int b = (int) Math.round((from & 0xFF) * (1 - t) + (to & 0xFF) * t);
+            colors[i] = (r << 16) | (g << 8) | b;
+        }
+        return colors;
+    }
+
+    private static int quarterRadius(float radius, double scale) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE / 2, Math.round(radius * scale * SUBSAMPLES)));
+    }
+
+    /**
+     * Gets how many pixels a circle reaches from its center pixel.
+     */
+    private static int reach(int quarterRadius) {
+        double radius = quarterRadius / (double) SUBSAMPLES;
+        // Pixels whose square the circle can reach, around the center one
+        return Math.max(0, (int) Math.ceil(radius + 0.5) - 1);
+    }
+
+    /**
+     * Fills a circle one row span at a time, keeping only the tile's rows
+     * and the image's columns, so its cost is the pixels it covers on
+     * screen. Pixels are lit if their centers are inside.
+     */
+    private static void fillCircle(int[] pixels, int width, int rowStart, int rowEnd,
+                                   int cx, int cy, double radius, int argb) {
+        int alpha = argb >>> 24;
+        if (alpha == 0) {
+            return;
+        }
+        int texel = premultiply(argb, alpha);
+        int rgb = texel & 0xFFFFFF;
+        int reach = reach((int) Math.round(radius * SUBSAMPLES));
+        int y0 = (int) Math.max(rowStart, (long) cy - reach);
+        int y1 = (int) Math.min(rowEnd - 1, (long) cy + reach);
+        double radiusSquared = radius * radius;
+        for (int y = y0; y <= y1; y++) {
+            double dy = y - cy;
+            double half = Math.sqrt(Math.max(0, radiusSquared - dy * dy));
+            int x0 = (int) Math.max(0, Math.ceil(cx - half));
+            int x1 = (int) Math.min(width - 1, Math.floor(cx + half));
+            int row = y * width;
+            if (alpha == 255) {
+                if (x0 <= x1) {
+                    Arrays.fill(pixels, row + x0, row + x1 + 1, rgb);
+                }
+            } else {
+                for (int x = x0; x <= x1; x++) {
+                    pixels[row + x] = blendPremultiplied(texel, pixels[row + x]);
+                }
+            }
+        }
+    }
+
+    private static void stamp(int[] pixels, int width, int rowStart, int rowEnd, Sprite sprite, int cx, int cy) {
+        int reach = sprite.reach;
+        int side = sprite.side;
+        int y0 = Math.max(rowStart, cy - reach);
+        int y1 = Math.min(rowEnd - 1, cy + reach);
+        int x0 = Math.max(0, cx - reach);
+        int x1 = Math.min(width - 1, cx + reach);
+        int[] texels = sprite.texels;
+        for (int y = y0; y <= y1; y++) {
+            int row = y * width;
+            int spriteRow = (y - cy + reach) * side - cx + reach;
+            for (int x = x0; x <= x1; x++) {
+                int texel = texels[spriteRow + x];
+                int alpha = texel >>> 24;
+                if (alpha == 255) {
+                    pixels[row + x] = texel & 0xFFFFFF;
+                } else if (alpha != 0) {
+                    pixels[row + x] = blendPremultiplied(texel, pixels[row + x]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a line with a simple DDA, keeping only the pixels in the tile's rows.
+     * The segment is first clipped to the image's columns and the tile's rows
+     * with Liang–Barsky, so only the steps that can land on screen are walked,
+     * however far off screen the ends are.
+     */
+    private static void line(int[] pixels, int width, int rowStart, int rowEnd,
+                             int x0, int y0, int x1, int y1, int argb) {
+        int alpha = argb >>> 24;
+        if (alpha == 0) {
+            return;
+        }
+        int texel = premultiply(argb, alpha);
+        int dx = x1 - x0;
+        int dy = y1 - y0;
+        int steps = Math.max(Math.abs(dx), Math.abs(dy));
+        if (steps == 0) {
+            plot(pixels, width, rowStart, rowEnd, x0, y0, texel, alpha);
+            return;
+        }
+        // Narrow the segment's parameter range to each pair of edges in turn.
+        // Pixels are rounded, so the window reaches half a pixel past each edge.
+        double t0 = 0;
+        double t1 = 1;
+        if (dx != 0) {
+            double a = (-0.5 - x0) / dx;
+            double b = (width - 0.5 - x0) / dx;
+            t0 = Math.max(t0, Math.min(a, b));
+            t1 = Math.min(t1, Math.max(a, b));
+        } else if (x0 < 0 || x0 >= width) {
+            return;
+        }
+        if (dy != 0) {
+            double a = (rowStart - 0.5 - y0) / dy;
+            double b = (rowEnd - 0.5 - y0) / dy;
+            t0 = Math.max(t0, Math.min(a, b));
+            t1 = Math.min(t1, Math.max(a, b));
+        } else if (y0 < rowStart || y0 >= rowEnd) {
+            return;
+        }
+        if (t0 > t1) {
+            return;
+        }
+        double stepX = (double) dx / steps;
+        double stepY = (double) dy / steps;
+        // Steps just outside the window may still round into it; plot drops the rest
+        int first = Math.max(0, (int) Math.floor(t0 * steps));
+        int last = Math.min(steps, (int) Math.ceil(t1 * steps));
+        for (int s = first; s <= last; s++) {
+            int x = x0 + (int) Math.round(s * stepX);
+            int y = y0 + (int) Math.round(s * stepY);
+            plot(pixels, width, rowStart, rowEnd, x, y, texel, alpha);
+        }
+    }
+
+    private static void plot(int[] pixels, int width, int rowStart, int rowEnd, int x, int y, int texel, int alpha) {
+        if (y < rowStart || y >= rowEnd || x < 0 || x >= width) {
+            return;
+        }
+        int index = y * width + x;
+        pixels[index] = alpha == 255 ? texel & 0xFFFFFF : blendPremultiplied(texel, pixels[index]);
+    }
+
+    /**
+     * Draws a premultiplied ARGB texel over an opaque RGB pixel.
+     */
+    private static int blendPremultiplied(int texel, int dst) {
+        int inverse = 255 - (texel >>> 24);
+        int r = ((texel >> 16) & 0xFF) + div255(((dst >> 16) & 0xFF) * inverse);
+        int g = ((texel >> 8) & 0xFF) + div255(((dst >> 8) & 0xFF) * inverse);
+        int b = (texel & 0xFF) + div255((dst & 0xFF) * inverse);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int premultiply(int argb, int alpha) {
+        int r = div255(((argb >> 16) & 0xFF) * alpha);
+        int g = div255(((argb >> 8) & 0xFF) * alpha);
+        int b = div255((argb & 0xFF) * alpha);
+        return (alpha << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int div255(int value) {
+        return (value + 1 + (value >>> 8)) >>> 8;
+    }
+
+    @FunctionalInterface
+    private interface TileTask {
+        void run(int tile);
+    }
+
+    @FunctionalInterface
+    private interface RangeTask {
+        void run(int start, int end);
+    }
+
+    /**
+     * Hands tiles out round-robin, so crowded bands are spread over workers.
+     */
+    private void runTiles(int tiles, TileTask task) {
+        int workers = Math.min(workerCount, tiles);
+        runWorkers(workers, worker -> {
+            for (int tile = worker; tile < tiles; tile += workers) {
+                task.run(tile);
+            }
+        });
+    }
+
+    private void runRanges(int size, RangeTask task) {
+        int workers = Math.max(1, Math.min(workerCount, size / 1024));
+        int chunk = size / workers;
+        runWorkers(workers, worker -> {
+            int start = worker * chunk;
+            int end = worker == workers - 1 ? size : start + chunk;
+            task.run(start, end);
+        });
+    }
+
+    private void runWorkers(int workers, TileTask task) {
+        if (workers <= 1) {
+            task.run(0);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int worker = 1; worker < workers; worker++) {
+            final int w = worker;
+            futures.add(executor.submit(() -> task.run(w)));
+        }
+        task.run(0);
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Rendering failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A circle of one radius and color, as premultiplied ARGB texels with
+     * the alpha scaled by how much of each pixel the circle covers.
+     */
+    private static final class Sprite {
+        final int reach;
+        final int side;
+        final int[] texels;
+
+        Sprite(int quarterRadius, int argb) {
+            double radius = quarterRadius / (double) SUBSAMPLES;
+            reach = reach(quarterRadius);
+            side = 2 * reach + 1;
+            texels = new int[side * side];
+            int colorAlpha = argb >>> 24;
+            double radiusSquared = radius * radius;
+            for (int py = -reach; py <= reach; py++) {
+                for (int px = -reach; px <= reach; px++) {
+                    int inside = 0;
+                    for (int sy = 0; sy < SUBSAMPLES; sy++) {
+                        double y = py - 0.5 + (sy + 0.5) / SUBSAMPLES;
+                        for (int sx = 0; sx < SUBSAMPLES; sx++) {
+                            double x = px - 0.5 + (sx + 0.5) / SUBSAMPLES;
+                            if (x * x + y * y <= radiusSquared) {
+                                inside++;
+                            }
+                        }
+                    }
+                    int coverage = inside * 255 / (SUBSAMPLES * SUBSAMPLES);
+                    if (px == 0 && py == 0) {
+                        // Always light the center pixel, so tiny particles stay visible
+                        coverage = 255;
+                    }
+                    int alpha = div255(coverage * colorAlpha);
+                    texels[(py + reach) * side + px + reach] = premultiply(argb, alpha);
+                }
+            }
+        }
+    }
+}
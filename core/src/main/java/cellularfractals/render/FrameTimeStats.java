@@ -0,0 +1,111 @@
+package cellularfractals.render;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the durations of the most recent frames and summarizes them.
+ * Recorded on the render thread; the summaries may be read from any thread
+ * and reflect a recent, possibly slightly torn, window.
+ */
+public class FrameTimeStats {
+    private final long[] durations;
+    private final long[] ends;
+    private final long[] sortScratch;
+    private int next;
+    private int size;
+    private long frames;
+    private long missed;
+
+    /**
+     * Creates statistics over a window of recent frames.
+     * @param window Number of frames kept
+     */
+    public FrameTimeStats(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be at least 1");
+        }
+        durations = new long[window];
+        ends = new long[window];
+        sortScratch = new long[window];
+    }
+
+    /**
+     * Records a rendered frame.
+     * @param startNanos System.nanoTime() when the frame started
+     * @param endNanos System.nanoTime() when it was shown
+     */
+    public synchronized void record(long startNanos, long endNanos) {
+        durations[next] = endNanos - startNanos;
+        ends[next] = endNanos;
+        next = (next + 1) % durations.length;
+        size = Math.min(size + 1, durations.length);
+        frames++;
+    }
+
+    /**
+     * Records frame slots skipped because rendering ran past them.
+     * @param count Number of slots skipped
+     */
+    public synchronized void recordMissed(long count) {
+        missed += count;
+    }
+
+    /** Gets the number of frames recorded. */
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    /** Gets the number of frame slots skipped. */
+    public synchronized long getMissedCount() {
+        return missed;
+    }
+
+    /** Gets the mean time spent rendering a frame over the window. */
+    public synchronized double getAverageMillis() {
+        if (size == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += durations[i];
+        }
+        return total / (size * 1e6);
+    }
+
+    /** Gets the longest frame in the window. */
+    public synchronized double getMaxMillis() {
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, durations[i]);
+        }
+        return max / 1e6;
+    }
+
+    /**
+     * Gets a percentile of the frame times in the window.
+     * @param fraction Between 0 and 1, for example 0.99
+     */
+    public synchronized double getPercentileMillis(double fraction) {
+        if (size == 0) {
+            return 0;
+        }
+        System.arraycopy(durations, 0, sortScratch, 0, size);
+        Arrays.sort(sortScratch, 0, size);
+        int index = (int) Math.min(size - 1, Math.max(0, Math.ceil(fraction * size) - 1));
+        return sortScratch[index] / 1e6;
+    }
+
+    /**
+     * Gets frames shown per second over the window, from the time between
+     * its first and last frames.
+     */
+    public synchronized double getFramesPerSecond() {
+        if (size < 2) {
+            return 0;
+        }
+        int newest = (next - 1 + ends.length) % ends.length;
+        int oldest = size < ends.length ? 0 : next;
+        long elapsed = ends[newest] - ends[oldest];
+        return elapsed <= 0 ? 0 : (size - 1) * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,302 @@
+package cellularfractals.render;
+
+import java.util.Arrays;
+
+import cellularfractals.engine.StepListener;
+import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+
+/**
+ * Recent positions of up to a fixed number of particles, for drawing motion
+ * trails in each particle's trail color.
+ *
+ * Registered as a {@link StepListener}, every few steps the trails take a
+ * sample of each tracked particle's position into its slot of one
+ * preallocated ring buffer, overwriting the oldest of the last
+ * {@link #getLength()} samples. Particles are tracked in the order they are
+ * first seen until every slot is taken; a slot is freed once its particle
+ * leaves the world. Slots are found from particle ids through a fixed
+ * open-addressed table, so once constructed nothing is allocated per
+ * particle or per sample.
+ *
+ * Sampling runs on the updating thread and drawing on another, so a reader
+ * copies the trails with {@link #copyTo} and draws the copy.
+ */
+public class ParticleTrails implements StepListener {
+    private static final int FREE = -1;
+
+    private final int maxTrails;
+    private final int length;
+    private final int sampleInterval;
+    // Sample k of slot s is at s * length + k
+    private final float[] x;
+    private final float[] y;
+    private final int[] ids;
+    private final int[] head; // Index the next sample of a slot goes to
+    private final int[] count;
+    private final int[] color;
+    private final byte[] types;
+    private final int[] seen; // Sample generation in which the slot's particle was last found
+    private final int[] table; // Particle id hashed to slot + 1, 0 for empty
+    private final int tableMask;
+    private final int[] freeSlots; // Stack of free slots, topped at maxTrails - 1 - used
+    private int generation;
+    private int used;
+    private boolean enabled = true;
+
+    /**
+     * Creates empty trails.
+     * @param maxTrails Most particles trailed at once
+     * @param length Positions kept per particle
+     * @param sampleInterval Steps between samples
+     */
+    public ParticleTrails(int maxTrails, int length, int sampleInterval) {
+        if (maxTrails < 1 || length < 2 || sampleInterval < 1) {
+            throw new IllegalArgumentException("trails need at least one slot, two positions and a positive interval");
+        }
+        this.maxTrails = maxTrails;
+        this.length = length;
+        this.sampleInterval = sampleInterval;
+        x = new float[maxTrails * length];
+        y = new float[maxTrails * length];
+        ids = new int[maxTrails];
+        head = new int[maxTrails];
+        count = new int[maxTrails];
+        color = new int[maxTrails];
+        types = new byte[maxTrails];
+        seen = new int[maxTrails];
+        table = new int[Integer.highestOneBit(maxTrails * 2 - 1) << 1];
+        tableMask = table.length - 1;
+        freeSlots = new int[maxTrails];
+        clear();
+    }
+
+    public int getMaxTrails() {
+        return maxTrails;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Turns sampling on or off. Turning it off forgets every trail.
+     * @param enabled Whether to sample
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Forgets every trail.
+     */
+    public synchronized void clear() {
+        Arrays.fill(ids, FREE);
+        Arrays.fill(count, 0);
+        Arrays.fill(table, 0);
+        for (int i = 0; i < maxTrails; i++) {
+            freeSlots[i] = maxTrails - 1 - i;
+        }
+        used = 0;
+    }
+
+    @Override
+    public void onStep(World world, long step) {
+        if (step % sampleInterval == 0) {
+            sample(world);
+        }
+    }
+
+    /**
+     * Adds the current position of every tracked particle to its trail,
+     * tracks new particles while slots are free, and frees the slots of
+     * particles no longer in the world for the next sample to reuse.
+     * @param world The world to sample
+     */
+    public synchronized void sample(World world) {
+        if (!enabled) {
+            return;
+        }
+        generation++;
+        for (Particle p : world.particles) {
+            int id = p.getId();
+            if (id < 0) {
+                continue;
+            }
+            int slot = find(id);
+            if (slot == FREE) {
+                if (used == maxTrails) {
+                    continue;
+                }
+                slot = claim(id);
+            }
+            int k = slot * length + head[slot];
+            x[k] = (float) p.getX();
+            y[k] = (float) p.getY();
+            head[slot] = head[slot] + 1 == length ? 0 : head[slot] + 1;
+            count[slot] = Math.min(length, count[slot] + 1);
+            color[slot] = p.cosmeticSettings.trailColor;
+            ParticleType type = p.getParticleType();
+            types[slot] = type == null ? WorldFrame.NO_TYPE : (byte) type.getId();
+            seen[slot] = generation;
+        }
+        sweep();
+    }
+
+    /**
+     * Copies every trail into trails of the same dimensions.
+     * @param target The trails to overwrite
+     */
+    public synchronized void copyTo(ParticleTrails target) {
+        if (target.maxTrails != maxTrails || target.length != length) {
+            throw new IllegalArgumentException("trails differ in size");
+        }
+        synchronized (target) {
+            System.arraycopy(x, 0, target.x, 0, x.length);
+            System.arraycopy(y, 0, target.y, 0, y.length);
+            System.arraycopy(ids, 0, target.ids, 0, maxTrails);
+            System.arraycopy(head, 0, target.head, 0, maxTrails);
+            System.arraycopy(count, 0, target.count, 0, maxTrails);
+            System.arraycopy(color, 0, target.color, 0, maxTrails);
+            System.arraycopy(types, 0, target.types, 0, maxTrails);
+            System.arraycopy(freeSlots, 0, target.freeSlots, 0, maxTrails);
+            System.arraycopy(seen, 0, target.seen, 0, maxTrails);
+            System.arraycopy(table, 0, target.table, 0, table.length);
+            target.generation = generation;
+            target.used = used;
+            target.enabled = enabled;
+        }
+    }
+
+    /** Gets the number of particles being trailed. */
+    public synchronized int getTrailCount() {
+        return used;
+    }
+
+    /**
+     * Gets the slot trailing a particle.
+     * @param id The particle's id
+     * @return The slot, or -1 if the particle is not trailed
+     */
+    public synchronized int getSlot(int id) {
+        return find(id);
+    }
+
+    /** Gets the id of the particle in a slot, or -1 if the slot is free. */
+    public int getId(int slot) {
+        return ids[slot];
+    }
+
+    /** Gets the number of positions in a slot's trail. */
+    public int getCount(int slot) {
+        return count[slot];
+    }
+
+    /** Gets the trail color of a slot's particle, as ARGB. */
+    public int getColor(int slot) {
+        return color[slot];
+    }
+
+    /** Gets the type id of a slot's particle, or {@link WorldFrame#NO_TYPE}. */
+    public byte getType(int slot) {
+        return types[slot];
+    }
+
+    /**
+     * Gets a position of a slot's trail.
+     * @param slot The slot
+     * @param age 0 for the newest position up to {@link #getCount} - 1 for the oldest
+     */
+    public float getX(int slot, int age) {
+        return x[index(slot, age)];
+    }
+
+    /**
+     * Gets a position of a slot's trail.
+     * @param slot The slot
+     * @param age 0 for the newest position up to {@link #getCount} - 1 for the oldest
+     */
+    public float getY(int slot, int age) {
+        return y[index(slot, age)];
+    }
+
+    private int index(int slot, int age) {
+        int k = head[slot] - 1 - age;
+        return slot * length + (k < 0 ? k + length : k);
+    }
+
+    private int find(int id) {
+        for (int h = hash(id); ; h = (h + 1) & tableMask) {
+            int entry = table[h];
+            if (entry == 0) {
+                return FREE;
+            }
+            if (ids[entry - 1] == id) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int claim(int id) {
+        int slot = freeSlots[maxTrails - 1 - used];
+        ids[slot] = id;
+        head[slot] = 0;
+        count[slot] = 0;
+        used++;
+        int h = hash(id);
+        while (table[h] != 0) {
+            h = (h + 1) & tableMask;
+        }
+        table[h] = slot + 1;
+        return slot;
+    }
+
+    /**
+     * Frees the slots not seen in this sample and, if any were, rebuilds the
+     * table; removing entries from a linear-probing table in place would
+     * break the probe chains of the ones after them.
+     */
+    private void sweep() {
+        boolean freed = false;
+        for (int s = 0; s < maxTrails; s++) {
+            if (ids[s] != FREE && seen[s] != generation) {
+                ids[s] = FREE;
+                count[s] = 0;
+                used--;
+                freeSlots[maxTrails - 1 - used] = s;
+                freed = true;
+            }
+        }
+        if (!freed) {
+            return;
+        }
+        Arrays.fill(table, 0);
+        for (int s = 0; s < maxTrails; s++) {
+            if (ids[s] != FREE) {
+                int h = hash(ids[s]);
+                while (table[h] != 0) {
+                    h = (h + 1) & tableMask;
+                }
+                table[h] = s + 1;
+            }
+        }
+    }
+
+    private int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & tableMask;
+    }
+}
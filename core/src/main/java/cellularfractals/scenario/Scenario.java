@@ -0,0 +1,18 @@
+package cellularfractals.scenario;
+
+import java.util.Random;
+
+import cellularfractals.engine.World;
+
+/**
+ * Populates a world with an initial set of particles.
+ */
+public interface Scenario {
+    /**
+     * Adds particles to the world.
+     * @param world The world to populate
+     * @param particleCount Approximate number of particles to create
+     * @param random Source of randomness, so runs can be reproduced from a seed
+     */
+    void populate(World world, int particleCount, Random random);
+}
@@ -0,0 +1,157 @@
+package cellularfractals.scenario;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import cellularfractals.engine.InteractionMatrix;
+import cellularfractals.engine.World;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.particles.BasicParticle;
+import cellularfractals.particles.particles.GhostParticle;
+import cellularfractals.particles.particles.GravityParticle;
+import cellularfractals.particles.particles.MagneticParticle;
+
+/**
+ * Built-in scenarios shared by the GUI, the headless runner and the benchmarks.
+ */
+public final class Scenarios {
+    /** Particle count of the scene the GUI starts with. */
+    public static final int DEFAULT_PARTICLE_COUNT = 2002;
+
+    private static final Map<String, Scenario> BUILT_IN = new LinkedHashMap<>();
+
+    static {
+        BUILT_IN.put("gravity-field", Scenarios::gravityField);
+        BUILT_IN.put("basic", Scenarios::basic);
+        BUILT_IN.put("gravity", Scenarios::gravity);
+        BUILT_IN.put("magnetic", Scenarios::magnetic);
+        BUILT_IN.put("ghost", Scenarios::ghost);
+        BUILT_IN.put("particle-life", Scenarios::particleLife);
+    }
+
+    private Scenarios() {
+    }
+
+    /**
+     * Looks up a built-in scenario by name.
+     * @param name Scenario name, see {@link #names()}
+     * @return The scenario
+     * @throws IllegalArgumentException if no scenario has that name
+     */
+    public static Scenario get(String name) {
+        Scenario scenario = BUILT_IN.get(name);
+        if (scenario == null) {
+            throw new IllegalArgumentException("Unknown scenario '" + name + "', expected one of " + names());
+        }
+        return scenario;
+    }
+
+    /**
+     * Gets the names of all built-in scenarios.
+     * @return Scenario names in registration order
+     */
+    public static Iterable<String> names() {
+        return Collections.unmodifiableSet(BUILT_IN.keySet());
+    }
+
+    /**
+     * The scene the GUI starts with: two strong attractors and a field of
+     * weak gravity and anti-gravity particles in equal numbers.
+     */
+    public static void gravityField(World world, int particleCount, Random random) {
+        new GravityParticle(world, 25, 25, 0, 0, 100f, 1f);
+        new GravityParticle(world, 50, 25, 0, 0, 100f, 1f);
+
+        int pairs = Math.max(0, (particleCount - 2) / 2);
+        for (int i = 0; i < pairs; i++) {
+            new GravityParticle(
+                world,
+                random.nextDouble() * world.getWidth(),
+                random.nextDouble() * world.getHeight(),
+                random.nextDouble() * 2 - 1,
+                random.nextDouble() * 2 - 1,
+                5f,
+                .01f
+            );
+            new GravityParticle(
+                world,
+                random.nextDouble() * world.getWidth(),
+                random.nextDouble() * world.getHeight(),
+                random.nextDouble() * 2 - 1,
+                random.nextDouble() * 2 - 1,
+                5f,
+                -.001f
+            );
+        }
+    }
+
+    /**
+     * Basic particles only: collisions, no pairwise forces.
+     */
+    public static void basic(World world, int particleCount, Random random) {
+        for (int i = 0; i < particleCount; i++) {
+            new BasicParticle(world, randomX(world, random), randomY(world, random),
+                random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1);
+        }
+    }
+
+    /**
+     * Weak short-range gravity particles only.
+     */
+    public static void gravity(World world, int particleCount, Random random) {
+        for (int i = 0; i < particleCount; i++) {
+            new GravityParticle(world, randomX(world, random), randomY(world, random),
+                random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, 5f, .01f);
+        }
+    }
+
+    /**
+     * Positive and negative magnetic particles in equal numbers.
+     */
+    public static void magnetic(World world, int particleCount, Random random) {
+        for (int i = 0; i < particleCount; i++) {
+            new MagneticParticle(world, randomX(world, random), randomY(world, random),
+                random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, 5f, .005f,
+                i % 2 == 0 ? "Positive" : "Negative");
+        }
+    }
+
+    /**
+     * Ghost particles only: no particle-particle collisions.
+     */
+    public static void ghost(World world, int particleCount, Random random) {
+        for (int i = 0; i < particleCount; i++) {
+            new GhostParticle(world, randomX(world, random), randomY(world, random),
+                random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1);
+        }
+    }
+
+    /**
+     * Basic particles of four interaction types under a random matrix of
+     * attractions and repulsions, which usually self-organize into clusters.
+     */
+    public static void particleLife(World world, int particleCount, Random random) {
+        int[] colors = {
+            Particle.CosmeticSettings.rgb(255, 80, 80),
+            Particle.CosmeticSettings.rgb(80, 255, 80),
+            Particle.CosmeticSettings.rgb(80, 140, 255),
+            Particle.CosmeticSettings.rgb(255, 220, 60)
+        };
+        world.setInteractionMatrix(InteractionMatrix.random(colors.length, .05, 5, random));
+        for (int i = 0; i < particleCount; i++) {
+            Particle p = new BasicParticle(world, randomX(world, random), randomY(world, random), 0, 0);
+            p.setInteractionType(i % colors.length);
+            p.cosmeticSettings.color = colors[i % colors.length];
+        }
+    }
+
+    private static double randomX(World world, Random random) {
+        return random.nextDouble() * world.getWidth();
+    }
+
+    private static double randomY(World world, Random random) {
+        return random.nextDouble() * world.getHeight();
+    }
+}
@@ -0,0 +1,69 @@
+package cellularfractals.engine;
+
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.particles.BasicParticle;
+import cellularfractals.particles.particles.GhostParticle;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+class CellPairBroadphaseTest {
+    @Test
+    void testFindsSameTouchingPairsAsBruteForce() {
+        World world = new World(50, 30, 5);
+        Random random = new Random(7);
+        List<Particle> particles = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            Particle p = new BasicParticle(world, random.nextDouble() * 50, random.nextDouble() * 30, 0, 0);
+            p.setRadius(0.2 + random.nextDouble() * 0.8);
+            particles.add(p);
+        }
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < particles.size(); i++) {
+            for (int j = i + 1; j < particles.size(); j++) {
+                Particle a = particles.get(i);
+                Particle b = particles.get(j);
+                double dx = b.getX() - a.getX();
+                double dy = b.getY() - a.getY();
+                double reach = a.getRadius() + b.getRadius();
+                if (dx * dx + dy * dy <= reach * reach) {
+                    expected.add(key(a, b));
+                }
+            }
+        }
+
+        CellPairBroadphase broadphase = new CellPairBroadphase(50, 30);
+        broadphase.build(particles);
+        List<String> found = new ArrayList<>();
+        broadphase.forEachTouchingPair(null, 1, (a, b) -> found.add(key(a, b)));
+
+        assertEquals(expected.size(), found.size(), "each pair is reported exactly once");
+        assertEquals(expected, new HashSet<>(found));
+    }
+
+    @Test
+    void testSkipsParticlesThatDoNotCollide() {
+        World world = new World(10, 10, 5);
+        List<Particle> particles = new ArrayList<>();
+        particles.add(new BasicParticle(world, 5, 5, 0, 0));
+        particles.add(new GhostParticle(world, 5, 5, 0, 0));
+
+        CellPairBroadphase broadphase = new CellPairBroadphase(10, 10);
+        broadphase.build(particles);
+        assertEquals(1, broadphase.size());
+        broadphase.forEachTouchingPair(null, 1, (a, b) -> fail("ghosts never pair"));
+    }
+
+    private static String key(Particle a, Particle b) {
+        int first = Math.min(System.identityHashCode(a), System.identityHashCode(b));
+        int second = Math.max(System.identityHashCode(a), System.identityHashCode(b));
+        return first + ":" + second;
+    }
+}
@@ -0,0 +1,82 @@
+package cellularfractals.engine;
+
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.particles.BasicParticle;
+import cellularfractals.particles.particles.ExplodingParticle;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ContactBufferTest {
+    private World world;
+
+    @BeforeEach
+    void setUp() {
+        world = new World(50, 50, 5);
+        world.setExecutor(null, 1);
+    }
+
+    @Test
+    void testCollisionIsPublishedToListeners() {
+        Particle a = new BasicParticle(world, 20, 20, 5, 0);
+        Particle b = new BasicParticle(world, 20.9, 20, -5, 0);
+        List<Integer> seen = new ArrayList<>();
+        world.addContactListener((w, contacts) -> seen.add(contacts.count));
+        world.update(0.01);
+
+        ContactBuffer contacts = world.getContacts();
+        assertEquals(1, seen.size());
+        assertTrue(contacts.count >= 1);
+        Particle first = contacts.getParticleA(0);
+        assertEquals(first.getId(), contacts.idA[0]);
+        assertSame(first == a ? b : a, contacts.getOther(0, first));
+        // The normal points from A to B along the x axis
+        assertEquals(first == a ? 1 : -1, contacts.normalX[0], 1e-9);
+        assertEquals(0, contacts.normalY[0], 1e-9);
+        assertEquals(10, contacts.relativeSpeed[0], 1e-9);
+        // (1 + e) * 10 / (1/m + 1/m) for unit masses
+        assertEquals((1 + a.getRestitution()) * 5, contacts.impulse[0], 1e-9);
+    }
+
+    @Test
+    void testNothingRecordedWithoutSubscribers() {
+        new BasicParticle(world, 20, 20, 5, 0);
+        new BasicParticle(world, 20.9, 20, -5, 0);
+        world.update(0.01);
+        assertEquals(0, world.getContacts().count);
+    }
+
+    @Test
+    void testOverflowBeyondCapacityIsKept() {
+        // Far more contacts than an empty buffer holds on the first update
+        for (int i = 0; i < 40; i++) {
+            new BasicParticle(world, 5 + i * 0.9, 10, 0, 0);
+        }
+        world.addContactListener((w, contacts) -> { });
+        world.update(0.01);
+        int first = world.getContacts().count;
+        assertTrue(first >= 39 * world.getPhysicsSubsteps(), "count " + first);
+        for (int i = 0; i < first; i++) {
+            assertNotNull(world.getContacts().getParticleA(i));
+        }
+    }
+
+    @Test
+    void testExplodingParticleTriggersOnContact() {
+        Particle bomb = new ExplodingParticle(world, 20, 20, 0, 0, 5);
+        Particle far = new BasicParticle(world, 23, 20, 0, 0);
+        world.update(0.01);
+        // Within the explosion radius but not touching, so nothing happens
+        assertTrue(world.containsParticle(bomb));
+
+        new BasicParticle(world, 19.2, 20, 0, 0);
+        world.update(0.01);
+        assertFalse(world.containsParticle(bomb));
+        assertEquals(12, world.getParticleCount());
+        assertEquals(0.0, far.getBaseDx(), 0.0, "only contacts are affected, not particles in range");
+    }
+}
@@ -0,0 +1,65 @@
+package cellularfractals.engine;
+
+import cellularfractals.particles.particles.BasicParticle;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FramePublisherTest {
+    private World world;
+    private FramePublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        world = new World(50, 50, 5);
+        world.setExecutor(null, 1);
+        publisher = new FramePublisher();
+        world.addStepListener(publisher);
+    }
+
+    @Test
+    void testReaderGetsLatestStep() {
+        new BasicParticle(world, 10, 10, 1, 0);
+        assertEquals(0, publisher.latest().count);
+
+        world.update(1);
+        assertTrue(publisher.hasNewFrame());
+        WorldFrame frame = publisher.latest();
+        assertEquals(1, frame.count);
+        assertEquals(1, frame.step);
+        assertFalse(publisher.hasNewFrame());
+        // Nothing newer, so the same frame again
+        assertSame(frame, publisher.latest());
+    }
+
+    @Test
+    void testStepsAreSkippedUntilTaken() {
+        new BasicParticle(world, 10, 10, 1, 0);
+        for (int i = 0; i < 5; i++) {
+            world.update(1);
+        }
+        assertEquals(1, publisher.getPublishedCount());
+        assertEquals(1, publisher.latest().step);
+
+        publisher.setCaptureEveryStep(true);
+        for (int i = 0; i < 3; i++) {
+            world.update(1);
+        }
+        assertEquals(4, publisher.getPublishedCount());
+        assertEquals(8, publisher.latest().step);
+    }
+
+    @Test
+    void testRegionLimitsCapture() {
+        new BasicParticle(world, 10, 10, 0, 0);
+        new BasicParticle(world, 40, 40, 0, 0);
+        publisher.setRegion(0, 0, 20, 20);
+        world.update(1);
+        assertEquals(1, publisher.latest().count);
+
+        publisher.clearRegion();
+        world.update(1);
+        assertEquals(2, publisher.latest().count);
+    }
+}
@@ -1,5 +1,6 @@
 package cellularfractals.engine;
 
+import cellularfractals.particles.CollisionLayers;
 import cellularfractals.particles.Particle;
 import cellularfractals.particles.Effect;
 
@@ -7,7 +8,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 
 class GridTest {
     private Grid grid;
@@ -58,6 +62,28 @@ class GridTest {
         assertSame(particle, newPosParticles.get(0));
     }
 
+    @Test
+    void testRectQueryMatchesBruteForce() {
+        Random random = new Random(11);
+        List<TestParticle> all = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            TestParticle p = new TestParticle(random.nextDouble() * GRID_SIZE, random.nextDouble() * GRID_SIZE);
+            grid.addParticle(p);
+            all.add(p);
+        }
+        double minX = 12.5, minY = 33, maxX = 47, maxY = 81.2;
+        List<Particle> found = grid.getParticlesInRect(minX, minY, maxX, maxY);
+        long expected = all.stream()
+            .filter(p -> p.getX() >= minX && p.getX() <= maxX && p.getY() >= minY && p.getY() <= maxY)
+            .count();
+        assertEquals(expected, found.size());
+        for (Particle p : found) {
+            assertTrue(p.getX() >= minX && p.getX() <= maxX && p.getY() >= minY && p.getY() <= maxY);
+        }
+        // A rectangle larger than the grid finds everything
+        assertEquals(all.size(), grid.getParticlesInRect(-1e9, -1e9, 1e9, 1e9).size());
+    }
+
     @Test
     void testGetParticlesInRange() {
         // Add several particles
@@ -128,16 +154,103 @@ class GridTest {
         assertEquals(0, after.size());
     }
 
+    @Test
+    void testLayerMaskedQuerySkipsOtherLayers() {
+        TestParticle solid = new TestParticle(10.0, 10.0);
+        TestParticle ghost = new TestParticle(11.0, 10.0, CollisionLayers.GHOST);
+        grid.addParticle(solid);
+        grid.addParticle(ghost);
+
+        assertEquals(2, grid.getParticlesInRange(10.0, 10.0, 5.0).size());
+        List<Particle> solids = grid.getParticlesInRange(10.0, 10.0, 5.0, CollisionLayers.COLLIDING);
+        assertEquals(List.of(solid), solids);
+        List<Particle> ghosts = grid.getParticlesInRange(10.0, 10.0, 5.0, CollisionLayers.bit(CollisionLayers.GHOST));
+        assertEquals(List.of(ghost), ghosts);
+
+        // Moving between cells keeps the particle in its layer
+        ghost.setPosition(55.0, 55.0);
+        grid.updateParticlePosition(ghost, 11.0, 10.0);
+        assertTrue(grid.getParticlesInRange(10.0, 10.0, 5.0, CollisionLayers.bit(CollisionLayers.GHOST)).isEmpty());
+        assertEquals(List.of(ghost),
+            grid.getParticlesInRange(55.0, 55.0, 1.0, CollisionLayers.bit(CollisionLayers.GHOST)));
+    }
+
+    @Test
+    void testCountingQueriesStopEarly() {
+        TestParticle self = new TestParticle(50.0, 50.0);
+        grid.addParticle(self);
+        for (int i = 1; i <= 5; i++) {
+            grid.addParticle(new TestParticle(50.0 + i, 50.0));
+        }
+
+        assertFalse(grid.anyInRange(50.0, 50.0, 0.5, CollisionLayers.ALL, self));
+        assertTrue(grid.anyInRange(50.0, 50.0, 1.0, CollisionLayers.ALL, self));
+        assertEquals(3, grid.countInRange(50.0, 50.0, 3.0, CollisionLayers.ALL, self, 10));
+        assertEquals(2, grid.countInRange(50.0, 50.0, 10.0, CollisionLayers.ALL, self, 2));
+        assertEquals(0, grid.countInRange(50.0, 50.0, 10.0, CollisionLayers.bit(CollisionLayers.GHOST), null, 10));
+    }
+
+    @Test
+    void testNearestAndKNearestMatchSorting() {
+        Random random = new Random(9);
+        List<Particle> all = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            TestParticle p = new TestParticle(random.nextDouble() * 100, random.nextDouble() * 100);
+            grid.addParticle(p);
+            all.add(p);
+        }
+        double qx = 37.3;
+        double qy = 61.9;
+        all.sort(Comparator.comparingDouble(p -> Math.hypot(p.getX() - qx, p.getY() - qy)));
+
+        assertSame(all.get(0), grid.nearest(qx, qy, 100.0, CollisionLayers.ALL, null));
+        assertSame(all.get(1), grid.nearest(qx, qy, 100.0, CollisionLayers.ALL, all.get(0)));
+        assertEquals(all.subList(0, 7), grid.kNearest(qx, qy, 7, 100.0, CollisionLayers.ALL, null));
+
+        // The radius limit still applies
+        double fifth = Math.hypot(all.get(4).getX() - qx, all.get(4).getY() - qy);
+        assertEquals(all.subList(0, 5), grid.kNearest(qx, qy, 20, fifth, CollisionLayers.ALL, null));
+        assertNull(grid.nearest(-500.0, -500.0, 1.0, CollisionLayers.ALL, null));
+    }
+
+    @Test
+    void testCellOccupancyTracksMoves() {
+        TestParticle p = new TestParticle(15.0, 15.0);
+        grid.addParticle(p);
+        grid.addParticle(new TestParticle(16.0, 16.0));
+        assertEquals(2, grid.getCellOccupancy(12.0, 12.0));
+
+        p.setPosition(35.0, 15.0);
+        grid.updateParticlePosition(p, 15.0, 15.0);
+        assertEquals(1, grid.getCellOccupancy(12.0, 12.0));
+        assertEquals(1, grid.getCellOccupancy(31.0, 11.0));
+        assertEquals(1 / (CELL_SIZE * CELL_SIZE), grid.getCellDensity(31.0, 11.0), 1e-12);
+
+        grid.removeParticle(p);
+        assertEquals(0, grid.getCellOccupancy(31.0, 11.0));
+    }
+
     /**
      * Simple test particle implementation for unit tests
      */
     private static class TestParticle extends Particle {
         private double x, y;
+        private final int layer;
 
         public TestParticle(double x, double y) {
+            this(x, y, CollisionLayers.SOLID);
+        }
+
+        public TestParticle(double x, double y, int layer) {
             super(null, x, y, 0.0, 0.0);
             this.x = x;
             this.y = y;
+            this.layer = layer;
+        }
+
+        @Override
+        public int getCollisionLayer() {
+            return layer;
         }
 
         @Override
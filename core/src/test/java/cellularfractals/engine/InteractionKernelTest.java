@@ -0,0 +1,77 @@
+package cellularfractals.engine;
+
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.effects.GravityEffect;
+import cellularfractals.particles.particles.BasicParticle;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class InteractionKernelTest {
+    @Test
+    void testParticleTypeMatrixMatchesGravityEffect() {
+        World world = new World(20, 20, 5);
+        Particle source = new BasicParticle(world, 10, 10, 0, 0);
+        Particle target = new BasicParticle(world, 13, 14, 0, 0);
+        source.setInteractionType(ParticleType.GRAVITY.getId());
+        target.setInteractionType(ParticleType.BASIC.getId());
+
+        InteractionKernel kernel = new InteractionKernel(20, 20);
+        kernel.apply(List.of(source, target), InteractionMatrix.forParticleTypes(6, 0.5, 6, 0.1), null, 1);
+        double fx = target.getForceX();
+        double fy = target.getForceY();
+        assertEquals(0, source.getForceX(), 0.0);
+        target.clearForces();
+
+        new GravityEffect(6f, 0.5f).apply(source, 0.016);
+        assertEquals(target.getForceX(), fx, 1e-9);
+        assertEquals(target.getForceY(), fy, 1e-9);
+        assertEquals(0.5 / 5, Math.hypot(fx, fy), 1e-9);
+    }
+
+    @Test
+    void testMatchesBruteForceSum() {
+        World world = new World(40, 40, 5);
+        Random random = new Random(3);
+        InteractionMatrix matrix = InteractionMatrix.random(3, 1, 4, random);
+        matrix.setLaw(1, 2, -0.7, 7, 2);
+        List<Particle> particles = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Particle p = new BasicParticle(world, random.nextDouble() * 40, random.nextDouble() * 40, 0, 0);
+            p.setInteractionType(i % 4 == 3 ? -1 : i % 3);
+            particles.add(p);
+        }
+
+        new InteractionKernel(40, 40).apply(particles, matrix, null, 1);
+
+        for (Particle p : particles) {
+            double fx = 0;
+            double fy = 0;
+            if (p.getInteractionType() >= 0) {
+                for (Particle q : particles) {
+                    if (q == p || q.getInteractionType() < 0) {
+                        continue;
+                    }
+                    int s = q.getInteractionType();
+                    int t = p.getInteractionType();
+                    double dx = q.getX() - p.getX();
+                    double dy = q.getY() - p.getY();
+                    double d = Math.hypot(dx, dy);
+                    if (d > matrix.getRange(s, t)) {
+                        continue;
+                    }
+                    double force = matrix.getStrength(s, t) / Math.pow(d, matrix.getFalloff(s, t));
+                    fx += force * dx / d;
+                    fy += force * dy / d;
+                }
+            }
+            assertEquals(fx, p.getForceX(), 1e-9);
+            assertEquals(fy, p.getForceY(), 1e-9);
+        }
+    }
+}
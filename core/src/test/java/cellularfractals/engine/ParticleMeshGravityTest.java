@@ -0,0 +1,69 @@
+package cellularfractals.engine;
+
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.particles.GhostParticle;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class ParticleMeshGravityTest {
+    @Test
+    void testFarFieldMatchesDirectSum() {
+        double error = relativeError(0);
+        assertTrue(error < 0.1, "mesh force error " + error);
+    }
+
+    @Test
+    void testP3mCorrectionImprovesCloseRange() {
+        double meshOnly = relativeError(0);
+        double corrected = relativeError(6);
+        assertTrue(corrected < 0.02, "corrected force error " + corrected);
+        assertTrue(corrected < meshOnly / 2, "correction " + corrected + " vs mesh " + meshOnly);
+    }
+
+    /**
+     * Mean force error relative to the mean force of an exact softened sum,
+     * on a clustered cloud where many pairs are within a few mesh cells.
+     */
+    private static double relativeError(double cutoff) {
+        World world = new World(64, 64, 8);
+        Random random = new Random(11);
+        List<Particle> particles = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double radius = 12 * Math.sqrt(random.nextDouble());
+            Particle p = new GhostParticle(world, 32 + radius * Math.cos(angle), 32 + radius * Math.sin(angle), 0, 0);
+            p.setMass(0.5 + random.nextDouble());
+            particles.add(p);
+        }
+
+        ParticleMeshGravity gravity = new ParticleMeshGravity(0.01, 4);
+        gravity.setP3mCutoff(cutoff);
+        gravity.apply(particles, world, null, 1);
+        double epsilon = gravity.getMeshCellSize() / 2;
+
+        double errorSum = 0;
+        double forceSum = 0;
+        for (Particle p : particles) {
+            double fx = 0;
+            double fy = 0;
+            for (Particle q : particles) {
+                if (q == p) {
+                    continue;
+                }
+                double dx = q.getX() - p.getX();
+                double dy = q.getY() - p.getY();
+                double f = 0.01 * q.getMass() / (dx * dx + dy * dy + epsilon * epsilon);
+                fx += f * dx;
+                fy += f * dy;
+            }
+            errorSum += Math.hypot(p.getForceX() - fx, p.getForceY() - fy);
+            forceSum += Math.hypot(fx, fy);
+        }
+        return errorSum / forceSum;
+    }
+}
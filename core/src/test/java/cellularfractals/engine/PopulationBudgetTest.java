@@ -0,0 +1,92 @@
+package cellularfractals.engine;
+
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.particles.GhostParticle;
+import cellularfractals.particles.particles.GravityParticle;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+class PopulationBudgetTest {
+    private World world;
+
+    @BeforeEach
+    void setUp() {
+        world = new World(50, 50, 5);
+        world.setExecutor(null, 1);
+    }
+
+    @Test
+    void testMergingConservesMassAndMomentum() {
+        Random random = new Random(5);
+        for (int i = 0; i < 40; i++) {
+            Particle p = new GhostParticle(world, 25 + random.nextDouble() * 4, 25 + random.nextDouble() * 4,
+                random.nextDouble() - 0.5, random.nextDouble() - 0.5);
+            p.setMass(0.5 + random.nextDouble());
+        }
+        // Gravity sources are never merged
+        new GravityParticle(world, 27, 27, 0, 0, 0.1f, 0.001f);
+        double[] before = totals();
+
+        world.setPopulationBudget(new PopulationBudget(10));
+        world.update(0.001);
+
+        assertTrue(world.getParticleCount() <= 10, "count " + world.getParticleCount());
+        assertEquals(31, world.getPopulationBudget().getMergeCount());
+        double[] after = totals();
+        assertEquals(before[0], after[0], 1e-9);
+        assertEquals(before[1], after[1], 1e-9);
+        assertEquals(before[2], after[2], 1e-9);
+        assertEquals(1, world.getParticles().stream().filter(p -> p instanceof GravityParticle).count());
+    }
+
+    @Test
+    void testRefusePolicy() {
+        PopulationBudget budget = new PopulationBudget(2);
+        budget.setSpawnPolicy(PopulationBudget.SpawnPolicy.REFUSE);
+        world.setPopulationBudget(budget);
+        assertNotNull(world.spawn(ParticleType.BASIC, 10, 10, 0, 0, 0, 0));
+        assertNotNull(world.spawn(ParticleType.BASIC, 20, 10, 0, 0, 0, 0));
+        assertNull(world.spawn(ParticleType.BASIC, 30, 10, 0, 0, 0, 0));
+        assertEquals(2, world.getParticleCount());
+        assertEquals(1, budget.getRefusedCount());
+    }
+
+    @Test
+    void testDeferPolicyAddsOnceThereIsRoom() {
+        PopulationBudget budget = new PopulationBudget(1);
+        budget.setSpawnPolicy(PopulationBudget.SpawnPolicy.DEFER);
+        world.setPopulationBudget(budget);
+        Particle first = world.spawn(ParticleType.BASIC, 10, 10, 0, 0, 0, 0);
+        Particle waiting = world.spawn(ParticleType.BASIC, 30, 30, 0, 0, 0, 0);
+        assertNotNull(waiting);
+        assertFalse(world.containsParticle(waiting));
+        assertTrue(world.grid.getParticlesInRange(30, 30, 1).isEmpty());
+        assertSame(world, waiting.getWorld());
+        assertTrue(waiting.getId() > first.getId());
+
+        world.removeParticle(first);
+        world.update(0.016);
+        assertTrue(world.containsParticle(waiting));
+        assertTrue(world.grid.getParticlesInRange(30, 30, 1).contains(waiting));
+        assertEquals(1, budget.getAdmittedCount());
+        assertEquals(0, budget.getDeferredCount());
+    }
+
+    /**
+     * Total mass and x/y momentum of all particles.
+     */
+    private double[] totals() {
+        double[] totals = new double[3];
+        for (Particle p : world.getParticles()) {
+            totals[0] += p.getMass();
+            totals[1] += p.getMass() * p.getBaseDx();
+            totals[2] += p.getMass() * p.getBaseDy();
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,102 @@
+package cellularfractals.engine;
+
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.effects.GroundGravityEffect;
+import cellularfractals.particles.effects.MouseGravityEffect;
+import cellularfractals.particles.particles.BasicParticle;
+import cellularfractals.particles.particles.GravityParticle;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorldSleepTest {
+    private World world;
+
+    @BeforeEach
+    void setUp() {
+        world = new World(20, 20, 5);
+        world.setExecutor(null, 1);
+        world.setBoundaryRestitution(0.2);
+        world.setSleepEnabled(true);
+        world.setSleepThresholds(0.25, 0.5, 0.01, 10);
+        GroundGravityEffect gravity = new GroundGravityEffect(0.1f);
+        gravity.setEnabled(true);
+        world.effectModifierIndex.addGlobalEffect(gravity);
+    }
+
+    @Test
+    void testRestingParticleSleepsAndStaysPut() {
+        Particle p = new BasicParticle(world, 10, 19.5, 0, 0);
+        settle();
+        assertTrue(p.isAsleep());
+        assertEquals(0, world.getAwakeParticleCount());
+
+        double y = p.getY();
+        world.update(0.016);
+        assertEquals(y, p.getY(), 0.0);
+    }
+
+    @Test
+    void testGlobalEffectChangeWakesSleeper() {
+        Particle p = new BasicParticle(world, 10, 19.5, 0, 0);
+        settle();
+        assertTrue(p.isAsleep());
+
+        MouseGravityEffect mouse = new MouseGravityEffect(5f, 1f);
+        mouse.setPosition(10, 15);
+        world.effectModifierIndex.addGlobalEffect(mouse);
+        world.update(0.016);
+        assertFalse(p.isAsleep());
+    }
+
+    @Test
+    void testRemovingNeighborWakesSleeper() {
+        Particle left = new BasicParticle(world, 9.5, 19.5, 0, 0);
+        Particle right = new BasicParticle(world, 10.5, 19.5, 0, 0);
+        settle();
+        assertTrue(left.isAsleep());
+        assertTrue(right.isAsleep());
+
+        world.removeParticle(right);
+        world.update(0.016);
+        assertFalse(left.isAsleep());
+    }
+
+    @Test
+    void testSmallParticleHittingLargeSleeperWakesIt() {
+        Particle big = new BasicParticle(world, 10, 17, 0, 0);
+        big.setRadius(3);
+        settle();
+        assertTrue(big.isAsleep());
+
+        // Overlapping the sleeper's edge, far outside four of its own radii
+        Particle small = new BasicParticle(world, 10 + big.getRadius() + 0.2, big.getY(), -2, 0);
+        world.update(0.016);
+        world.update(0.016);
+        assertFalse(big.isAsleep());
+        assertTrue(small.getDx() > -2, "the small particle bounced instead of passing through");
+    }
+
+    @Test
+    void testEmittersNeverSleep() {
+        Particle emitter = new GravityParticle(world, 10, 19.5, 0, 0, 5f, 0.001f);
+        settle();
+        assertFalse(emitter.isAsleep());
+    }
+
+    @Test
+    void testDisablingSleepWakesEveryone() {
+        Particle p = new BasicParticle(world, 10, 19.5, 0, 0);
+        settle();
+        assertTrue(p.isAsleep());
+        world.setSleepEnabled(false);
+        assertFalse(p.isAsleep());
+    }
+
+    private void settle() {
+        for (int i = 0; i < 200; i++) {
+            world.update(0.016);
+        }
+    }
+}
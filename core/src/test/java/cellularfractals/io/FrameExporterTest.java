@@ -0,0 +1,102 @@
+package cellularfractals.io;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.particles.BasicParticle;
+import cellularfractals.render.ParticleTrails;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.Deflater;
+import javax.imageio.ImageIO;
+
+class FrameExporterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testPngDecodesToSamePixels() throws IOException {
+        int width = 300;
+        int height = 70;
+        int[] pixels = new int[width * height];
+        Random random = new Random(7);
+        for (int i = 0; i < pixels.length; i++) {
+            // Flat runs with noise, so both filtering and multiple chunks are exercised
+            pixels[i] = i % 97 < 50 ? 0x102030 : random.nextInt() & 0xFFFFFF;
+        }
+        Path file = tempDir.resolve("image.png");
+        try (PngEncoder png = new PngEncoder(Deflater.BEST_SPEED)) {
+            png.write(pixels, width, height, file);
+            // Buffers are reused for a second image
+            png.write(pixels, width, height, tempDir.resolve("again.png"));
+        }
+
+        BufferedImage image = ImageIO.read(file.toFile());
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(pixels[y * width + x], image.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(tempDir.resolve("again.png")));
+    }
+
+    @Test
+    void testEveryNthStepIsWritten() throws IOException {
+        World world = new World(50, 50, 5);
+        world.setExecutor(null, 1);
+        new BasicParticle(world, 25, 25, 0, 0).cosmeticSettings.color = 0xFFFF0000;
+        Path dir = tempDir.resolve("frames");
+        // A queue of one and a single encoder makes steps wait
+        FrameExporter exporter = new FrameExporter(dir, world, 64, 32, 2, 1, 1, null);
+        world.addStepListener(exporter);
+        for (int i = 0; i < 10; i++) {
+            world.update(0.01);
+        }
+        world.removeStepListener(exporter);
+        exporter.close();
+
+        assertEquals(5, exporter.getFramesWritten());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(Files.exists(exporter.getFramePath(i)));
+        }
+        assertFalse(Files.exists(exporter.getFramePath(5)));
+        BufferedImage image = ImageIO.read(exporter.getFramePath(4).toFile());
+        // The world fills a centered 32 pixel square
+        assertEquals(0xFF0000, image.getRGB(32, 16) & 0xFFFFFF);
+        assertEquals(0, image.getRGB(5, 16) & 0xFFFFFF);
+    }
+
+    @Test
+    void testRenderFailureStopsExportInsteadOfBlockingSteps() throws IOException {
+        World world = new World(50, 50, 5);
+        world.setExecutor(null, 1);
+        new BasicParticle(world, 25, 25, 0, 0);
+        ParticleTrails broken = new ParticleTrails(4, 4, 1) {
+            @Override
+            public synchronized void copyTo(ParticleTrails target) {
+                throw new IllegalStateException("broken trails");
+            }
+        };
+        broken.setEnabled(true);
+        FrameExporter exporter = new FrameExporter(tempDir.resolve("frames"), world, 16, 16, 1, 1, 1,
+            rasterizer -> rasterizer.setTrails(broken));
+        world.addStepListener(exporter);
+        // More frames than the pool holds, which would wait forever on a dead encoder
+        for (int i = 0; i < 10; i++) {
+            world.update(0.01);
+        }
+        world.removeStepListener(exporter);
+
+        IOException error = assertThrows(IOException.class, exporter::close);
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        assertEquals(0, exporter.getFramesWritten());
+    }
+}
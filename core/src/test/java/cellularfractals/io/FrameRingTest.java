@@ -0,0 +1,112 @@
+package cellularfractals.io;
+
+import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.particles.particles.BasicParticle;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+class FrameRingTest {
+    @TempDir
+    Path dir;
+
+    private World world;
+    private Path path;
+
+    @BeforeEach
+    void setUp() {
+        world = new World(100, 100, 5);
+        world.setExecutor(null, 1);
+        for (int i = 0; i < 10; i++) {
+            new BasicParticle(world, 5 + i * 8, 50, 0, 0);
+        }
+        path = dir.resolve("world.ring");
+    }
+
+    @Test
+    void testReaderOpenedMidRunStartsAtOldestFrame() throws Exception {
+        try (FrameRingWriter writer = new FrameRingWriter(path, world, 4, 16, 1)) {
+            world.addStepListener(writer);
+            for (int i = 0; i < 10; i++) {
+                world.update(0.01);
+            }
+            try (FrameRingReader reader = FrameRingReader.open(path)) {
+                WorldFrame frame = new WorldFrame();
+                for (long sequence = 6; sequence < 10; sequence++) {
+                    assertEquals(sequence, reader.next(frame));
+                    assertEquals(sequence + 1, frame.step);
+                }
+                assertEquals(-1, reader.next(frame));
+                assertEquals(0, reader.getFramesSkipped());
+                assertFalse(reader.read(5, frame), "overwritten by frame 9");
+            }
+        }
+    }
+
+    @Test
+    void testTruncatedFrameReportsItsCount() throws Exception {
+        try (FrameRingWriter writer = new FrameRingWriter(path, world, 2, 4, 1);
+             FrameRingReader reader = FrameRingReader.open(path)) {
+            world.addStepListener(writer);
+            world.update(0.01);
+
+            FrameRingReader.FrameView view = reader.view(0);
+            assertTrue(view.isTruncated());
+            assertEquals(4, view.getCount());
+            assertEquals(10, view.getTotalCount());
+            assertTrue(view.isIntact());
+            WorldFrame frame = new WorldFrame();
+            assertEquals(0, reader.next(frame));
+            assertEquals(4, frame.count);
+
+            // A view of a frame the writer has since lapped is no longer intact
+            world.update(0.01);
+            world.update(0.01);
+            assertFalse(view.isIntact());
+            assertNull(reader.view(0));
+        }
+    }
+
+    @Test
+    void testReaderNoticesWriterClosingWhileReading() throws Exception {
+        FrameRingWriter writer = new FrameRingWriter(path, world, 32, 16, 1);
+        world.addStepListener(writer);
+        AtomicLong read = new AtomicLong();
+        AtomicLong lastStep = new AtomicLong(-1);
+        Thread tail = new Thread(() -> {
+            try (FrameRingReader reader = FrameRingReader.open(path)) {
+                WorldFrame frame = new WorldFrame();
+                while (true) {
+                    boolean closed = reader.isWriterClosed();
+                    if (reader.next(frame) >= 0) {
+                        read.incrementAndGet();
+                        lastStep.set(frame.step);
+                    } else if (closed) {
+                        break;
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                }
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        tail.start();
+        for (int i = 0; i < 20; i++) {
+            world.update(0.01);
+        }
+        writer.close();
+        tail.join(10000);
+
+        assertFalse(tail.isAlive(), "reader kept waiting after the writer closed");
+        assertEquals(20, read.get());
+        assertEquals(20, lastStep.get());
+        assertEquals(20, writer.getFramesPublished());
+    }
+}
@@ -0,0 +1,98 @@
+package cellularfractals.io;
+
+import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.particles.BasicParticle;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+class FrameStreamTest {
+    @Test
+    void testClientReceivesQuantizedFrames() throws Exception {
+        World world = new World(100, 50, 5);
+        world.setExecutor(null, 1);
+        Particle a = new BasicParticle(world, 10, 20, 1, -0.5);
+        a.cosmeticSettings.color = 0xFFFF0000;
+        Particle b = new BasicParticle(world, 70.25, 40.5, 0, 0);
+        try (FrameStreamServer server = new FrameStreamServer(world, 0, 1, true);
+             FrameStreamClient client = FrameStreamClient.connect(server.getPort())) {
+            world.addStepListener(server);
+            assertEquals(100.0, client.getWorldWidth());
+            assertEquals(50.0, client.getWorldHeight());
+            awaitClients(server, 1);
+
+            world.update(0.01);
+            WorldFrame frame = new WorldFrame();
+            assertTrue(client.next(frame));
+            assertEquals(1, frame.step);
+            assertEquals(2, frame.count);
+            for (int i = 0; i < frame.count; i++) {
+                Particle p = frame.ids[i] == a.getId() ? a : b;
+                assertEquals(p.getX(), frame.x[i], 100.0 / 0xFFFF);
+                assertEquals(p.getY(), frame.y[i], 50.0 / 0xFFFF);
+                assertEquals(p.getRadius(), frame.radius[i], 1.0 / 256);
+                assertEquals(p.getDx(), frame.vx[i], 1.0 / 256);
+                assertEquals(p.getDy(), frame.vy[i], 1.0 / 256);
+                assertEquals(p.cosmeticSettings.color, frame.color[i]);
+                assertEquals((byte) p.getParticleType().getId(), frame.types[i]);
+            }
+        }
+    }
+
+    @Test
+    void testStalledClientDropsFramesWithoutBlockingSteps() throws Exception {
+        World world = new World(100, 100, 5);
+        world.setExecutor(null, 1);
+        for (int i = 0; i < 20000; i++) {
+            new BasicParticle(world, (i % 140) * 0.7 + 1, (i / 140) * 0.7 + 1, 0, 0);
+        }
+        try (FrameStreamServer server = new FrameStreamServer(world, 0, 1, true);
+             SocketChannel stalled = SocketChannel.open(
+                 new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))) {
+            world.addStepListener(server);
+            awaitClients(server, 1);
+            // Each frame is over 300 KB and nothing is ever read, so the socket fills up
+            for (int i = 0; i < 60; i++) {
+                world.update(0.001);
+                Thread.sleep(2);
+            }
+            assertTrue(server.getFramesDropped() > 0, "dropped " + server.getFramesDropped());
+
+            // A client joining later still gets the current frames
+            try (FrameStreamClient late = FrameStreamClient.connect(server.getPort())) {
+                awaitClients(server, 2);
+                world.update(0.001);
+                WorldFrame frame = new WorldFrame();
+                assertTrue(late.next(frame));
+                assertEquals(20000, frame.count);
+                assertTrue(frame.step >= 60, "step " + frame.step);
+            }
+        }
+    }
+
+    @Test
+    void testClientSeesEndOfStreamWhenServerCloses() throws IOException, InterruptedException {
+        World world = new World(10, 10, 5);
+        FrameStreamServer server = new FrameStreamServer(world, 0, 1, false);
+        try (FrameStreamClient client = FrameStreamClient.connect(server.getPort())) {
+            awaitClients(server, 1);
+            server.close();
+            assertFalse(client.next(new WorldFrame()));
+        }
+    }
+
+    private static void awaitClients(FrameStreamServer server, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (server.getClientCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, server.getClientCount());
+    }
+}
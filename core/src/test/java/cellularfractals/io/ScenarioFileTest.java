@@ -0,0 +1,99 @@
+package cellularfractals.io;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.particles.BasicParticle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class ScenarioFileTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testTextAndBinaryLoadTheSameParticles() throws IOException {
+        Path text = tempDir.resolve("scene.txt");
+        Path binary = tempDir.resolve("scene.cfs");
+        for (Path path : Arrays.asList(text, binary)) {
+            try (ScenarioWriter writer = path == text
+                    ? ScenarioWriter.text(path, 200, 100, 10)
+                    : ScenarioWriter.binary(path, 200, 100, 10)) {
+                writer.setDefaults(ParticleType.GRAVITY, 5f, .01f);
+                for (int i = 0; i < 100; i++) {
+                    writer.addParticle(ParticleType.GRAVITY, 1.5f * i, 50, .25f, -.5f);
+                }
+                writer.addParticle(ParticleType.MAGNETIC_NEGATIVE, 10, 10, 0, 0, 7f, .005f);
+                writer.addParticle(ParticleType.BASIC, 20, 20, 1, 1);
+            }
+        }
+
+        World fromText = ScenarioReader.load(text);
+        World fromBinary = ScenarioReader.load(binary);
+        assertEquals(200, fromText.getWidth(), 0.0);
+        assertEquals(102, fromText.getParticleCount());
+        assertEquals(102, fromBinary.getParticleCount());
+
+        List<Particle> a = sorted(fromText);
+        List<Particle> b = sorted(fromBinary);
+        for (int i = 0; i < a.size(); i++) {
+            assertSame(a.get(i).getParticleType(), b.get(i).getParticleType());
+            assertEquals(a.get(i).getX(), b.get(i).getX(), 0.0);
+            assertEquals(a.get(i).getY(), b.get(i).getY(), 0.0);
+            assertEquals(a.get(i).getBaseDx(), b.get(i).getBaseDx(), 0.0);
+        }
+        assertEquals(1, fromBinary.getParticlesNear(15, 50, 0.1).size());
+    }
+
+    @Test
+    void testParallelBulkLoadIndexesEveryParticle() throws IOException {
+        Path path = tempDir.resolve("grid.cfs");
+        try (ScenarioWriter writer = ScenarioWriter.binary(path, 100, 100, 10)) {
+            for (int i = 0; i < 10_000; i++) {
+                writer.addParticle(ParticleType.BASIC, (i % 100) + .5f, (i / 100) + .5f, 0, 0);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            World world = new World(100, 100, 10);
+            world.setExecutor(executor, 4);
+            new BasicParticle(world, 50.5, 50.5, 0, 0);
+            assertEquals(10_000, ScenarioReader.loadInto(path, world));
+            assertEquals(10_001, world.getParticleCount());
+            // One particle per unit square, plus the one added before loading
+            assertEquals(2, world.getParticlesNear(50.5, 50.5, 0.1).size());
+            long expected = world.getParticles().stream()
+                .filter(p -> Math.hypot(p.getX() - 30, p.getY() - 70) <= 12)
+                .count();
+            assertEquals(expected, world.getParticlesNear(30, 70, 12).size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testTextErrorsNameTheLine() throws IOException {
+        Path path = tempDir.resolve("bad.txt");
+        Files.write(path, Arrays.asList("cfscenario 1", "world 10 10 1", "basic 1"));
+        IOException e = assertThrows(IOException.class, () -> ScenarioReader.load(path));
+        assertTrue(e.getMessage().contains(":3:"));
+    }
+
+    private static List<Particle> sorted(World world) {
+        List<Particle> particles = world.getParticles();
+        particles.sort(Comparator.comparingDouble(Particle::getX).thenComparingDouble(Particle::getY));
+        return particles;
+    }
+}
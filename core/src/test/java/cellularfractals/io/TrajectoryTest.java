@@ -0,0 +1,111 @@
+package cellularfractals.io;
+
+import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.particles.BasicParticle;
+import cellularfractals.particles.particles.GravityParticle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class TrajectoryTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testPlaybackMatchesRecordedFrames() throws IOException {
+        World world = populatedWorld();
+        Path file = tempDir.resolve("run.traj");
+        List<WorldFrame> expected = record(world, file, 25, 10);
+
+        try (TrajectoryPlayer player = TrajectoryPlayer.open(file)) {
+            assertEquals(25, player.getFrameCount());
+            assertEquals(3, player.getKeyframeCount());
+            WorldFrame frame = new WorldFrame();
+            for (WorldFrame want : expected) {
+                assertTrue(player.next(frame));
+                assertFrameClose(want, frame, world);
+            }
+            assertFalse(player.next(frame));
+        }
+    }
+
+    @Test
+    void testSeekToKeyframeAndStep() throws IOException {
+        World world = populatedWorld();
+        Path file = tempDir.resolve("seek.traj");
+        List<WorldFrame> expected = record(world, file, 25, 10);
+
+        try (TrajectoryPlayer player = TrajectoryPlayer.open(file)) {
+            WorldFrame frame = new WorldFrame();
+            player.seekKeyframe(2);
+            assertTrue(player.next(frame));
+            assertFrameClose(expected.get(20), frame, world);
+
+            // Seeking backwards after reading must not reuse stale delta state
+            assertTrue(player.seekStep(expected.get(13).step, frame));
+            assertFrameClose(expected.get(13), frame, world);
+            assertTrue(player.next(frame));
+            assertFrameClose(expected.get(14), frame, world);
+        }
+    }
+
+    private static World populatedWorld() {
+        World world = new World(100, 100, 10);
+        for (int i = 0; i < 20; i++) {
+            new BasicParticle(world, 10 + i * 4, 50, (i % 3) - 1, (i % 5) - 2);
+        }
+        // Off the row of particles, so none starts on top of the attractor
+        new GravityParticle(world, 50, 60, 0, 0, 20f, 0.001f);
+        return world;
+    }
+
+    private static List<WorldFrame> record(World world, Path file, int steps, int keyframeInterval)
+            throws IOException {
+        List<WorldFrame> frames = new ArrayList<>();
+        // A queue as deep as the run so no frame is dropped
+        TrajectoryRecorder recorder = new TrajectoryRecorder(file, world, 1, keyframeInterval, steps);
+        world.addStepListener(recorder);
+        for (int i = 0; i < steps; i++) {
+            world.update(0.016);
+            WorldFrame frame = new WorldFrame();
+            world.captureFrame(frame);
+            frames.add(frame);
+        }
+        world.removeStepListener(recorder);
+        recorder.close();
+        assertEquals(0, recorder.getDroppedFrames());
+        return frames;
+    }
+
+    private static void assertFrameClose(WorldFrame want, WorldFrame got, World world) {
+        double tolerance = world.getWidth() / Trajectory.QUANT_MAX;
+        assertEquals(want.step, got.step);
+        assertEquals(want.count, got.count);
+        for (int i = 0; i < want.count; i++) {
+            assertEquals(want.ids[i], got.ids[i]);
+            assertEquals(want.x[i], got.x[i], tolerance);
+            assertEquals(want.y[i], got.y[i], tolerance);
+            assertEquals(want.types[i], got.types[i]);
+            assertEquals(want.radius[i], got.radius[i], 0.0);
+            assertEquals(want.color[i], got.color[i]);
+        }
+        assertTrue(containsType(got, ParticleType.GRAVITY));
+    }
+
+    private static boolean containsType(WorldFrame frame, ParticleType type) {
+        for (int i = 0; i < frame.count; i++) {
+            if (frame.types[i] == type.getId()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,124 @@
+package cellularfractals.io;
+
+import cellularfractals.engine.InteractionMatrix;
+import cellularfractals.engine.World;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.particles.BasicParticle;
+import cellularfractals.particles.particles.ExplodingParticle;
+import cellularfractals.particles.particles.GravityParticle;
+import cellularfractals.particles.particles.MagneticParticle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+class WorldSnapshotTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRoundTripPreservesParticles() throws IOException {
+        World world = new World(100, 80, 10);
+        BasicParticle basic = new BasicParticle(world, 10, 20, 0.5, -0.25);
+        basic.setMass(2.5);
+        basic.setRadius(1.5);
+        basic.setFriction(0.3);
+        new GravityParticle(world, 30, 40, 0, 0, 5f, -0.002f);
+        new MagneticParticle(world, 50, 60, 1, 1, 7f, 0.005f, "Negative");
+        new ExplodingParticle(world, 70, 10, 0, 0, 12);
+
+        Path file = tempDir.resolve("world.snap");
+        WorldSnapshot.save(world, file);
+        World restored = WorldSnapshot.load(file);
+
+        assertEquals(100, restored.getWidth(), 0.0);
+        assertEquals(80, restored.getHeight(), 0.0);
+        assertEquals(4, restored.getParticleCount());
+
+        List<Particle> before = sorted(world);
+        List<Particle> after = sorted(restored);
+        for (int i = 0; i < before.size(); i++) {
+            Particle a = before.get(i);
+            Particle b = after.get(i);
+            assertSame(a.getParticleType(), b.getParticleType());
+            assertEquals(a.getX(), b.getX(), 0.0);
+            assertEquals(a.getY(), b.getY(), 0.0);
+            assertEquals(a.getBaseDx(), b.getBaseDx(), 0.0);
+            assertEquals(a.getBaseDy(), b.getBaseDy(), 0.0);
+            assertEquals(a.getMass(), b.getMass(), 0.0);
+            assertEquals(a.getRadius(), b.getRadius(), 0.0);
+            assertEquals(a.getRestitution(), b.getRestitution(), 0.0);
+            assertEquals(a.getFriction(), b.getFriction(), 0.0);
+            assertEquals(a.cosmeticSettings.color, b.cosmeticSettings.color);
+        }
+        assertSame(ParticleType.ANTI_GRAVITY, after.get(1).getParticleType());
+    }
+
+    @Test
+    void testRoundTripPreservesInteractions() throws IOException {
+        World world = new World(50, 50, 5);
+        InteractionMatrix interactions = new InteractionMatrix(2);
+        interactions.setLaw(0, 1, 0.04, 6, 0);
+        interactions.setLaw(1, 0, -0.02, 4, 2);
+        world.setInteractionMatrix(interactions);
+        new BasicParticle(world, 10, 10, 0, 0).setInteractionType(1);
+        new BasicParticle(world, 20, 20, 0, 0);
+
+        Path file = tempDir.resolve("interactions.snap");
+        WorldSnapshot.save(world, file);
+        World restored = WorldSnapshot.load(file);
+
+        InteractionMatrix loaded = restored.getInteractionMatrix();
+        assertNotNull(loaded);
+        assertEquals(2, loaded.getTypeCount());
+        assertEquals(0.04, loaded.getStrength(0, 1), 0.0);
+        assertEquals(6.0, loaded.getRange(0, 1), 0.0);
+        assertEquals(0.0, loaded.getFalloff(0, 1), 0.0);
+        assertEquals(-0.02, loaded.getStrength(1, 0), 0.0);
+        assertEquals(2.0, loaded.getFalloff(1, 0), 0.0);
+        assertEquals(0.0, loaded.getStrength(1, 1), 0.0);
+        List<Particle> after = sorted(restored);
+        assertEquals(1, after.get(0).getInteractionType());
+        assertEquals(-1, after.get(1).getInteractionType());
+
+        World plain = new World(50, 50, 5);
+        new BasicParticle(plain, 10, 10, 0, 0);
+        WorldSnapshot.save(plain, file);
+        assertNull(WorldSnapshot.load(file).getInteractionMatrix());
+    }
+
+    @Test
+    void testRestoredGridAnswersQueries() throws IOException {
+        World world = new World(100, 100, 10);
+        for (int i = 0; i < 50; i++) {
+            new BasicParticle(world, 5 + i, 5 + i, 0, 0);
+        }
+
+        Path file = tempDir.resolve("grid.snap");
+        WorldSnapshot.save(world, file);
+        World restored = WorldSnapshot.load(file);
+
+        assertEquals(1, restored.getParticlesNear(30, 30, 0.5).size());
+        assertEquals(world.getParticlesNear(20, 20, 10).size(), restored.getParticlesNear(20, 20, 10).size());
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("garbage.snap");
+        Files.write(file, new byte[128]);
+        assertThrows(IOException.class, () -> WorldSnapshot.load(file));
+    }
+
+    private static List<Particle> sorted(World world) {
+        List<Particle> particles = world.getParticles();
+        particles.sort(Comparator.comparingDouble(Particle::getX));
+        return particles;
+    }
+}
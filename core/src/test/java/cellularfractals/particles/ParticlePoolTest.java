@@ -0,0 +1,111 @@
+package cellularfractals.particles;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.effects.GravityEffect;
+import cellularfractals.particles.effects.GroundGravityEffect;
+import cellularfractals.particles.particles.BasicParticle;
+import cellularfractals.particles.particles.GravityParticle;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParticlePoolTest {
+    private World world;
+    private ParticlePool pool;
+
+    @BeforeEach
+    void setUp() {
+        world = new World(50, 50, 5);
+        world.setExecutor(null, 1);
+        pool = new ParticlePool();
+        world.setParticlePool(pool);
+    }
+
+    @Test
+    void testRemovedParticleIsReusedAfterUpdate() {
+        Particle first = world.spawn(ParticleType.BASIC, 10, 10, 1, 0, 0, 0);
+        first.setRadius(2);
+        first.cosmeticSettings.color = 0xFF123456;
+        first.addEffectModifier("ignore_ground_gravity");
+        int id = first.getId();
+        world.removeParticle(first);
+
+        // Not handed out again until the world is done with it
+        Particle beforeUpdate = world.spawn(ParticleType.BASIC, 20, 20, 0, 0, 0, 0);
+        assertNotSame(first, beforeUpdate);
+
+        world.update(0.016);
+        Particle reused = world.spawn(ParticleType.BASIC, 30, 40, 0, -1, 0, 0);
+        assertSame(first, reused);
+        assertTrue(reused.getId() > beforeUpdate.getId(), "a reused particle gets a fresh id");
+        assertNotEquals(id, reused.getId());
+        assertEquals(30, reused.getX(), 0.0);
+        assertEquals(40, reused.getY(), 0.0);
+        assertEquals(-1, reused.getDy(), 0.0);
+        assertEquals(0.5, reused.getRadius(), 0.0);
+        assertEquals(1, reused.getRestitution(), 0.0);
+        assertEquals(new BasicParticle(null, 0, 0, 0, 0).cosmeticSettings.color, reused.cosmeticSettings.color);
+        assertFalse(reused.hasEffectModifier("ignore_ground_gravity"));
+        assertTrue(world.containsParticle(reused));
+        assertTrue(world.grid.getParticlesInRange(30, 40, 0.1).contains(reused));
+        assertEquals(1, pool.getReusedCount());
+    }
+
+    @Test
+    void testRecycledEffectTakesNewParameters() {
+        Particle p = world.spawn(ParticleType.GRAVITY, 10, 10, 0, 0, 5, 0.5f);
+        world.removeParticle(p);
+        world.update(0.016);
+
+        GravityParticle reused = (GravityParticle) world.spawn(ParticleType.GRAVITY, 10, 10, 0, 0, 8, 0.25f);
+        assertSame(p, reused);
+        GravityEffect effect = (GravityEffect) reused.listEffects().get(0);
+        assertEquals(8f, effect.getRange());
+        assertEquals(0.25f, effect.getStrength());
+    }
+
+    @Test
+    void testRecycledEffectLosesStateFromPreviousLife() {
+        Particle p = world.spawn(ParticleType.BASIC, 10, 10, 0, 0, 0, 0);
+        GroundGravityEffect gravity = (GroundGravityEffect) p.listEffects().get(0);
+        gravity.setEnabled(true);
+        gravity.setStrength(2f);
+        world.removeParticle(p);
+        world.update(0.016);
+
+        Particle reused = world.spawn(ParticleType.BASIC, 10, 10, 0, 0, 0, 0);
+        assertSame(p, reused);
+        GroundGravityEffect fresh = (GroundGravityEffect) new BasicParticle(null, 0, 0, 0, 0).listEffects().get(0);
+        assertEquals(fresh.isEnabled(), gravity.isEnabled());
+        assertEquals(fresh.getStrength(), gravity.getStrength());
+    }
+
+    @Test
+    void testCapLimitsKeptParticles() {
+        pool.setCap(ParticleType.BASIC, 2);
+        for (int i = 0; i < 5; i++) {
+            world.removeParticle(world.spawn(ParticleType.BASIC, 10 + i, 10, 0, 0, 0, 0));
+        }
+        world.update(0.016);
+        assertEquals(2, pool.getAvailable(ParticleType.BASIC));
+        assertEquals(3, pool.getDroppedCount());
+    }
+
+    @Test
+    void testExplosionFragmentsComeFromPool() {
+        for (int round = 0; round < 3; round++) {
+            Particle bomb = world.spawn(ParticleType.EXPLODING, 25, 25, 0, 0, 3, 0);
+            world.spawn(ParticleType.BASIC, 26, 25, 0, 0, 0, 0);
+            world.update(0.016);
+            assertFalse(world.containsParticle(bomb));
+            // Clear the fragments so the next explosion can reuse them
+            for (Particle p : world.getParticles()) {
+                world.removeParticle(p);
+            }
+            world.update(0.016);
+        }
+        assertTrue(pool.getReusedCount() >= 20, "reused " + pool.getReusedCount());
+        assertEquals(0, world.grid.getParticlesInRange(25, 25, 50).size());
+    }
+}
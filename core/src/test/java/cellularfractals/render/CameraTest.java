@@ -0,0 +1,70 @@
+package cellularfractals.render;
+
+import cellularfractals.engine.World;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.ParticlePool;
+import cellularfractals.particles.ParticleType;
+import cellularfractals.particles.particles.BasicParticle;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CameraTest {
+    @Test
+    void testZoomKeepsPointUnderCursorAndConversionsRoundTrip() {
+        Camera camera = new Camera(100, 100);
+        camera.setViewport(600, 400);
+        // At zoom 1 the world fills the centered 400 px square
+        assertEquals(400, camera.getWorldSize(), 1e-9);
+        assertEquals(100, camera.getOffsetX(), 1e-9);
+        assertEquals(0, camera.getOffsetY(), 1e-9);
+
+        double worldX = camera.screenToWorldX(250);
+        double worldY = camera.screenToWorldY(120);
+        camera.zoomAt(250, 120, 4);
+        assertEquals(worldX, camera.screenToWorldX(250), 1e-9);
+        assertEquals(worldY, camera.screenToWorldY(120), 1e-9);
+        assertEquals(250, camera.worldToScreenX(worldX), 1e-9);
+        // A quarter of the world's height is in view
+        assertEquals(25, camera.getVisibleMaxY() - camera.getVisibleMinY(), 1e-9);
+    }
+
+    @Test
+    void testFollowTracksParticleUntilRemoved() {
+        World world = new World(100, 100, 5);
+        Particle p = new BasicParticle(world, 30, 70, 0, 0);
+        Camera camera = new Camera(100, 100);
+        camera.setViewport(200, 200);
+        camera.follow(p);
+        assertEquals(30, camera.getCenterX(), 1e-9);
+        p.setPos(40, 60);
+        camera.update();
+        assertEquals(40, camera.getCenterX(), 1e-9);
+        assertEquals(60, camera.getCenterY(), 1e-9);
+
+        world.removeParticle(p);
+        camera.update();
+        assertNull(camera.getFollowed());
+        camera.pan(20, 0);
+        assertEquals(40 - 20 / camera.getScaleX(), camera.getCenterX(), 1e-9);
+    }
+
+    @Test
+    void testFollowStopsWhenPooledParticleIsReused() {
+        World world = new World(100, 100, 5);
+        world.setExecutor(null, 1);
+        world.setParticlePool(new ParticlePool());
+        Particle p = world.spawn(ParticleType.BASIC, 30, 70, 0, 0, 0, 0);
+        Camera camera = new Camera(100, 100);
+        camera.setViewport(200, 200);
+        camera.follow(p);
+
+        // Removed and respawned before the camera looked again
+        world.removeParticle(p);
+        world.update(0.016);
+        assertSame(p, world.spawn(ParticleType.BASIC, 80, 10, 0, 0, 0, 0));
+        camera.update();
+        assertNull(camera.getFollowed());
+        assertEquals(30, camera.getCenterX(), 1e-9);
+    }
+}
@@ -0,0 +1,179 @@
+package cellularfractals.render;
+
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.particles.ParticleType;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class FrameRasterizerTest {
+    private static final int SIZE = 100;
+
+    @Test
+    void testParticleIsStampedAcrossTiles() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            FrameRasterizer rasterizer = new FrameRasterizer(executor, 4);
+            rasterizer.setGrid(0, 0);
+            // 16 tiles of 7 rows; a radius of 5 pixels spans a tile boundary
+            int[] pixels = new int[SIZE * SIZE];
+            rasterizer.render(frame(50, 49, 5, 0xFFFF0000), pixels, SIZE, SIZE, SIZE, 0, 0);
+
+            assertEquals(0xFF0000, pixels[49 * SIZE + 50]);
+            assertEquals(0xFF0000, pixels[53 * SIZE + 50]);
+            assertEquals(0xFF0000, pixels[46 * SIZE + 50]);
+            assertEquals(0, pixels[49 * SIZE + 60]);
+            assertEquals(0, pixels[40 * SIZE + 50]);
+            // The rim is blended with the background
+            int rim = pixels[49 * SIZE + 55] >> 16;
+            assertTrue(rim > 0 && rim < 255, "rim " + rim);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testTinyParticlesLightOnePixelAndHiddenTypesAreSkipped() {
+        FrameRasterizer rasterizer = new FrameRasterizer(null, 1);
+        rasterizer.setGrid(0, 0);
+        int[] pixels = new int[SIZE * SIZE];
+        WorldFrame frame = frame(20, 30, 0.1f, 0xFF00FF00);
+        rasterizer.render(frame, pixels, SIZE, SIZE, SIZE, 0, 0);
+        assertEquals(0x00FF00, pixels[30 * SIZE + 20]);
+        assertEquals(0, pixels[30 * SIZE + 21]);
+
+        boolean[] visible = new boolean[ParticleType.count()];
+        rasterizer.setVisibleTypes(visible);
+        rasterizer.render(frame, pixels, SIZE, SIZE, SIZE, 0, 0);
+        assertEquals(0, pixels[30 * SIZE + 20]);
+    }
+
+    @Test
+    void testGridIsDrawnUnderParticles() {
+        FrameRasterizer rasterizer = new FrameRasterizer(null, 1);
+        rasterizer.setGrid(10, 0x1E1E1E);
+        int[] pixels = new int[SIZE * SIZE];
+        rasterizer.render(frame(5, 5, 0.1f, 0xFFFFFFFF), pixels, SIZE, SIZE, SIZE, 0, 0);
+        assertEquals(0x1E1E1E, pixels[3 * SIZE + 10]);
+        assertEquals(0x1E1E1E, pixels[20 * SIZE + 3]);
+        assertEquals(0, pixels[3 * SIZE + 3]);
+        assertEquals(0xFFFFFF, pixels[5 * SIZE + 5]);
+    }
+
+    @Test
+    void testDenseFramesSwitchToDensityFieldUntilZoomedIn() {
+        FrameRasterizer rasterizer = new FrameRasterizer(null, 1);
+        rasterizer.setGrid(0, 0);
+        rasterizer.setDensityThreshold(2);
+        WorldFrame frame = new WorldFrame();
+        frame.worldWidth = SIZE;
+        frame.worldHeight = SIZE;
+        int n = 3 * SIZE * SIZE;
+        frame.ensureCapacity(n);
+        frame.count = n;
+        for (int i = 0; i < n; i++) {
+            // Everything piles up in the left half, except a few in the bottom-right pixel
+            frame.x[i] = i < n - 100 ? (i % (SIZE / 2)) + 0.5f : SIZE - 0.5f;
+            frame.y[i] = i < n - 100 ? (i / (SIZE / 2)) % SIZE + 0.5f : SIZE - 0.5f;
+            frame.radius[i] = 0.5f;
+            frame.color[i] = 0xFFFFFFFF;
+        }
+        int[] pixels = new int[SIZE * SIZE];
+        rasterizer.render(frame, pixels, SIZE, SIZE, SIZE, 0, 0);
+        assertTrue(rasterizer.isDensityShown());
+        assertEquals(0, pixels[10 * SIZE + 75], "empty pixels keep the background");
+        int crowded = pixels[SIZE * SIZE - 1];
+        int sparse = pixels[10 * SIZE + 10];
+        assertTrue(brightness(crowded) > brightness(sparse), "crowded pixel is brighter");
+        assertNotEquals(0xFFFFFF, sparse);
+
+        // Zoomed in eight times on the right half, few particles are left on screen
+        rasterizer.render(frame, pixels, SIZE, SIZE, SIZE * 8, -SIZE * 7, -SIZE * 7);
+        assertFalse(rasterizer.isDensityShown());
+        assertEquals(0xFFFFFF, pixels[(SIZE - 4) * SIZE + SIZE - 4]);
+    }
+
+    @Test
+    void testStaticLayerFollowsTheView() {
+        FrameRasterizer rasterizer = new FrameRasterizer(null, 1);
+        rasterizer.setGrid(0, 0);
+        rasterizer.setBounds(0x505050);
+        int[] pixels = new int[SIZE * SIZE];
+        WorldFrame frame = frame(50, 50, 0.1f, 0xFFFFFFFF);
+        rasterizer.render(frame, pixels, SIZE, SIZE, SIZE / 2, 10, 10);
+        assertEquals(0x505050, pixels[30 * SIZE + 10]);
+        assertEquals(0x505050, pixels[10 * SIZE + 30]);
+        assertEquals(0, pixels[30 * SIZE + 30]);
+
+        // Moving the world redraws the outline in its new place
+        rasterizer.render(frame, pixels, SIZE, SIZE, SIZE / 2, 20, 10);
+        assertEquals(0, pixels[30 * SIZE + 10]);
+        assertEquals(0x505050, pixels[30 * SIZE + 20]);
+
+        rasterizer.setBackground(0x000010);
+        rasterizer.render(frame, pixels, SIZE, SIZE, SIZE / 2, 20, 10);
+        assertEquals(0x000010, pixels[5 * SIZE + 5]);
+    }
+
+    private static int brightness(int rgb) {
+        return ((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF);
+    }
+
+    @Test
+    void testCirclesTooLargeForASpriteAreFilled() {
+        FrameRasterizer rasterizer = new FrameRasterizer(null, 1);
+        rasterizer.setGrid(0, 0);
+        int[] pixels = new int[SIZE * SIZE];
+        rasterizer.render(frame(50, 50, 70, 0xFF0000FF), pixels, SIZE, SIZE, SIZE, 0, 0);
+        assertEquals(0x0000FF, pixels[50 * SIZE + 50]);
+        assertEquals(0x0000FF, pixels[50 * SIZE]);
+        assertEquals(0x0000FF, pixels[99 * SIZE + 50]);
+        assertEquals(0, pixels[0]);
+
+        // Far larger than the image, as when zoomed far in
+        rasterizer.render(frame(50, 50, 1_000_000, 0xFF0000FF), pixels, SIZE, SIZE, SIZE, 0, 0);
+        assertEquals(0x0000FF, pixels[0]);
+        assertEquals(0x0000FF, pixels[SIZE * SIZE - 1]);
+    }
+
+    @Test
+    void testLongArrowsAreClippedToTheImage() {
+        FrameRasterizer rasterizer = new FrameRasterizer(null, 1);
+        rasterizer.setGrid(0, 0);
+        rasterizer.setVelocityArrows(true, 1);
+        WorldFrame frame = frame(50, 50, 0.1f, 0xFFFFFFFF);
+        frame.trailColor[0] = 0xFF00FF00;
+        // Ends millions of pixels off screen in both directions
+        frame.vx[0] = 3_000_000;
+        frame.vy[0] = 3_000_000;
+        int[] pixels = new int[SIZE * SIZE];
+        rasterizer.render(frame, pixels, SIZE, SIZE, SIZE, 0, 0);
+        assertEquals(0x00FF00, pixels[70 * SIZE + 70]);
+        assertEquals(0x00FF00, pixels[99 * SIZE + 99]);
+        assertEquals(0, pixels[70 * SIZE + 71]);
+
+        frame.vx[0] = -3_000_000;
+        frame.vy[0] = 1;
+        rasterizer.render(frame, pixels, SIZE, SIZE, SIZE, 0, 0);
+        assertEquals(0x00FF00, pixels[50 * SIZE]);
+        assertEquals(0x00FF00, pixels[50 * SIZE + 49]);
+        assertEquals(0, pixels[70 * SIZE + 70]);
+    }
+
+    private static WorldFrame frame(float x, float y, float radius, int color) {
+        WorldFrame frame = new WorldFrame();
+        frame.worldWidth = SIZE;
+        frame.worldHeight = SIZE;
+        frame.ensureCapacity(1);
+        frame.count = 1;
+        frame.types[0] = (byte) ParticleType.BASIC.getId();
+        frame.x[0] = x;
+        frame.y[0] = y;
+        frame.radius[0] = radius;
+        frame.color[0] = color;
+        return frame;
+    }
+}
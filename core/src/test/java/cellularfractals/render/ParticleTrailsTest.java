@@ -0,0 +1,104 @@
+package cellularfractals.render;
+
+import cellularfractals.engine.World;
+import cellularfractals.engine.WorldFrame;
+import cellularfractals.particles.Particle;
+import cellularfractals.particles.particles.BasicParticle;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParticleTrailsTest {
+    private World world;
+
+    @BeforeEach
+    void setUp() {
+        world = new World(100, 100, 5);
+        world.setExecutor(null, 1);
+    }
+
+    @Test
+    void testRingKeepsNewestPositions() {
+        Particle p = new BasicParticle(world, 10, 10, 0, 0);
+        ParticleTrails trails = new ParticleTrails(4, 3, 1);
+        for (int i = 0; i < 5; i++) {
+            p.setPos(10 + i, 20);
+            trails.sample(world);
+        }
+        int slot = trails.getSlot(p.getId());
+        assertEquals(3, trails.getCount(slot));
+        assertEquals(14f, trails.getX(slot, 0));
+        assertEquals(13f, trails.getX(slot, 1));
+        assertEquals(12f, trails.getX(slot, 2));
+        assertEquals(p.cosmeticSettings.trailColor, trails.getColor(slot));
+    }
+
+    @Test
+    void testTrailCountIsCappedAndSlotsAreReused() {
+        Particle[] particles = new Particle[10];
+        for (int i = 0; i < particles.length; i++) {
+            particles[i] = new BasicParticle(world, 5 + i * 8, 50, 0, 0);
+        }
+        ParticleTrails trails = new ParticleTrails(4, 8, 1);
+        trails.sample(world);
+        assertEquals(4, trails.getTrailCount());
+
+        int tracked = 0;
+        for (Particle p : particles) {
+            if (trails.getSlot(p.getId()) >= 0) {
+                world.removeParticle(p);
+                tracked++;
+                if (tracked == 2) break;
+            }
+        }
+        trails.sample(world);
+        assertEquals(2, trails.getTrailCount());
+        // The freed slots go to particles not trailed before on the next sample
+        trails.sample(world);
+        assertEquals(4, trails.getTrailCount());
+        int found = 0;
+        for (Particle p : world.particles) {
+            int slot = trails.getSlot(p.getId());
+            if (slot >= 0) {
+                assertEquals(p.getId(), trails.getId(slot));
+                found++;
+            }
+        }
+        assertEquals(4, found);
+    }
+
+    @Test
+    void testOnlySampledEveryInterval() {
+        new BasicParticle(world, 10, 10, 1, 0);
+        ParticleTrails trails = new ParticleTrails(4, 8, 3);
+        world.addStepListener(trails);
+        for (int i = 0; i < 7; i++) {
+            world.update(1);
+        }
+        assertEquals(2, trails.getCount(0));
+    }
+
+    @Test
+    void testRasterizerDrawsFadingTrail() {
+        ParticleTrails trails = new ParticleTrails(1, 3, 1);
+        Particle p = new BasicParticle(world, 10, 50, 0, 0);
+        p.cosmeticSettings.color = 0;
+        p.cosmeticSettings.trailColor = 0xFFFFFFFF;
+        for (int x : new int[] {10, 30, 50}) {
+            p.setPos(x, 50);
+            trails.sample(world);
+        }
+        FrameRasterizer rasterizer = new FrameRasterizer(null, 1);
+        rasterizer.setGrid(0, 0);
+        rasterizer.setTrails(trails);
+        int[] pixels = new int[100 * 100];
+        rasterizer.render(world.captureFrame(new WorldFrame()), pixels, 100, 100, 100, 0, 0);
+
+        int newer = pixels[50 * 100 + 40] & 0xFF;
+        int older = pixels[50 * 100 + 20] & 0xFF;
+        assertEquals(255, newer);
+        assertTrue(older > 0 && older < newer, "older " + older);
+        assertEquals(0, pixels[50 * 100 + 5]);
+    }
+}